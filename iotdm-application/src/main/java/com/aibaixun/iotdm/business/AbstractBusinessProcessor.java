@@ -2,10 +2,15 @@ package com.aibaixun.iotdm.business;
 
 import com.aibaixun.iotdm.enums.BusinessStep;
 import com.aibaixun.iotdm.server.DeviceLogProcessor;
+import com.aibaixun.iotdm.trace.PipelineStage;
+import com.aibaixun.iotdm.trace.PipelineTrace;
+import com.aibaixun.iotdm.trace.PipelineTraceRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.util.function.Supplier;
+
 /**
  * 抽象业务处理类 只记录日志
  * @author Wang Xiao
@@ -15,6 +20,8 @@ public abstract class AbstractBusinessProcessor {
 
     private DeviceLogProcessor deviceLogProcessor;
 
+    private PipelineTraceRecorder traceRecorder;
+
     protected final Logger logger = LoggerFactory.getLogger(AbstractBusinessProcessor.class);
 
     @Autowired
@@ -22,10 +29,29 @@ public abstract class AbstractBusinessProcessor {
         this.deviceLogProcessor = deviceLogProcessor;
     }
 
+    @Autowired
+    public void setTraceRecorder(PipelineTraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * 记录链路阶段耗时
+     */
+    protected void trace(PipelineTrace trace, PipelineStage stage) {
+        traceRecorder.record(trace, stage);
+    }
+
     protected void logD2P(String deviceId, BusinessStep step,String message,boolean status){
         deviceLogProcessor.doDevice2PlatformLog(deviceId, step, message,status);
     }
 
+    /**
+     * 设备调试日志，消息内容只在设备开启调试时生成
+     */
+    protected void logD2P(String deviceId, BusinessStep step, Supplier<String> message, boolean status){
+        deviceLogProcessor.doDevice2PlatformLog(deviceId, step, message,status);
+    }
+
     protected void logP2D(String deviceId, BusinessStep step,String message,boolean status){
         deviceLogProcessor.doPlatform2DeviceLLog(deviceId, step, message,status);
     }
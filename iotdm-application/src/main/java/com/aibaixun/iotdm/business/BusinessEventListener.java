@@ -40,33 +40,6 @@ public class BusinessEventListener {
     }
 
 
-    @EventListener
-    @Async("taskExecutor")
-    public void onDevicePropertyUpEvent(DevicePropertyUpEvent devicePropertyUpEvent){
-        log.info("DefaultIotDmEventListener.onDevicePropertyUpEvent >>  ,message is:{}",devicePropertyUpEvent);
-        String payload = devicePropertyUpEvent.getPayload();
-        String deviceId = devicePropertyUpEvent.getDeviceId();
-        String productId = devicePropertyUpEvent.getProductId();
-        DataFormat dataFormat = devicePropertyUpEvent.getDataFormat();
-        plugBusinessProcessor.processReport(dataFormat,payload,deviceId,productId,true);
-    }
-
-
-
-    @EventListener
-    @Async("taskExecutor")
-    public void onDeviceMessageUpEvent(DeviceMessageUpEvent deviceMessageUpEvent){
-        log.info("DefaultIotDmEventListener.onDeviceMessageUpEvent >>  ,message is:{}",deviceMessageUpEvent);
-        String payload = deviceMessageUpEvent.getPayload();
-        String deviceId = deviceMessageUpEvent.getDeviceId();
-        String productId = deviceMessageUpEvent.getProductId();
-        DataFormat dataFormat = deviceMessageUpEvent.getDataFormat();
-        plugBusinessProcessor.processReport(dataFormat,payload,deviceId,productId,false);
-    }
-
-
-
-
     @EventListener
     @Async("taskExecutor")
     public void onEntityChangeEvent(EntityChangeEvent entityChangeEvent){
@@ -3,6 +3,7 @@ package com.aibaixun.iotdm.business;
 import com.aibaixun.iotdm.enums.SendStatus;
 import com.aibaixun.iotdm.event.DeviceConfigRespEvent;
 import com.aibaixun.iotdm.event.EntityChangeEvent;
+import com.aibaixun.iotdm.server.DeviceCredentialCache;
 import com.aibaixun.iotdm.service.IDeviceCommandSendService;
 import com.aibaixun.iotdm.service.IDeviceConfigSendService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -22,11 +23,17 @@ public class EntityBusinessProcessor extends AbstractBusinessProcessor{
 
     private IDeviceCommandSendService deviceCommandSendService;
 
+    private DeviceCredentialCache deviceCredentialCache;
+
+    private ProductSnapshotCache productSnapshotCache;
+
     /**
      * 处理实体更改
      * @param entityChangeEvent 实体更改
      */
     public void  doProcessEntityChangeEvent (EntityChangeEvent entityChangeEvent){
+        deviceCredentialCache.onEntityChange(entityChangeEvent);
+        productSnapshotCache.onEntityChange(entityChangeEvent);
         queueBusinessProcessor.processEntityChangeData2Mq(entityChangeEvent);
     }
 
@@ -64,4 +71,14 @@ public class EntityBusinessProcessor extends AbstractBusinessProcessor{
     public void setDeviceCommandSendService(IDeviceCommandSendService deviceCommandSendService) {
         this.deviceCommandSendService = deviceCommandSendService;
     }
+
+    @Autowired
+    public void setDeviceCredentialCache(DeviceCredentialCache deviceCredentialCache) {
+        this.deviceCredentialCache = deviceCredentialCache;
+    }
+
+    @Autowired
+    public void setProductSnapshotCache(ProductSnapshotCache productSnapshotCache) {
+        this.productSnapshotCache = productSnapshotCache;
+    }
 }
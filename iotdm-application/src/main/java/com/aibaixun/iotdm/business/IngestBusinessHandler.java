@@ -0,0 +1,36 @@
+package com.aibaixun.iotdm.business;
+
+import com.aibaixun.iotdm.scheduler.ingest.IngestEvent;
+import com.aibaixun.iotdm.scheduler.ingest.IngestHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 上行数据 处理，由 ingest 分区线程调用
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/11
+ */
+@Component
+public class IngestBusinessHandler implements IngestHandler {
+
+    private final Logger log = LoggerFactory.getLogger(IngestBusinessHandler.class);
+
+    private PlugBusinessProcessor plugBusinessProcessor;
+
+
+    @Override
+    public void onIngest(IngestEvent event) {
+        if (log.isDebugEnabled()) {
+            log.debug("IngestBusinessHandler.onIngest >> deviceId:{},property:{},payload:{}", event.getDeviceId(), event.isProperty(), event.getPayload());
+        }
+        plugBusinessProcessor.processReport(event.getPayload(), event.getDeviceId(), event.getProductId(), event.isProperty());
+    }
+
+
+    @Autowired
+    public void setPlugBusinessProcessor(PlugBusinessProcessor plugBusinessProcessor) {
+        this.plugBusinessProcessor = plugBusinessProcessor;
+    }
+}
@@ -1,28 +1,28 @@
 package com.aibaixun.iotdm.business;
 
 import com.aibaixun.common.util.JsonUtil;
-import com.aibaixun.iotdm.data.ProductEntityInfo;
-import com.aibaixun.iotdm.data.ProductModelEntityInfo;
 import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
-import com.aibaixun.iotdm.entity.ModelPropertyEntity;
 import com.aibaixun.iotdm.enums.BusinessStep;
 import com.aibaixun.iotdm.enums.DataType;
+import com.aibaixun.iotdm.history.DeviceMessageStore;
+import com.aibaixun.iotdm.history.PropertyHistoryStore;
+import com.aibaixun.iotdm.msg.DevicePayload;
 import com.aibaixun.iotdm.msg.TsData;
-import com.aibaixun.iotdm.service.IDevicePropertyReportService;
-import com.aibaixun.iotdm.service.IProductService;
+import com.aibaixun.iotdm.server.DevicePropertyWriteBuffer;
+import com.aibaixun.iotdm.server.DeviceShadowServer;
+import com.aibaixun.iotdm.trace.PipelineStage;
+import com.aibaixun.iotdm.trace.PipelineTrace;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.stereotype.Component;
-import org.springframework.util.CollectionUtils;
 
+import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * 物模型匹配处理类
@@ -36,102 +36,178 @@ public class MatchBusinessProcessor extends AbstractBusinessProcessor{
 
     private QueueBusinessProcessor queueBusinessProcessor;
 
-    private IDevicePropertyReportService propertyReportService;
+    private DevicePropertyWriteBuffer propertyWriteBuffer;
 
-    private IProductService productService;
+    private DeviceShadowServer deviceShadowServer;
 
-    private  final ExpressionParser expressionParser = new SpelExpressionParser();
+    private PropertyHistoryStore propertyHistoryStore;
 
-    private  final ThreadLocal<EvaluationContext> contextLocals= new InheritableThreadLocal<>();
+    private DeviceMessageStore deviceMessageStore;
+
+    private ProductSnapshotCache productSnapshotCache;
+
+    private ObjectMapper objectMapper;
 
     public void processProperty(PrePropertyBusinessMsg prePropertyBusinessMsg){
         String productId = prePropertyBusinessMsg.getMetaData().getProductId();
         String deviceId = prePropertyBusinessMsg.getMetaData().getDeviceId();
-        ProductEntityInfo productInfo = productService.queryProductInfoById(productId);
-        List<ProductModelEntityInfo> models = productInfo.models;
-        if (CollectionUtils.isEmpty(models)){
+        ModelMatchIndex matchIndex = productSnapshotCache.getIndex(productId);
+        if (matchIndex.isEmpty()){
             logD2P(deviceId,  BusinessStep.MATCH_MODEL,"product model is empty",false);
             return;
         }
+        DevicePayload propertyPayload = prePropertyBusinessMsg.getPropertyPayload();
         JsonNode prePropertyBusinessMsgPropertyJsonNode = prePropertyBusinessMsg.getPropertyJsonNode();
-        if (Objects.isNull(prePropertyBusinessMsgPropertyJsonNode)){
+        if (Objects.isNull(propertyPayload) && Objects.isNull(prePropertyBusinessMsgPropertyJsonNode)){
             logD2P(deviceId,  BusinessStep.MATCH_MODEL,"resolving data is empty",false);
             return;
         }
-        List<ModelPropertyEntity> modelPropertyEntities = new ArrayList<>(models.size()*3);
-        for (ProductModelEntityInfo model : models) {
-            modelPropertyEntities.addAll(model.getProperties());
-        }
-        int size = prePropertyBusinessMsgPropertyJsonNode.size();
-        List<DevicePropertyReportEntity> reportEntities = new ArrayList<>(size);
+        List<DevicePropertyReportEntity> reportEntities = new ArrayList<>();
         try {
-            if (prePropertyBusinessMsgPropertyJsonNode.isArray()){
-                for (int i = 0; i < size; i++) {
-                    JsonNode jsonNode = prePropertyBusinessMsgPropertyJsonNode.get(i);
-                    reportEntities.addAll(doMatchPropertyAnd2DbEntity(deviceId,jsonNode,models,modelPropertyEntities));
-                }
+            if (Objects.nonNull(propertyPayload)){
+                doMatchPropertyStream(deviceId,propertyPayload.bytes(),matchIndex,reportEntities);
             }else {
-                reportEntities.addAll(doMatchPropertyAnd2DbEntity(deviceId,prePropertyBusinessMsgPropertyJsonNode,models,modelPropertyEntities));
+                doMatchPropertyTree(deviceId,prePropertyBusinessMsgPropertyJsonNode,matchIndex,reportEntities);
             }
+        }catch (IOException e){
+            logger.warn("MatchBusinessProcessor.processProperty >> resolving json error,product is:{},device is :{},error is:{}",productId,deviceId,e.getMessage());
+            logD2P(deviceId,  BusinessStep.MATCH_MODEL,"resolving data is error"+e.getMessage(),false);
+            return;
         }catch (Exception e){
             logD2P(deviceId, BusinessStep.MATCH_MODEL,"Match Model property is empty"+e.getMessage(),false);
         }
-        propertyReportService.saveOrUpdateBatchDeviceProperties(deviceId,reportEntities);
+        PipelineTrace trace = prePropertyBusinessMsg.getTrace();
+        trace(trace, PipelineStage.MODEL_MATCH);
+        deviceShadowServer.update(reportEntities);
+        propertyWriteBuffer.add(reportEntities);
+        trace(trace, PipelineStage.DB_UPSERT);
         logD2P(deviceId, BusinessStep.MATCH_MODEL, JsonUtil.toJSONString(reportEntities),true);
-        queueBusinessProcessor.processProperty2Mq(new PostPropertyBusinessMsg(prePropertyBusinessMsg.getMetaData(),toTsData(reportEntities)));
+        PostPropertyBusinessMsg postPropertyBusinessMsg = new PostPropertyBusinessMsg(prePropertyBusinessMsg.getMetaData(), toTsData(reportEntities));
+        propertyHistoryStore.append(reportEntities);
+        postPropertyBusinessMsg.setTrace(trace);
+        queueBusinessProcessor.processProperty2Mq(postPropertyBusinessMsg);
     }
 
-    public void  processMessage(MessageBusinessMsg messageBusinessMsg){
+    /**
+     * 消息上报 保存原始报文，解码结果发送到队列
+     * @param messageBusinessMsg 插件解码后的消息
+     * @param payload 设备上报的原始负载
+     */
+    public void  processMessage(MessageBusinessMsg messageBusinessMsg,DevicePayload payload){
+        deviceMessageStore.add(messageBusinessMsg.getMetaData().getDeviceId(), payload);
         queueBusinessProcessor.processMessage2Mq(messageBusinessMsg);
     }
 
 
 
 
-    private List<DevicePropertyReportEntity> doMatchPropertyAnd2DbEntity(String deviceId,JsonNode jsonNode,List<ProductModelEntityInfo> modelEntityInfos,List<ModelPropertyEntity> modelPropertyEntities){
-        String modelLabel = null;
-        if (jsonNode.has(modelLabelKey)){
-            modelLabel = jsonNode.get(modelLabelKey).asText("");
-        }
-        int size = jsonNode.size();
-        contextLocals.set(new StandardEvaluationContext());
-        List<DevicePropertyReportEntity> results = new ArrayList<>(size);
-        Iterator<Map.Entry<String, JsonNode>> fields = jsonNode.fields();
-        while (fields.hasNext()){
-            Map.Entry<String, JsonNode> next = fields.next();
-            List<ModelPropertyEntity> matchProperty = matchProperty(modelLabel,next.getKey(), modelEntityInfos, modelPropertyEntities);
-            change2DbEntity(deviceId, next.getValue(), matchProperty,results);
+    void doMatchPropertyTree(String deviceId,JsonNode propertyJsonNode,ModelMatchIndex matchIndex,List<DevicePropertyReportEntity> results){
+        if (propertyJsonNode.isArray()){
+            for (int i = 0; i < propertyJsonNode.size(); i++) {
+                doMatchPropertyAnd2DbEntity(deviceId,propertyJsonNode.get(i),matchIndex,results);
+            }
+        }else {
+            doMatchPropertyAnd2DbEntity(deviceId,propertyJsonNode,matchIndex,results);
         }
-        contextLocals.remove();
-        return results;
     }
 
 
-    private List<ModelPropertyEntity> matchProperty(String modelLabel,String key,List<ProductModelEntityInfo> modelEntityInfos,List<ModelPropertyEntity> modelPropertyEntities){
-        if (StringUtils.equals(modelLabelKey,key)) {
-            return null;
+    /**
+     * 流式匹配 json 负载
+     * <p>按 token 读取，字段名直接查匹配索引，未匹配的值整体跳过；数组负载逐个对象处理，不构建 JsonNode</p>
+     * @param deviceId 设备id
+     * @param payload json 负载
+     * @param matchIndex 匹配索引
+     * @param results 匹配结果
+     * @throws IOException json 格式错误
+     */
+    void doMatchPropertyStream(String deviceId,byte[] payload,ModelMatchIndex matchIndex,List<DevicePropertyReportEntity> results) throws IOException {
+        List<ModelMatchIndex.PropertyMatcher> matchers = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)){
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY){
+                while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY){
+                    if (token == JsonToken.START_OBJECT){
+                        doMatchObjectStream(deviceId,parser,matchIndex,matchers,values,results);
+                    }else {
+                        parser.skipChildren();
+                    }
+                }
+            }else if (token == JsonToken.START_OBJECT){
+                doMatchObjectStream(deviceId,parser,matchIndex,matchers,values,results);
+            }
         }
-        if (StringUtils.isBlank(modelLabel)){
-            return   modelPropertyEntities.stream().filter(e->StringUtils.equals(e.getPropertyLabel(),key)).collect(Collectors.toList());
+    }
+
+
+    /**
+     * 匹配单个 json 对象
+     * <p>modelId 可能出现在任意位置，所以先按全部模型匹配并解析值，对象结束后再按 modelId 过滤、计算表达式</p>
+     */
+    private void doMatchObjectStream(String deviceId,JsonParser parser,ModelMatchIndex matchIndex,List<ModelMatchIndex.PropertyMatcher> matchers,
+                                     List<Object> values,List<DevicePropertyReportEntity> results) throws IOException {
+        matchers.clear();
+        values.clear();
+        String modelLabel = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME){
+            String fieldName = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            if (StringUtils.equals(modelLabelKey,fieldName)){
+                modelLabel = valueToken == JsonToken.VALUE_NULL ? "" : DataType.STR.parseJsonToken(parser);
+            }else {
+                for (ModelMatchIndex.PropertyMatcher matcher : matchIndex.match(null,fieldName)) {
+                    matchers.add(matcher);
+                    values.add(matcher.parse(parser));
+                }
+            }
+            parser.skipChildren();
         }
-        ProductModelEntityInfo first = modelEntityInfos.stream().filter(e -> StringUtils.equals(e.getModelLabel(), modelLabel)).findAny().orElse(null);
-        if (Objects.isNull(first)){
-            return null;
+        ProductSnapshotCache.PropertyEvaluationContext evaluationContext = productSnapshotCache.currentContext();
+        try {
+            boolean matchModel = StringUtils.isNotBlank(modelLabel);
+            for (int i = 0; i < matchers.size(); i++) {
+                ModelMatchIndex.PropertyMatcher matcher = matchers.get(i);
+                String label = matcher.getPropertyLabel();
+                if (matchModel && !matchIndex.match(modelLabel,label).contains(matcher)){
+                    continue;
+                }
+                Object value = spElExpression(label,values.get(i),matcher.getExpression(),evaluationContext);
+                results.add(new DevicePropertyReportEntity(deviceId,matcher.getPropertyId(),value,label));
+            }
+        }finally {
+            evaluationContext.reset();
         }
-        return first.getProperties().stream().filter(e-> StringUtils.equals(e.getPropertyLabel(),key)).collect(Collectors.toList());
     }
 
 
-    public void change2DbEntity(String deviceId,JsonNode jsonNode,List<ModelPropertyEntity> matchProperties,List<DevicePropertyReportEntity> reportEntities){
-        if (CollectionUtils.isEmpty(matchProperties)){
-            return;
+    private void doMatchPropertyAnd2DbEntity(String deviceId,JsonNode jsonNode,ModelMatchIndex matchIndex,List<DevicePropertyReportEntity> results){
+        String modelLabel = null;
+        if (jsonNode.has(modelLabelKey)){
+            modelLabel = jsonNode.get(modelLabelKey).asText("");
         }
-        for (ModelPropertyEntity modelPropertyEntity : matchProperties) {
-            String id = modelPropertyEntity.getId();
-            String label = modelPropertyEntity.getPropertyLabel();
-            DataType dataType = modelPropertyEntity.getDataType();
-            Object value = spElExpression(label,dataType.parseJsonNode(jsonNode),modelPropertyEntity.getExpression());
-            reportEntities.add(new DevicePropertyReportEntity(deviceId,id,value,label));
+        ProductSnapshotCache.PropertyEvaluationContext evaluationContext = productSnapshotCache.currentContext();
+        try {
+            Iterator<Map.Entry<String, JsonNode>> fields = jsonNode.fields();
+            while (fields.hasNext()){
+                Map.Entry<String, JsonNode> next = fields.next();
+                if (StringUtils.equals(modelLabelKey,next.getKey())) {
+                    continue;
+                }
+                change2DbEntity(deviceId, next.getValue(), matchIndex.match(modelLabel,next.getKey()),results,evaluationContext);
+            }
+        }finally {
+            evaluationContext.reset();
+        }
+    }
+
+
+    public void change2DbEntity(String deviceId,JsonNode jsonNode,List<ModelMatchIndex.PropertyMatcher> matchProperties,List<DevicePropertyReportEntity> reportEntities,
+                                ProductSnapshotCache.PropertyEvaluationContext evaluationContext){
+        for (ModelMatchIndex.PropertyMatcher matcher : matchProperties) {
+            String label = matcher.getPropertyLabel();
+            Object value = spElExpression(label,matcher.parse(jsonNode),matcher.getExpression(),evaluationContext);
+            reportEntities.add(new DevicePropertyReportEntity(deviceId,matcher.getPropertyId(),value,label));
         }
     }
 
@@ -145,13 +221,11 @@ public class MatchBusinessProcessor extends AbstractBusinessProcessor{
     }
 
 
-    private Object spElExpression(String propertyLabel,Object propertyValue,String expression){
-        if (StringUtils.isEmpty(expression)){
+    private Object spElExpression(String propertyLabel,Object propertyValue,Expression spElExpression,ProductSnapshotCache.PropertyEvaluationContext evaluationContext){
+        if (Objects.isNull(spElExpression)){
             return propertyValue;
         }
-        Expression spElExpression = expressionParser.parseExpression(expression);
-        EvaluationContext evaluationContext = contextLocals.get();
-        evaluationContext.setVariable(propertyLabel,propertyValue);
+        evaluationContext.setPropertyVariable(propertyLabel,propertyValue);
         try {
             return spElExpression.getValue(evaluationContext);
         }catch (Exception e){
@@ -169,13 +243,33 @@ public class MatchBusinessProcessor extends AbstractBusinessProcessor{
 
 
     @Autowired
-    public void setPropertyReportService(IDevicePropertyReportService propertyReportService) {
-        this.propertyReportService = propertyReportService;
+    public void setPropertyWriteBuffer(DevicePropertyWriteBuffer propertyWriteBuffer) {
+        this.propertyWriteBuffer = propertyWriteBuffer;
+    }
+
+    @Autowired
+    public void setDeviceShadowServer(DeviceShadowServer deviceShadowServer) {
+        this.deviceShadowServer = deviceShadowServer;
+    }
+
+    @Autowired
+    public void setPropertyHistoryStore(PropertyHistoryStore propertyHistoryStore) {
+        this.propertyHistoryStore = propertyHistoryStore;
+    }
+
+    @Autowired
+    public void setDeviceMessageStore(DeviceMessageStore deviceMessageStore) {
+        this.deviceMessageStore = deviceMessageStore;
+    }
+
+    @Autowired
+    public void setProductSnapshotCache(ProductSnapshotCache productSnapshotCache) {
+        this.productSnapshotCache = productSnapshotCache;
     }
 
     @Autowired
-    public void setProductService(IProductService productService) {
-        this.productService = productService;
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
     }
 
 
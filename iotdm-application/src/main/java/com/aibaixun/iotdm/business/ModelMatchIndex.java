@@ -0,0 +1,144 @@
+package com.aibaixun.iotdm.business;
+
+import com.aibaixun.iotdm.data.ProductModelEntityInfo;
+import com.aibaixun.iotdm.entity.ModelPropertyEntity;
+import com.aibaixun.iotdm.enums.DataType;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.expression.Expression;
+import org.springframework.util.CollectionUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 产品物模型 匹配索引
+ * <p>产品模型加载时构建一次，之后只读：propertyLabel -> 属性，modelLabel -> (propertyLabel -> 属性)，
+ * 每个属性带解析方式与编译后的表达式；模型变更时整体替换</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public final class ModelMatchIndex {
+
+    private static final ModelMatchIndex EMPTY = new ModelMatchIndex(Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<String, List<PropertyMatcher>> propertiesByLabel;
+
+    private final Map<String, Map<String, List<PropertyMatcher>>> propertiesByModel;
+
+
+    private ModelMatchIndex(Map<String, List<PropertyMatcher>> propertiesByLabel, Map<String, Map<String, List<PropertyMatcher>>> propertiesByModel) {
+        this.propertiesByLabel = propertiesByLabel;
+        this.propertiesByModel = propertiesByModel;
+    }
+
+    /**
+     * 构建索引
+     * @param models 产品模型
+     * @param expressionCompiler 表达式编译，未配置或无效返回 null
+     * @return 索引
+     */
+    public static ModelMatchIndex build(List<ProductModelEntityInfo> models, Function<ModelPropertyEntity, Expression> expressionCompiler) {
+        if (CollectionUtils.isEmpty(models)) {
+            return EMPTY;
+        }
+        Map<String, List<PropertyMatcher>> propertiesByLabel = new HashMap<>();
+        Map<String, Map<String, List<PropertyMatcher>>> propertiesByModel = new HashMap<>();
+        for (ProductModelEntityInfo model : models) {
+            Map<String, List<PropertyMatcher>> modelProperties = new HashMap<>();
+            if (Objects.nonNull(model.getProperties())) {
+                for (ModelPropertyEntity property : model.getProperties()) {
+                    if (Objects.isNull(property.getPropertyLabel()) || Objects.isNull(property.getDataType())) {
+                        continue;
+                    }
+                    PropertyMatcher matcher = new PropertyMatcher(property, expressionCompiler.apply(property));
+                    propertiesByLabel.computeIfAbsent(property.getPropertyLabel(), k -> new ArrayList<>(1)).add(matcher);
+                    modelProperties.computeIfAbsent(property.getPropertyLabel(), k -> new ArrayList<>(1)).add(matcher);
+                }
+            }
+            if (Objects.nonNull(model.getModelLabel())) {
+                propertiesByModel.putIfAbsent(model.getModelLabel(), freeze(modelProperties));
+            }
+        }
+        return new ModelMatchIndex(freeze(propertiesByLabel), Collections.unmodifiableMap(propertiesByModel));
+    }
+
+    public static ModelMatchIndex empty() {
+        return EMPTY;
+    }
+
+
+    /**
+     * 匹配属性
+     * @param modelLabel 上报指定的模型标识，为空时匹配所有模型
+     * @param propertyLabel 属性标识
+     * @return 匹配的属性，无匹配返回空列表
+     */
+    public List<PropertyMatcher> match(String modelLabel, String propertyLabel) {
+        Map<String, List<PropertyMatcher>> properties = StringUtils.isBlank(modelLabel) ? propertiesByLabel : propertiesByModel.get(modelLabel);
+        if (Objects.isNull(properties)) {
+            return Collections.emptyList();
+        }
+        return properties.getOrDefault(propertyLabel, Collections.emptyList());
+    }
+
+    public boolean isEmpty() {
+        return propertiesByLabel.isEmpty() && propertiesByModel.isEmpty();
+    }
+
+
+    private static Map<String, List<PropertyMatcher>> freeze(Map<String, List<PropertyMatcher>> properties) {
+        Map<String, List<PropertyMatcher>> frozen = new HashMap<>(properties.size() * 2);
+        properties.forEach((label, matchers) -> frozen.put(label, Collections.unmodifiableList(matchers)));
+        return Collections.unmodifiableMap(frozen);
+    }
+
+
+    /**
+     * 属性匹配项
+     */
+    public static final class PropertyMatcher {
+
+        private final String propertyId;
+
+        private final String propertyLabel;
+
+        private final DataType dataType;
+
+        private final Expression expression;
+
+        private PropertyMatcher(ModelPropertyEntity property, Expression expression) {
+            this.propertyId = property.getId();
+            this.propertyLabel = property.getPropertyLabel();
+            this.dataType = property.getDataType();
+            this.expression = expression;
+        }
+
+        public Object parse(JsonNode jsonNode) {
+            return dataType.parseJsonNode(jsonNode);
+        }
+
+        public Object parse(JsonParser parser) throws IOException {
+            return dataType.parseJsonToken(parser);
+        }
+
+        public String getPropertyId() {
+            return propertyId;
+        }
+
+        public String getPropertyLabel() {
+            return propertyLabel;
+        }
+
+        public Expression getExpression() {
+            return expression;
+        }
+    }
+}
@@ -4,6 +4,9 @@ import com.aibaixun.iotdm.business.plugin.PluginFactory;
 import com.aibaixun.iotdm.constants.TopicConstants;
 import com.aibaixun.iotdm.enums.BusinessStep;
 import com.aibaixun.iotdm.enums.DataFormat;
+import com.aibaixun.iotdm.msg.DevicePayload;
+import com.aibaixun.iotdm.trace.PipelineStage;
+import com.aibaixun.iotdm.trace.PipelineTrace;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
@@ -24,15 +27,29 @@ public class PlugBusinessProcessor extends AbstractBusinessProcessor{
 
 
     public void processReport(DataFormat dataFormat,String payload,String deviceId,String productId,boolean property){
-        logD2P(deviceId, BusinessStep.DEVICE_REPORT_DATA,payload,true);
+        processReport(DevicePayload.ofText(dataFormat, payload), deviceId, productId, property);
+    }
+
+
+    public void processReport(DevicePayload payload,String deviceId,String productId,boolean property){
+        PipelineTrace trace = payload.getTrace();
+        trace(trace, PipelineStage.QUEUE);
+        logD2P(deviceId, BusinessStep.DEVICE_REPORT_DATA,payload::asText,true);
+        DataFormat dataFormat = payload.getDataFormat();
+        if (property && DataFormat.JSON.equals(dataFormat)){
+            processJsonProperty(payload,deviceId,productId);
+            return;
+        }
         JsonNode jsonNode= null;
         try {
-            jsonNode = invokePluginMethod(dataFormat,payload,productId, property?TopicConstants.PROPERTIES_UP:TopicConstants.MESSAGE_UP);
-            logD2P(deviceId,  BusinessStep.PLATFORM_RESOLVING_DATA,jsonNode !=null?jsonNode.toString():"{}",true);
+            jsonNode = PluginFactory.getPluginProcessor(dataFormat).processPluginMethod(payload,productId, property?TopicConstants.PROPERTIES_UP:TopicConstants.MESSAGE_UP);
+            JsonNode resolved = jsonNode;
+            logD2P(deviceId,  BusinessStep.PLATFORM_RESOLVING_DATA,() -> resolved !=null?resolved.toString():"{}",true);
         }catch (Exception e){
             logger.error("PlugBusinessProcessor.processReport >> is error ,product is:{},device is :{},payload is:{},error is:{}",productId,deviceId,payload,e.getMessage());
             logD2P(deviceId, BusinessStep.DEVICE_REPORT_DATA,e.getMessage(),false);
         }
+        trace(trace, PipelineStage.DECODE);
         boolean jsonNodeEmpty = Objects.isNull(jsonNode);
         if (jsonNodeEmpty){
             logger.warn("PlugBusinessProcessor.processReport >> jsonNode is empty ,product is:{},device is :{}",productId,deviceId);
@@ -40,14 +57,31 @@ public class PlugBusinessProcessor extends AbstractBusinessProcessor{
         MetaData metaData = new MetaData(deviceId, productId);
         if (property){
             PrePropertyBusinessMsg propertyBusinessMsg = new PrePropertyBusinessMsg(metaData, jsonNode);
+            propertyBusinessMsg.setTrace(trace);
             matchBusinessProcessor.processProperty(propertyBusinessMsg);
         }else {
-            MessageBusinessMsg messageBusinessMsg = new MessageBusinessMsg(metaData, !jsonNodeEmpty ? jsonNode : payload);
-            matchBusinessProcessor.processMessage(messageBusinessMsg);
+            MessageBusinessMsg messageBusinessMsg = new MessageBusinessMsg(metaData, !jsonNodeEmpty ? jsonNode : payload.asText());
+            matchBusinessProcessor.processMessage(messageBusinessMsg,payload);
         }
     }
 
 
+    /**
+     * json 属性上报 不构建 JsonNode，由物模型匹配直接流式解析原始负载
+     * @param payload 负载
+     * @param deviceId 设备id
+     * @param productId 产品id
+     */
+    private void processJsonProperty(DevicePayload payload,String deviceId,String productId){
+        PipelineTrace trace = payload.getTrace();
+        logD2P(deviceId,  BusinessStep.PLATFORM_RESOLVING_DATA,payload::asText,true);
+        trace(trace, PipelineStage.DECODE);
+        PrePropertyBusinessMsg propertyBusinessMsg = new PrePropertyBusinessMsg(new MetaData(deviceId, productId), payload);
+        propertyBusinessMsg.setTrace(trace);
+        matchBusinessProcessor.processProperty(propertyBusinessMsg);
+    }
+
+
     /**
      * 执行插件函数
      * @param dataFormat 数据格式
@@ -0,0 +1,92 @@
+package com.aibaixun.iotdm.business;
+
+import com.aibaixun.iotdm.data.ProductModelEntityInfo;
+import com.aibaixun.iotdm.entity.ProductEntity;
+import com.aibaixun.iotdm.enums.DataFormat;
+import com.aibaixun.iotdm.enums.ProtocolType;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 产品快照
+ * <p>产品基础信息、物模型与匹配索引，加载后不再修改，产品或模型变更时整体替换；
+ * 产品不存在时也会缓存一个空快照，避免不存在的产品反复查库</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public final class ProductSnapshot {
+
+    private final String productId;
+
+    private final String tenantId;
+
+    private final String productLabel;
+
+    private final ProtocolType protocolType;
+
+    private final DataFormat dataFormat;
+
+    /**
+     * 物模型 只读，其中的实体对象也不允许修改
+     */
+    private final List<ProductModelEntityInfo> models;
+
+    private final ModelMatchIndex matchIndex;
+
+    private final boolean exists;
+
+
+    private ProductSnapshot(String productId, ProductEntity product, List<ProductModelEntityInfo> models, ModelMatchIndex matchIndex) {
+        this.productId = productId;
+        this.exists = Objects.nonNull(product);
+        this.tenantId = exists ? product.getTenantId() : null;
+        this.productLabel = exists ? product.getProductLabel() : null;
+        this.protocolType = exists ? product.getProtocolType() : null;
+        this.dataFormat = exists ? product.getDataFormat() : null;
+        this.models = Objects.isNull(models) ? Collections.emptyList() : Collections.unmodifiableList(models);
+        this.matchIndex = matchIndex;
+    }
+
+    static ProductSnapshot of(ProductEntity product, List<ProductModelEntityInfo> models, ModelMatchIndex matchIndex) {
+        return new ProductSnapshot(product.getId(), product, models, matchIndex);
+    }
+
+    static ProductSnapshot absent(String productId) {
+        return new ProductSnapshot(productId, null, null, ModelMatchIndex.empty());
+    }
+
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public String getProductLabel() {
+        return productLabel;
+    }
+
+    public ProtocolType getProtocolType() {
+        return protocolType;
+    }
+
+    public DataFormat getDataFormat() {
+        return dataFormat;
+    }
+
+    public List<ProductModelEntityInfo> getModels() {
+        return models;
+    }
+
+    public ModelMatchIndex getMatchIndex() {
+        return matchIndex;
+    }
+
+    public boolean exists() {
+        return exists;
+    }
+}
@@ -0,0 +1,203 @@
+package com.aibaixun.iotdm.business;
+
+import com.aibaixun.iotdm.data.ProductModelEntityInfo;
+import com.aibaixun.iotdm.entity.ModelPropertyEntity;
+import com.aibaixun.iotdm.entity.ProductEntity;
+import com.aibaixun.iotdm.enums.SubjectResource;
+import com.aibaixun.iotdm.event.EntityChangeEvent;
+import com.aibaixun.iotdm.mapper.ProductMapper;
+import com.aibaixun.iotdm.mapper.ProductModelMapper;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 产品快照 本地缓存
+ * <p>按产品缓存 {@link ProductSnapshot}，首次使用时从数据库加载产品与物模型并编译属性表达式(SpEL MIXED 模式，热点表达式编译为字节码)；
+ * 产品、模型变更通过 {@link EntityChangeEvent} 失效，事件经 entity_data 广播到每个节点，snapshot_expire 只是事件丢失时的兜底</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@Component
+public class ProductSnapshotCache {
+
+    private final Logger log = LoggerFactory.getLogger(ProductSnapshotCache.class);
+
+    private final SpelExpressionParser expressionParser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, ProductSnapshotCache.class.getClassLoader()));
+
+    /**
+     * 计算上下文 只在所属线程内复用，每个 json 对象处理完后清除设置过的变量
+     */
+    private final ThreadLocal<PropertyEvaluationContext> contextLocals = ThreadLocal.withInitial(PropertyEvaluationContext::new);
+
+    /**
+     * 失效次数，加载期间发生过失效则重新加载，避免旧数据在失效之后写入缓存
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Value("${bx.product.snapshot_size:10000}")
+    private long snapshotSize = 10000;
+
+    @Value("${bx.product.snapshot_expire:3600}")
+    private long snapshotExpire = 3600;
+
+    private LoadingCache<String, ProductSnapshot> snapshots;
+
+    private ProductMapper productMapper;
+
+    private ProductModelMapper productModelMapper;
+
+
+    @PostConstruct
+    public void init() {
+        snapshots = CacheBuilder.newBuilder()
+                .maximumSize(snapshotSize)
+                .expireAfterWrite(snapshotExpire, TimeUnit.SECONDS)
+                .build(CacheLoader.from(this::load));
+    }
+
+
+    /**
+     * 获取产品快照
+     * @param productId 产品id
+     * @return 快照，产品不存在时 {@link ProductSnapshot#exists()} 为 false
+     */
+    public ProductSnapshot get(String productId) {
+        if (StringUtils.isEmpty(productId)) {
+            return ProductSnapshot.absent(productId);
+        }
+        return snapshots.getUnchecked(productId);
+    }
+
+    /**
+     * 获取产品匹配索引
+     * @param productId 产品id
+     * @return 索引，产品无模型时为空索引
+     */
+    public ModelMatchIndex getIndex(String productId) {
+        return get(productId).getMatchIndex();
+    }
+
+    /**
+     * 产品或模型变更 失效快照，下次使用时重新加载
+     * @param productId 产品id
+     */
+    public void evict(String productId) {
+        if (Objects.nonNull(productId)) {
+            invalidations.incrementAndGet();
+            snapshots.invalidate(productId);
+        }
+    }
+
+    /**
+     * 实体变更 失效快照
+     * @param entityChangeEvent 实体变更
+     */
+    public void onEntityChange(EntityChangeEvent entityChangeEvent) {
+        if (!SubjectResource.PRODUCT.equals(entityChangeEvent.getSubjectResource())) {
+            return;
+        }
+        String productId = entityChangeEvent.getEntityId();
+        if (StringUtils.isEmpty(productId)) {
+            invalidations.incrementAndGet();
+            snapshots.invalidateAll();
+            return;
+        }
+        evict(productId);
+    }
+
+    /**
+     * 当前线程的计算上下文
+     * @return 上下文
+     */
+    public PropertyEvaluationContext currentContext() {
+        return contextLocals.get();
+    }
+
+
+    private ProductSnapshot load(String productId) {
+        ProductSnapshot snapshot;
+        long generation;
+        do {
+            generation = invalidations.get();
+            snapshot = doLoad(productId);
+        } while (generation != invalidations.get());
+        log.info("ProductSnapshotCache.load >> product:{} loaded,exists:{}", productId, snapshot.exists());
+        return snapshot;
+    }
+
+    private ProductSnapshot doLoad(String productId) {
+        ProductEntity product = productMapper.selectById(productId);
+        if (Objects.isNull(product)) {
+            return ProductSnapshot.absent(productId);
+        }
+        List<ProductModelEntityInfo> models = productModelMapper.selectProductModelInfoByProductId(productId);
+        return ProductSnapshot.of(product, models, ModelMatchIndex.build(models, this::compile));
+    }
+
+    private Expression compile(ModelPropertyEntity property) {
+        if (StringUtils.isEmpty(property.getExpression())) {
+            return null;
+        }
+        try {
+            return expressionParser.parseExpression(property.getExpression());
+        } catch (Exception e) {
+            log.warn("ProductSnapshotCache.compile >> property:{} expression:{} is invalid,msg is:{}", property.getId(), property.getExpression(), e.getMessage());
+            return null;
+        }
+    }
+
+    @Autowired
+    public void setProductMapper(ProductMapper productMapper) {
+        this.productMapper = productMapper;
+    }
+
+    @Autowired
+    public void setProductModelMapper(ProductModelMapper productModelMapper) {
+        this.productModelMapper = productModelMapper;
+    }
+
+
+    /**
+     * 可复用的计算上下文
+     * <p>同一个 json 对象内先处理的属性可被后面的表达式以 #属性名 引用，与原先每个对象新建上下文的语义一致</p>
+     */
+    public static class PropertyEvaluationContext extends StandardEvaluationContext {
+
+        private final List<String> variableNames = new ArrayList<>();
+
+        public void setPropertyVariable(String name, Object value) {
+            setVariable(name, value);
+            variableNames.add(name);
+        }
+
+        /**
+         * 清除本次设置的变量
+         */
+        public void reset() {
+            for (String name : variableNames) {
+                setVariable(name, null);
+            }
+            variableNames.clear();
+        }
+    }
+}
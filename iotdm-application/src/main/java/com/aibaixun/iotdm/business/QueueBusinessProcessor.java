@@ -3,6 +3,7 @@ package com.aibaixun.iotdm.business;
 import com.aibaixun.iotdm.event.DeviceSessionEvent;
 import com.aibaixun.iotdm.event.EntityChangeEvent;
 import com.aibaixun.iotdm.queue.QueueSendServer;
+import com.aibaixun.iotdm.trace.PipelineStage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -18,6 +19,7 @@ public class QueueBusinessProcessor extends AbstractBusinessProcessor {
 
     public void processProperty2Mq(PostPropertyBusinessMsg propertyBusinessMsg) {
         queueSendServer.sendPropertyTsData(propertyBusinessMsg);
+        trace(propertyBusinessMsg.getTrace(), PipelineStage.MQ_PUBLISH);
         String deviceId = propertyBusinessMsg.getMetaData().getDeviceId();
         logP2P(deviceId, propertyBusinessMsg.getTsData());
     }
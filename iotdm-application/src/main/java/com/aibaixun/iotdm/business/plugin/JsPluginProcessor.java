@@ -3,6 +3,7 @@ package com.aibaixun.iotdm.business.plugin;
 import com.aibaixun.basic.util.HexTool;
 import com.aibaixun.common.util.JsonUtil;
 import com.aibaixun.iotdm.enums.DataFormat;
+import com.aibaixun.iotdm.msg.DevicePayload;
 import com.aibaixun.iotdm.script.JsInvokeService;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,7 +24,15 @@ public class JsPluginProcessor implements PluginProcessor{
 
     @Override
     public JsonNode processPluginMethod(String payload, String productId, String topic) {
-        byte [] messageBytes = HexTool.decodeHex(payload);
+        return invokeDecodeFunction(HexTool.decodeHex(payload), productId, topic);
+    }
+
+    @Override
+    public JsonNode processPluginMethod(DevicePayload payload, String productId, String topic) {
+        return invokeDecodeFunction(payload.bytes(), productId, topic);
+    }
+
+    private JsonNode invokeDecodeFunction(byte[] messageBytes, String productId, String topic) {
         try {
             var jsResult = (String)jsInvokeService.invokeDecodeFunction(productId, messageBytes, topic);
             return JsonUtil.parse(jsResult);
@@ -1,11 +1,15 @@
 package com.aibaixun.iotdm.business.plugin;
 
-import com.aibaixun.common.util.JsonUtil;
 import com.aibaixun.iotdm.enums.DataFormat;
+import com.aibaixun.iotdm.msg.DevicePayload;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * json 字符串 处理
@@ -16,9 +20,40 @@ import javax.annotation.PostConstruct;
 @Component
 public class JsonStrPluginProcessor implements PluginProcessor{
 
+    private ObjectMapper objectMapper;
+
+    /**
+     * 文本与字节两种负载都使用注入的 objectMapper 解析，数字处理与错误一致
+     * <p>解析失败抛出 {@link UncheckedIOException}，由调用方记录设备到平台日志</p>
+     */
     @Override
     public JsonNode processPluginMethod(String payload, String productId, String topic) {
-        return  JsonUtil.parse(payload);
+        try {
+            return objectMapper.readTree(payload);
+        } catch (IOException e) {
+            throw parseError(e);
+        }
+    }
+
+    /**
+     * 直接从字节解析 json
+     */
+    @Override
+    public JsonNode processPluginMethod(DevicePayload payload, String productId, String topic) {
+        try {
+            return objectMapper.readTree(payload.bytes());
+        } catch (IOException e) {
+            throw parseError(e);
+        }
+    }
+
+    private static UncheckedIOException parseError(IOException e) {
+        return new UncheckedIOException("json payload parse error: " + e.getMessage(), e);
+    }
+
+    @Autowired
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
     }
 
     @Override
@@ -1,5 +1,6 @@
 package com.aibaixun.iotdm.business.plugin;
 
+import com.aibaixun.iotdm.msg.DevicePayload;
 import com.fasterxml.jackson.databind.JsonNode;
 
 /**
@@ -17,6 +18,17 @@ public interface PluginProcessor {
      */
     JsonNode processPluginMethod(String payload, String productId, String topic);
 
+    /**
+     * 执行plugin 函数 原始字节负载，默认转为字符串处理
+     * @param payload 负载内容
+     * @param productId 产品id
+     * @param topic 主题
+     * @return json node
+     */
+    default JsonNode processPluginMethod(DevicePayload payload, String productId, String topic) {
+        return processPluginMethod(payload.asText(), productId, topic);
+    }
+
     /**
      * 添加到 工厂中
      */
@@ -7,6 +7,7 @@ import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
 import io.lettuce.core.resource.ClientResources;
 import io.lettuce.core.resource.DefaultClientResources;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -16,6 +17,7 @@ import org.springframework.context.annotation.Configuration;
  * @date 2022/3/9
  */
 @Configuration
+@ConditionalOnExpression("'${transport.sessions.redis_expiry_listener:true}'=='true'")
 public class RedisClusterListenerConfig {
 
     @Value("${spring.redis.sub.cluster}")
@@ -42,6 +42,15 @@ public abstract class BaseController {
         }
     }
 
+    void checkTimeRange(Long startTs, Long endTs, long maxMillis) throws BaseException {
+        if (Objects.isNull(startTs) || Objects.isNull(endTs) || startTs > endTs){
+            throw new BaseException("开始时间不能大于结束时间", BaseResultCode.BAD_PARAMS);
+        }
+        if (endTs - startTs > maxMillis){
+            throw new BaseException("查询时间范围过大", BaseResultCode.BAD_PARAMS);
+        }
+    }
+
     <E extends BaseEntity> void checkEntity(E entity,String message) throws BaseException {
         if (Objects.isNull(entity)){
             throw new BaseException(message, BaseResultCode.GENERAL_ERROR);
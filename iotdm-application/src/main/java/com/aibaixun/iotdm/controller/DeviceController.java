@@ -131,6 +131,9 @@ public class DeviceController extends BaseController{
             throw new BaseException("设备已经是当前状态，无法进行修改", BaseResultCode.GENERAL_ERROR);
         }
         Boolean aBoolean = deviceService.updateDeviceStatus(updateDeviceStatusParam.getDeviceId(), updateDeviceStatusParam.getDeviceStatus());
+        if (aBoolean){
+            iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.DEVICE, SubjectEvent.DEVICE_STATUS_UPDATE,UserInfoUtil.getTenantIdOfNull(),deviceId));
+        }
         if (aBoolean && Objects.equals(DeviceStatus.ONLINE,deviceEntity.getDeviceStatus())){
             toDeviceProcessor.processCloseConnectDevice(deviceId,deviceEntity.getProductId());
         }
@@ -171,7 +174,7 @@ public class DeviceController extends BaseController{
         saveDeviceEntity.setDeviceStatus(DeviceStatus.INACTIVE);
         boolean save = deviceService.save(saveDeviceEntity);
         if (save){
-            iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.DEVICE, SubjectEvent.DEVICE_CREATE,UserInfoUtil.getTenantIdOfNull()));
+            iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.DEVICE, SubjectEvent.DEVICE_CREATE,UserInfoUtil.getTenantIdOfNull(),saveDeviceEntity.getId()));
         }
         return JsonResult.success(save);
     }
@@ -187,7 +190,7 @@ public class DeviceController extends BaseController{
         }
         boolean remove = deviceService.removeById(id);
         if (remove){
-            iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.DEVICE, SubjectEvent.DEVICE_DELETE,UserInfoUtil.getTenantIdOfNull()));
+            iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.DEVICE, SubjectEvent.DEVICE_DELETE,UserInfoUtil.getTenantIdOfNull(),id));
         }
         if (Objects.equals(DeviceStatus.ONLINE,deviceEntity.getDeviceStatus())){
             toDeviceProcessor.processCloseConnectDevice(id,deviceEntity.getProductId());
@@ -202,6 +205,10 @@ public class DeviceController extends BaseController{
         checkEntities(deviceEntities,"设备列表信息为空，无法移除");
         List<String> collectIds = deviceEntities.stream().filter(e -> StringUtils.equals(e.getCreator(), UserInfoUtil.getUserIdOfNull())).map(DeviceEntity::getId).collect(Collectors.toList());
         boolean batchRemove = deviceService.removeBatchByIds(collectIds);
+        if (batchRemove){
+            String tenantId = UserInfoUtil.getTenantIdOfNull();
+            collectIds.forEach(id -> iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.DEVICE, SubjectEvent.DEVICE_DELETE,tenantId,id)));
+        }
         return JsonResult.successWithMsg("只能移除本人创建的设备，已经过滤了非本人创建的设备",batchRemove);
     }
 
@@ -0,0 +1,64 @@
+package com.aibaixun.iotdm.controller;
+
+import com.aibaixun.basic.exception.BaseException;
+import com.aibaixun.basic.result.BaseResultCode;
+import com.aibaixun.basic.result.JsonResult;
+import com.aibaixun.iotdm.data.DeviceMessageInfo;
+import com.aibaixun.iotdm.entity.DeviceEntity;
+import com.aibaixun.iotdm.history.DeviceMessageStore;
+import com.aibaixun.iotdm.service.IDeviceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+import static com.aibaixun.iotdm.constants.DataConstants.QUERY_PAGE_MAX;
+
+/**
+ * 设备消息 web api
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@RestController
+@RequestMapping("/device-message")
+public class DeviceMessageReportController extends BaseController{
+
+
+    private IDeviceService deviceService;
+
+    private DeviceMessageStore deviceMessageStore;
+
+
+    /**
+     * 按时间倒序分页，下一页传入上一页最后一条的 ts 与 id
+     */
+    @GetMapping("/history")
+    public JsonResult<List<DeviceMessageInfo>> queryMessageHistory(@RequestParam String deviceId, @RequestParam Long startTs, @RequestParam Long endTs,
+                                                                   @RequestParam(required = false) Long lastTs, @RequestParam(required = false) Long lastId,
+                                                                   @RequestParam(required = false, defaultValue = "20") Integer pageSize) throws BaseException {
+        checkParameterValue(deviceId,"设备id不允许为空");
+        checkTimeRange(startTs,endTs,deviceMessageStore.getMaxQueryMillis());
+        if (pageSize<=0 || pageSize>QUERY_PAGE_MAX){
+            throw new BaseException("每页数量超出范围", BaseResultCode.BAD_PARAMS);
+        }
+        DeviceEntity deviceEntity = deviceService.getById(deviceId);
+        checkEntity(deviceEntity,"设备已经被删除,无法查询历史消息");
+        List<DeviceMessageInfo> messages = deviceMessageStore.query(deviceId,startTs,endTs,lastTs,lastId,pageSize);
+        return JsonResult.success(messages);
+    }
+
+
+
+    @Autowired
+    public void setDeviceService(IDeviceService deviceService) {
+        this.deviceService = deviceService;
+    }
+
+    @Autowired
+    public void setDeviceMessageStore(DeviceMessageStore deviceMessageStore) {
+        this.deviceMessageStore = deviceMessageStore;
+    }
+}
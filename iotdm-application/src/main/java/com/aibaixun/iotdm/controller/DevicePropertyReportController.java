@@ -1,9 +1,13 @@
 package com.aibaixun.iotdm.controller;
 
 import com.aibaixun.basic.exception.BaseException;
+import com.aibaixun.basic.result.BaseResultCode;
 import com.aibaixun.basic.result.JsonResult;
 import com.aibaixun.iotdm.data.DevicePropertyInfo;
 import com.aibaixun.iotdm.entity.DeviceEntity;
+import com.aibaixun.iotdm.history.HistoryAggregation;
+import com.aibaixun.iotdm.history.PropertyHistoryStore;
+import com.aibaixun.iotdm.msg.TsData;
 import com.aibaixun.iotdm.service.IDevicePropertyReportService;
 import com.aibaixun.iotdm.service.IDeviceService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,12 +32,14 @@ public class DevicePropertyReportController extends BaseController{
 
     private IDeviceService deviceService;
 
+    private PropertyHistoryStore propertyHistoryStore;
+
     @GetMapping("/latest")
     public JsonResult<List<DevicePropertyInfo>> queryLatestDeviceProperty(@RequestParam String deviceId) throws BaseException {
         checkParameterValue(deviceId,"设备id不允许为空");
         DeviceEntity deviceEntity = deviceService.getById(deviceId);
         checkEntity(deviceEntity,"设备已经被删除,无法查询最新数据");
-        List<DevicePropertyInfo> devicePropertyInfos = devicePropertyReportService.queryLatestDeviceProperty(deviceId);
+        List<DevicePropertyInfo> devicePropertyInfos = devicePropertyReportService.queryLatestDeviceProperty(deviceEntity.getProductId(),deviceId);
         return JsonResult.success(devicePropertyInfos);
     }
 
@@ -49,6 +55,34 @@ public class DevicePropertyReportController extends BaseController{
     }
 
 
+    @GetMapping("/history")
+    public JsonResult<List<TsData>> queryPropertyHistory(@RequestParam String deviceId, @RequestParam String propertyId,
+                                                         @RequestParam Long startTs, @RequestParam Long endTs) throws BaseException {
+        checkParameterValue(deviceId,"设备id不允许为空");
+        checkParameterValue(propertyId,"属性id不允许为空");
+        checkTimeRange(startTs,endTs,propertyHistoryStore.getMaxQueryMillis());
+        DeviceEntity deviceEntity = deviceService.getById(deviceId);
+        checkEntity(deviceEntity,"设备已经被删除,无法查询历史数据");
+        List<TsData> tsData = propertyHistoryStore.query(deviceId,propertyId,startTs,endTs);
+        return JsonResult.success(tsData);
+    }
+
+
+    @GetMapping("/history/downsample")
+    public JsonResult<List<TsData>> downsamplePropertyHistory(@RequestParam String deviceId, @RequestParam String propertyId,
+                                                              @RequestParam Long startTs, @RequestParam Long endTs, @RequestParam Long interval,
+                                                              @RequestParam(required = false, defaultValue = "AVG") HistoryAggregation aggregation) throws BaseException {
+        checkParameterValue(deviceId,"设备id不允许为空");
+        checkParameterValue(propertyId,"属性id不允许为空");
+        checkTimeRange(startTs,endTs,propertyHistoryStore.getMaxQueryMillis());
+        if (interval < 1000 || (endTs - startTs) / interval > propertyHistoryStore.getQueryLimit()){
+            throw new BaseException("降采样间隔过小", BaseResultCode.BAD_PARAMS);
+        }
+        DeviceEntity deviceEntity = deviceService.getById(deviceId);
+        checkEntity(deviceEntity,"设备已经被删除,无法查询历史数据");
+        List<TsData> tsData = propertyHistoryStore.downsample(deviceId,propertyId,startTs,endTs,interval,aggregation);
+        return JsonResult.success(tsData);
+    }
 
 
 
@@ -61,4 +95,9 @@ public class DevicePropertyReportController extends BaseController{
     public void setDeviceService(IDeviceService deviceService) {
         this.deviceService = deviceService;
     }
+
+    @Autowired
+    public void setPropertyHistoryStore(PropertyHistoryStore propertyHistoryStore) {
+        this.propertyHistoryStore = propertyHistoryStore;
+    }
 }
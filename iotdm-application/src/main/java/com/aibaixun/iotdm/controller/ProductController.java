@@ -78,7 +78,7 @@ public class ProductController extends BaseController{
         }
         boolean saveResult = productService.save(productEntity);
         if (saveResult){
-            iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.PRODUCT, SubjectEvent.PRODUCT_CREATE,UserInfoUtil.getTenantIdOfNull()));
+            iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.PRODUCT, SubjectEvent.PRODUCT_CREATE,UserInfoUtil.getTenantIdOfNull(),productEntity.getId()));
         }
         return JsonResult.success(saveResult);
     }
@@ -97,7 +97,7 @@ public class ProductController extends BaseController{
         redisRepository.delHashValues(IOT_PRODUCT_TENANT_KEY, id);
         boolean remove = productService.removeById(id);
         if (remove){
-            iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.PRODUCT, SubjectEvent.PRODUCT_DELETE,UserInfoUtil.getTenantIdOfNull()));
+            iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.PRODUCT, SubjectEvent.PRODUCT_DELETE,UserInfoUtil.getTenantIdOfNull(),id));
         }
         return JsonResult.success(remove);
     }
@@ -112,6 +112,9 @@ public class ProductController extends BaseController{
             throw new BaseException("当前租户下已有同名产品", BaseResultCode.BAD_PARAMS);
         }
         Boolean aBoolean = productService.updateProduct(updateProductParam.getId(), updateProductParam.getProductLabel(), updateProductParam.getDescription());
+        if (Boolean.TRUE.equals(aBoolean)){
+            iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.PRODUCT, SubjectEvent.PRODUCT_UPDATE,UserInfoUtil.getTenantIdOfNull(),updateProductParam.getId()));
+        }
         return JsonResult.success(aBoolean);
     }
 
@@ -9,8 +9,12 @@ import com.aibaixun.iotdm.entity.ModelCommandEntity;
 import com.aibaixun.iotdm.entity.ModelPropertyEntity;
 import com.aibaixun.iotdm.entity.ProductEntity;
 import com.aibaixun.iotdm.entity.ProductModelEntity;
+import com.aibaixun.iotdm.enums.SubjectEvent;
+import com.aibaixun.iotdm.enums.SubjectResource;
+import com.aibaixun.iotdm.event.EntityChangeEvent;
 import com.aibaixun.iotdm.service.IProductModelService;
 import com.aibaixun.iotdm.service.IProductService;
+import com.aibaixun.iotdm.service.IotDmEventPublisher;
 import com.aibaixun.iotdm.util.UserInfoUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,7 +41,7 @@ public class ProductModelController extends BaseController{
 
     private IProductService productService;
 
-
+    private IotDmEventPublisher iotDmEventPublisher;
 
 
     @GetMapping("/list")
@@ -51,7 +55,14 @@ public class ProductModelController extends BaseController{
     public JsonResult<Boolean> updateProductModel(@RequestBody @Valid ProductModelEntity productModelEntity) throws BaseException {
         String id = productModelEntity.getId();
         checkParameterValue(id,"被更改的产品模型不存在id");
+        String productId = productModelEntity.getProductId();
+        if (StringUtils.isBlank(productId)){
+            ProductModelEntity oldModelEntity = productModelService.getById(id);
+            checkEntity(oldModelEntity,"产品模型不存在，无法修改");
+            productId = oldModelEntity.getProductId();
+        }
         boolean updateResult = productModelService.updateProductModel(productModelEntity);
+        publishModelChange(updateResult,productId);
         return JsonResult.success(updateResult);
     }
 
@@ -66,6 +77,7 @@ public class ProductModelController extends BaseController{
             throw new BaseException("产品模型必须由创建人删除", BaseResultCode.BAD_PARAMS);
         }
         boolean remove = productModelService.removeProductModel(productModelEntity.getProductId(),modelId);
+        publishModelChange(remove,productModelEntity.getProductId());
         return JsonResult.success(remove);
     }
 
@@ -81,6 +93,7 @@ public class ProductModelController extends BaseController{
             productModelEntity.setModelType(productModelEntity.getModelLabel());
         }
         boolean save = productModelService.saveProductModelEntity(productModelEntity);
+        publishModelChange(save,productId);
         return JsonResult.success(save);
     }
 
@@ -100,6 +113,7 @@ public class ProductModelController extends BaseController{
         checkEntity(modelEntity,"产品模型不存在，无法创建");
         String productId = modelEntity.getProductId();
         Boolean aBoolean = productModelService.saveModelProperty(productId, modelPropertyEntity);
+        publishModelChange(aBoolean,productId);
         return JsonResult.success(aBoolean);
     }
 
@@ -111,6 +125,7 @@ public class ProductModelController extends BaseController{
         checkEntity(modelEntity,"产品模型不存在，无法移除");
         String productId = modelEntity.getProductId();
         Boolean aBoolean = productModelService.removeModelProperty(productId, id);
+        publishModelChange(aBoolean,productId);
         return JsonResult.success(aBoolean);
     }
 
@@ -122,6 +137,7 @@ public class ProductModelController extends BaseController{
         ProductModelEntity modelEntity = productModelService.getById(productModelId);
         checkEntity(modelEntity,"产品模型不存在，无法修改");
         Boolean aBoolean = productModelService.updateModelProperty(modelEntity.getProductId(), modelPropertyEntity);
+        publishModelChange(aBoolean,modelEntity.getProductId());
         return JsonResult.success(aBoolean);
     }
 
@@ -142,6 +158,7 @@ public class ProductModelController extends BaseController{
         checkEntity(modelEntity,"产品模型不存在，无法创建");
         String productId = modelEntity.getProductId();
         Boolean aBoolean = productModelService.saveModelCommand(productId, modelCommandEntity);
+        publishModelChange(aBoolean,productId);
         return JsonResult.success(aBoolean);
     }
 
@@ -153,6 +170,7 @@ public class ProductModelController extends BaseController{
         checkEntity(modelEntity,"产品模型不存在，无法移除");
         String productId = modelEntity.getProductId();
         Boolean aBoolean = productModelService.removeModelCommand(productId, id);
+        publishModelChange(aBoolean,productId);
         return JsonResult.success(aBoolean);
     }
 
@@ -167,10 +185,22 @@ public class ProductModelController extends BaseController{
         ProductModelEntity modelEntity = productModelService.getById(productModelId);
         checkEntity(modelEntity,"产品模型不存在，无法修改");
         Boolean aBoolean = productModelService.updateModelCommand(modelEntity.getProductId(), modelCommandEntity);
+        publishModelChange(aBoolean,modelEntity.getProductId());
         return JsonResult.success(aBoolean);
     }
 
 
+    /**
+     * 发布产品模型变更 各节点据此失效产品快照
+     * @param result 修改结果
+     * @param productId 产品id
+     */
+    private void publishModelChange (Boolean result,String productId){
+        if (Boolean.TRUE.equals(result)){
+            iotDmEventPublisher.publishEntityChangeEvent(new EntityChangeEvent(SubjectResource.PRODUCT, SubjectEvent.PRODUCT_MODEL_UPDATE,UserInfoUtil.getTenantIdOfNull(),productId));
+        }
+    }
+
     /**
      * 校验 命令 参数
      * @param modelCommandEntity 抹胸命令
@@ -211,4 +241,9 @@ public class ProductModelController extends BaseController{
     public void setProductService(IProductService productService) {
         this.productService = productService;
     }
+
+    @Autowired
+    public void setIotDmEventPublisher(IotDmEventPublisher iotDmEventPublisher) {
+        this.iotDmEventPublisher = iotDmEventPublisher;
+    }
 }
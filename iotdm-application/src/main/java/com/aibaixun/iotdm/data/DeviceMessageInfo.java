@@ -0,0 +1,52 @@
+package com.aibaixun.iotdm.data;
+
+import java.io.Serializable;
+
+/**
+ * 设备上报消息
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class DeviceMessageInfo implements Serializable {
+
+    private Long id;
+
+    private String deviceId;
+
+    private String payload;
+
+    private Long ts;
+
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Long getTs() {
+        return ts;
+    }
+
+    public void setTs(Long ts) {
+        this.ts = ts;
+    }
+}
@@ -0,0 +1,94 @@
+package com.aibaixun.iotdm.entity;
+
+import com.aibaixun.iotdm.enums.DataFormat;
+import java.io.Serializable;
+
+/**
+ * 设备消息上报记录
+ * <p>按天分表 t_device_message_history_yyyyMMdd，报文超过阈值时压缩存储</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class DeviceMessageHistoryEntity implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 表内自增id，同一时间的消息按 id 分页
+     */
+    private Long id;
+
+    /**
+     * 设备id
+     */
+    private String deviceId;
+
+    /**
+     * 上报时间
+     */
+    private Long ts;
+
+    /**
+     * 报文数据格式 json 为 utf-8 文本，binary 为设备上报的原始字节
+     */
+    private DataFormat dataFormat;
+
+    /**
+     * 报文编码 0 原文，1 deflate 压缩
+     */
+    private Integer payloadEncoding;
+
+    /**
+     * 报文
+     */
+    private byte[] payload;
+
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public Long getTs() {
+        return ts;
+    }
+
+    public void setTs(Long ts) {
+        this.ts = ts;
+    }
+
+    public DataFormat getDataFormat() {
+        return dataFormat;
+    }
+
+    public void setDataFormat(DataFormat dataFormat) {
+        this.dataFormat = dataFormat;
+    }
+
+    public Integer getPayloadEncoding() {
+        return payloadEncoding;
+    }
+
+    public void setPayloadEncoding(Integer payloadEncoding) {
+        this.payloadEncoding = payloadEncoding;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+}
@@ -0,0 +1,119 @@
+package com.aibaixun.iotdm.entity;
+
+import java.io.Serializable;
+
+/**
+ * 设备属性历史数据块
+ * <p>按天分表 t_device_property_history_yyyyMMdd，每行是一个序列(设备 + 属性)在一段时间内的压缩数据</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class DevicePropertyHistoryEntity implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 设备id
+     */
+    private String deviceId;
+
+    /**
+     * 属性id
+     */
+    private String propertyId;
+
+    /**
+     * 属性名称 冗余字段，块封存时的名称
+     */
+    private String propertyLabel;
+
+    /**
+     * 块内第一个点的时间
+     */
+    private Long startTs;
+
+    /**
+     * 块内最后一个点的时间
+     */
+    private Long endTs;
+
+    /**
+     * 点数
+     */
+    private Integer pointCount;
+
+    /**
+     * 值类型 HistoryValueKind
+     */
+    private Integer valueType;
+
+    /**
+     * 压缩数据
+     */
+    private byte[] data;
+
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public String getPropertyId() {
+        return propertyId;
+    }
+
+    public void setPropertyId(String propertyId) {
+        this.propertyId = propertyId;
+    }
+
+    public String getPropertyLabel() {
+        return propertyLabel;
+    }
+
+    public void setPropertyLabel(String propertyLabel) {
+        this.propertyLabel = propertyLabel;
+    }
+
+    public Long getStartTs() {
+        return startTs;
+    }
+
+    public void setStartTs(Long startTs) {
+        this.startTs = startTs;
+    }
+
+    public Long getEndTs() {
+        return endTs;
+    }
+
+    public void setEndTs(Long endTs) {
+        this.endTs = endTs;
+    }
+
+    public Integer getPointCount() {
+        return pointCount;
+    }
+
+    public void setPointCount(Integer pointCount) {
+        this.pointCount = pointCount;
+    }
+
+    public Integer getValueType() {
+        return valueType;
+    }
+
+    public void setValueType(Integer valueType) {
+        this.valueType = valueType;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+}
@@ -0,0 +1,35 @@
+package com.aibaixun.iotdm.history;
+
+/**
+ * 按位读取 高位在前
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+final class BitReader {
+
+    private final byte[] buffer;
+
+    private int position;
+
+
+    BitReader(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    boolean readBit() {
+        return readBits(1) == 1;
+    }
+
+    long readBits(int bits) {
+        long value = 0;
+        while (bits > 0) {
+            int available = 8 - (position & 7);
+            int n = Math.min(available, bits);
+            int chunk = ((buffer[position >>> 3] & 0xFF) >>> (available - n)) & ((1 << n) - 1);
+            value = (value << n) | chunk;
+            position += n;
+            bits -= n;
+        }
+        return value;
+    }
+}
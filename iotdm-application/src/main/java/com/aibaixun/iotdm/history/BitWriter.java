@@ -0,0 +1,55 @@
+package com.aibaixun.iotdm.history;
+
+import java.util.Arrays;
+
+/**
+ * 按位写入 高位在前
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+final class BitWriter {
+
+    private byte[] buffer;
+
+    private int position;
+
+
+    BitWriter(int initialBytes) {
+        this.buffer = new byte[Math.max(8, initialBytes)];
+    }
+
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * 写入 value 的低 bits 位
+     */
+    void writeBits(long value, int bits) {
+        ensureCapacity(bits);
+        while (bits > 0) {
+            int bitOffset = position & 7;
+            int free = 8 - bitOffset;
+            int n = Math.min(free, bits);
+            int chunk = (int) ((value >>> (bits - n)) & ((1 << n) - 1));
+            buffer[position >>> 3] |= (byte) (chunk << (free - n));
+            position += n;
+            bits -= n;
+        }
+    }
+
+    int sizeInBytes() {
+        return (position + 7) >>> 3;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, sizeInBytes());
+    }
+
+    private void ensureCapacity(int bits) {
+        int required = (position + bits + 7) >>> 3;
+        if (required > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(required, buffer.length << 1));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.aibaixun.iotdm.history;
+
+import com.aibaixun.iotdm.msg.TsData;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 数据块解码 与 {@link ChunkEncoder} 对应
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+final class ChunkDecoder {
+
+    private ChunkDecoder() {
+    }
+
+
+    /**
+     * 解码数据块中 [startTs, endTs] 范围内的点
+     * @param label 属性名称
+     * @param kind 值类型
+     * @param count 点数
+     * @param data 编码数据
+     * @param startTs 开始时间
+     * @param endTs 结束时间
+     * @param points 解码结果
+     */
+    static void decode(String label, HistoryValueKind kind, int count, byte[] data, long startTs, long endTs, List<TsData> points) {
+        decode(kind, count, data, startTs, endTs, (ts, value) -> points.add(new TsData(ts, label, value)));
+    }
+
+    /**
+     * 解码数据块中 [startTs, endTs] 范围内的点，不创建 {@link TsData}
+     * @param kind 值类型
+     * @param count 点数
+     * @param data 编码数据
+     * @param startTs 开始时间
+     * @param endTs 结束时间
+     * @param consumer 按时间顺序接收每个点
+     */
+    static void decode(HistoryValueKind kind, int count, byte[] data, long startTs, long endTs, PointConsumer consumer) {
+        BitReader reader = new BitReader(data);
+        long ts = 0;
+        long delta = 0;
+        long valueBits = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                ts = reader.readBits(64);
+            } else {
+                delta += readDeltaOfDelta(reader);
+                ts += delta;
+            }
+            Object value;
+            if (kind == HistoryValueKind.TEXT) {
+                value = readText(reader);
+            } else {
+                if (i == 0) {
+                    valueBits = reader.readBits(64);
+                } else if (reader.readBit()) {
+                    if (reader.readBit()) {
+                        leading = (int) reader.readBits(5);
+                        int significant = (int) reader.readBits(6) + 1;
+                        trailing = 64 - leading - significant;
+                    }
+                    valueBits ^= reader.readBits(64 - leading - trailing) << trailing;
+                }
+                value = kind == HistoryValueKind.LONG ? (Object) valueBits : (Object) Double.longBitsToDouble(valueBits);
+            }
+            if (ts > endTs) {
+                return;
+            }
+            if (ts >= startTs) {
+                consumer.accept(ts, value);
+            }
+        }
+    }
+
+    /**
+     * 解码点 接收者
+     */
+    @FunctionalInterface
+    interface PointConsumer {
+
+        /**
+         * 接收一个点
+         * @param ts 时间
+         * @param value 值
+         */
+        void accept(long ts, Object value);
+    }
+
+    private static long readDeltaOfDelta(BitReader reader) {
+        if (!reader.readBit()) {
+            return 0;
+        }
+        if (!reader.readBit()) {
+            return signed(reader.readBits(7), 7);
+        }
+        if (!reader.readBit()) {
+            return signed(reader.readBits(9), 9);
+        }
+        if (!reader.readBit()) {
+            return signed(reader.readBits(12), 12);
+        }
+        if (!reader.readBit()) {
+            return signed(reader.readBits(32), 32);
+        }
+        return reader.readBits(64);
+    }
+
+    private static long signed(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+    private static String readText(BitReader reader) {
+        long length = readVarint(reader);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (length - 1)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) reader.readBits(8);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarint(BitReader reader) {
+        long value = 0;
+        int shift = 0;
+        long b;
+        do {
+            b = reader.readBits(8);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
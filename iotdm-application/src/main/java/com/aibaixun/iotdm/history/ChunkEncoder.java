@@ -0,0 +1,194 @@
+package com.aibaixun.iotdm.history;
+
+import com.aibaixun.common.util.JsonUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * 单个序列的数据块编码
+ * <p>时间戳按 delta-of-delta 变长编码，数值按与上一个值的 xor 只保存有效位(沿用上一个值的前导/尾随零窗口时省去窗口信息)，
+ * 文本按长度前缀保存。块内时间戳必须单调不减，且同一块只属于一天、只包含一种值类型</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+final class ChunkEncoder {
+
+    private final HistoryValueKind kind;
+
+    private final long epochDay;
+
+    private final long createdAt = System.currentTimeMillis();
+
+    /**
+     * 属性名称 取最后一次写入时的值，只用于查询结果展示
+     */
+    private String label;
+
+    private final BitWriter writer = new BitWriter(64);
+
+    private int count;
+
+    private long firstTs;
+
+    private long lastTs;
+
+    private long lastDelta;
+
+    private long lastValueBits;
+
+    private int lastLeading = -1;
+
+    private int lastTrailing;
+
+
+    ChunkEncoder(HistoryValueKind kind, long epochDay) {
+        this.kind = kind;
+        this.epochDay = epochDay;
+    }
+
+    String getLabel() {
+        return label;
+    }
+
+    void setLabel(String label) {
+        this.label = label;
+    }
+
+    /**
+     * 是否可以追加到当前块
+     */
+    boolean accepts(long ts, HistoryValueKind valueKind, long valueEpochDay) {
+        return kind == valueKind && epochDay == valueEpochDay && (count == 0 || ts >= lastTs);
+    }
+
+    void append(long ts, Object value) {
+        if (count == 0) {
+            firstTs = ts;
+            writer.writeBits(ts, 64);
+        } else {
+            long delta = ts - lastTs;
+            writeDeltaOfDelta(delta - lastDelta);
+            lastDelta = delta;
+        }
+        lastTs = ts;
+        if (kind == HistoryValueKind.TEXT) {
+            writeText(value);
+        } else {
+            long bits = kind == HistoryValueKind.LONG ? ((Number) value).longValue() : Double.doubleToLongBits(((Number) value).doubleValue());
+            if (count == 0) {
+                writer.writeBits(bits, 64);
+            } else {
+                writeXor(bits);
+            }
+            lastValueBits = bits;
+        }
+        count++;
+    }
+
+    /**
+     * '0' 表示与上一个间隔相同，其余按 '10' 7 位、'110' 9 位、'1110' 12 位、'11110' 32 位、'11111' 64 位的补码保存
+     */
+    private void writeDeltaOfDelta(long dod) {
+        if (dod == 0) {
+            writer.writeBits(0b0, 1);
+        } else if (dod >= -64 && dod <= 63) {
+            writer.writeBits(0b10, 2);
+            writer.writeBits(dod, 7);
+        } else if (dod >= -256 && dod <= 255) {
+            writer.writeBits(0b110, 3);
+            writer.writeBits(dod, 9);
+        } else if (dod >= -2048 && dod <= 2047) {
+            writer.writeBits(0b1110, 4);
+            writer.writeBits(dod, 12);
+        } else if (dod >= Integer.MIN_VALUE && dod <= Integer.MAX_VALUE) {
+            writer.writeBits(0b11110, 5);
+            writer.writeBits(dod, 32);
+        } else {
+            writer.writeBits(0b11111, 5);
+            writer.writeBits(dod, 64);
+        }
+    }
+
+    /**
+     * '0' 表示值不变，'10' 沿用上一个窗口，'11' + 5 位前导零 + 6 位有效位数 + 有效位
+     */
+    private void writeXor(long bits) {
+        long xor = bits ^ lastValueBits;
+        if (xor == 0) {
+            writer.writeBits(0b0, 1);
+            return;
+        }
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+        if (lastLeading >= 0 && leading >= lastLeading && trailing >= lastTrailing) {
+            writer.writeBits(0b10, 2);
+            writer.writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+            return;
+        }
+        int significant = 64 - leading - trailing;
+        writer.writeBits(0b11, 2);
+        writer.writeBits(leading, 5);
+        writer.writeBits(significant - 1, 6);
+        writer.writeBits(xor >>> trailing, significant);
+        lastLeading = leading;
+        lastTrailing = trailing;
+    }
+
+    /**
+     * 长度 + 1 的 varint，0 表示 null
+     */
+    private void writeText(Object value) {
+        if (Objects.isNull(value)) {
+            writeVarint(0);
+            return;
+        }
+        String text = value instanceof String ? (String) value : JsonUtil.toJSONString(value);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length + 1L);
+        for (byte b : bytes) {
+            writer.writeBits(b, 8);
+        }
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writer.writeBits((value & 0x7F) | 0x80, 8);
+            value >>>= 7;
+        }
+        writer.writeBits(value, 8);
+    }
+
+
+    HistoryValueKind getKind() {
+        return kind;
+    }
+
+    long getEpochDay() {
+        return epochDay;
+    }
+
+    long getCreatedAt() {
+        return createdAt;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    long getFirstTs() {
+        return firstTs;
+    }
+
+    long getLastTs() {
+        return lastTs;
+    }
+
+    int sizeInBytes() {
+        return writer.sizeInBytes();
+    }
+
+    byte[] toByteArray() {
+        return writer.toByteArray();
+    }
+}
@@ -0,0 +1,125 @@
+package com.aibaixun.iotdm.history;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 按天分表
+ * <p>表名为 前缀 + yyyyMMdd，写入前按需创建，超过保留天数整表删除；记录本节点已确认存在的表，查询时全部已知则不查库</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class DailyPartitions {
+
+    private final Logger log = LoggerFactory.getLogger(DailyPartitions.class);
+
+    private static final DateTimeFormatter TABLE_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /**
+     * 保留期之外继续检查的天数，节点停机一段时间后仍能删除遗留的分表
+     */
+    private static final int RETENTION_LOOKBACK_DAYS = 31;
+
+    private final String tablePrefix;
+
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    private final Set<String> knownTables = ConcurrentHashMap.newKeySet();
+
+    private final Consumer<String> tableCreator;
+
+    private final Consumer<String> tableDropper;
+
+    private final Function<Collection<String>, List<String>> existingTablesLoader;
+
+
+    /**
+     * @param tablePrefix 表名前缀
+     * @param tableCreator 建表(create table if not exists)
+     * @param tableDropper 删表(drop table if exists)
+     * @param existingTablesLoader 查询已存在的表
+     */
+    public DailyPartitions(String tablePrefix, Consumer<String> tableCreator, Consumer<String> tableDropper,
+                           Function<Collection<String>, List<String>> existingTablesLoader) {
+        this.tablePrefix = tablePrefix;
+        this.tableCreator = tableCreator;
+        this.tableDropper = tableDropper;
+        this.existingTablesLoader = existingTablesLoader;
+    }
+
+
+    public long epochDay(long ts) {
+        return Instant.ofEpochMilli(ts).atZone(zoneId).toLocalDate().toEpochDay();
+    }
+
+    public String tableOf(long ts) {
+        return tableName(epochDay(ts));
+    }
+
+    /**
+     * 写入前确保分表存在
+     */
+    public void ensure(String table) {
+        if (!knownTables.contains(table)) {
+            tableCreator.accept(table);
+            knownTables.add(table);
+        }
+    }
+
+    /**
+     * 时间范围内已存在的分表
+     * @param startTs 开始时间
+     * @param endTs 结束时间
+     * @return 按日期升序
+     */
+    public List<String> existing(long startTs, long endTs) {
+        Set<String> candidates = new LinkedHashSet<>();
+        for (long day = epochDay(startTs); day <= epochDay(endTs); day++) {
+            candidates.add(tableName(day));
+        }
+        if (!knownTables.containsAll(candidates)) {
+            existingTablesLoader.apply(candidates).forEach(table -> knownTables.add(StringUtils.lowerCase(table)));
+        }
+        List<String> tables = new ArrayList<>(candidates.size());
+        candidates.stream().filter(knownTables::contains).forEach(tables::add);
+        return tables;
+    }
+
+    /**
+     * 删除超过保留天数的分表
+     * @param retentionDays 保留天数，小于等于 0 时不删除
+     */
+    public void applyRetention(int retentionDays) {
+        if (retentionDays <= 0) {
+            return;
+        }
+        long today = LocalDate.now(zoneId).toEpochDay();
+        for (long day = today - retentionDays - RETENTION_LOOKBACK_DAYS; day <= today - retentionDays; day++) {
+            String table = tableName(day);
+            try {
+                tableDropper.accept(table);
+                knownTables.remove(table);
+            } catch (Exception e) {
+                log.warn("DailyPartitions.applyRetention >> drop table:{} error,msg is:{}", table, e.getMessage());
+            }
+        }
+    }
+
+    private String tableName(long epochDay) {
+        return tablePrefix + LocalDate.ofEpochDay(epochDay).format(TABLE_SUFFIX);
+    }
+}
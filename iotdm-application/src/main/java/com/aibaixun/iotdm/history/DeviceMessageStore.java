@@ -0,0 +1,369 @@
+package com.aibaixun.iotdm.history;
+
+import com.aibaixun.basic.util.HexTool;
+import com.aibaixun.iotdm.data.DeviceMessageInfo;
+import com.aibaixun.iotdm.entity.DeviceMessageHistoryEntity;
+import com.aibaixun.iotdm.enums.DataFormat;
+import com.aibaixun.iotdm.mapper.DeviceMessageHistoryMapper;
+import com.aibaixun.iotdm.msg.DevicePayload;
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 设备消息上报 存储
+ * <p>保存设备上报的原始报文(不是插件解码后的结果)，查询时 json 按文本、二进制按 hex 返回。消息先进入内存队列，按固定间隔或积压条数按天批量写入只追加的分表 t_device_message_history_yyyyMMdd，
+ * 超过保留天数的分表整表删除。报文超过 compress_threshold 字节时用 deflate 压缩，压缩后不变小则保存原文。
+ * 查询按 (ts, id) 倒序游标分页，从最新的分表开始读取，不使用 offset</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@Component
+public class DeviceMessageStore {
+
+    private final Logger log = LoggerFactory.getLogger(DeviceMessageStore.class);
+
+    private static final String TABLE_PREFIX = "t_device_message_history_";
+
+    private static final long RETENTION_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    static final int ENCODING_RAW = 0;
+
+    static final int ENCODING_DEFLATE = 1;
+
+    private final ConcurrentLinkedQueue<DeviceMessageHistoryEntity> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /**
+     * 同一时间只有一个刷新，deflater 只在刷新中使用
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+
+    private final byte[] deflateBuffer = new byte[8192];
+
+    private long nextRetentionAt;
+
+    @Value("${bx.message.flush_interval:500}")
+    private long flushInterval = 500;
+
+    @Value("${bx.message.batch_size:500}")
+    private int batchSize = 500;
+
+    @Value("${bx.message.max_pending:50000}")
+    private int maxPending = 50000;
+
+    @Value("${bx.message.compress_threshold:256}")
+    private int compressThreshold = 256;
+
+    @Value("${bx.message.retention_days:30}")
+    private int retentionDays = 30;
+
+    @Value("${bx.message.max_query_days:31}")
+    private int maxQueryDays = 31;
+
+    @Value("${bx.message.retry_backoff:1000}")
+    private long retryBackoff = 1000;
+
+    @Value("${bx.message.max_retry_backoff:30000}")
+    private long maxRetryBackoff = 30000;
+
+    /**
+     * 当前退避时间(毫秒)，写入成功后清零
+     */
+    private volatile long backoff;
+
+    /**
+     * 退避结束时间 System.nanoTime
+     */
+    private volatile long retryAtNanos;
+
+    private DeviceMessageHistoryMapper messageMapper;
+
+    private MeterRegistry meterRegistry;
+
+    private DailyPartitions partitions;
+
+    private ScheduledExecutorService flushExecutor;
+
+    private Timer flushTimer;
+
+    private DistributionSummary flushSize;
+
+    private DistributionSummary payloadBytes;
+
+    private Counter dropped;
+
+
+    @PostConstruct
+    public void init() {
+        partitions = new DailyPartitions(TABLE_PREFIX, messageMapper::createTable, messageMapper::dropTable, messageMapper::selectExistingTables);
+        flushTimer = Timer.builder("iotdm.message.flush.latency").description("device message batch insert latency").register(meterRegistry);
+        flushSize = DistributionSummary.builder("iotdm.message.flush.size").description("rows per device message batch insert").register(meterRegistry);
+        payloadBytes = DistributionSummary.builder("iotdm.message.payload.bytes").baseUnit("bytes").description("stored bytes per device message payload").register(meterRegistry);
+        dropped = Counter.builder("iotdm.message.dropped").description("device messages dropped after pending limit").register(meterRegistry);
+        Gauge.builder("iotdm.message.pending", pendingCount, AtomicInteger::get).description("device messages waiting for flush").register(meterRegistry);
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(IotDmThreadFactory.forName("message-flush"));
+        flushExecutor.scheduleWithFixedDelay(() -> {
+            if (!backingOff()) {
+                flush();
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        deflater.end();
+    }
+
+
+    /**
+     * 加入写入队列，积压达到上限且没有其他线程在刷新时由调用线程同步刷新；写入失败退避期间不刷新，积压达到上限后新消息丢弃
+     * @param deviceId 设备id
+     * @param payload 设备上报的原始负载，字节数组共享 只读使用
+     */
+    public void add(String deviceId, DevicePayload payload) {
+        if (pendingCount.get() >= maxPending && backingOff()) {
+            dropped.increment();
+            return;
+        }
+        DeviceMessageHistoryEntity entity = new DeviceMessageHistoryEntity();
+        entity.setDeviceId(deviceId);
+        entity.setTs(System.currentTimeMillis());
+        entity.setDataFormat(Objects.isNull(payload.getDataFormat()) ? DataFormat.JSON : payload.getDataFormat());
+        entity.setPayload(payload.bytes());
+        pending.offer(entity);
+        // 已有线程在刷新时不等待
+        if (pendingCount.incrementAndGet() >= maxPending && !backingOff() && flushLock.tryLock()) {
+            try {
+                flush();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * 按时间倒序分页查询
+     * @param deviceId 设备id
+     * @param startTs 开始时间
+     * @param endTs 结束时间
+     * @param lastTs 上一页最后一条的时间，为空时查询第一页
+     * @param lastId 上一页最后一条的id
+     * @param pageSize 每页数量
+     * @return 消息 按 (ts, id) 倒序
+     */
+    public List<DeviceMessageInfo> query(String deviceId, long startTs, long endTs, Long lastTs, Long lastId, int pageSize) {
+        boolean keyset = Objects.nonNull(lastTs) && Objects.nonNull(lastId);
+        long upperTs = keyset ? Math.min(endTs, lastTs) : endTs;
+        if (upperTs < startTs) {
+            return Collections.emptyList();
+        }
+        List<String> tables = partitions.existing(startTs, upperTs);
+        Collections.reverse(tables);
+        List<DeviceMessageInfo> messages = new ArrayList<>(pageSize);
+        for (String table : tables) {
+            // 较早的分表中 ts 都小于 lastTs，游标条件自然成立，lastId 只在 lastTs 所在分表中起作用
+            List<DeviceMessageHistoryEntity> rows = messageMapper.selectPage(table, deviceId, startTs, endTs,
+                    keyset ? lastTs : null, keyset ? lastId : null, pageSize - messages.size());
+            for (DeviceMessageHistoryEntity row : rows) {
+                messages.add(toMessageInfo(row));
+            }
+            if (messages.size() >= pageSize) {
+                break;
+            }
+        }
+        return messages;
+    }
+
+    public long getMaxQueryMillis() {
+        return TimeUnit.DAYS.toMillis(maxQueryDays);
+    }
+
+
+    void flush() {
+        flushLock.lock();
+        try {
+            write();
+            long now = System.currentTimeMillis();
+            if (now >= nextRetentionAt) {
+                nextRetentionAt = now + RETENTION_INTERVAL;
+                partitions.applyRetention(retentionDays);
+            }
+        } catch (Exception e) {
+            log.warn("DeviceMessageStore.flush >> flush message error,msg is:{}", e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 按分表批量写入，失败的批次放回队列，本轮不再继续写入，并按指数退避推迟下次刷新
+     */
+    private void write() {
+        Map<String, List<DeviceMessageHistoryEntity>> byTable = new LinkedHashMap<>();
+        DeviceMessageHistoryEntity entity;
+        while ((entity = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            compress(entity);
+            byTable.computeIfAbsent(partitions.tableOf(entity.getTs()), k -> new ArrayList<>()).add(entity);
+        }
+        boolean failed = false;
+        for (Map.Entry<String, List<DeviceMessageHistoryEntity>> entry : byTable.entrySet()) {
+            for (List<DeviceMessageHistoryEntity> batch : Lists.partition(entry.getValue(), batchSize)) {
+                if (!failed) {
+                    failed = !write(entry.getKey(), batch);
+                }
+                if (failed) {
+                    batch.forEach(this::requeue);
+                }
+            }
+        }
+        if (failed) {
+            backoff = backoff == 0 ? retryBackoff : Math.min(backoff * 2, maxRetryBackoff);
+            retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+            log.warn("DeviceMessageStore.write >> write messages failed,retry after {} ms", backoff);
+        } else if (!byTable.isEmpty()) {
+            backoff = 0;
+        }
+    }
+
+    private boolean backingOff() {
+        return backoff > 0 && System.nanoTime() - retryAtNanos < 0;
+    }
+
+    private boolean write(String table, List<DeviceMessageHistoryEntity> batch) {
+        long start = System.nanoTime();
+        try {
+            partitions.ensure(table);
+            messageMapper.insertBatch(table, batch);
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushSize.record(batch.size());
+            return true;
+        } catch (Exception e) {
+            log.warn("DeviceMessageStore.write >> insert messages error,table:{},size:{},msg is:{}", table, batch.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void requeue(DeviceMessageHistoryEntity entity) {
+        if (pendingCount.get() >= maxPending) {
+            dropped.increment();
+            return;
+        }
+        pending.offer(entity);
+        pendingCount.incrementAndGet();
+    }
+
+    /**
+     * 超过阈值的原文报文压缩，压缩后不变小时保留原文；重新入队的记录已设置编码，不再压缩也不再计入负载大小
+     */
+    private void compress(DeviceMessageHistoryEntity entity) {
+        if (Objects.nonNull(entity.getPayloadEncoding())) {
+            return;
+        }
+        entity.setPayloadEncoding(ENCODING_RAW);
+        byte[] payload = entity.getPayload();
+        if (payload.length < compressThreshold) {
+            payloadBytes.record(payload.length);
+            return;
+        }
+        deflater.reset();
+        deflater.setInput(payload);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2);
+        while (!deflater.finished() && out.size() < payload.length) {
+            out.write(deflateBuffer, 0, deflater.deflate(deflateBuffer));
+        }
+        if (deflater.finished() && out.size() < payload.length) {
+            entity.setPayloadEncoding(ENCODING_DEFLATE);
+            entity.setPayload(out.toByteArray());
+        }
+        payloadBytes.record(entity.getPayload().length);
+    }
+
+    private DeviceMessageInfo toMessageInfo(DeviceMessageHistoryEntity entity) {
+        DeviceMessageInfo messageInfo = new DeviceMessageInfo();
+        messageInfo.setId(entity.getId());
+        messageInfo.setDeviceId(entity.getDeviceId());
+        messageInfo.setTs(entity.getTs());
+        byte[] payload = Objects.isNull(entity.getPayload()) ? new byte[0] : entity.getPayload();
+        if (Objects.equals(entity.getPayloadEncoding(), ENCODING_DEFLATE)) {
+            payload = inflate(entity.getId(), payload);
+        }
+        messageInfo.setPayload(DataFormat.BINARY.equals(entity.getDataFormat()) ? HexTool.encodeHexStr(payload) : new String(payload, StandardCharsets.UTF_8));
+        return messageInfo;
+    }
+
+    private byte[] inflate(Long id, byte[] compressed) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            log.warn("DeviceMessageStore.inflate >> message:{} payload is broken,msg is:{}", id, e.getMessage());
+            return new byte[0];
+        } finally {
+            inflater.end();
+        }
+    }
+
+
+    @Autowired
+    public void setMessageMapper(DeviceMessageHistoryMapper messageMapper) {
+        this.messageMapper = messageMapper;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+}
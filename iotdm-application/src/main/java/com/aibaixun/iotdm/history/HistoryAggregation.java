@@ -0,0 +1,24 @@
+package com.aibaixun.iotdm.history;
+
+/**
+ * 历史数据降采样 聚合方式
+ * <p>AVG/MIN/MAX/SUM 只统计数值，COUNT/FIRST/LAST 适用于所有值</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public enum HistoryAggregation {
+
+    AVG,
+
+    MIN,
+
+    MAX,
+
+    SUM,
+
+    COUNT,
+
+    FIRST,
+
+    LAST
+}
@@ -0,0 +1,57 @@
+package com.aibaixun.iotdm.history;
+
+import java.math.BigInteger;
+import java.util.Objects;
+
+/**
+ * 历史数据块 值类型
+ * <p>整数与浮点数按 64 位 xor 压缩，其余值(字符串、布尔、数组等)按文本保存</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public enum HistoryValueKind {
+
+    /**
+     * 整数
+     */
+    LONG(0),
+
+    /**
+     * 浮点数
+     */
+    DOUBLE(1),
+
+    /**
+     * 文本
+     */
+    TEXT(2);
+
+    private final int code;
+
+    HistoryValueKind(int code) {
+        this.code = code;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public static HistoryValueKind of(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return LONG;
+        }
+        if (value instanceof Number && !(value instanceof BigInteger)) {
+            return DOUBLE;
+        }
+        return TEXT;
+    }
+
+    public static HistoryValueKind ofCode(Integer code) {
+        for (HistoryValueKind kind : values()) {
+            if (Objects.equals(kind.code, code)) {
+                return kind;
+            }
+        }
+        return TEXT;
+    }
+}
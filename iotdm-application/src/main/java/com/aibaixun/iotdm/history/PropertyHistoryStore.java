@@ -0,0 +1,523 @@
+package com.aibaixun.iotdm.history;
+
+import com.aibaixun.iotdm.entity.DevicePropertyHistoryEntity;
+import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
+import com.aibaixun.iotdm.mapper.DevicePropertyHistoryMapper;
+import com.aibaixun.iotdm.msg.TsData;
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 设备属性 历史数据存储
+ * <p>每个序列(设备 + 属性id，属性改名后仍是同一序列)在内存中维护一个打开的数据块，点数、大小或存在时间达到上限时封存，按天写入只追加的分表
+ * t_device_property_history_yyyyMMdd；一个块只属于一天，查询只读取与时间范围相交的分表中该序列的块。
+ * 超过保留天数的分表整表删除。打开中的块与等待写入的块只在本节点内存中，查询时与分表中的块合并解码</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@Component
+public class PropertyHistoryStore {
+
+    private final Logger log = LoggerFactory.getLogger(PropertyHistoryStore.class);
+
+    private static final String TABLE_PREFIX = "t_device_property_history_";
+
+    private static final long RETENTION_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    private final ConcurrentHashMap<SeriesKey, ChunkEncoder> openChunks = new ConcurrentHashMap<>();
+
+    private final ConcurrentLinkedQueue<DevicePropertyHistoryEntity> sealedChunks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger sealedCount = new AtomicInteger();
+
+    private long nextRetentionAt;
+
+    @Value("${bx.history.chunk_points:240}")
+    private int chunkPoints = 240;
+
+    @Value("${bx.history.chunk_bytes:16384}")
+    private int chunkBytes = 16384;
+
+    @Value("${bx.history.chunk_age:600}")
+    private long chunkAge = 600;
+
+    @Value("${bx.history.max_series:500000}")
+    private int maxSeries = 500000;
+
+    @Value("${bx.history.flush_interval:1000}")
+    private long flushInterval = 1000;
+
+    @Value("${bx.history.batch_size:200}")
+    private int batchSize = 200;
+
+    @Value("${bx.history.max_pending:20000}")
+    private int maxPending = 20000;
+
+    @Value("${bx.history.retention_days:30}")
+    private int retentionDays = 30;
+
+    @Value("${bx.history.max_query_days:31}")
+    private int maxQueryDays = 31;
+
+    @Value("${bx.history.query_limit:100000}")
+    private int queryLimit = 100000;
+
+    private DevicePropertyHistoryMapper historyMapper;
+
+    private MeterRegistry meterRegistry;
+
+    private DailyPartitions partitions;
+
+    private ScheduledExecutorService flushExecutor;
+
+    private Timer flushTimer;
+
+    private DistributionSummary chunkPointsSummary;
+
+    private DistributionSummary chunkBytesSummary;
+
+    private Counter dropped;
+
+
+    @PostConstruct
+    public void init() {
+        partitions = new DailyPartitions(TABLE_PREFIX, historyMapper::createTable, historyMapper::dropTable, historyMapper::selectExistingTables);
+        flushTimer = Timer.builder("iotdm.history.flush.latency").description("property history chunk flush latency").register(meterRegistry);
+        chunkPointsSummary = DistributionSummary.builder("iotdm.history.chunk.points").description("points per sealed history chunk").register(meterRegistry);
+        chunkBytesSummary = DistributionSummary.builder("iotdm.history.chunk.bytes").baseUnit("bytes").description("encoded bytes per sealed history chunk").register(meterRegistry);
+        dropped = Counter.builder("iotdm.history.dropped").description("history chunks dropped after pending limit").register(meterRegistry);
+        Gauge.builder("iotdm.history.series", openChunks, Map::size).description("history series with an open chunk").register(meterRegistry);
+        Gauge.builder("iotdm.history.pending", sealedCount, AtomicInteger::get).description("sealed history chunks waiting for flush").register(meterRegistry);
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(IotDmThreadFactory.forName("history-flush"));
+        flushExecutor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sealOpenChunks(true);
+        write();
+    }
+
+
+    /**
+     * 追加属性数据
+     * @param reportEntities 匹配后的属性数据
+     */
+    public void append(List<DevicePropertyReportEntity> reportEntities) {
+        if (Objects.isNull(reportEntities)) {
+            return;
+        }
+        for (DevicePropertyReportEntity entity : reportEntities) {
+            if (Objects.isNull(entity.getTs()) || StringUtils.isEmpty(entity.getPropertyId())) {
+                continue;
+            }
+            long ts = entity.getTs();
+            Object value = entity.getPropertyValue();
+            String label = entity.getPropertyLabel();
+            HistoryValueKind kind = HistoryValueKind.of(value);
+            long epochDay = partitions.epochDay(ts);
+            openChunks.compute(new SeriesKey(entity.getDeviceId(), entity.getPropertyId()), (key, chunk) -> {
+                ChunkEncoder current = chunk;
+                if (Objects.nonNull(current) && !current.accepts(ts, kind, epochDay)) {
+                    seal(key, current);
+                    current = null;
+                }
+                if (Objects.isNull(current)) {
+                    current = new ChunkEncoder(kind, epochDay);
+                }
+                current.append(ts, value);
+                current.setLabel(label);
+                if (current.getCount() >= chunkPoints || current.sizeInBytes() >= chunkBytes) {
+                    seal(key, current);
+                    return null;
+                }
+                return current;
+            });
+        }
+    }
+
+
+    /**
+     * 查询历史数据
+     * @param deviceId 设备id
+     * @param propertyId 属性id
+     * @param startTs 开始时间
+     * @param endTs 结束时间
+     * @return 按时间排序，最多 query_limit 个点
+     */
+    public List<TsData> query(String deviceId, String propertyId, long startTs, long endTs) {
+        return read(deviceId, propertyId, startTs, endTs, queryLimit);
+    }
+
+
+    /**
+     * 降采样查询 按 interval 对齐分桶
+     * <p>逐块解码并直接累加到桶中，不保留原始点，内存只与桶数相关</p>
+     * @param deviceId 设备id
+     * @param propertyId 属性id
+     * @param startTs 开始时间
+     * @param endTs 结束时间
+     * @param interval 分桶间隔(毫秒)
+     * @param aggregation 聚合方式
+     * @return 每个桶一个点，ts 为桶的开始时间；没有可聚合值的桶不返回
+     */
+    public List<TsData> downsample(String deviceId, String propertyId, long startTs, long endTs, long interval, HistoryAggregation aggregation) {
+        TreeMap<Long, Bucket> buckets = new TreeMap<>();
+        for (String table : partitions.existing(startTs, endTs)) {
+            aggregate(historyMapper.selectChunks(table, deviceId, propertyId, startTs, endTs), startTs, endTs, interval, buckets);
+        }
+        aggregate(unflushedChunks(deviceId, propertyId, startTs, endTs), startTs, endTs, interval, buckets);
+        List<TsData> result = new ArrayList<>(buckets.size());
+        for (Bucket bucket : buckets.values()) {
+            Object value = bucket.result(aggregation);
+            if (Objects.nonNull(value)) {
+                result.add(new TsData(bucket.ts, bucket.label, value));
+            }
+        }
+        return result;
+    }
+
+    public long getMaxQueryMillis() {
+        return TimeUnit.DAYS.toMillis(maxQueryDays);
+    }
+
+    public int getQueryLimit() {
+        return queryLimit;
+    }
+
+
+    /**
+     * 读取范围内的点
+     * <p>分表按日期、块按开始时间顺序读取。点数达到 limit 后按时间截断，之后只解码开始时间不晚于第 limit 个点的块，
+     * 且只解码到该时间为止：乱序上报产生的重叠块仍可能包含更早的点，更晚的块不会再进入结果</p>
+     */
+    private List<TsData> read(String deviceId, String propertyId, long startTs, long endTs, int limit) {
+        List<TsData> points = new ArrayList<>();
+        long until = endTs;
+        for (String table : partitions.existing(startTs, endTs)) {
+            until = decode(historyMapper.selectChunks(table, deviceId, propertyId, startTs, until), startTs, until, limit, points);
+        }
+        decode(unflushedChunks(deviceId, propertyId, startTs, until), startTs, until, limit, points);
+        truncate(points, limit);
+        return points;
+    }
+
+    /**
+     * 按开始时间顺序解码块
+     * @return 点数达到 limit 后截断的时间，未达到时为 until
+     */
+    private static long decode(List<DevicePropertyHistoryEntity> chunks, long startTs, long until, int limit, List<TsData> points) {
+        for (DevicePropertyHistoryEntity chunk : chunks) {
+            if (chunk.getStartTs() > until) {
+                break;
+            }
+            ChunkDecoder.decode(chunk.getPropertyLabel(), HistoryValueKind.ofCode(chunk.getValueType()), chunk.getPointCount(), chunk.getData(), startTs, until, points);
+            if (points.size() >= limit) {
+                truncate(points, limit);
+                until = points.get(limit - 1).getTs();
+            }
+        }
+        return until;
+    }
+
+    /**
+     * 本节点还未写入分表的块：等待写入的封存块，以及打开中的块的快照
+     * <p>在分表之后读取，正在写入的批次在这段时间内可能短暂不可见</p>
+     * @return 与时间范围相交的块 按开始时间排序
+     */
+    private List<DevicePropertyHistoryEntity> unflushedChunks(String deviceId, String propertyId, long startTs, long endTs) {
+        List<DevicePropertyHistoryEntity> chunks = new ArrayList<>();
+        for (DevicePropertyHistoryEntity chunk : sealedChunks) {
+            if (deviceId.equals(chunk.getDeviceId()) && propertyId.equals(chunk.getPropertyId())
+                    && chunk.getEndTs() >= startTs && chunk.getStartTs() <= endTs) {
+                chunks.add(chunk);
+            }
+        }
+        openChunks.computeIfPresent(new SeriesKey(deviceId, propertyId), (key, chunk) -> {
+            if (chunk.getLastTs() >= startTs && chunk.getFirstTs() <= endTs) {
+                chunks.add(toEntity(key, chunk));
+            }
+            return chunk;
+        });
+        chunks.sort(Comparator.comparing(DevicePropertyHistoryEntity::getStartTs));
+        return chunks;
+    }
+
+    /**
+     * 乱序上报会产生时间重叠的块，按时间排序后保留前 limit 个点
+     */
+    private static void truncate(List<TsData> points, int limit) {
+        points.sort(Comparator.comparing(TsData::getTs));
+        if (points.size() > limit) {
+            points.subList(limit, points.size()).clear();
+        }
+    }
+
+    /**
+     * 解码块并累加到桶，乱序上报产生的重叠块按点的时间归入对应的桶
+     */
+    private static void aggregate(List<DevicePropertyHistoryEntity> chunks, long startTs, long endTs, long interval, Map<Long, Bucket> buckets) {
+        for (DevicePropertyHistoryEntity chunk : chunks) {
+            String label = chunk.getPropertyLabel();
+            ChunkDecoder.decode(HistoryValueKind.ofCode(chunk.getValueType()), chunk.getPointCount(), chunk.getData(), startTs, endTs,
+                    (ts, value) -> buckets.computeIfAbsent(ts - Math.floorMod(ts, interval), Bucket::new).add(ts, label, value));
+        }
+    }
+
+
+    void flush() {
+        try {
+            sealOpenChunks(openChunks.size() > maxSeries);
+            write();
+            long now = System.currentTimeMillis();
+            if (now >= nextRetentionAt) {
+                nextRetentionAt = now + RETENTION_INTERVAL;
+                partitions.applyRetention(retentionDays);
+            }
+        } catch (Exception e) {
+            log.warn("PropertyHistoryStore.flush >> flush history error,msg is:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 封存存在时间超过 chunk_age 的块，序列数超过上限时全部封存
+     */
+    private void sealOpenChunks(boolean all) {
+        long deadline = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(chunkAge);
+        for (SeriesKey key : openChunks.keySet()) {
+            openChunks.computeIfPresent(key, (k, chunk) -> {
+                if (all || chunk.getCreatedAt() <= deadline) {
+                    seal(k, chunk);
+                    return null;
+                }
+                return chunk;
+            });
+        }
+    }
+
+    private void seal(SeriesKey key, ChunkEncoder chunk) {
+        if (sealedCount.get() >= maxPending) {
+            dropped.increment();
+            return;
+        }
+        DevicePropertyHistoryEntity entity = toEntity(key, chunk);
+        chunkPointsSummary.record(chunk.getCount());
+        chunkBytesSummary.record(entity.getData().length);
+        sealedChunks.offer(entity);
+        sealedCount.incrementAndGet();
+    }
+
+    private static DevicePropertyHistoryEntity toEntity(SeriesKey key, ChunkEncoder chunk) {
+        DevicePropertyHistoryEntity entity = new DevicePropertyHistoryEntity();
+        entity.setDeviceId(key.deviceId);
+        entity.setPropertyId(key.propertyId);
+        entity.setPropertyLabel(chunk.getLabel());
+        entity.setStartTs(chunk.getFirstTs());
+        entity.setEndTs(chunk.getLastTs());
+        entity.setPointCount(chunk.getCount());
+        entity.setValueType(chunk.getKind().getCode());
+        entity.setData(chunk.toByteArray());
+        return entity;
+    }
+
+    /**
+     * 按分表批量写入，失败的批次放回队列，本轮不再继续写入
+     */
+    private void write() {
+        Map<String, List<DevicePropertyHistoryEntity>> byTable = new HashMap<>();
+        DevicePropertyHistoryEntity entity;
+        while ((entity = sealedChunks.poll()) != null) {
+            sealedCount.decrementAndGet();
+            byTable.computeIfAbsent(partitions.tableOf(entity.getStartTs()), k -> new ArrayList<>()).add(entity);
+        }
+        boolean failed = false;
+        for (Map.Entry<String, List<DevicePropertyHistoryEntity>> entry : byTable.entrySet()) {
+            for (List<DevicePropertyHistoryEntity> batch : Lists.partition(entry.getValue(), batchSize)) {
+                if (!failed) {
+                    failed = !write(entry.getKey(), batch);
+                }
+                if (failed) {
+                    batch.forEach(this::requeue);
+                }
+            }
+        }
+    }
+
+    private boolean write(String table, List<DevicePropertyHistoryEntity> batch) {
+        long start = System.nanoTime();
+        try {
+            partitions.ensure(table);
+            historyMapper.insertBatch(table, batch);
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return true;
+        } catch (Exception e) {
+            log.warn("PropertyHistoryStore.write >> insert history chunks error,table:{},size:{},msg is:{}", table, batch.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void requeue(DevicePropertyHistoryEntity entity) {
+        if (sealedCount.get() >= maxPending) {
+            dropped.increment();
+            return;
+        }
+        sealedChunks.offer(entity);
+        sealedCount.incrementAndGet();
+    }
+
+
+    @Autowired
+    public void setHistoryMapper(DevicePropertyHistoryMapper historyMapper) {
+        this.historyMapper = historyMapper;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    private static final class SeriesKey {
+
+        private final String deviceId;
+
+        private final String propertyId;
+
+        private final int hash;
+
+        private SeriesKey(String deviceId, String propertyId) {
+            this.deviceId = deviceId;
+            this.propertyId = propertyId;
+            this.hash = 31 * deviceId.hashCode() + propertyId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof SeriesKey)) {
+                return false;
+            }
+            SeriesKey that = (SeriesKey) o;
+            return deviceId.equals(that.deviceId) && propertyId.equals(that.propertyId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+
+    /**
+     * 降采样桶
+     */
+    private static final class Bucket {
+
+        private final long ts;
+
+        private String label;
+
+        private long count;
+
+        private long firstTs;
+
+        private long lastTs;
+
+        private long numericCount;
+
+        private double sum;
+
+        private double min = Double.POSITIVE_INFINITY;
+
+        private double max = Double.NEGATIVE_INFINITY;
+
+        private Object first;
+
+        private Object last;
+
+        private Bucket(long ts) {
+            this.ts = ts;
+        }
+
+        private void add(long pointTs, String pointLabel, Object value) {
+            if (count == 0 || pointTs < firstTs) {
+                firstTs = pointTs;
+                first = value;
+            }
+            if (count == 0 || pointTs >= lastTs) {
+                lastTs = pointTs;
+                label = pointLabel;
+                last = value;
+            }
+            count++;
+            if (value instanceof Number) {
+                double v = ((Number) value).doubleValue();
+                numericCount++;
+                sum += v;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+
+        private Object result(HistoryAggregation aggregation) {
+            switch (aggregation) {
+                case COUNT:
+                    return count;
+                case FIRST:
+                    return first;
+                case LAST:
+                    return last;
+                default:
+                    break;
+            }
+            if (numericCount == 0) {
+                return null;
+            }
+            switch (aggregation) {
+                case MIN:
+                    return min;
+                case MAX:
+                    return max;
+                case SUM:
+                    return sum;
+                default:
+                    return sum / numericCount;
+            }
+        }
+    }
+}
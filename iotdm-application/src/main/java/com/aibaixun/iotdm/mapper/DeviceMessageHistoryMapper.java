@@ -0,0 +1,64 @@
+package com.aibaixun.iotdm.mapper;
+
+import com.aibaixun.iotdm.entity.DeviceMessageHistoryEntity;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 设备消息上报记录 Mapper 接口
+ * <p>表名由调用方按日期生成，不接受外部输入</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public interface DeviceMessageHistoryMapper {
+
+
+    /**
+     * 创建分表
+     * @param table 表名
+     */
+    void createTable(@Param("table") String table);
+
+
+    /**
+     * 删除分表
+     * @param table 表名
+     */
+    void dropTable(@Param("table") String table);
+
+
+    /**
+     * 查询已存在的分表
+     * @param tables 表名
+     * @return 已存在的表名
+     */
+    List<String> selectExistingTables(@Param("tables") Collection<String> tables);
+
+
+    /**
+     * 批量写入消息
+     * @param table 表名
+     * @param entities 消息
+     * @return 数量
+     */
+    int insertBatch(@Param("table") String table, @Param("entities") List<DeviceMessageHistoryEntity> entities);
+
+
+    /**
+     * 按 (ts, id) 倒序分页查询
+     * @param table 表名
+     * @param deviceId 设备id
+     * @param startTs 开始时间
+     * @param endTs 结束时间
+     * @param lastTs 上一页最后一条的时间，为空时从第一页开始
+     * @param lastId 上一页最后一条的id
+     * @param limit 数量
+     * @return 消息
+     */
+    List<DeviceMessageHistoryEntity> selectPage(@Param("table") String table, @Param("deviceId") String deviceId,
+                                                @Param("startTs") long startTs, @Param("endTs") long endTs,
+                                                @Param("lastTs") Long lastTs, @Param("lastId") Long lastId,
+                                                @Param("limit") int limit);
+}
@@ -0,0 +1,61 @@
+package com.aibaixun.iotdm.mapper;
+
+import com.aibaixun.iotdm.entity.DevicePropertyHistoryEntity;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 设备属性历史数据块 Mapper 接口
+ * <p>表名由调用方按日期生成，不接受外部输入</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public interface DevicePropertyHistoryMapper {
+
+
+    /**
+     * 创建分表
+     * @param table 表名
+     */
+    void createTable(@Param("table") String table);
+
+
+    /**
+     * 删除分表
+     * @param table 表名
+     */
+    void dropTable(@Param("table") String table);
+
+
+    /**
+     * 查询已存在的分表
+     * @param tables 表名
+     * @return 已存在的表名
+     */
+    List<String> selectExistingTables(@Param("tables") Collection<String> tables);
+
+
+    /**
+     * 批量写入数据块
+     * @param table 表名
+     * @param entities 数据块
+     * @return 数量
+     */
+    int insertBatch(@Param("table") String table, @Param("entities") List<DevicePropertyHistoryEntity> entities);
+
+
+    /**
+     * 查询与时间范围相交的数据块
+     * @param table 表名
+     * @param deviceId 设备id
+     * @param propertyId 属性id
+     * @param startTs 开始时间
+     * @param endTs 结束时间
+     * @return 数据块 按开始时间排序
+     */
+    List<DevicePropertyHistoryEntity> selectChunks(@Param("table") String table, @Param("deviceId") String deviceId,
+                                                   @Param("propertyId") String propertyId,
+                                                   @Param("startTs") long startTs, @Param("endTs") long endTs);
+}
@@ -1,7 +1,6 @@
 package com.aibaixun.iotdm.mapper;
 
 import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
-import com.aibaixun.iotdm.data.DevicePropertyInfo;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Param;
 
@@ -18,22 +17,6 @@ import java.util.List;
 public interface DevicePropertyReportMapper extends BaseMapper<DevicePropertyReportEntity> {
 
 
-    /**
-     * 查询设备上报最新数据 理论上该表只会存在 一条最新数据
-     * @param deviceId 设备id
-     * @return 最新上报数据
-     */
-    List<DevicePropertyInfo> selectLatestDeviceProperty(@Param("deviceId") String deviceId);
-
-    /**
-     * 设备影子数据查询
-     * @param productId 产品id
-     * @param propertyLabel 属性名称
-     * @param deviceId 设备id
-     * @return 最新设备属性信息
-     */
-    List<DevicePropertyInfo> selectShadowDeviceProperty(@Param("productId") String productId,@Param("propertyLabel") String propertyLabel,@Param("deviceId") String deviceId);
-
     /**
      * 保存更新
      * @param devicePropertyReportEntities 设备属性信息
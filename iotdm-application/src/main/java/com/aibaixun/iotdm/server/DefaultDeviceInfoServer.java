@@ -1,19 +1,14 @@
 package com.aibaixun.iotdm.server;
 
-import com.aibaixun.iotdm.entity.DeviceEntity;
-import com.aibaixun.iotdm.entity.ProductEntity;
 import com.aibaixun.iotdm.enums.DeviceStatus;
 import com.aibaixun.iotdm.msg.DeviceAuthSecretReqMsg;
 import com.aibaixun.iotdm.msg.DeviceInfo;
 import com.aibaixun.iotdm.service.*;
-import com.aibaixun.iotdm.transport.MqttTransportException;
 import com.google.common.util.concurrent.ListenableFuture;
-import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
-import java.util.Objects;
 
 /**
  * 设备信息
@@ -25,36 +20,15 @@ public class DefaultDeviceInfoServer extends BaseSqlInfoServer implements Device
 
     private IDeviceService deviceService;
 
-    private IProductService productService;
-
     private IDeviceCommandSendService deviceCommandSendService;
 
-    @Override
-    public ListenableFuture<DeviceInfo> mqttDeviceAuthBySecret(DeviceAuthSecretReqMsg deviceAuthSecretReqMsg) {
-        return sqlExecutorService.submit(()->{
-            DeviceEntity deviceEntity = deviceService.queryBy3Param(deviceAuthSecretReqMsg.getClientId(), deviceAuthSecretReqMsg.getUsername(), deviceAuthSecretReqMsg.getPassword());
-            if (Objects.isNull(deviceEntity)){
-                throw new MqttTransportException((byte)4);
-            }
-            return toData(deviceEntity);
-        });
-    }
-
+    private DeviceCommandAckBuffer deviceCommandAckBuffer;
 
+    private DeviceCredentialCache deviceCredentialCache;
 
-    private DeviceInfo toData (DeviceEntity deviceEntity){
-        DeviceInfo deviceInfo = new DeviceInfo();
-        deviceInfo.setDeviceId(deviceEntity.getId());
-        deviceInfo.setDeviceCode(deviceEntity.getDeviceCode());
-        deviceInfo.setProductId(deviceEntity.getProductId());
-        if (StringUtils.isNotBlank(deviceEntity.getProductId())){
-            ProductEntity product = productService.getById(deviceEntity.getProductId());
-            if (Objects.nonNull(product)){
-                deviceInfo.setProtocolType(product.getProtocolType());
-                deviceInfo.setDataFormat(product.getDataFormat());
-            }
-        }
-        return deviceInfo;
+    @Override
+    public ListenableFuture<DeviceInfo> mqttDeviceAuthBySecret(DeviceAuthSecretReqMsg deviceAuthSecretReqMsg) {
+        return deviceCredentialCache.authenticate(deviceAuthSecretReqMsg);
     }
 
 
@@ -79,7 +53,7 @@ public class DefaultDeviceInfoServer extends BaseSqlInfoServer implements Device
 
     @Override
     public ListenableFuture<Boolean> toDeviceMessageIsReceived(String deviceId, int msgId) {
-        return sqlExecutorService.submit(()->deviceCommandSendService.updateDeviceCommandStatus2Received(deviceId, msgId));
+        return deviceCommandAckBuffer.ack(deviceId, msgId);
     }
 
     @Override
@@ -87,14 +61,18 @@ public class DefaultDeviceInfoServer extends BaseSqlInfoServer implements Device
         sqlExecutorService.submit(()->deviceCommandSendService.updateDeviceCommandToSetMsgId(sendId, msgId));
     }
 
+    @Override
+    public void setControlSendFailed(Integer sendId) {
+        sqlExecutorService.submit(()->deviceCommandSendService.updateDeviceCommandToFailed(sendId));
+    }
+
     @Override
     public void onRedisExpirationMessage(String redisKey) {
-        String[] splitStr = redisKey.split(":");
-        int keyMinLength = 4;
-        if (splitStr.length!= keyMinLength){
+        int index = redisKey.lastIndexOf(':');
+        if (index < 0 || index == redisKey.length() - 1){
             return;
         }
-        String deviceId = splitStr[3];
+        String deviceId = redisKey.substring(index + 1);
         setDeviceStatus2OffOnLine(deviceId,null, Instant.now().toEpochMilli()-1000*60,null);
     }
 
@@ -105,13 +83,17 @@ public class DefaultDeviceInfoServer extends BaseSqlInfoServer implements Device
 
 
     @Autowired
-    public void setProductService(IProductService productService) {
-        this.productService = productService;
+    public void setDeviceCommandSendService(IDeviceCommandSendService deviceCommandSendService) {
+        this.deviceCommandSendService = deviceCommandSendService;
     }
 
+    @Autowired
+    public void setDeviceCommandAckBuffer(DeviceCommandAckBuffer deviceCommandAckBuffer) {
+        this.deviceCommandAckBuffer = deviceCommandAckBuffer;
+    }
 
     @Autowired
-    public void setDeviceCommandSendService(IDeviceCommandSendService deviceCommandSendService) {
-        this.deviceCommandSendService = deviceCommandSendService;
+    public void setDeviceCredentialCache(DeviceCredentialCache deviceCredentialCache) {
+        this.deviceCredentialCache = deviceCredentialCache;
     }
 }
@@ -0,0 +1,251 @@
+package com.aibaixun.iotdm.server;
+
+import com.aibaixun.common.redis.util.RedisRepository;
+import com.aibaixun.iotdm.constants.DataConstants;
+import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * 设备影子 redis 实现
+ * <p>每个设备一个 redis hash，field 为属性id，值为 "ts:value"。ingest 时先在本地按设备合并，同一属性只保留 ts 最新的值，
+ * 按固定间隔把变化的属性用 pipeline 批量写入，写入成功后才从本地移除(期间又有更新的属性保留到下次)；读取时以 redis 为准，再叠加本节点尚未写出的值。
+ * hash 中的 {@link #LOADED_FIELD} 标记影子已用数据库数据建立过，缺失时(新上线或 key 过期)由调用方从数据库加载一次</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@Service
+public class DefaultDeviceShadowServer implements DeviceShadowServer {
+
+    private final Logger log = LoggerFactory.getLogger(DefaultDeviceShadowServer.class);
+
+    static final String LOADED_FIELD = "$loaded";
+
+    /**
+     * 尚未写出的属性值 deviceId -> propertyId -> 值；内层 map 只在 compute 中读取与修改
+     */
+    private final ConcurrentHashMap<String, Map<String, DeviceShadowValue>> dirty = new ConcurrentHashMap<>();
+
+    @Value("${bx.shadow.flush_interval:50}")
+    private long flushInterval = 50;
+
+    @Value("${bx.shadow.batch_size:500}")
+    private int batchSize = 500;
+
+    @Value("${bx.shadow.expire:604800}")
+    private long expire = 604800;
+
+    private RedisRepository redisRepository;
+
+    private MeterRegistry meterRegistry;
+
+    private ScheduledExecutorService flushExecutor;
+
+    private Timer flushTimer;
+
+    private DistributionSummary flushSize;
+
+    private Counter flushFailed;
+
+
+    @PostConstruct
+    public void init() {
+        flushTimer = Timer.builder("iotdm.shadow.flush.latency").description("device shadow pipelined flush latency").register(meterRegistry);
+        flushSize = DistributionSummary.builder("iotdm.shadow.flush.size").description("devices per device shadow flush").register(meterRegistry);
+        flushFailed = Counter.builder("iotdm.shadow.flush.failed").description("device shadow flushes kept for retry after a redis error").register(meterRegistry);
+        Gauge.builder("iotdm.shadow.pending", dirty, Map::size).description("devices with shadow values waiting for flush").register(meterRegistry);
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(IotDmThreadFactory.forName("shadow-flush"));
+        flushExecutor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flushExecutor.shutdown();
+        flush();
+    }
+
+
+    @Override
+    public void update(Collection<DevicePropertyReportEntity> entities) {
+        for (DevicePropertyReportEntity entity : entities) {
+            DeviceShadowValue value = DeviceShadowValue.of(entity);
+            dirty.compute(entity.getDeviceId(), (deviceId, values) -> {
+                Map<String, DeviceShadowValue> current = Objects.isNull(values) ? new HashMap<>() : values;
+                current.merge(entity.getPropertyId(), value, DeviceShadowValue::newer);
+                return current;
+            });
+        }
+    }
+
+
+    @Override
+    public Map<String, DeviceShadowValue> getShadow(String deviceId) {
+        HashOperations<String, String, Object> hashOperations = redisRepository.getRedisTemplate().opsForHash();
+        Map<String, Object> entries = hashOperations.entries(shadowKey(deviceId));
+        if (!entries.containsKey(LOADED_FIELD)) {
+            return null;
+        }
+        return overlayDirty(deviceId, decode(entries));
+    }
+
+
+    @Override
+    public Map<String, DeviceShadowValue> load(String deviceId, Collection<DevicePropertyReportEntity> entities) {
+        Map<String, DeviceShadowValue> shadow = new HashMap<>(entities.size() * 2);
+        entities.forEach(entity -> shadow.merge(entity.getPropertyId(), DeviceShadowValue.of(entity), DeviceShadowValue::newer));
+        String key = shadowKey(deviceId);
+        try {
+            List<Object> results = redisRepository.getRedisTemplate().executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> redisOperations = (RedisOperations<String, Object>) operations;
+                    HashOperations<String, String, Object> hashOperations = redisOperations.opsForHash();
+                    // 已有的值来自 ingest，不比数据库旧，不覆盖
+                    shadow.forEach((propertyId, value) -> hashOperations.putIfAbsent(key, propertyId, value.encode()));
+                    hashOperations.put(key, LOADED_FIELD, String.valueOf(System.currentTimeMillis()));
+                    redisOperations.expire(key, expire, TimeUnit.SECONDS);
+                    hashOperations.entries(key);
+                    return null;
+                }
+            });
+            Object entries = results.get(results.size() - 1);
+            if (entries instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> stored = (Map<String, Object>) entries;
+                decode(stored).forEach((propertyId, value) -> shadow.merge(propertyId, value, DeviceShadowValue::newer));
+            }
+        } catch (Exception e) {
+            log.warn("DefaultDeviceShadowServer.load >> load device:{} shadow error,msg is:{}", deviceId, e.getMessage());
+        }
+        return overlayDirty(deviceId, shadow);
+    }
+
+
+    void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        Map<String, Map<String, DeviceShadowValue>> batch = new HashMap<>(Math.min(dirty.size(), batchSize) * 2);
+        for (String deviceId : dirty.keySet()) {
+            Map<String, Map<String, DeviceShadowValue>> current = batch;
+            dirty.computeIfPresent(deviceId, (k, values) -> {
+                current.put(k, new HashMap<>(values));
+                return values;
+            });
+            if (batch.size() >= batchSize) {
+                write(batch);
+                batch = new HashMap<>(batchSize * 2);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(Map<String, Map<String, DeviceShadowValue>> batch) {
+        long start = System.nanoTime();
+        try {
+            redisRepository.getRedisTemplate().executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> redisOperations = (RedisOperations<String, Object>) operations;
+                    HashOperations<String, String, Object> hashOperations = redisOperations.opsForHash();
+                    batch.forEach((deviceId, values) -> {
+                        String key = shadowKey(deviceId);
+                        Map<String, Object> fields = new HashMap<>(values.size() * 2);
+                        values.forEach((propertyId, value) -> fields.put(propertyId, value.encode()));
+                        hashOperations.putAll(key, fields);
+                        redisOperations.expire(key, expire, TimeUnit.SECONDS);
+                    });
+                    return null;
+                }
+            });
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushSize.record(batch.size());
+        } catch (Exception e) {
+            // 失败的值仍在 dirty 中，下次刷新重试
+            log.warn("DefaultDeviceShadowServer.write >> pipeline is error,size:{},msg is:{}", batch.size(), e.getMessage());
+            flushFailed.increment();
+            return;
+        }
+        clean(batch);
+    }
+
+    /**
+     * 写入成功 移除已写出且之后没有再更新的属性，设备没有剩余属性时移除设备
+     */
+    private void clean(Map<String, Map<String, DeviceShadowValue>> batch) {
+        batch.forEach((deviceId, written) -> dirty.computeIfPresent(deviceId, (k, values) -> {
+            written.forEach((propertyId, value) -> {
+                if (values.get(propertyId) == value) {
+                    values.remove(propertyId);
+                }
+            });
+            return values.isEmpty() ? null : values;
+        }));
+    }
+
+    private Map<String, DeviceShadowValue> overlayDirty(String deviceId, Map<String, DeviceShadowValue> shadow) {
+        dirty.computeIfPresent(deviceId, (k, values) -> {
+            values.forEach((propertyId, value) -> shadow.merge(propertyId, value, DeviceShadowValue::newer));
+            return values;
+        });
+        return shadow;
+    }
+
+    private static Map<String, DeviceShadowValue> decode(Map<String, Object> entries) {
+        Map<String, DeviceShadowValue> shadow = new HashMap<>(entries.size() * 2);
+        entries.forEach((propertyId, encoded) -> {
+            if (LOADED_FIELD.equals(propertyId) || Objects.isNull(encoded)) {
+                return;
+            }
+            DeviceShadowValue value = DeviceShadowValue.decode(encoded.toString());
+            if (Objects.nonNull(value)) {
+                shadow.put(propertyId, value);
+            }
+        });
+        return shadow;
+    }
+
+    private static String shadowKey(String deviceId) {
+        return DataConstants.IOT_DEVICE_SHADOW_KEY_PREFIX + deviceId;
+    }
+
+
+    @Autowired
+    public void setRedisRepository(RedisRepository redisRepository) {
+        this.redisRepository = redisRepository;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+}
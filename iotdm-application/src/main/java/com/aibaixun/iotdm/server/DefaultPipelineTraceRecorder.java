@@ -0,0 +1,86 @@
+package com.aibaixun.iotdm.server;
+
+import com.aibaixun.iotdm.trace.PipelineStage;
+import com.aibaixun.iotdm.trace.PipelineTrace;
+import com.aibaixun.iotdm.trace.PipelineTraceRecorder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 链路追踪 记录
+ * <p>各阶段耗时写入预先注册的 timer；按采样率选中的消息在链路结束时输出到 pipeline-trace 日志</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/16
+ */
+@Component
+public class DefaultPipelineTraceRecorder implements PipelineTraceRecorder {
+
+    private final Logger traceLog = LoggerFactory.getLogger("pipeline-trace");
+
+    @Value("${bx.trace.enabled:true}")
+    private boolean enabled;
+
+    @Value("${bx.trace.sample_rate:0}")
+    private double sampleRate;
+
+    private MeterRegistry meterRegistry;
+
+    private final Timer[] stageTimers = new Timer[PipelineStage.values().length];
+
+    private Timer endToEndTimer;
+
+
+    @PostConstruct
+    public void init() {
+        for (PipelineStage stage : PipelineStage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder("iotdm.pipeline.stage").tag("stage", stage.name())
+                    .description("uplink pipeline stage latency").publishPercentileHistogram().register(meterRegistry);
+        }
+        endToEndTimer = Timer.builder("iotdm.pipeline.latency")
+                .description("uplink latency from socket read to rule forward").publishPercentileHistogram().register(meterRegistry);
+    }
+
+
+    @Override
+    public void record(PipelineTrace trace, PipelineStage stage) {
+        if (!enabled || Objects.isNull(trace)) {
+            return;
+        }
+        if (PipelineStage.QUEUE.equals(stage) && sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            trace.setSampled(true);
+        }
+        stageTimers[stage.ordinal()].record(trace.mark(stage), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void finish(PipelineTrace trace) {
+        if (!enabled || Objects.isNull(trace)) {
+            return;
+        }
+        long elapsed = trace.elapsedNanos();
+        endToEndTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        if (trace.isSampled() && traceLog.isInfoEnabled()) {
+            StringBuilder builder = new StringBuilder(128);
+            builder.append("ingressTime=").append(trace.getIngressTime()).append(",totalUs=").append(elapsed / 1000);
+            for (PipelineStage stage : PipelineStage.values()) {
+                builder.append(',').append(stage.name()).append("Us=").append(trace.getStageNanos(stage) / 1000);
+            }
+            traceLog.info("DefaultPipelineTraceRecorder.finish >> {}", builder);
+        }
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+}
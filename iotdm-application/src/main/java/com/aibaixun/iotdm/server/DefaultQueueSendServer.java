@@ -5,12 +5,17 @@ import com.aibaixun.iotdm.business.MessageBusinessMsg;
 import com.aibaixun.iotdm.business.PostPropertyBusinessMsg;
 import com.aibaixun.iotdm.event.DeviceSessionEvent;
 import com.aibaixun.iotdm.event.EntityChangeEvent;
+import com.aibaixun.iotdm.msg.ToDeviceRouteMsg;
 import com.aibaixun.iotdm.queue.IotDmSource;
 import com.aibaixun.iotdm.queue.QueueSendServer;
+import com.aibaixun.iotdm.trace.PipelineTrace;
+import com.aibaixun.iotdm.trace.PipelineTraceRecorder;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
 
+import java.util.Objects;
+
 
 /**
  * 队列消息发送者
@@ -21,6 +26,11 @@ import org.springframework.stereotype.Service;
 @EnableBinding(value = IotDmSource.class)
 public class DefaultQueueSendServer implements QueueSendServer {
 
+    /**
+     * 下行消息 目标节点 header，rabbit 以此作为 routing key
+     */
+    public static final String DOWNLINK_NODE_HEADER = "nodeId";
+
     private final IotDmSource iotDmSource;
 
 
@@ -31,7 +41,16 @@ public class DefaultQueueSendServer implements QueueSendServer {
 
     @Override
     public void sendPropertyTsData(PostPropertyBusinessMsg postPropertyBusinessMsg) {
-        iotDmSource.outputPropertyData().send(MessageBuilder.withPayload(JsonUtil.toJSONString(postPropertyBusinessMsg)).build());
+        MessageBuilder<String> builder = MessageBuilder.withPayload(JsonUtil.toJSONString(postPropertyBusinessMsg));
+        PipelineTrace trace = postPropertyBusinessMsg.getTrace();
+        if (Objects.nonNull(trace)) {
+            builder.setHeader(PipelineTraceRecorder.INGRESS_TIME_HEADER, trace.getIngressTime())
+                    .setHeader(PipelineTraceRecorder.PUBLISH_TIME_HEADER, System.currentTimeMillis());
+            if (trace.isSampled()) {
+                builder.setHeader(PipelineTraceRecorder.SAMPLED_STAGES_HEADER, trace.encodeStages());
+            }
+        }
+        iotDmSource.outputPropertyData().send(builder.build());
     }
 
 
@@ -46,6 +65,12 @@ public class DefaultQueueSendServer implements QueueSendServer {
         iotDmSource.outputEntityData().send(MessageBuilder.withPayload(JsonUtil.toJSONString(entityChangeEvent)).build());
     }
 
+    @Override
+    public void sendDownlinkData(ToDeviceRouteMsg routeMsg) {
+        iotDmSource.outputDownlinkData().send(MessageBuilder.withPayload(JsonUtil.toJSONString(routeMsg))
+                .setHeader(DOWNLINK_NODE_HEADER, routeMsg.getNodeId()).build());
+    }
+
     public DefaultQueueSendServer(IotDmSource iotDmSource) {
         this.iotDmSource = iotDmSource;
     }
@@ -1,11 +1,10 @@
 package com.aibaixun.iotdm.server;
 
 import com.aibaixun.common.redis.util.RedisRepository;
-import com.aibaixun.iotdm.entity.ProductEntity;
+import com.aibaixun.iotdm.business.ProductSnapshotCache;
 import com.aibaixun.iotdm.msg.ForwardRuleInfo;
 import com.aibaixun.iotdm.rule.server.RuleServer;
 import com.aibaixun.iotdm.service.IForwardRuleService;
-import com.aibaixun.iotdm.service.IProductService;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -13,7 +12,6 @@ import org.springframework.stereotype.Service;
 import java.util.List;
 import java.util.Objects;
 
-import static com.aibaixun.iotdm.constants.DataConstants.IOT_PRODUCT_TENANT_KEY;
 import static com.aibaixun.iotdm.constants.DataConstants.IOT_TENANT_FORWARD_KEY;
 
 /**
@@ -25,7 +23,7 @@ import static com.aibaixun.iotdm.constants.DataConstants.IOT_TENANT_FORWARD_KEY;
 public class DefaultRuleServer implements RuleServer {
 
 
-    private IProductService productService;
+    private ProductSnapshotCache productSnapshotCache;
 
     private RedisRepository redisRepository;
 
@@ -48,22 +46,13 @@ public class DefaultRuleServer implements RuleServer {
 
     @Override
     public String getCurrentProductTenantId(String productId) {
-        Object hashValues = redisRepository.getHashValues(IOT_PRODUCT_TENANT_KEY, productId);
-        if (Objects.nonNull(hashValues)){
-            return (String) hashValues;
-        }
-        ProductEntity byId = productService.getById(productId);
-        if (Objects.nonNull(byId)){
-            redisRepository.putHashValue(IOT_PRODUCT_TENANT_KEY, productId,byId.getTenantId());
-            return byId.getTenantId();
-        }
-        return null;
+        return productSnapshotCache.get(productId).getTenantId();
     }
 
 
     @Autowired
-    public void setProductService(IProductService productService) {
-        this.productService = productService;
+    public void setProductSnapshotCache(ProductSnapshotCache productSnapshotCache) {
+        this.productSnapshotCache = productSnapshotCache;
     }
 
     @Autowired
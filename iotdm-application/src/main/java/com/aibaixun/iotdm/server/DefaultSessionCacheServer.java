@@ -6,9 +6,18 @@ import com.aibaixun.iotdm.msg.TransportSessionInfo;
 import com.aibaixun.iotdm.msg.TransportSessionInfoHolder;
 import com.aibaixun.iotdm.service.SessionCacheServer;
 import com.aibaixun.iotdm.transport.SessionId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
 
 /**
  * session cache 服务类
@@ -18,6 +27,7 @@ import org.springframework.stereotype.Service;
 @Service
 public class DefaultSessionCacheServer implements SessionCacheServer {
 
+    private final Logger log = LoggerFactory.getLogger(DefaultSessionCacheServer.class);
 
     private RedisRepository redisRepository;
 
@@ -28,7 +38,6 @@ public class DefaultSessionCacheServer implements SessionCacheServer {
 
     @Override
     public void removeSessionCache(SessionId sessionId) {
-        Object o = redisRepository.get(generatorSessionKey(sessionId));
         redisRepository.del(generatorSessionKey(sessionId));
     }
 
@@ -41,6 +50,41 @@ public class DefaultSessionCacheServer implements SessionCacheServer {
     }
 
 
+    @Override
+    public void activitySessionCacheBatch(Map<SessionId, TransportSessionInfo> sessionInfos, ToLongFunction<TransportSessionInfo> ttl, boolean recreate) {
+        if (sessionInfos.isEmpty()){
+            return;
+        }
+        try {
+            redisRepository.getRedisTemplate().executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    ValueOperations<String, Object> valueOperations = (ValueOperations<String, Object>) operations.opsForValue();
+                    sessionInfos.forEach((sessionId, sessionInfo) -> writeSession(valueOperations, sessionId, sessionInfo, ttl.applyAsLong(sessionInfo), recreate));
+                    return null;
+                }
+            });
+        }catch (Exception e){
+            log.warn("DefaultSessionCacheServer.activitySessionCacheBatch >> pipeline is error,fallback to single write,msg is:{}",e.getMessage());
+            ValueOperations<String, Object> valueOperations = redisRepository.getRedisTemplate().opsForValue();
+            sessionInfos.forEach((sessionId, sessionInfo) -> writeSession(valueOperations, sessionId, sessionInfo, ttl.applyAsLong(sessionInfo), recreate));
+        }
+    }
+
+    /**
+     * 写入 session，仍在本节点连接的 session 使用 SET，key 过期后重建；
+     * 已断开的 session 使用 SET XX，key 已删除时不再写回，避免过期通知把已重连的设备置为离线
+     */
+    private void writeSession(ValueOperations<String, Object> valueOperations, SessionId sessionId, TransportSessionInfo sessionInfo, long ttl, boolean recreate) {
+        if (recreate) {
+            valueOperations.set(generatorSessionKey(sessionId), sessionInfo, ttl, TimeUnit.SECONDS);
+        } else {
+            valueOperations.setIfPresent(generatorSessionKey(sessionId), sessionInfo, ttl, TimeUnit.SECONDS);
+        }
+    }
+
+
     @Override
     public TransportSessionInfo getSessionFromCache(SessionId sessionId) {
         Object o = redisRepository.get(generatorSessionKey(sessionId));
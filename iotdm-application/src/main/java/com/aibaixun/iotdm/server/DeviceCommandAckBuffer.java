@@ -0,0 +1,124 @@
+package com.aibaixun.iotdm.server;
+
+import com.aibaixun.iotdm.service.IDeviceCommandSendService;
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 下行命令 PUBACK 合并写入
+ * <p>设备确认先进入队列，按固定间隔合并成一条 update 写入，避免每个 PUBACK 一条 sql</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/13
+ */
+@Component
+public class DeviceCommandAckBuffer {
+
+    private final Logger log = LoggerFactory.getLogger(DeviceCommandAckBuffer.class);
+
+    private final ConcurrentLinkedQueue<PendingAck> pendingAcks = new ConcurrentLinkedQueue<>();
+
+    @Value("${bx.command.ack_flush_interval:200}")
+    private long flushInterval;
+
+    @Value("${bx.command.ack_batch_size:500}")
+    private int batchSize;
+
+    private IDeviceCommandSendService deviceCommandSendService;
+
+    private ScheduledExecutorService flushExecutor;
+
+
+    @PostConstruct
+    public void init() {
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(IotDmThreadFactory.forName("command-ack-flush"));
+        flushExecutor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flushExecutor.shutdown();
+        flush();
+    }
+
+
+    /**
+     * 加入确认队列
+     * @param deviceId 设备id
+     * @param msgId 消息id
+     * @return 写入结果
+     */
+    public ListenableFuture<Boolean> ack(String deviceId, int msgId) {
+        PendingAck pendingAck = new PendingAck(deviceId, msgId);
+        pendingAcks.offer(pendingAck);
+        return pendingAck.future;
+    }
+
+
+    void flush() {
+        List<PendingAck> batch = new ArrayList<>(batchSize);
+        PendingAck pendingAck;
+        while ((pendingAck = pendingAcks.poll()) != null) {
+            batch.add(pendingAck);
+            if (batch.size() >= batchSize) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(List<PendingAck> batch) {
+        Map<String, Set<Integer>> deviceMsgIds = new HashMap<>();
+        for (PendingAck ack : batch) {
+            deviceMsgIds.computeIfAbsent(ack.deviceId, k -> new HashSet<>()).add(ack.msgId);
+        }
+        try {
+            Boolean result = deviceCommandSendService.updateDeviceCommandStatus2ReceivedBatch(deviceMsgIds);
+            batch.forEach(ack -> ack.future.set(result));
+        } catch (Exception e) {
+            log.warn("DeviceCommandAckBuffer.write >> batch update error,size:{},msg is:{}", batch.size(), e.getMessage());
+            batch.forEach(ack -> ack.future.setException(e));
+        }
+    }
+
+    @Autowired
+    public void setDeviceCommandSendService(IDeviceCommandSendService deviceCommandSendService) {
+        this.deviceCommandSendService = deviceCommandSendService;
+    }
+
+
+    private static class PendingAck {
+
+        private final String deviceId;
+
+        private final int msgId;
+
+        private final SettableFuture<Boolean> future = SettableFuture.create();
+
+        private PendingAck(String deviceId, int msgId) {
+            this.deviceId = deviceId;
+            this.msgId = msgId;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.aibaixun.iotdm.server;
+
+import com.aibaixun.iotdm.entity.DeviceEntity;
+import com.aibaixun.iotdm.entity.ProductEntity;
+import com.aibaixun.iotdm.enums.SubjectEvent;
+import com.aibaixun.iotdm.enums.SubjectResource;
+import com.aibaixun.iotdm.event.EntityChangeEvent;
+import com.aibaixun.iotdm.msg.DeviceAuthSecretReqMsg;
+import com.aibaixun.iotdm.msg.DeviceInfo;
+import com.aibaixun.iotdm.scheduler.SqlExecutorService;
+import com.aibaixun.iotdm.service.IDeviceService;
+import com.aibaixun.iotdm.service.IProductService;
+import com.aibaixun.iotdm.transport.MqttTransportException;
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 设备密钥认证 缓存
+ * <p>以 clientId/username/secret 的 hash 为 key 缓存认证通过的设备信息(含产品协议与数据格式)；
+ * 未命中的认证请求合并后用一条 in 查询加载，设备、产品变更时按实体失效</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/14
+ */
+@Component
+public class DeviceCredentialCache {
+
+    private final Logger log = LoggerFactory.getLogger(DeviceCredentialCache.class);
+
+    private final ConcurrentLinkedQueue<PendingAuth> pendingAuths = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 失效次数，加载期间发生过失效则本批结果不写入缓存
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Value("${bx.auth.cache_size:100000}")
+    private long cacheSize;
+
+    @Value("${bx.auth.cache_expire:600}")
+    private long cacheExpire;
+
+    @Value("${bx.auth.batch_interval:5}")
+    private long batchInterval;
+
+    @Value("${bx.auth.batch_size:200}")
+    private int batchSize;
+
+    private Cache<HashCode, DeviceInfo> credentials;
+
+    private IDeviceService deviceService;
+
+    private IProductService productService;
+
+    private SqlExecutorService sqlExecutorService;
+
+    private ScheduledExecutorService batchExecutor;
+
+
+    @PostConstruct
+    public void init() {
+        credentials = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheExpire, TimeUnit.SECONDS)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors())
+                .build();
+        batchExecutor = Executors.newSingleThreadScheduledExecutor(IotDmThreadFactory.forName("auth-batch"));
+        batchExecutor.scheduleWithFixedDelay(this::drain, batchInterval, batchInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        batchExecutor.shutdownNow();
+    }
+
+
+    /**
+     * 密钥认证
+     * @param reqMsg 认证消息
+     * @return 设备信息，认证失败时异常为 MqttTransportException
+     */
+    public ListenableFuture<DeviceInfo> authenticate(DeviceAuthSecretReqMsg reqMsg) {
+        HashCode key = credentialKey(reqMsg);
+        DeviceInfo deviceInfo = credentials.getIfPresent(key);
+        if (Objects.nonNull(deviceInfo)) {
+            return Futures.immediateFuture(copyOf(deviceInfo));
+        }
+        if (StringUtils.isEmpty(reqMsg.getClientId())) {
+            return Futures.immediateFailedFuture(new MqttTransportException((byte) 4));
+        }
+        PendingAuth pendingAuth = new PendingAuth(key, reqMsg);
+        pendingAuths.offer(pendingAuth);
+        return pendingAuth.future;
+    }
+
+
+    /**
+     * 实体变更 失效缓存
+     * @param entityChangeEvent 实体变更
+     */
+    public void onEntityChange(EntityChangeEvent entityChangeEvent) {
+        SubjectResource resource = entityChangeEvent.getSubjectResource();
+        String entityId = entityChangeEvent.getEntityId();
+        if (SubjectResource.DEVICE.equals(resource)) {
+            invalidateIf(entityId, DeviceInfo::getDeviceId);
+        } else if (SubjectResource.PRODUCT.equals(resource) && !SubjectEvent.PRODUCT_MODEL_UPDATE.equals(entityChangeEvent.getSubjectEvent())) {
+            invalidateIf(entityId, DeviceInfo::getProductId);
+        }
+    }
+
+    private void invalidateIf(String entityId, Function<DeviceInfo, String> idGetter) {
+        invalidations.incrementAndGet();
+        if (StringUtils.isEmpty(entityId)) {
+            credentials.invalidateAll();
+            return;
+        }
+        Predicate<DeviceInfo> matched = info -> StringUtils.equals(entityId, idGetter.apply(info));
+        credentials.asMap().values().removeIf(matched);
+    }
+
+
+    /**
+     * 取出等待中的认证请求 按批提交到 sql 线程池
+     */
+    void drain() {
+        List<PendingAuth> batch = new ArrayList<>(batchSize);
+        PendingAuth pendingAuth;
+        while ((pendingAuth = pendingAuths.poll()) != null) {
+            batch.add(pendingAuth);
+            if (batch.size() >= batchSize) {
+                submit(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            submit(batch);
+        }
+    }
+
+    private void submit(List<PendingAuth> batch) {
+        try {
+            sqlExecutorService.execute(() -> load(batch));
+        } catch (Exception e) {
+            log.warn("DeviceCredentialCache.submit >> submit auth batch error,size:{},msg is:{}", batch.size(), e.getMessage());
+            batch.forEach(p -> p.future.setException(e));
+        }
+    }
+
+    private void load(List<PendingAuth> batch) {
+        long generation = invalidations.get();
+        try {
+            Set<String> clientIds = new HashSet<>();
+            batch.forEach(p -> clientIds.add(p.reqMsg.getClientId()));
+            Map<String, DeviceEntity> devices = new HashMap<>(clientIds.size());
+            deviceService.listSecretAuthDevices(clientIds).forEach(d -> devices.put(d.getId(), d));
+            Set<String> productIds = new HashSet<>();
+            devices.values().stream().map(DeviceEntity::getProductId).filter(StringUtils::isNotBlank).forEach(productIds::add);
+            Map<String, ProductEntity> products = new HashMap<>(productIds.size());
+            if (!productIds.isEmpty()) {
+                productService.listByIds(productIds).forEach(p -> products.put(p.getId(), p));
+            }
+            for (PendingAuth p : batch) {
+                DeviceEntity device = devices.get(p.reqMsg.getClientId());
+                if (Objects.isNull(device) || !StringUtils.equals(device.getDeviceCode(), p.reqMsg.getUsername())
+                        || !StringUtils.equals(device.getDeviceSecret(), p.reqMsg.getPassword())) {
+                    p.future.setException(new MqttTransportException((byte) 4));
+                    continue;
+                }
+                DeviceInfo deviceInfo = toData(device, products.get(device.getProductId()));
+                if (generation == invalidations.get()) {
+                    credentials.put(p.key, deviceInfo);
+                }
+                p.future.set(copyOf(deviceInfo));
+            }
+        } catch (Exception e) {
+            log.warn("DeviceCredentialCache.load >> load auth batch error,size:{},msg is:{}", batch.size(), e.getMessage());
+            batch.forEach(p -> p.future.setException(e));
+        }
+    }
+
+
+    private static DeviceInfo toData(DeviceEntity deviceEntity, ProductEntity product) {
+        DeviceInfo deviceInfo = new DeviceInfo();
+        deviceInfo.setDeviceId(deviceEntity.getId());
+        deviceInfo.setDeviceCode(deviceEntity.getDeviceCode());
+        deviceInfo.setProductId(deviceEntity.getProductId());
+        if (Objects.nonNull(product)) {
+            deviceInfo.setProtocolType(product.getProtocolType());
+            deviceInfo.setDataFormat(product.getDataFormat());
+        }
+        return deviceInfo;
+    }
+
+    /**
+     * 缓存中的对象不直接交给调用方，避免被修改
+     */
+    private static DeviceInfo copyOf(DeviceInfo source) {
+        DeviceInfo deviceInfo = new DeviceInfo();
+        deviceInfo.setDeviceId(source.getDeviceId());
+        deviceInfo.setDeviceCode(source.getDeviceCode());
+        deviceInfo.setProductId(source.getProductId());
+        deviceInfo.setProtocolType(source.getProtocolType());
+        deviceInfo.setDataFormat(source.getDataFormat());
+        return deviceInfo;
+    }
+
+    private static HashCode credentialKey(DeviceAuthSecretReqMsg reqMsg) {
+        return Hashing.sha256().newHasher()
+                .putString(StringUtils.defaultString(reqMsg.getClientId()), StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(StringUtils.defaultString(reqMsg.getUsername()), StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(StringUtils.defaultString(reqMsg.getPassword()), StandardCharsets.UTF_8)
+                .hash();
+    }
+
+
+    @Autowired
+    public void setDeviceService(IDeviceService deviceService) {
+        this.deviceService = deviceService;
+    }
+
+    @Autowired
+    public void setProductService(IProductService productService) {
+        this.productService = productService;
+    }
+
+    @Autowired
+    public void setSqlExecutorService(SqlExecutorService sqlExecutorService) {
+        this.sqlExecutorService = sqlExecutorService;
+    }
+
+
+    private static class PendingAuth {
+
+        private final HashCode key;
+
+        private final DeviceAuthSecretReqMsg reqMsg;
+
+        private final SettableFuture<DeviceInfo> future = SettableFuture.create();
+
+        private PendingAuth(HashCode key, DeviceAuthSecretReqMsg reqMsg) {
+            this.key = key;
+            this.reqMsg = reqMsg;
+        }
+    }
+}
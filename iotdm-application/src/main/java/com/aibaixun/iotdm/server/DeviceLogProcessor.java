@@ -12,6 +12,7 @@ import org.springframework.stereotype.Component;
 
 import java.time.Instant;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * 设备日志记录器
@@ -30,6 +31,14 @@ public class DeviceLogProcessor {
     }
 
 
+    public  void doDevice2PlatformLog(String deviceId,  BusinessStep businessStep, Supplier<String> businessDetails, Boolean messageStatus  ) {
+        if (isDebugDevice(deviceId)){
+            String details = businessDetails.get();
+            Futures.submit(()-> messageTraceService.logDeviceMessageTrace(deviceId,BusinessType.DEVICE2PLATFORM,businessStep,details,messageStatus), MoreExecutors.directExecutor());
+        }
+    }
+
+
     public  void doPlatform2DeviceLLog(String deviceId,  BusinessStep businessStep, String businessDetails, Boolean messageStatus ) {
         doLog(deviceId,BusinessType.PLATFORM2DEVICE, businessStep,businessDetails,messageStatus);
     }
@@ -39,12 +48,16 @@ public class DeviceLogProcessor {
     }
 
     private void doLog(String deviceId,BusinessType businessType, BusinessStep businessStep, String businessDetails, Boolean messageStatus){
-        Long ttl = ((Long) redisRepository.getHashValues(DataConstants.IOT_DEVICE_DEBUG_CACHE_KEY , deviceId));
-        if (Objects.nonNull(ttl) && ttl > Instant.now().getEpochSecond()){
+        if (isDebugDevice(deviceId)){
             Futures.submit(()-> messageTraceService.logDeviceMessageTrace(deviceId,businessType,businessStep,businessDetails,messageStatus), MoreExecutors.directExecutor());
         }
     }
 
+    private boolean isDebugDevice(String deviceId){
+        Long ttl = ((Long) redisRepository.getHashValues(DataConstants.IOT_DEVICE_DEBUG_CACHE_KEY , deviceId));
+        return Objects.nonNull(ttl) && ttl > Instant.now().getEpochSecond();
+    }
+
     @Autowired
     public void setRedisRepository(RedisRepository redisRepository) {
         this.redisRepository = redisRepository;
@@ -0,0 +1,274 @@
+package com.aibaixun.iotdm.server;
+
+import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
+import com.aibaixun.iotdm.service.IDevicePropertyReportService;
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 设备属性上报 合并写入
+ * <p>属性数据先按 (deviceId, propertyId) 合并在内存中，同一属性只保留 ts 最新的一条，按固定间隔或积压条数批量写入；
+ * 数据库写入量取决于每个间隔内变化的属性数，而不是消息数。积压达到上限时由写入线程同步刷新，把压力推回 ingest 分区；
+ * 写入失败后按退避时间暂停刷新，期间积压达到上限的新属性直接丢弃，数据库不可用时内存不会无限增长</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@Component
+public class DevicePropertyWriteBuffer {
+
+    private final Logger log = LoggerFactory.getLogger(DevicePropertyWriteBuffer.class);
+
+    private static final Comparator<DevicePropertyReportEntity> WRITE_ORDER = Comparator
+            .comparing(DevicePropertyReportEntity::getDeviceId)
+            .thenComparing(DevicePropertyReportEntity::getPropertyId);
+
+    /**
+     * 写入方共享读锁，刷新时独占写锁替换 pending，保证替换后不会再有数据写入旧的 map
+     */
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    /**
+     * 同一时间只有一个刷新
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private volatile ConcurrentHashMap<PropertyKey, DevicePropertyReportEntity> pending = new ConcurrentHashMap<>();
+
+    @Value("${bx.property.flush_interval:200}")
+    private long flushInterval = 200;
+
+    @Value("${bx.property.batch_size:500}")
+    private int batchSize = 500;
+
+    @Value("${bx.property.max_pending:50000}")
+    private int maxPending = 50000;
+
+    @Value("${bx.property.retry_backoff:1000}")
+    private long retryBackoff = 1000;
+
+    @Value("${bx.property.max_retry_backoff:30000}")
+    private long maxRetryBackoff = 30000;
+
+    /**
+     * 当前退避时间(毫秒)，写入成功后清零
+     */
+    private volatile long backoff;
+
+    /**
+     * 退避结束时间 System.nanoTime
+     */
+    private volatile long retryAtNanos;
+
+    private IDevicePropertyReportService propertyReportService;
+
+    private MeterRegistry meterRegistry;
+
+    private ScheduledExecutorService flushExecutor;
+
+    private Timer flushTimer;
+
+    private DistributionSummary flushSize;
+
+    private Counter coalesced;
+
+    private Counter dropped;
+
+
+    @PostConstruct
+    public void init() {
+        flushTimer = Timer.builder("iotdm.property.flush.latency").description("device property write-behind flush latency").register(meterRegistry);
+        flushSize = DistributionSummary.builder("iotdm.property.flush.size").description("rows per device property flush").register(meterRegistry);
+        coalesced = Counter.builder("iotdm.property.coalesced").description("property upserts replaced by a newer value before flush").register(meterRegistry);
+        dropped = Counter.builder("iotdm.property.dropped").description("property upserts dropped by a full buffer").register(meterRegistry);
+        Gauge.builder("iotdm.property.pending", this, b -> b.pending.size()).description("device properties waiting for flush").register(meterRegistry);
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(IotDmThreadFactory.forName("property-flush"));
+        flushExecutor.scheduleWithFixedDelay(() -> {
+            if (!backingOff()) {
+                flush();
+            }
+        }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        flushExecutor.shutdown();
+        flush();
+    }
+
+
+    /**
+     * 加入写入队列
+     * <p>积压达到上限时先同步刷新；写入失败退避期间不刷新，已在队列中的属性仍合并，新属性丢弃</p>
+     * @param entities 设备属性数据
+     */
+    public void add(Collection<DevicePropertyReportEntity> entities) {
+        if (entities.isEmpty()) {
+            return;
+        }
+        if (pending.size() >= maxPending && !backingOff()) {
+            flush();
+        }
+        int rejected = 0;
+        swapLock.readLock().lock();
+        try {
+            ConcurrentHashMap<PropertyKey, DevicePropertyReportEntity> current = pending;
+            for (DevicePropertyReportEntity entity : entities) {
+                PropertyKey key = new PropertyKey(entity.getDeviceId(), entity.getPropertyId());
+                if (current.size() >= maxPending && !current.containsKey(key)) {
+                    rejected++;
+                    continue;
+                }
+                current.merge(key, entity, this::newer);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (rejected > 0) {
+            dropped.increment(rejected);
+        }
+    }
+
+
+    void flush() {
+        flushLock.lock();
+        try {
+            ConcurrentHashMap<PropertyKey, DevicePropertyReportEntity> flushing;
+            swapLock.writeLock().lock();
+            try {
+                flushing = pending;
+                if (flushing.isEmpty()) {
+                    return;
+                }
+                pending = new ConcurrentHashMap<>(Math.max(16, flushing.size()));
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            write(new ArrayList<>(flushing.values()));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void write(List<DevicePropertyReportEntity> batch) {
+        // 固定顺序写入，减少多个节点同时写同一批行时的死锁
+        batch.sort(WRITE_ORDER);
+        long start = System.nanoTime();
+        try {
+            propertyReportService.saveOrUpdateBatchDeviceProperties(batch, batchSize);
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushSize.record(batch.size());
+            backoff = 0;
+        } catch (Exception e) {
+            backoff = backoff == 0 ? retryBackoff : Math.min(backoff * 2, maxRetryBackoff);
+            retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+            log.warn("DevicePropertyWriteBuffer.write >> batch upsert error,size:{},retry after {} ms,msg is:{}", batch.size(), backoff, e.getMessage());
+            requeue(batch);
+        }
+    }
+
+    private boolean backingOff() {
+        return backoff > 0 && System.nanoTime() - retryAtNanos < 0;
+    }
+
+    /**
+     * 写入失败 放回队列等待下次刷新，队列中已有更新的值时丢弃旧值，超过上限的部分丢弃
+     */
+    private void requeue(List<DevicePropertyReportEntity> batch) {
+        int rejected = 0;
+        swapLock.readLock().lock();
+        try {
+            ConcurrentHashMap<PropertyKey, DevicePropertyReportEntity> current = pending;
+            for (DevicePropertyReportEntity entity : batch) {
+                if (current.size() >= maxPending) {
+                    rejected++;
+                    continue;
+                }
+                current.merge(new PropertyKey(entity.getDeviceId(), entity.getPropertyId()), entity, DevicePropertyWriteBuffer::latest);
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (rejected > 0) {
+            dropped.increment(rejected);
+        }
+    }
+
+    private DevicePropertyReportEntity newer(DevicePropertyReportEntity old, DevicePropertyReportEntity value) {
+        coalesced.increment();
+        return latest(old, value);
+    }
+
+    /**
+     * 放回队列时合并 不计入 coalesced
+     */
+    private static DevicePropertyReportEntity latest(DevicePropertyReportEntity old, DevicePropertyReportEntity value) {
+        return value.getTs() >= old.getTs() ? value : old;
+    }
+
+
+    @Autowired
+    public void setPropertyReportService(IDevicePropertyReportService propertyReportService) {
+        this.propertyReportService = propertyReportService;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    private static final class PropertyKey {
+
+        private final String deviceId;
+
+        private final String propertyId;
+
+        private final int hash;
+
+        private PropertyKey(String deviceId, String propertyId) {
+            this.deviceId = deviceId;
+            this.propertyId = propertyId;
+            this.hash = 31 * deviceId.hashCode() + propertyId.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PropertyKey)) {
+                return false;
+            }
+            PropertyKey that = (PropertyKey) o;
+            return deviceId.equals(that.deviceId) && propertyId.equals(that.propertyId);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.aibaixun.iotdm.server;
+
+import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 设备影子
+ * <p>每个设备一份 propertyId -> (value, ts) 的最新属性值，ingest 时原地更新，多个节点共享</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public interface DeviceShadowServer {
+
+
+    /**
+     * 更新设备影子 同一属性只保留 ts 最新的值
+     * @param entities 设备属性数据
+     */
+    void update(Collection<DevicePropertyReportEntity> entities);
+
+
+    /**
+     * 读取设备影子
+     * @param deviceId 设备id
+     * @return propertyId -> 属性值，影子尚未建立时返回 null
+     */
+    Map<String, DeviceShadowValue> getShadow(String deviceId);
+
+
+    /**
+     * 用已持久化的属性数据建立设备影子，影子中已有的值不会被覆盖
+     * @param deviceId 设备id
+     * @param entities 数据库中的设备属性数据
+     * @return propertyId -> 属性值
+     */
+    Map<String, DeviceShadowValue> load(String deviceId, Collection<DevicePropertyReportEntity> entities);
+}
@@ -0,0 +1,77 @@
+package com.aibaixun.iotdm.server;
+
+import com.aibaixun.common.util.JsonUtil;
+import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
+
+import java.util.Objects;
+
+/**
+ * 设备影子中的单个属性值
+ * <p>值统一保存为文本，redis hash 中编码为 "ts:value"，值为 null 时只保存 ts</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public final class DeviceShadowValue {
+
+    private static final char SEPARATOR = ':';
+
+    private final String value;
+
+    private final long ts;
+
+
+    public DeviceShadowValue(String value, long ts) {
+        this.value = value;
+        this.ts = ts;
+    }
+
+    public static DeviceShadowValue of(DevicePropertyReportEntity entity) {
+        Object propertyValue = entity.getPropertyValue();
+        String value;
+        if (Objects.isNull(propertyValue) || propertyValue instanceof String) {
+            value = (String) propertyValue;
+        } else {
+            value = JsonUtil.toJSONString(propertyValue);
+        }
+        return new DeviceShadowValue(value, Objects.isNull(entity.getTs()) ? 0L : entity.getTs());
+    }
+
+    /**
+     * 解析 redis 中的编码值
+     * @param encoded 编码值
+     * @return 无法解析时返回 null
+     */
+    public static DeviceShadowValue decode(String encoded) {
+        if (Objects.isNull(encoded)) {
+            return null;
+        }
+        int index = encoded.indexOf(SEPARATOR);
+        try {
+            if (index < 0) {
+                return new DeviceShadowValue(null, Long.parseLong(encoded));
+            }
+            return new DeviceShadowValue(encoded.substring(index + 1), Long.parseLong(encoded.substring(0, index)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 同一属性保留 ts 较新的值
+     */
+    public static DeviceShadowValue newer(DeviceShadowValue old, DeviceShadowValue value) {
+        return value.ts >= old.ts ? value : old;
+    }
+
+    public String encode() {
+        return Objects.isNull(value) ? String.valueOf(ts) : ts + String.valueOf(SEPARATOR) + value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getTs() {
+        return ts;
+    }
+}
@@ -0,0 +1,43 @@
+package com.aibaixun.iotdm.server;
+
+import com.aibaixun.common.util.JsonUtil;
+import com.aibaixun.iotdm.msg.ToDeviceRouteMsg;
+import com.aibaixun.iotdm.queue.IotDmDownlinkSink;
+import com.aibaixun.iotdm.transport.service.DownlinkRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.stereotype.Component;
+
+/**
+ * 其他节点转发的下行消息 接收
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/15
+ */
+@Component
+@EnableBinding(value = IotDmDownlinkSink.class)
+public class DownlinkQueueReceiver {
+
+    private final Logger log = LoggerFactory.getLogger(DownlinkQueueReceiver.class);
+
+    private DownlinkRouter downlinkRouter;
+
+
+    @StreamListener(IotDmDownlinkSink.INPUT_DOWNLINK_DATA)
+    public <T> void receiveDownlinkData(GenericMessage<T> downlinkData) {
+        try {
+            ToDeviceRouteMsg routeMsg = JsonUtil.toObject(downlinkData.getPayload().toString(), ToDeviceRouteMsg.class);
+            downlinkRouter.onRemote(routeMsg);
+        } catch (Exception e) {
+            log.warn("DownlinkQueueReceiver.receiveDownlinkData >> error is:{}", e.getMessage());
+        }
+    }
+
+    @Autowired
+    public void setDownlinkRouter(DownlinkRouter downlinkRouter) {
+        this.downlinkRouter = downlinkRouter;
+    }
+}
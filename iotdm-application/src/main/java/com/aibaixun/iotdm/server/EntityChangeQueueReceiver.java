@@ -0,0 +1,52 @@
+package com.aibaixun.iotdm.server;
+
+import com.aibaixun.common.util.JsonUtil;
+import com.aibaixun.iotdm.business.ProductSnapshotCache;
+import com.aibaixun.iotdm.event.EntityChangeEvent;
+import com.aibaixun.iotdm.queue.IotDmEntityChangeSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.stream.annotation.EnableBinding;
+import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.stereotype.Component;
+
+/**
+ * 实体变更广播 接收
+ * <p>其他节点的产品、设备变更经 entity_data 广播到本节点，失效本地产品快照与设备认证缓存</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@Component
+@EnableBinding(value = IotDmEntityChangeSink.class)
+public class EntityChangeQueueReceiver {
+
+    private final Logger log = LoggerFactory.getLogger(EntityChangeQueueReceiver.class);
+
+    private ProductSnapshotCache productSnapshotCache;
+
+    private DeviceCredentialCache deviceCredentialCache;
+
+
+    @StreamListener(IotDmEntityChangeSink.INPUT_ENTITY_CHANGE)
+    public <T> void receiveEntityChange(GenericMessage<T> entityData) {
+        try {
+            EntityChangeEvent entityChangeEvent = JsonUtil.toObject(entityData.getPayload().toString(), EntityChangeEvent.class);
+            productSnapshotCache.onEntityChange(entityChangeEvent);
+            deviceCredentialCache.onEntityChange(entityChangeEvent);
+        } catch (Exception e) {
+            log.warn("EntityChangeQueueReceiver.receiveEntityChange >> error is:{}", e.getMessage());
+        }
+    }
+
+    @Autowired
+    public void setProductSnapshotCache(ProductSnapshotCache productSnapshotCache) {
+        this.productSnapshotCache = productSnapshotCache;
+    }
+
+    @Autowired
+    public void setDeviceCredentialCache(DeviceCredentialCache deviceCredentialCache) {
+        this.deviceCredentialCache = deviceCredentialCache;
+    }
+}
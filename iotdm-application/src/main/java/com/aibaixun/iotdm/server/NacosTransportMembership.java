@@ -0,0 +1,47 @@
+package com.aibaixun.iotdm.server;
+
+import com.aibaixun.iotdm.transport.shard.TransportMembership;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 基于 nacos 注册中心的 传输节点成员视图
+ * <p>节点 id 通过实例 metadata node_id 注册</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/16
+ */
+@Component
+public class NacosTransportMembership implements TransportMembership {
+
+    private static final String NODE_ID_METADATA = "node_id";
+
+    @Value("${spring.application.name}")
+    private String applicationName;
+
+    private DiscoveryClient discoveryClient;
+
+
+    @Override
+    public Set<String> liveNodes() {
+        Set<String> nodes = new HashSet<>();
+        for (ServiceInstance instance : discoveryClient.getInstances(applicationName)) {
+            String nodeId = instance.getMetadata().get(NODE_ID_METADATA);
+            if (StringUtils.isNotBlank(nodeId)) {
+                nodes.add(nodeId);
+            }
+        }
+        return nodes;
+    }
+
+    @Autowired
+    public void setDiscoveryClient(DiscoveryClient discoveryClient) {
+        this.discoveryClient = discoveryClient;
+    }
+}
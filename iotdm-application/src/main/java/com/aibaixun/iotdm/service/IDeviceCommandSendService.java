@@ -5,6 +5,9 @@ import com.aibaixun.iotdm.enums.SendStatus;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * <p>
  * 命令下发记录 服务类
@@ -39,6 +42,13 @@ public interface IDeviceCommandSendService extends IService<DeviceCommandSendEnt
      */
     Boolean updateDeviceCommandStatus2Received(String deviceId,Integer msgId);
 
+    /**
+     * 批量修改设备 命令为已送达
+     * @param deviceMsgIds 设备id -> 消息id
+     * @return 状态
+     */
+    Boolean updateDeviceCommandStatus2ReceivedBatch(Map<String, ? extends Collection<Integer>> deviceMsgIds);
+
     /**
      * 设置msg is
      * @param sendId 发送id
@@ -47,6 +57,13 @@ public interface IDeviceCommandSendService extends IService<DeviceCommandSendEnt
      */
     Boolean updateDeviceCommandToSetMsgId(Integer sendId, Integer msgId);
 
+    /**
+     * 已发送的命令 标记为失败
+     * @param sendId 发送id
+     * @return 修改结果
+     */
+    Boolean updateDeviceCommandToFailed(Integer sendId);
+
 
     /**
      * 修改设备
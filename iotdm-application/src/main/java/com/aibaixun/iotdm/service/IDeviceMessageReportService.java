@@ -1,17 +0,0 @@
-package com.aibaixun.iotdm.service;
-
-import com.aibaixun.iotdm.entity.DeviceMessageReportEntity;
-import com.baomidou.mybatisplus.extension.service.IService;
-
-/**
- * <p>
- * 设备消息上报 服务类
- * </p>
- *
- * @author baixun
- * @since 2022-03-03
- */
-public interface IDeviceMessageReportService extends IService<DeviceMessageReportEntity> {
-
-
-}
@@ -4,7 +4,6 @@ import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
 import com.aibaixun.iotdm.data.DevicePropertyInfo;
 import com.baomidou.mybatisplus.extension.service.IService;
 
-import java.util.Collection;
 import java.util.List;
 
 /**
@@ -19,11 +18,12 @@ public interface IDevicePropertyReportService extends IService<DevicePropertyRep
 
 
     /**
-     * 查询设备最新 属性上报 数据 【理论上表中只会存在最新的数据】
+     * 查询设备最新 属性上报 数据 【从设备影子读取，只返回产品物模型中仍存在的属性】
+     * @param productId 产品id
      * @param deviceId 设备id
      * @return 最新属性上报数据
      */
-    List<DevicePropertyInfo> queryLatestDeviceProperty(String deviceId);
+    List<DevicePropertyInfo> queryLatestDeviceProperty(String productId, String deviceId);
 
 
     /**
@@ -37,10 +37,11 @@ public interface IDevicePropertyReportService extends IService<DevicePropertyRep
 
 
     /**
-     * 设备数据 更改或者删除
-     * @param deviceId 设备id
+     * 多个设备的属性数据 批量更改或者新增
+     * <p>每 statementSize 条拼成一条 insert ... on duplicate key update，所有语句在一个 batch 会话中提交</p>
      * @param entityList 实体数据
+     * @param statementSize 单条语句行数
      */
-    void saveOrUpdateBatchDeviceProperties(String deviceId, Collection<DevicePropertyReportEntity> entityList);
+    void saveOrUpdateBatchDeviceProperties(List<DevicePropertyReportEntity> entityList, int statementSize);
 
 }
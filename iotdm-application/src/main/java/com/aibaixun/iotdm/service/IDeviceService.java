@@ -8,6 +8,7 @@ import com.aibaixun.iotdm.data.KvData;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -124,6 +125,13 @@ public interface IDeviceService extends IService<DeviceEntity> {
      */
     DeviceEntity queryBy3Param(String clientId,String username,String password);
 
+    /**
+     * 批量查询可以密钥认证的设备
+     * @param ids 设备id(clientId)
+     * @return 设备实体
+     */
+    List<DeviceEntity> listSecretAuthDevices(Collection<String> ids);
+
 
     /**
      * 修改设备状态
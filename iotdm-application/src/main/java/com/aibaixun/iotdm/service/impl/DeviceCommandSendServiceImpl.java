@@ -14,6 +14,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -60,6 +62,19 @@ public class DeviceCommandSendServiceImpl extends ServiceImpl<DeviceCommandSendM
         return update(updateWrapper);
     }
 
+    @Override
+    public Boolean updateDeviceCommandStatus2ReceivedBatch(Map<String, ? extends Collection<Integer>> deviceMsgIds) {
+        if (deviceMsgIds.isEmpty()) {
+            return true;
+        }
+        LambdaUpdateWrapper<DeviceCommandSendEntity> updateWrapper = Wrappers.lambdaUpdate();
+        updateWrapper.eq(DeviceCommandSendEntity::getSendStatus, SendStatus.SEND)
+                .and(w -> deviceMsgIds.forEach((deviceId, msgIds) ->
+                        w.or(x -> x.eq(DeviceCommandSendEntity::getDeviceId, deviceId).in(DeviceCommandSendEntity::getMsgId, msgIds))));
+        updateWrapper.set(DeviceCommandSendEntity::getSendStatus, SendStatus.SEND_ARRIVE).set(DeviceCommandSendEntity::getRespTs, Instant.now().toEpochMilli());
+        return update(updateWrapper);
+    }
+
     @Override
     public Boolean updateDeviceCommandToSetMsgId(Integer sendId, Integer msgId) {
         LambdaUpdateWrapper<DeviceCommandSendEntity> updateWrapper = Wrappers.lambdaUpdate();
@@ -70,6 +85,16 @@ public class DeviceCommandSendServiceImpl extends ServiceImpl<DeviceCommandSendM
         return update(updateWrapper);
     }
 
+    @Override
+    public Boolean updateDeviceCommandToFailed(Integer sendId) {
+        LambdaUpdateWrapper<DeviceCommandSendEntity> updateWrapper = Wrappers.lambdaUpdate();
+        updateWrapper.eq(DeviceCommandSendEntity::getReqId,sendId)
+                .eq(DeviceCommandSendEntity::getSendStatus, SendStatus.SEND)
+                .set(DeviceCommandSendEntity::getSendStatus, SendStatus.FAIL)
+                .set(DeviceCommandSendEntity::getRespTs, Instant.now().toEpochMilli());
+        return update(updateWrapper);
+    }
+
 
     @Override
     public Boolean updateDeviceCommand(String deviceId, Integer reqId, SendStatus targetStatus) {
@@ -1,18 +1,28 @@
 package com.aibaixun.iotdm.service.impl;
 
+import com.aibaixun.iotdm.business.ProductSnapshotCache;
+import com.aibaixun.iotdm.data.ProductModelEntityInfo;
 import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
+import com.aibaixun.iotdm.entity.ModelPropertyEntity;
 import com.aibaixun.iotdm.mapper.DevicePropertyReportMapper;
+import com.aibaixun.iotdm.server.DeviceShadowServer;
+import com.aibaixun.iotdm.server.DeviceShadowValue;
 import com.aibaixun.iotdm.service.IDevicePropertyReportService;
 import com.aibaixun.iotdm.data.DevicePropertyInfo;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * <p>
@@ -25,26 +35,99 @@ import java.util.List;
 @Service
 public class DevicePropertyReportServiceImpl extends ServiceImpl<DevicePropertyReportMapper, DevicePropertyReportEntity> implements IDevicePropertyReportService {
 
+    private DeviceShadowServer deviceShadowServer;
+
+    private ProductSnapshotCache productSnapshotCache;
+
 
     @Override
-    @Cacheable(cacheNames = "IOTDM:DEVICE_LATEST:",key = "#deviceId",unless = "#result == null ")
-    public List<DevicePropertyInfo> queryLatestDeviceProperty(String deviceId) {
-        return baseMapper.selectLatestDeviceProperty(deviceId);
+    public List<DevicePropertyInfo> queryLatestDeviceProperty(String productId, String deviceId) {
+        Map<String, DeviceShadowValue> shadow = getDeviceShadow(deviceId);
+        List<DevicePropertyInfo> devicePropertyInfos = new ArrayList<>(shadow.size());
+        if (shadow.isEmpty()){
+            return devicePropertyInfos;
+        }
+        for (ProductModelEntityInfo model : productSnapshotCache.get(productId).getModels()) {
+            for (ModelPropertyEntity property : propertiesOf(model)) {
+                DeviceShadowValue value = shadow.get(property.getId());
+                if (Objects.nonNull(value)){
+                    devicePropertyInfos.add(toPropertyInfo(deviceId, model, property, value));
+                }
+            }
+        }
+        devicePropertyInfos.sort(Comparator.comparing(DevicePropertyInfo::getPropertyId));
+        return devicePropertyInfos;
     }
 
 
     @Override
     public List<DevicePropertyInfo> queryShadowDeviceProperty(String productId,String propertyLabel,String deviceId) {
-        return baseMapper.selectShadowDeviceProperty(productId,propertyLabel,deviceId);
+        Map<String, DeviceShadowValue> shadow = getDeviceShadow(deviceId);
+        List<ProductModelEntityInfo> models = new ArrayList<>(productSnapshotCache.get(productId).getModels());
+        models.sort(Comparator.comparing(ProductModelEntityInfo::getId));
+        List<DevicePropertyInfo> devicePropertyInfos = new ArrayList<>();
+        for (ProductModelEntityInfo model : models) {
+            for (ModelPropertyEntity property : propertiesOf(model)) {
+                if (StringUtils.isNotEmpty(propertyLabel) && !StringUtils.startsWithIgnoreCase(property.getPropertyLabel(), propertyLabel)){
+                    continue;
+                }
+                devicePropertyInfos.add(toPropertyInfo(deviceId, model, property, shadow.get(property.getId())));
+            }
+        }
+        return devicePropertyInfos;
     }
 
     @Override
-    @CacheEvict(cacheNames = "IOTDM:DEVICE_LATEST:",key = "#deviceId")
-    public void saveOrUpdateBatchDeviceProperties(String deviceId, Collection<DevicePropertyReportEntity> entityList) {
+    public void saveOrUpdateBatchDeviceProperties(List<DevicePropertyReportEntity> entityList, int statementSize) {
         if (CollectionUtils.isEmpty(entityList)){
             return;
         }
-        int size = entityList.size();
-        int i = baseMapper.saveOrUpdateBatch(new ArrayList<>(entityList));
+        List<List<DevicePropertyReportEntity>> statements = Lists.partition(entityList, statementSize);
+        executeBatch(statements, statements.size(), (sqlSession, rows) -> sqlSession.getMapper(DevicePropertyReportMapper.class).saveOrUpdateBatch(rows));
+    }
+
+
+    /**
+     * 读取设备影子，影子尚未建立时用表中数据建立一次
+     */
+    private Map<String, DeviceShadowValue> getDeviceShadow(String deviceId) {
+        Map<String, DeviceShadowValue> shadow = deviceShadowServer.getShadow(deviceId);
+        if (Objects.nonNull(shadow)){
+            return shadow;
+        }
+        List<DevicePropertyReportEntity> entities = list(Wrappers.<DevicePropertyReportEntity>lambdaQuery().eq(DevicePropertyReportEntity::getDeviceId, deviceId));
+        return deviceShadowServer.load(deviceId, entities);
+    }
+
+    private static List<ModelPropertyEntity> propertiesOf(ProductModelEntityInfo model) {
+        return Objects.isNull(model.getProperties()) ? Collections.emptyList() : model.getProperties();
+    }
+
+    /**
+     * 设备没有上报过该属性时 只填充物模型信息
+     */
+    private static DevicePropertyInfo toPropertyInfo(String deviceId, ProductModelEntityInfo model, ModelPropertyEntity property, DeviceShadowValue value) {
+        DevicePropertyInfo devicePropertyInfo = new DevicePropertyInfo();
+        if (Objects.nonNull(value)){
+            devicePropertyInfo.setPropertyId(property.getId());
+            devicePropertyInfo.setDeviceId(deviceId);
+            devicePropertyInfo.setPropertyValue(value.getValue());
+            devicePropertyInfo.setTs(value.getTs());
+        }
+        devicePropertyInfo.setPropertyLabel(property.getPropertyLabel());
+        devicePropertyInfo.setModelLabel(model.getModelLabel());
+        devicePropertyInfo.setScope(property.getScope());
+        return devicePropertyInfo;
+    }
+
+
+    @Autowired
+    public void setDeviceShadowServer(DeviceShadowServer deviceShadowServer) {
+        this.deviceShadowServer = deviceShadowServer;
+    }
+
+    @Autowired
+    public void setProductSnapshotCache(ProductSnapshotCache productSnapshotCache) {
+        this.productSnapshotCache = productSnapshotCache;
     }
 }
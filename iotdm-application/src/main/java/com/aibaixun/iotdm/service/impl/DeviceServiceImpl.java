@@ -18,6 +18,7 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.regex.Matcher;
@@ -137,6 +138,16 @@ public class DeviceServiceImpl extends ServiceImpl<DeviceMapper, DeviceEntity> i
         return getOne(queryWrapper, false);
     }
 
+    @Override
+    public List<DeviceEntity> listSecretAuthDevices(Collection<String> ids) {
+        LambdaQueryWrapper<DeviceEntity> queryWrapper = Wrappers.lambdaQuery();
+        queryWrapper.select(DeviceEntity::getId,DeviceEntity::getDeviceCode,DeviceEntity::getDeviceSecret,DeviceEntity::getProductId)
+                .in(DeviceEntity::getId,ids)
+                .ne(DeviceEntity::getDeviceStatus,DeviceStatus.STOP)
+                .eq(DeviceEntity::getAuthType, DeviceAuthType.SECRET);
+        return list(queryWrapper);
+    }
+
 
     @Override
     public Boolean updateDeviceStatus(String id, DeviceStatus targetStatus, Long lastConnect, Long lastActivity, String host) {
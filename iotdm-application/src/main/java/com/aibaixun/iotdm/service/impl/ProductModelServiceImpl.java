@@ -2,6 +2,7 @@ package com.aibaixun.iotdm.service.impl;
 
 import com.aibaixun.basic.exception.BaseException;
 import com.aibaixun.basic.result.BaseResultCode;
+import com.aibaixun.iotdm.business.ProductSnapshotCache;
 import com.aibaixun.iotdm.entity.ModelCommandEntity;
 import com.aibaixun.iotdm.entity.ModelPropertyEntity;
 import com.aibaixun.iotdm.entity.ProductModelEntity;
@@ -39,6 +40,8 @@ public class ProductModelServiceImpl extends ServiceImpl<ProductModelMapper, Pro
 
     private IModelCommandService modelCommandService;
 
+    private ProductSnapshotCache productSnapshotCache;
+
     @Override
     @Cacheable(cacheNames = "IOTDM:PRODUCT_MODEl:",key = "#productId",unless = "#result == null ")
     public List<ProductModelEntityInfo> queryProductModelInfoByProductId(String productId) {
@@ -64,14 +67,18 @@ public class ProductModelServiceImpl extends ServiceImpl<ProductModelMapper, Pro
         if(StringUtils.isNotBlank(productModelEntity.getModelType())){
             updateWrapper.set(ProductModelEntity::getModelType, productModelEntity.getModelType());
         }
-        return update(updateWrapper);
+        boolean updated = update(updateWrapper);
+        productSnapshotCache.evict(productModelEntity.getProductId());
+        return updated;
     }
 
 
     @Override
     @CacheEvict(cacheNames = "IOTDM:PRODUCT_MODEl:",key = "#productId")
     public Boolean removeProductModel(String productId, String productModelId) {
-        return removeById(productModelId);
+        boolean removed = removeById(productModelId);
+        productSnapshotCache.evict(productId);
+        return removed;
     }
 
     @Override
@@ -83,7 +90,9 @@ public class ProductModelServiceImpl extends ServiceImpl<ProductModelMapper, Pro
         if (countNum>0){
             throw new BaseException("模型下已经存在同名属性", BaseResultCode.GENERAL_ERROR);
         }
-        return modelPropertyService.save(modelPropertyEntity);
+        boolean saved = modelPropertyService.save(modelPropertyEntity);
+        productSnapshotCache.evict(productId);
+        return saved;
     }
 
     @Override
@@ -95,13 +104,17 @@ public class ProductModelServiceImpl extends ServiceImpl<ProductModelMapper, Pro
         if (countNum>0){
             throw new BaseException("模型下已经存在同名属性", BaseResultCode.GENERAL_ERROR);
         }
-        return modelPropertyService.updateById(modelPropertyEntity);
+        boolean updated = modelPropertyService.updateById(modelPropertyEntity);
+        productSnapshotCache.evict(productId);
+        return updated;
     }
 
     @Override
     @CacheEvict(cacheNames = "IOTDM:PRODUCT_MODEl:",key = "#productId")
     public Boolean removeModelProperty(String productId, String propertyId) {
-        return modelPropertyService.removeById(propertyId);
+        boolean removed = modelPropertyService.removeById(propertyId);
+        productSnapshotCache.evict(productId);
+        return removed;
     }
 
     @Override
@@ -160,7 +173,9 @@ public class ProductModelServiceImpl extends ServiceImpl<ProductModelMapper, Pro
     @Override
     @CacheEvict(cacheNames = "IOTDM:PRODUCT_MODEl:",key = "#productModelEntity.productId")
     public Boolean saveProductModelEntity(ProductModelEntity productModelEntity) {
-        return save(productModelEntity);
+        boolean saved = save(productModelEntity);
+        productSnapshotCache.evict(productModelEntity.getProductId());
+        return saved;
     }
 
     @Autowired
@@ -171,4 +186,9 @@ public class ProductModelServiceImpl extends ServiceImpl<ProductModelMapper, Pro
     public void setModelCommandService(IModelCommandService modelCommandService) {
         this.modelCommandService = modelCommandService;
     }
+
+    @Autowired
+    public void setProductSnapshotCache(ProductSnapshotCache productSnapshotCache) {
+        this.productSnapshotCache = productSnapshotCache;
+    }
 }
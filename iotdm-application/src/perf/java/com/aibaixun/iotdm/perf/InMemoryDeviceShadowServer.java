@@ -0,0 +1,51 @@
+package com.aibaixun.iotdm.perf;
+
+import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
+import com.aibaixun.iotdm.server.DeviceShadowServer;
+import com.aibaixun.iotdm.server.DeviceShadowValue;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * perf 进程内 设备影子
+ * <p>替代 redis 实现，ingest 时直接写入本地 map，没有批量刷新</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class InMemoryDeviceShadowServer implements DeviceShadowServer {
+
+    private final Map<String, Map<String, DeviceShadowValue>> shadows = new ConcurrentHashMap<>();
+
+    private final Set<String> loaded = ConcurrentHashMap.newKeySet();
+
+
+    @Override
+    public void update(Collection<DevicePropertyReportEntity> entities) {
+        for (DevicePropertyReportEntity entity : entities) {
+            shadows.computeIfAbsent(entity.getDeviceId(), k -> new ConcurrentHashMap<>())
+                    .merge(entity.getPropertyId(), DeviceShadowValue.of(entity), DeviceShadowValue::newer);
+        }
+    }
+
+    @Override
+    public Map<String, DeviceShadowValue> getShadow(String deviceId) {
+        if (!loaded.contains(deviceId)) {
+            return null;
+        }
+        Map<String, DeviceShadowValue> shadow = shadows.get(deviceId);
+        return Objects.isNull(shadow) ? new HashMap<>() : new HashMap<>(shadow);
+    }
+
+    @Override
+    public Map<String, DeviceShadowValue> load(String deviceId, Collection<DevicePropertyReportEntity> entities) {
+        Map<String, DeviceShadowValue> shadow = shadows.computeIfAbsent(deviceId, k -> new ConcurrentHashMap<>());
+        entities.forEach(entity -> shadow.putIfAbsent(entity.getPropertyId(), DeviceShadowValue.of(entity)));
+        loaded.add(deviceId);
+        return new HashMap<>(shadow);
+    }
+}
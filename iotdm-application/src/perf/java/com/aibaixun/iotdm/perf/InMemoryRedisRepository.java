@@ -0,0 +1,86 @@
+package com.aibaixun.iotdm.perf;
+
+import com.aibaixun.common.redis.util.RedisRepository;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * perf 进程内 RedisRepository
+ * <p>覆盖业务用到的 kv 与 hash 操作，数据保存在本地 map；
+ * getRedisTemplate 仍返回原模板，只在管理接口中使用，perf 下不可用</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class InMemoryRedisRepository extends RedisRepository {
+
+    private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> expireAts = new ConcurrentHashMap<>();
+
+    private final Map<String, Map<String, Object>> hashes = new ConcurrentHashMap<>();
+
+
+    public InMemoryRedisRepository(RedisTemplate<String, Object> redisTemplate) {
+        super(redisTemplate);
+    }
+
+
+    @Override
+    public void setExpire(final String key, final Object value, final long time) {
+        if (Objects.isNull(value)) {
+            del(key);
+            return;
+        }
+        values.put(key, value);
+        expireAts.put(key, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(time));
+    }
+
+    @Override
+    public Object get(final String key) {
+        Long expireAt = expireAts.get(key);
+        if (Objects.nonNull(expireAt) && System.currentTimeMillis() > expireAt) {
+            del(key);
+            return null;
+        }
+        return values.get(key);
+    }
+
+    @Override
+    public void del(final String... keys) {
+        for (String key : keys) {
+            values.remove(key);
+            expireAts.remove(key);
+            hashes.remove(key);
+        }
+    }
+
+    @Override
+    public void putHashValue(String key, String hashKey, Object hashValue) {
+        if (Objects.isNull(hashValue)) {
+            delHashValues(key, hashKey);
+            return;
+        }
+        hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(hashKey, hashValue);
+    }
+
+    @Override
+    public Object getHashValues(String key, String hashKey) {
+        Map<String, Object> hash = hashes.get(key);
+        return Objects.isNull(hash) ? null : hash.get(hashKey);
+    }
+
+    @Override
+    public void delHashValues(String key, Object... hashKeys) {
+        Map<String, Object> hash = hashes.get(key);
+        if (Objects.isNull(hash)) {
+            return;
+        }
+        for (Object hashKey : hashKeys) {
+            hash.remove(String.valueOf(hashKey));
+        }
+    }
+}
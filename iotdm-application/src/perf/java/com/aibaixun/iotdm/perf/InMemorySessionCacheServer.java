@@ -0,0 +1,89 @@
+package com.aibaixun.iotdm.perf;
+
+import com.aibaixun.iotdm.constants.DataConstants;
+import com.aibaixun.iotdm.msg.TransportSessionInfo;
+import com.aibaixun.iotdm.msg.TransportSessionInfoHolder;
+import com.aibaixun.iotdm.service.SessionCacheServer;
+import com.aibaixun.iotdm.transport.SessionId;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * perf 进程内 session 缓存
+ * <p>替代 redis 实现，ttl 在读取时判断，不产生过期通知(离线由传输层空闲检测完成)</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class InMemorySessionCacheServer implements SessionCacheServer {
+
+    private final Map<String, CacheEntry> sessions = new ConcurrentHashMap<>();
+
+
+    @Override
+    public void addSessionCache(SessionId sessionId, TransportSessionInfo sessionInfo, long ttl) {
+        if (Objects.isNull(sessionInfo)) {
+            return;
+        }
+        sessions.put(generatorSessionKey(sessionId), new CacheEntry(sessionInfo, ttl));
+    }
+
+    @Override
+    public void removeSessionCache(SessionId sessionId) {
+        sessions.remove(generatorSessionKey(sessionId));
+    }
+
+    @Override
+    public void activitySessionCache(SessionId sessionId, long ttl) {
+        TransportSessionInfo sessionInfo = getSessionFromCache(sessionId);
+        TransportSessionInfoHolder.activity(sessionInfo);
+        addSessionCache(sessionId, sessionInfo, ttl);
+    }
+
+    @Override
+    public void activitySessionCacheBatch(Map<SessionId, TransportSessionInfo> sessionInfos, ToLongFunction<TransportSessionInfo> ttl, boolean recreate) {
+        sessionInfos.forEach((sessionId, sessionInfo) -> {
+            if (recreate || Objects.nonNull(getSessionFromCache(sessionId))) {
+                addSessionCache(sessionId, sessionInfo, ttl.applyAsLong(sessionInfo));
+            }
+        });
+    }
+
+    @Override
+    public TransportSessionInfo getSessionFromCache(SessionId sessionId) {
+        String key = generatorSessionKey(sessionId);
+        CacheEntry entry = sessions.get(key);
+        if (Objects.isNull(entry)) {
+            return null;
+        }
+        if (entry.isExpired()) {
+            sessions.remove(key, entry);
+            return null;
+        }
+        return entry.sessionInfo;
+    }
+
+    private String generatorSessionKey(SessionId sessionId) {
+        return DataConstants.IOT_SESSION_CACHE_KEY_PREFIX + sessionId.getProductId() + ":" + sessionId.getDeviceId();
+    }
+
+
+    private static class CacheEntry {
+
+        private final TransportSessionInfo sessionInfo;
+
+        private final long expireAt;
+
+        private CacheEntry(TransportSessionInfo sessionInfo, long ttl) {
+            this.sessionInfo = sessionInfo;
+            this.expireAt = ttl > 0 ? System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttl) : Long.MAX_VALUE;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expireAt;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.aibaixun.iotdm.perf;
+
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.messaging.Message;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * perf test binder 转发
+ * <p>test binder 只把输出放入 {@link OutputDestination}，不会投递给同名输入；
+ * 每个目的地一个线程，把输出消息原样(含 header)转发到 {@link InputDestination}，替代 rabbit 的 exchange -> queue</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class PerfBinderBridge {
+
+    private final Logger log = LoggerFactory.getLogger(PerfBinderBridge.class);
+
+    private final InputDestination inputDestination;
+
+    private final OutputDestination outputDestination;
+
+    private final List<String> destinations;
+
+    private final long pollTimeout;
+
+    private ExecutorService bridgeExecutor;
+
+    private volatile boolean running;
+
+
+    public PerfBinderBridge(InputDestination inputDestination, OutputDestination outputDestination, List<String> destinations, long pollTimeout) {
+        this.inputDestination = inputDestination;
+        this.outputDestination = outputDestination;
+        this.destinations = destinations;
+        this.pollTimeout = pollTimeout;
+    }
+
+
+    public void start() {
+        running = true;
+        bridgeExecutor = Executors.newFixedThreadPool(destinations.size(), IotDmThreadFactory.forName("perf-binder-bridge"));
+        destinations.forEach(destination -> bridgeExecutor.execute(() -> bridge(destination)));
+        log.info("PerfBinderBridge.start >> bridge destinations:{}", destinations);
+    }
+
+    public void stop() {
+        running = false;
+        bridgeExecutor.shutdown();
+        try {
+            bridgeExecutor.awaitTermination(pollTimeout * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private void bridge(String destination) {
+        while (running) {
+            try {
+                Message<byte[]> message = outputDestination.receive(pollTimeout, destination);
+                if (Objects.nonNull(message)) {
+                    inputDestination.send(message, destination);
+                }
+            } catch (Exception e) {
+                log.warn("PerfBinderBridge.bridge >> destination:{} forward error,msg is:{}", destination, e.getMessage());
+            }
+        }
+    }
+}
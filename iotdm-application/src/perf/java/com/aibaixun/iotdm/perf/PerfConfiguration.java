@@ -0,0 +1,69 @@
+package com.aibaixun.iotdm.perf;
+
+import com.aibaixun.common.redis.util.RedisRepository;
+import com.aibaixun.iotdm.server.DeviceShadowServer;
+import com.aibaixun.iotdm.service.SessionCacheServer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Arrays;
+
+/**
+ * perf 性能测试配置
+ * <p>只在 mvn -Pperf 构建且 spring.profiles.active=perf 时生效：
+ * 内嵌 h2 代替 mysql，进程内 RedisRepository/SessionCacheServer/DeviceShadowServer 代替 redis，stream test binder 代替 rabbit</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@Configuration
+@Profile("perf")
+@Import(TestChannelBinderConfiguration.class)
+public class PerfConfiguration {
+
+    /**
+     * 需要转发的 stream 目的地，与 application-perf.yml 中 bindings 的 destination 对应
+     */
+    private static final String[] DESTINATIONS = {"session_data", "property_ts_data", "message_ts_data", "entity_data", "downlink_data"};
+
+    @Value("${perf.bridge_poll_timeout:100}")
+    private long bridgePollTimeout;
+
+
+    @Bean
+    static PerfDataInitializer perfDataInitializer(Environment environment) {
+        return new PerfDataInitializer(environment.getProperty("perf.devices", Integer.class, 100000),
+                environment.getProperty("perf.device_offset", Integer.class, 0));
+    }
+
+    @Bean
+    @Primary
+    SessionCacheServer inMemorySessionCacheServer() {
+        return new InMemorySessionCacheServer();
+    }
+
+    @Bean
+    @Primary
+    DeviceShadowServer inMemoryDeviceShadowServer() {
+        return new InMemoryDeviceShadowServer();
+    }
+
+    @Bean
+    @Primary
+    RedisRepository inMemoryRedisRepository(RedisTemplate<String, Object> redisTemplate) {
+        return new InMemoryRedisRepository(redisTemplate);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    PerfBinderBridge perfBinderBridge(InputDestination inputDestination, OutputDestination outputDestination) {
+        return new PerfBinderBridge(inputDestination, outputDestination, Arrays.asList(DESTINATIONS), bridgePollTimeout);
+    }
+}
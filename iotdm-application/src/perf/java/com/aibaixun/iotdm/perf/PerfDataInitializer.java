@@ -0,0 +1,60 @@
+package com.aibaixun.iotdm.perf;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+
+/**
+ * perf 内嵌数据库初始化
+ * <p>DataSource 初始化完成后立即建表并写入基础数据与模拟设备，保证早于任何 mapper 使用；
+ * 设备凭证与 iotdm-simulator 默认模板一致</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class PerfDataInitializer implements BeanPostProcessor {
+
+    private final Logger log = LoggerFactory.getLogger(PerfDataInitializer.class);
+
+    private static final String INSERT_DEVICES = "INSERT INTO t_device (id, product_id, device_code, device_label, device_status, node_type, auth_type, "
+            + "device_secret, deleted, invented, create_time, creator, tenant_id) "
+            + "SELECT CONCAT('sim-device-', x), 'perf-product', CONCAT('sim-code-', x), CONCAT('sim-device-', x), 'OFFLINE', 'ENDPOINT', 'SECRET', "
+            + "CONCAT('sim-secret-', x), 0, 0, 0, 'perf', 'perf-tenant' FROM SYSTEM_RANGE(?, ?)";
+
+    private final int devices;
+
+    private final int deviceOffset;
+
+    private boolean initialized;
+
+
+    public PerfDataInitializer(int devices, int deviceOffset) {
+        this.devices = devices;
+        this.deviceOffset = deviceOffset;
+    }
+
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !initialized) {
+            initialized = true;
+            initialize((DataSource) bean);
+        }
+        return bean;
+    }
+
+    private void initialize(DataSource dataSource) {
+        long start = System.currentTimeMillis();
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("db/perf/schema.sql"), new ClassPathResource("db/perf/data.sql"));
+        populator.execute(dataSource);
+        if (devices > 0) {
+            new JdbcTemplate(dataSource).update(INSERT_DEVICES, deviceOffset, deviceOffset + devices - 1);
+        }
+        log.info("PerfDataInitializer.initialize >> perf database ready,devices:{},offset:{},cost:{}ms", devices, deviceOffset, System.currentTimeMillis() - start);
+    }
+}
@@ -0,0 +1,13 @@
+-- perf 性能测试 基础数据: 一个 json 产品，一个物模型，属性与 iotdm-simulator 默认 json 模板对应
+-- 设备由 PerfDataInitializer 按 perf.devices 批量生成
+
+INSERT INTO t_product (id, product_label, protocol_type, data_format, description, device_type, deleted, create_time, creator, tenant_id)
+VALUES ('perf-product', 'perf-product', 'MQTT', 'JSON', 'perf test product', 'simulator', 0, 0, 'perf', 'perf-tenant');
+
+INSERT INTO t_product_model (id, product_id, model_label, model_type, description, deleted, create_time, creator, tenant_id)
+VALUES ('perf-model', 'perf-product', 'environment', 'sensor', 'perf test model', 0, 0, 'perf', 'perf-tenant');
+
+INSERT INTO t_model_property (id, product_model_id, property_label, data_type, scope, description, create_time, creator, tenant_id) VALUES
+('perf-property-temperature', 'perf-model', 'temperature', 'DECIMAL', 'R', 'temperature', 0, 'perf', 'perf-tenant'),
+('perf-property-humidity', 'perf-model', 'humidity', 'INT', 'R', 'humidity', 0, 'perf', 'perf-tenant'),
+('perf-property-seq', 'perf-model', 'seq', 'INT', 'R', 'message sequence', 0, 'perf', 'perf-tenant');
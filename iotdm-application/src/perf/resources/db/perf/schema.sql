@@ -0,0 +1,221 @@
+-- perf 性能测试 h2(mysql 模式) 表结构，字段与实体保持一致
+
+CREATE TABLE IF NOT EXISTS t_product (
+    id VARCHAR(64) PRIMARY KEY,
+    product_label VARCHAR(128),
+    protocol_type VARCHAR(32),
+    data_format VARCHAR(32),
+    description VARCHAR(512),
+    device_type VARCHAR(128),
+    deleted TINYINT DEFAULT 0,
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_product_model (
+    id VARCHAR(64) PRIMARY KEY,
+    product_id VARCHAR(64),
+    model_label VARCHAR(128),
+    model_type VARCHAR(128),
+    description VARCHAR(512),
+    deleted TINYINT DEFAULT 0,
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+CREATE INDEX IF NOT EXISTS idx_product_model_product ON t_product_model (product_id);
+
+CREATE TABLE IF NOT EXISTS t_model_property (
+    id VARCHAR(64) PRIMARY KEY,
+    product_model_id VARCHAR(64),
+    property_label VARCHAR(128),
+    data_type VARCHAR(32),
+    scope VARCHAR(32),
+    max_value DECIMAL(20, 6),
+    min_value DECIMAL(20, 6),
+    property_length INT,
+    description VARCHAR(512),
+    expression VARCHAR(512),
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+CREATE INDEX IF NOT EXISTS idx_model_property_model ON t_model_property (product_model_id);
+
+CREATE TABLE IF NOT EXISTS t_model_command (
+    id VARCHAR(64) PRIMARY KEY,
+    product_model_id VARCHAR(64),
+    command_label VARCHAR(128),
+    params CLOB,
+    responses CLOB,
+    description VARCHAR(512),
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_product_plugin_js (
+    id VARCHAR(64) PRIMARY KEY,
+    product_id VARCHAR(64),
+    js_script_body CLOB,
+    deployment VARCHAR(32),
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_device (
+    id VARCHAR(64) PRIMARY KEY,
+    product_id VARCHAR(64),
+    device_code VARCHAR(128),
+    device_label VARCHAR(128),
+    device_status VARCHAR(32),
+    node_type VARCHAR(32),
+    description VARCHAR(512),
+    gateway_id VARCHAR(64),
+    auth_type VARCHAR(32),
+    device_secret VARCHAR(128),
+    last_connect_ts BIGINT,
+    last_activity_ts BIGINT,
+    last_remote_address VARCHAR(128),
+    deleted TINYINT DEFAULT 0,
+    invented TINYINT DEFAULT 0,
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_device_group (
+    id VARCHAR(64) PRIMARY KEY,
+    group_label VARCHAR(128),
+    description VARCHAR(512),
+    super_group_id VARCHAR(64),
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_device_group_relation (
+    id VARCHAR(64) PRIMARY KEY,
+    group_id VARCHAR(64),
+    device_id VARCHAR(64),
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_device_property_report (
+    device_id VARCHAR(64) NOT NULL,
+    property_id VARCHAR(64) NOT NULL,
+    property_label VARCHAR(128),
+    property_value VARCHAR(1024),
+    ts BIGINT,
+    PRIMARY KEY (device_id, property_id)
+);
+
+CREATE TABLE IF NOT EXISTS t_device_command_send (
+    id VARCHAR(64) PRIMARY KEY,
+    device_id VARCHAR(64),
+    command_id VARCHAR(64),
+    command_label VARCHAR(128),
+    params CLOB,
+    responses CLOB,
+    ts BIGINT,
+    resp_ts BIGINT,
+    req_id INT,
+    send_status VARCHAR(32),
+    msg_id INT,
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_device_config_send (
+    id VARCHAR(64) PRIMARY KEY,
+    device_id VARCHAR(64),
+    payload CLOB,
+    send_status VARCHAR(32),
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_message_trace (
+    id VARCHAR(64) PRIMARY KEY,
+    device_id VARCHAR(64),
+    business_type VARCHAR(32),
+    business_step VARCHAR(64),
+    business_details CLOB,
+    message_status TINYINT,
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_ota_package (
+    id VARCHAR(64) PRIMARY KEY,
+    product_id VARCHAR(64),
+    ota_package_type VARCHAR(32),
+    ota_package_label VARCHAR(128),
+    ota_package_version VARCHAR(64),
+    file_url VARCHAR(512),
+    file_name VARCHAR(256),
+    content_type VARCHAR(128),
+    data BLOB,
+    check_num VARCHAR(128),
+    data_size BIGINT,
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_forward_rule (
+    id VARCHAR(64) PRIMARY KEY,
+    rule_label VARCHAR(128),
+    description VARCHAR(512),
+    subject_resource VARCHAR(32),
+    subject_event VARCHAR(32),
+    rule_status TINYINT,
+    deleted TINYINT DEFAULT 0,
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_forward_target (
+    id VARCHAR(64) PRIMARY KEY,
+    forward_rule_id VARCHAR(64),
+    rule_resource_id VARCHAR(64),
+    configuration CLOB,
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
+
+CREATE TABLE IF NOT EXISTS t_rule_resource (
+    id VARCHAR(64) PRIMARY KEY,
+    resource_label VARCHAR(128),
+    resource_type VARCHAR(32),
+    configuration CLOB,
+    deleted TINYINT DEFAULT 0,
+    resource_status TINYINT,
+    create_time BIGINT,
+    update_time BIGINT,
+    creator VARCHAR(64),
+    tenant_id VARCHAR(64)
+);
@@ -0,0 +1,163 @@
+package com.aibaixun.iotdm.business;
+
+import com.aibaixun.iotdm.data.ProductModelEntityInfo;
+import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
+import com.aibaixun.iotdm.entity.ModelPropertyEntity;
+import com.aibaixun.iotdm.entity.ProductEntity;
+import com.aibaixun.iotdm.enums.DataType;
+import com.aibaixun.iotdm.mapper.ProductMapper;
+import com.aibaixun.iotdm.mapper.ProductModelMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 属性匹配 流式解析与 JsonNode 解析结果一致
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class MatchPropertyParseTest {
+
+    private static final String PRODUCT_ID = "product";
+
+    private static final String DEVICE_ID = "device";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private MatchBusinessProcessor matchBusinessProcessor;
+
+    private ModelMatchIndex matchIndex;
+
+
+    @Before
+    public void setup() {
+        ProductEntity product = new ProductEntity();
+        product.setId(PRODUCT_ID);
+        // m1 与 m2 有同名属性 temp、code，类型不同
+        List<ProductModelEntityInfo> models = Arrays.asList(
+                model("m1",
+                        property("m1-temp", "temp", DataType.DECIMAL, "#temp * 2"),
+                        property("m1-count", "count", DataType.INT, null),
+                        property("m1-name", "name", DataType.STR, null),
+                        property("m1-flag", "flag", DataType.INT, null),
+                        property("m1-code", "code", DataType.STR, null)),
+                model("m2",
+                        property("m2-temp", "temp", DataType.INT, null),
+                        property("m2-count2", "count2", DataType.INT, "#count2 + 1"),
+                        property("m2-big", "big", DataType.DECIMAL, null),
+                        property("m2-code", "code", DataType.JSON, null)));
+
+        ProductSnapshotCache productSnapshotCache = new ProductSnapshotCache();
+        productSnapshotCache.setProductMapper(stub(ProductMapper.class, "selectById", product));
+        productSnapshotCache.setProductModelMapper(stub(ProductModelMapper.class, "selectProductModelInfoByProductId", models));
+        productSnapshotCache.init();
+        matchIndex = productSnapshotCache.getIndex(PRODUCT_ID);
+
+        matchBusinessProcessor = new MatchBusinessProcessor();
+        matchBusinessProcessor.setProductSnapshotCache(productSnapshotCache);
+        matchBusinessProcessor.setObjectMapper(objectMapper);
+    }
+
+
+    @Test
+    public void testModelLabelAfterFields() throws IOException {
+        assertSameMatch("{\"temp\":21.5,\"count\":12,\"name\":\"a\",\"code\":\"c\",\"modelId\":\"m1\"}", 4);
+        assertSameMatch("{\"temp\":21.5,\"code\":\"{\\\"k\\\":1}\",\"count2\":3,\"modelId\":\"m2\"}", 3);
+    }
+
+    @Test
+    public void testModelLabelVariants() throws IOException {
+        assertSameMatch("{\"modelId\":\"unknown\",\"temp\":1,\"count\":2}", 0);
+        assertSameMatch("{\"temp\":1,\"count\":2,\"modelId\":\"unknown\"}", 0);
+        assertSameMatch("{\"modelId\":\"\",\"temp\":1,\"count\":2}", 3);
+        assertSameMatch("{\"modelId\":null,\"temp\":1,\"count\":2}", 3);
+        assertSameMatch("{\"modelId\":12,\"temp\":1}", 0);
+        assertSameMatch("{\"modelId\":{\"id\":\"m1\"},\"temp\":1}", 2);
+    }
+
+    @Test
+    public void testWithoutModelLabel() throws IOException {
+        assertSameMatch("{\"temp\":\"36.6\",\"count\":\"42\",\"name\":7,\"code\":\"x\",\"big\":\"1e3\",\"unknown\":1}", 7);
+    }
+
+    @Test
+    public void testNestedValues() throws IOException {
+        assertSameMatch("{\"temp\":{\"a\":1},\"count\":[1,2],\"name\":{\"x\":[1,{\"y\":2}]},\"code\":[\"a\"],\"flag\":{}," +
+                "\"other\":{\"temp\":5,\"count\":[{\"count\":1}]},\"count2\":[]}", 8);
+    }
+
+    @Test
+    public void testBoolNullAndBigNumbers() throws IOException {
+        assertSameMatch("{\"count\":12345678901234567890,\"big\":9223372036854775807,\"temp\":true,\"name\":null,\"flag\":false,\"count2\":null," +
+                "\"code\":true,\"modelId\":\"m1\"}", 5);
+        assertSameMatch("{\"count\":9223372036854775807,\"temp\":-2147483649,\"name\":1.10,\"flag\":2.9,\"big\":123456789012345678901234567890}", 6);
+        assertSameMatch("{\"count\":-1e20,\"temp\":false,\"name\":true,\"count2\":2147483647,\"big\":null}", 6);
+    }
+
+    @Test
+    public void testArrayPayloads() throws IOException {
+        assertSameMatch("[{\"temp\":1,\"modelId\":\"m2\"},3,\"x\",[{\"temp\":9}],null,{\"count\":2.7,\"name\":1.10},{}]", 3);
+        assertSameMatch("[]", 0);
+        assertSameMatch("5", 0);
+    }
+
+
+    private void assertSameMatch(String payload, int expectedSize) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        List<DevicePropertyReportEntity> streamResults = new ArrayList<>();
+        matchBusinessProcessor.doMatchPropertyStream(DEVICE_ID, bytes, matchIndex, streamResults);
+        List<DevicePropertyReportEntity> treeResults = new ArrayList<>();
+        matchBusinessProcessor.doMatchPropertyTree(DEVICE_ID, objectMapper.readTree(bytes), matchIndex, treeResults);
+        assertEquals(payload, describe(treeResults), describe(streamResults));
+        assertEquals(payload, expectedSize, streamResults.size());
+    }
+
+    /**
+     * ts 为匹配时的当前时间，不参与比较；值带上类型，避免 1 与 1.0 被视为相同
+     */
+    private static List<String> describe(List<DevicePropertyReportEntity> entities) {
+        List<String> result = new ArrayList<>(entities.size());
+        for (DevicePropertyReportEntity entity : entities) {
+            Object value = entity.getPropertyValue();
+            result.add(entity.getDeviceId() + "|" + entity.getPropertyId() + "|" + entity.getPropertyLabel() + "|"
+                    + (value == null ? "null" : value.getClass().getSimpleName() + ":" + value));
+        }
+        return result;
+    }
+
+    private static ProductModelEntityInfo model(String modelLabel, ModelPropertyEntity... properties) {
+        ProductModelEntityInfo model = new ProductModelEntityInfo();
+        model.setId("model-" + modelLabel);
+        model.setProductId(PRODUCT_ID);
+        model.setModelLabel(modelLabel);
+        for (ModelPropertyEntity property : properties) {
+            property.setProductModelId(model.getId());
+        }
+        model.setProperties(Arrays.asList(properties));
+        return model;
+    }
+
+    private static ModelPropertyEntity property(String id, String label, DataType dataType, String expression) {
+        ModelPropertyEntity property = new ModelPropertyEntity();
+        property.setId(id);
+        property.setPropertyLabel(label);
+        property.setDataType(dataType);
+        property.setExpression(expression);
+        return property;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, String methodName, Object result) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> methodName.equals(method.getName()) ? result : null);
+    }
+}
@@ -0,0 +1,209 @@
+package com.aibaixun.iotdm.history;
+
+import com.aibaixun.iotdm.msg.TsData;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 历史数据块 编解码往返
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class ChunkCodecTest {
+
+    private static final long BASE_TS = 1650000000000L;
+
+    private static final long BASE_DELTA = 1000L;
+
+
+    @Test
+    public void testBitsRoundTrip() {
+        BitWriter writer = new BitWriter(1);
+        writer.writeBit(true);
+        writer.writeBits(0b101, 3);
+        writer.writeBits(-1L, 64);
+        writer.writeBits(0x5A, 7);
+        writer.writeBits(Long.MIN_VALUE, 64);
+        writer.writeBit(false);
+        writer.writeBits(0x123456789L, 33);
+        assertEquals((1 + 3 + 64 + 7 + 64 + 1 + 33 + 7) / 8, writer.sizeInBytes());
+
+        BitReader reader = new BitReader(writer.toByteArray());
+        assertTrue(reader.readBit());
+        assertEquals(0b101, reader.readBits(3));
+        assertEquals(-1L, reader.readBits(64));
+        assertEquals(0x5A, reader.readBits(7));
+        assertEquals(Long.MIN_VALUE, reader.readBits(64));
+        assertFalse(reader.readBit());
+        assertEquals(0x123456789L, reader.readBits(33));
+    }
+
+    @Test
+    public void testDeltaOfDeltaBucketBoundaries() {
+        long[] dods = {0, 63, 64, -64, -65, 255, 256, -256, -257, 2047, 2048, -2048, -2049,
+                Integer.MAX_VALUE, (long) Integer.MAX_VALUE + 1, Integer.MIN_VALUE, (long) Integer.MIN_VALUE - 1};
+        // 基准间隔大于所有 |dod|，每个 dod 之后紧跟 -dod 回到基准间隔，两个方向的边界都覆盖且时间戳单调
+        long baseDelta = 1L << 32;
+        List<Long> timestamps = new ArrayList<>();
+        long ts = BASE_TS;
+        timestamps.add(ts);
+        ts += baseDelta;
+        timestamps.add(ts);
+        for (long dod : dods) {
+            ts += baseDelta + dod;
+            timestamps.add(ts);
+            ts += baseDelta;
+            timestamps.add(ts);
+        }
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < timestamps.size(); i++) {
+            values.add((long) i);
+        }
+        assertRoundTrip(HistoryValueKind.LONG, timestamps, values);
+    }
+
+    @Test
+    public void testLongValues() {
+        List<Object> values = Arrays.asList(0L, 1L, -1L, Long.MAX_VALUE, Long.MIN_VALUE, 42L, 42L, 43L, -43L, 1L << 40);
+        assertRoundTrip(HistoryValueKind.LONG, timestamps(values.size()), values);
+    }
+
+    @Test
+    public void testDoubleValues() {
+        List<Object> values = Arrays.asList(1.5d, -1.5d, -0.0d, 0.0d, Double.NaN, Double.NaN, -273.15d,
+                Double.MAX_VALUE, -Double.MIN_VALUE, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 3.141592653589793d);
+        assertRoundTrip(HistoryValueKind.DOUBLE, timestamps(values.size()), values);
+    }
+
+    @Test
+    public void testFullWidthXor() {
+        // 与上一个值 xor 后 64 位全部有效：前导零与尾随零都为 0
+        long a = 0x0000000000000001L;
+        long b = 0x8000000000000000L;
+        List<Object> values = Arrays.asList(a, b, a, b, ~a, a);
+        assertRoundTrip(HistoryValueKind.LONG, timestamps(values.size()), values);
+    }
+
+    @Test
+    public void testWindowReuse() {
+        // 后续 xor 落在第一个窗口内时沿用窗口，'10' 控制位
+        List<Object> values = new ArrayList<>();
+        long base = 0x1000_0000_0000_0000L;
+        values.add(base);
+        values.add(base ^ 0x0000_00FF_FF00_0000L);
+        values.add(base ^ 0x0000_0010_0000_0000L);
+        values.add(base ^ 0x0000_0001_0100_0000L);
+        values.add(base ^ 0x0000_00F0_0F00_0000L);
+        // 超出窗口 重新写入窗口
+        values.add(base ^ 0x00FF_0000_0000_00FFL);
+        values.add(base ^ 0x0001_0000_0000_0001L);
+        assertRoundTrip(HistoryValueKind.LONG, timestamps(values.size()), values);
+    }
+
+    @Test
+    public void testTextValues() {
+        List<Object> values = Arrays.asList("on", null, "", "温度过高", "emoji 😀", null, repeat('x', 300));
+        assertRoundTrip(HistoryValueKind.TEXT, timestamps(values.size()), values);
+    }
+
+    @Test
+    public void testRangeClipping() {
+        List<Long> timestamps = timestamps(10);
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < timestamps.size(); i++) {
+            values.add((long) i * 10);
+        }
+        ChunkEncoder encoder = encode(HistoryValueKind.LONG, timestamps, values);
+
+        List<TsData> points = new ArrayList<>();
+        ChunkDecoder.decode("p", HistoryValueKind.LONG, encoder.getCount(), encoder.toByteArray(), timestamps.get(3), timestamps.get(6), points);
+        assertEquals(4, points.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(timestamps.get(i + 3), points.get(i).getTs());
+            assertEquals(values.get(i + 3), points.get(i).getTsValue());
+        }
+
+        points.clear();
+        ChunkDecoder.decode("p", HistoryValueKind.LONG, encoder.getCount(), encoder.toByteArray(), timestamps.get(3) + 1, timestamps.get(6) - 1, points);
+        assertEquals(2, points.size());
+        assertEquals(timestamps.get(4), points.get(0).getTs());
+        assertEquals(timestamps.get(5), points.get(1).getTs());
+
+        points.clear();
+        ChunkDecoder.decode("p", HistoryValueKind.LONG, encoder.getCount(), encoder.toByteArray(), timestamps.get(9) + 1, Long.MAX_VALUE, points);
+        assertTrue(points.isEmpty());
+    }
+
+    @Test
+    public void testAccepts() {
+        ChunkEncoder encoder = new ChunkEncoder(HistoryValueKind.LONG, 1);
+        assertTrue(encoder.accepts(BASE_TS, HistoryValueKind.LONG, 1));
+        encoder.append(BASE_TS, 1L);
+        assertTrue(encoder.accepts(BASE_TS, HistoryValueKind.LONG, 1));
+        assertFalse(encoder.accepts(BASE_TS - 1, HistoryValueKind.LONG, 1));
+        assertFalse(encoder.accepts(BASE_TS + 1, HistoryValueKind.DOUBLE, 1));
+        assertFalse(encoder.accepts(BASE_TS + 1, HistoryValueKind.LONG, 2));
+    }
+
+
+    private static void assertRoundTrip(HistoryValueKind kind, List<Long> timestamps, List<Object> values) {
+        ChunkEncoder encoder = encode(kind, timestamps, values);
+        assertEquals(timestamps.size(), encoder.getCount());
+        assertEquals((long) timestamps.get(0), encoder.getFirstTs());
+        assertEquals((long) timestamps.get(timestamps.size() - 1), encoder.getLastTs());
+
+        List<TsData> points = new ArrayList<>();
+        ChunkDecoder.decode("p", kind, encoder.getCount(), encoder.toByteArray(), Long.MIN_VALUE, Long.MAX_VALUE, points);
+        assertEquals(timestamps.size(), points.size());
+        for (int i = 0; i < points.size(); i++) {
+            TsData point = points.get(i);
+            assertEquals("p", point.getTsLabel());
+            assertEquals(timestamps.get(i), point.getTs());
+            Object expected = values.get(i);
+            if (expected == null) {
+                assertNull(point.getTsValue());
+            } else if (expected instanceof Double) {
+                assertEquals(Double.doubleToLongBits((Double) expected), Double.doubleToLongBits((Double) point.getTsValue()));
+            } else if (expected instanceof String) {
+                assertArrayEquals(((String) expected).getBytes(StandardCharsets.UTF_8),
+                        ((String) point.getTsValue()).getBytes(StandardCharsets.UTF_8));
+            } else {
+                assertEquals(expected, point.getTsValue());
+            }
+        }
+    }
+
+    private static ChunkEncoder encode(HistoryValueKind kind, List<Long> timestamps, List<Object> values) {
+        ChunkEncoder encoder = new ChunkEncoder(kind, 0);
+        for (int i = 0; i < timestamps.size(); i++) {
+            encoder.append(timestamps.get(i), values.get(i));
+        }
+        return encoder;
+    }
+
+    private static List<Long> timestamps(int count) {
+        List<Long> timestamps = new ArrayList<>(count);
+        long ts = BASE_TS;
+        for (int i = 0; i < count; i++) {
+            timestamps.add(ts);
+            ts += BASE_DELTA + (i % 3) * 7;
+        }
+        return timestamps;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
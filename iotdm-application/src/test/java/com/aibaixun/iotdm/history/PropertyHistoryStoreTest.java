@@ -0,0 +1,116 @@
+package com.aibaixun.iotdm.history;
+
+import com.aibaixun.iotdm.entity.DevicePropertyReportEntity;
+import com.aibaixun.iotdm.mapper.DevicePropertyHistoryMapper;
+import com.aibaixun.iotdm.msg.TsData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 历史数据查询 合并本节点未写入分表的块
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class PropertyHistoryStoreTest {
+
+    private static final String DEVICE_ID = "device";
+
+    private static final String PROPERTY_ID = "property";
+
+    private static final long BASE_TS = 1650000000000L;
+
+    private PropertyHistoryStore store;
+
+
+    @Before
+    public void setup() {
+        store = new PropertyHistoryStore();
+        // 分表中没有数据，所有点都来自内存中的块
+        store.setHistoryMapper((DevicePropertyHistoryMapper) Proxy.newProxyInstance(DevicePropertyHistoryMapper.class.getClassLoader(),
+                new Class<?>[]{DevicePropertyHistoryMapper.class},
+                (proxy, method, args) -> List.class.equals(method.getReturnType()) ? Collections.emptyList() : null));
+        store.setMeterRegistry(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(store, "chunkPoints", 4);
+        ReflectionTestUtils.setField(store, "flushInterval", 3600000L);
+        store.init();
+    }
+
+    @After
+    public void tearDown() {
+        store.destroy();
+    }
+
+
+    @Test
+    public void testQueryReadsSealedAndOpenChunks() {
+        // 4 个点一块：两个等待写入的封存块 + 一个打开中的块
+        store.append(points(DEVICE_ID, 10));
+        store.append(points("other", 3));
+        List<TsData> points = store.query(DEVICE_ID, PROPERTY_ID, BASE_TS, BASE_TS + 60000);
+        assertEquals(10, points.size());
+        for (int i = 0; i < points.size(); i++) {
+            assertEquals(BASE_TS + i * 1000L, (long) points.get(i).getTs());
+            assertEquals((long) i, points.get(i).getTsValue());
+        }
+
+        points = store.query(DEVICE_ID, PROPERTY_ID, BASE_TS + 5000, BASE_TS + 8500);
+        assertEquals(4, points.size());
+        assertEquals(BASE_TS + 5000, (long) points.get(0).getTs());
+        assertEquals(BASE_TS + 8000, (long) points.get(3).getTs());
+    }
+
+    @Test
+    public void testQueryLimit() {
+        ReflectionTestUtils.setField(store, "queryLimit", 6);
+        store.append(points(DEVICE_ID, 10));
+        List<TsData> points = store.query(DEVICE_ID, PROPERTY_ID, BASE_TS, BASE_TS + 60000);
+        assertEquals(6, points.size());
+        assertEquals(BASE_TS + 5000, (long) points.get(5).getTs());
+    }
+
+    @Test
+    public void testDownsampleAcrossChunks() {
+        store.append(points(DEVICE_ID, 10));
+        // 桶间隔 4 秒：[0,3] [4,7] [8,9]，与块的边界无关
+        List<TsData> sums = store.downsample(DEVICE_ID, PROPERTY_ID, BASE_TS, BASE_TS + 60000, 4000, HistoryAggregation.SUM);
+        assertEquals(3, sums.size());
+        assertEquals(BASE_TS, (long) sums.get(0).getTs());
+        assertEquals(6d, sums.get(0).getTsValue());
+        assertEquals(22d, sums.get(1).getTsValue());
+        assertEquals(17d, sums.get(2).getTsValue());
+
+        List<TsData> lasts = store.downsample(DEVICE_ID, PROPERTY_ID, BASE_TS + 1000, BASE_TS + 60000, 4000, HistoryAggregation.LAST);
+        assertEquals(3, lasts.size());
+        assertEquals(3L, lasts.get(0).getTsValue());
+        assertEquals(9L, lasts.get(2).getTsValue());
+
+        List<TsData> counts = store.downsample(DEVICE_ID, PROPERTY_ID, BASE_TS + 1000, BASE_TS + 60000, 4000, HistoryAggregation.COUNT);
+        assertEquals(3L, counts.get(0).getTsValue());
+        assertEquals(2L, counts.get(2).getTsValue());
+    }
+
+
+    private static List<DevicePropertyReportEntity> points(String deviceId, int count) {
+        List<DevicePropertyReportEntity> entities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            DevicePropertyReportEntity entity = new DevicePropertyReportEntity();
+            entity.setDeviceId(deviceId);
+            entity.setPropertyId(PROPERTY_ID);
+            entity.setPropertyLabel("temp");
+            entity.setPropertyValue((long) i);
+            entity.setTs(BASE_TS + i * 1000L);
+            entities.add(entity);
+        }
+        return entities;
+    }
+}
@@ -0,0 +1,110 @@
+package com.aibaixun.iotdm.benchmark;
+
+import com.aibaixun.iotdm.data.ProductEntityInfo;
+import com.aibaixun.iotdm.data.ProductModelEntityInfo;
+import com.aibaixun.iotdm.entity.ModelPropertyEntity;
+import com.aibaixun.iotdm.entity.ProductEntity;
+import com.aibaixun.iotdm.enums.DataFormat;
+import com.aibaixun.iotdm.enums.DataType;
+import com.aibaixun.iotdm.enums.ProtocolType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试 数据
+ * <p>产品 5 个模型，每个模型 10 个属性，类型与表达式比例接近线上产品</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public final class BenchmarkData {
+
+    public static final String PRODUCT_ID = "bench-product";
+
+    public static final String DEVICE_ID = "bench-device";
+
+    public static final int MODEL_COUNT = 5;
+
+    public static final int PROPERTY_PER_MODEL = 10;
+
+    private static final DataType[] DATA_TYPES = {DataType.INT, DataType.DECIMAL, DataType.STR, DataType.INT, DataType.DECIMAL};
+
+    private BenchmarkData() {
+    }
+
+    public static String modelLabel(int model) {
+        return "model" + model;
+    }
+
+    public static String propertyLabel(int model, int property) {
+        return "m" + model + "p" + property;
+    }
+
+    /**
+     * 产品及物模型，每 5 个属性中有 1 个带转换表达式
+     * @return 产品信息
+     */
+    public static ProductEntityInfo productInfo() {
+        ProductEntity product = new ProductEntity();
+        product.setId(PRODUCT_ID);
+        product.setProductLabel("bench");
+        product.setProtocolType(ProtocolType.MQTT);
+        product.setDataFormat(DataFormat.JSON);
+        List<ProductModelEntityInfo> models = new ArrayList<>(MODEL_COUNT);
+        for (int m = 0; m < MODEL_COUNT; m++) {
+            ProductModelEntityInfo model = new ProductModelEntityInfo();
+            model.setId("model-" + m);
+            model.setProductId(PRODUCT_ID);
+            model.setModelLabel(modelLabel(m));
+            List<ModelPropertyEntity> properties = new ArrayList<>(PROPERTY_PER_MODEL);
+            for (int p = 0; p < PROPERTY_PER_MODEL; p++) {
+                ModelPropertyEntity property = new ModelPropertyEntity();
+                String label = propertyLabel(m, p);
+                DataType dataType = DATA_TYPES[p % DATA_TYPES.length];
+                property.setId("property-" + m + "-" + p);
+                property.setProductModelId(model.getId());
+                property.setPropertyLabel(label);
+                property.setDataType(dataType);
+                if (p % 5 == 0 && !DataType.STR.equals(dataType)) {
+                    property.setExpression("#" + label + " * 100");
+                }
+                properties.add(property);
+            }
+            model.setProperties(properties);
+            models.add(model);
+        }
+        return new ProductEntityInfo(product, models);
+    }
+
+    /**
+     * 单个模型全部属性的上报 json
+     * @param withModelLabel 是否携带 modelId
+     * @return json
+     */
+    public static String propertyJson(boolean withModelLabel) {
+        StringBuilder builder = new StringBuilder(512).append('{');
+        if (withModelLabel) {
+            builder.append("\"modelId\":\"").append(modelLabel(0)).append("\",");
+        }
+        for (int p = 0; p < PROPERTY_PER_MODEL; p++) {
+            if (p > 0) {
+                builder.append(',');
+            }
+            builder.append('"').append(propertyLabel(0, p)).append("\":");
+            DataType dataType = DATA_TYPES[p % DATA_TYPES.length];
+            if (DataType.INT.equals(dataType)) {
+                builder.append(1000 + p);
+            } else if (DataType.DECIMAL.equals(dataType)) {
+                builder.append(20.5 + p);
+            } else {
+                builder.append("\"value-").append(p).append('"');
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    public static byte[] propertyJsonBytes(boolean withModelLabel) {
+        return propertyJson(withModelLabel).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,72 @@
+package com.aibaixun.iotdm.benchmark;
+
+import com.aibaixun.iotdm.enums.DataType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DataType.parseJsonNode 基准测试
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataTypeParseBenchmark {
+
+    private JsonNode intNode;
+
+    private JsonNode decimalNode;
+
+    private JsonNode strNode;
+
+    private JsonNode intListNode;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        JsonNode root = new ObjectMapper().readTree("{\"i\":1024,\"d\":23.75,\"s\":\"running\",\"il\":\"[1,2,3,4,5,6,7,8]\"}");
+        intNode = root.get("i");
+        decimalNode = root.get("d");
+        strNode = root.get("s");
+        intListNode = root.get("il");
+    }
+
+
+    @Benchmark
+    public Object parseInt() {
+        return DataType.INT.parseJsonNode(intNode);
+    }
+
+    @Benchmark
+    public Object parseDecimal() {
+        return DataType.DECIMAL.parseJsonNode(decimalNode);
+    }
+
+    @Benchmark
+    public Object parseStr() {
+        return DataType.STR.parseJsonNode(strNode);
+    }
+
+    @Benchmark
+    public Object parseIntList() {
+        return DataType.INT_LIST.parseJsonNode(intListNode);
+    }
+}
@@ -0,0 +1,74 @@
+package com.aibaixun.iotdm.benchmark;
+
+import com.aibaixun.iotdm.business.MetaData;
+import com.aibaixun.iotdm.business.PostPropertyBusinessMsg;
+import com.aibaixun.iotdm.msg.TsData;
+import com.aibaixun.iotdm.queue.IotDmSource;
+import com.aibaixun.iotdm.server.DefaultQueueSendServer;
+import com.aibaixun.iotdm.trace.PipelineTrace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.MessageChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 属性数据 发送队列序列化 基准测试
+ * <p>MessageChannel 为桩，只消费消息，测量 json 序列化与消息构建</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueueSerializationBenchmark {
+
+    @Param({"10", "50"})
+    private int tsDataSize;
+
+    private DefaultQueueSendServer queueSendServer;
+
+    private PostPropertyBusinessMsg postPropertyBusinessMsg;
+
+    private Object lastMessage;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MessageChannel channel = Stubs.of(MessageChannel.class, (method, args) -> {
+            lastMessage = args[0];
+            return Boolean.TRUE;
+        });
+        queueSendServer = new DefaultQueueSendServer(Stubs.of(IotDmSource.class, (method, args) -> channel));
+        List<TsData> tsData = new ArrayList<>(tsDataSize);
+        long ts = System.currentTimeMillis();
+        for (int i = 0; i < tsDataSize; i++) {
+            Object value = i % 3 == 0 ? (Object) ("value-" + i) : i % 3 == 1 ? (Object) (1000 + i) : (Object) (20.5 + i);
+            tsData.add(new TsData(ts, BenchmarkData.propertyLabel(i / BenchmarkData.PROPERTY_PER_MODEL, i % BenchmarkData.PROPERTY_PER_MODEL), value));
+        }
+        postPropertyBusinessMsg = new PostPropertyBusinessMsg(new MetaData(BenchmarkData.DEVICE_ID, BenchmarkData.PRODUCT_ID), tsData);
+        postPropertyBusinessMsg.setTrace(PipelineTrace.start(System.nanoTime()));
+    }
+
+
+    @Benchmark
+    public Object sendPropertyTsData() {
+        queueSendServer.sendPropertyTsData(postPropertyBusinessMsg);
+        return lastMessage;
+    }
+}
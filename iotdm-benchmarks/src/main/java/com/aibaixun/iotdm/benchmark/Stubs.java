@@ -0,0 +1,84 @@
+package com.aibaixun.iotdm.benchmark;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Objects;
+
+/**
+ * 基准测试 接口桩
+ * <p>用 jdk 动态代理替换 service 接口，未指定返回值的方法返回 null 或基本类型默认值</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public final class Stubs {
+
+    private Stubs() {
+    }
+
+    /**
+     * 方法应答
+     */
+    @FunctionalInterface
+    public interface Answer {
+
+        /**
+         * 应答
+         * @param method 方法
+         * @param args 参数
+         * @return 返回值，返回 null 时按方法返回类型取默认值
+         * @throws Throwable 异常
+         */
+        Object answer(Method method, Object[] args) throws Throwable;
+    }
+
+
+    public static <T> T of(Class<T> type) {
+        return of(type, (method, args) -> null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T of(Class<T> type, Answer answer) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return type.getSimpleName() + "Stub";
+                }
+            }
+            Object result = answer.answer(method, args);
+            return Objects.nonNull(result) ? result : defaultValue(method.getReturnType());
+        });
+    }
+
+    private static Object defaultValue(Class<?> returnType) {
+        if (!returnType.isPrimitive() || returnType == void.class) {
+            return null;
+        }
+        if (returnType == boolean.class) {
+            return false;
+        }
+        if (returnType == char.class) {
+            return '\0';
+        }
+        if (returnType == long.class) {
+            return 0L;
+        }
+        if (returnType == double.class) {
+            return 0D;
+        }
+        if (returnType == float.class) {
+            return 0F;
+        }
+        if (returnType == byte.class) {
+            return (byte) 0;
+        }
+        if (returnType == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,160 @@
+package com.aibaixun.iotdm.business;
+
+import com.aibaixun.iotdm.benchmark.BenchmarkData;
+import com.aibaixun.iotdm.benchmark.Stubs;
+import com.aibaixun.iotdm.data.ProductEntityInfo;
+import com.aibaixun.iotdm.enums.BusinessStep;
+import com.aibaixun.iotdm.enums.DataFormat;
+import com.aibaixun.iotdm.history.PropertyHistoryStore;
+import com.aibaixun.iotdm.mapper.DevicePropertyHistoryMapper;
+import com.aibaixun.iotdm.mapper.ProductMapper;
+import com.aibaixun.iotdm.mapper.ProductModelMapper;
+import com.aibaixun.iotdm.msg.DevicePayload;
+import com.aibaixun.iotdm.queue.QueueSendServer;
+import com.aibaixun.iotdm.server.DeviceLogProcessor;
+import com.aibaixun.iotdm.server.DevicePropertyWriteBuffer;
+import com.aibaixun.iotdm.server.DeviceShadowServer;
+import com.aibaixun.iotdm.service.IDevicePropertyReportService;
+import com.aibaixun.iotdm.trace.PipelineTraceRecorder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 物模型匹配 基准测试
+ * <p>产品 5 个模型 50 个属性，上报单个模型的 10 个属性；模型查询、入库、设备影子、发送队列均为桩(属性写入经过合并缓冲，历史数据经过块编码)，
+ * 产品快照在预热时建立，测量的是 json 解析、索引查找、类型转换、表达式计算与结果组装</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchPropertyBenchmark {
+
+    /**
+     * 上报是否携带 modelId
+     */
+    @Param({"false", "true"})
+    private boolean withModelLabel;
+
+    /**
+     * 是否流式解析原始负载，false 时先解析为 JsonNode 再匹配
+     */
+    @Param({"false", "true"})
+    private boolean streaming;
+
+    private MatchBusinessProcessor matchBusinessProcessor;
+
+    private DevicePropertyWriteBuffer propertyWriteBuffer;
+
+    private PropertyHistoryStore propertyHistoryStore;
+
+    private ObjectMapper objectMapper;
+
+    private byte[] propertyJsonBytes;
+
+    private MetaData metaData;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        ProductEntityInfo productInfo = BenchmarkData.productInfo();
+        DeviceLogProcessor deviceLogProcessor = new NoopDeviceLogProcessor();
+        PipelineTraceRecorder traceRecorder = Stubs.of(PipelineTraceRecorder.class);
+
+        QueueBusinessProcessor queueBusinessProcessor = new QueueBusinessProcessor();
+        queueBusinessProcessor.setQueueSendServer(Stubs.of(QueueSendServer.class));
+        queueBusinessProcessor.setDeviceLogProcessor(deviceLogProcessor);
+        queueBusinessProcessor.setTraceRecorder(traceRecorder);
+
+        ProductSnapshotCache productSnapshotCache = new ProductSnapshotCache();
+        productSnapshotCache.setProductMapper(Stubs.of(ProductMapper.class,
+                (method, args) -> "selectById".equals(method.getName()) ? productInfo : null));
+        productSnapshotCache.setProductModelMapper(Stubs.of(ProductModelMapper.class,
+                (method, args) -> "selectProductModelInfoByProductId".equals(method.getName()) ? productInfo.models : null));
+        productSnapshotCache.init();
+
+        matchBusinessProcessor = new MatchBusinessProcessor();
+        propertyWriteBuffer = new DevicePropertyWriteBuffer();
+        propertyWriteBuffer.setPropertyReportService(Stubs.of(IDevicePropertyReportService.class));
+        propertyWriteBuffer.setMeterRegistry(new SimpleMeterRegistry());
+        propertyWriteBuffer.init();
+        matchBusinessProcessor.setPropertyWriteBuffer(propertyWriteBuffer);
+        matchBusinessProcessor.setDeviceShadowServer(Stubs.of(DeviceShadowServer.class));
+        propertyHistoryStore = new PropertyHistoryStore();
+        propertyHistoryStore.setHistoryMapper(Stubs.of(DevicePropertyHistoryMapper.class));
+        propertyHistoryStore.setMeterRegistry(new SimpleMeterRegistry());
+        propertyHistoryStore.init();
+        matchBusinessProcessor.setPropertyHistoryStore(propertyHistoryStore);
+        matchBusinessProcessor.setQueueBusinessProcessor(queueBusinessProcessor);
+        matchBusinessProcessor.setDeviceLogProcessor(deviceLogProcessor);
+        matchBusinessProcessor.setTraceRecorder(traceRecorder);
+        matchBusinessProcessor.setProductSnapshotCache(productSnapshotCache);
+        objectMapper = new ObjectMapper();
+        matchBusinessProcessor.setObjectMapper(objectMapper);
+
+        propertyJsonBytes = BenchmarkData.propertyJsonBytes(withModelLabel);
+        metaData = new MetaData(BenchmarkData.DEVICE_ID, BenchmarkData.PRODUCT_ID);
+    }
+
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        propertyWriteBuffer.destroy();
+        propertyHistoryStore.destroy();
+    }
+
+
+    @Benchmark
+    public void processProperty(Blackhole blackhole) throws IOException {
+        PrePropertyBusinessMsg msg = streaming
+                ? new PrePropertyBusinessMsg(metaData, DevicePayload.wrap(DataFormat.JSON, propertyJsonBytes))
+                : new PrePropertyBusinessMsg(metaData, objectMapper.readTree(propertyJsonBytes));
+        matchBusinessProcessor.processProperty(msg);
+        blackhole.consume(msg);
+    }
+
+
+    /**
+     * 设备调试日志 桩，线上未开启调试的设备只做一次 redis 查询，这里不计入
+     */
+    private static class NoopDeviceLogProcessor extends DeviceLogProcessor {
+
+        @Override
+        public void doDevice2PlatformLog(String deviceId, BusinessStep businessStep, String businessDetails, Boolean messageStatus) {
+        }
+
+        @Override
+        public void doDevice2PlatformLog(String deviceId, BusinessStep businessStep, Supplier<String> businessDetails, Boolean messageStatus) {
+        }
+
+        @Override
+        public void doPlatform2DeviceLLog(String deviceId, BusinessStep businessStep, String businessDetails, Boolean messageStatus) {
+        }
+
+        @Override
+        public void doPlatform2PlatformLog(String deviceId, BusinessStep businessStep, String businessDetails, Boolean messageStatus) {
+        }
+    }
+}
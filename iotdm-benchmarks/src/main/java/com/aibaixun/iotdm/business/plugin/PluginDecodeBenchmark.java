@@ -0,0 +1,80 @@
+package com.aibaixun.iotdm.business.plugin;
+
+import com.aibaixun.iotdm.benchmark.BenchmarkData;
+import com.aibaixun.iotdm.constants.TopicConstants;
+import com.aibaixun.iotdm.enums.DataFormat;
+import com.aibaixun.iotdm.msg.DevicePayload;
+import com.aibaixun.iotdm.script.DefaultJsInvokeService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.script.ScriptException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 插件解析 基准测试
+ * <p>json 格式直接解析为 JsonNode；二进制格式经 js decode 函数转换为 json 字符串后再解析</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PluginDecodeBenchmark {
+
+    /**
+     * 2 字节温度(0.1 度) 1 字节湿度 4 字节累计量
+     */
+    private static final String DECODE_SCRIPT = "function decode(payload, topic) {"
+            + " var t = ((payload[0] & 0xff) << 8) | (payload[1] & 0xff);"
+            + " var total = ((payload[3] & 0xff) << 24) | ((payload[4] & 0xff) << 16) | ((payload[5] & 0xff) << 8) | (payload[6] & 0xff);"
+            + " return JSON.stringify({temperature: t / 10, humidity: payload[2] & 0xff, total: total});"
+            + " }";
+
+    private JsonStrPluginProcessor jsonProcessor;
+
+    private JsPluginProcessor jsProcessor;
+
+    private DevicePayload jsonPayload;
+
+    private DevicePayload binaryPayload;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws ScriptException {
+        jsonProcessor = new JsonStrPluginProcessor();
+        jsonProcessor.setObjectMapper(new ObjectMapper());
+        DefaultJsInvokeService jsInvokeService = new DefaultJsInvokeService();
+        jsInvokeService.initJsService();
+        jsInvokeService.eval(BenchmarkData.PRODUCT_ID, DECODE_SCRIPT);
+        jsProcessor = new JsPluginProcessor();
+        jsProcessor.setJsInvokeService(jsInvokeService);
+        jsonPayload = DevicePayload.wrap(DataFormat.JSON, BenchmarkData.propertyJsonBytes(false));
+        binaryPayload = DevicePayload.wrap(DataFormat.BINARY, new byte[]{0x01, 0x02, 0x30, 0x00, 0x01, 0x00, 0x10});
+    }
+
+
+    @Benchmark
+    public JsonNode decodeJson() {
+        return jsonProcessor.processPluginMethod(jsonPayload, BenchmarkData.PRODUCT_ID, TopicConstants.PROPERTIES_UP);
+    }
+
+    @Benchmark
+    public JsonNode decodeBinaryByJs() {
+        return jsProcessor.processPluginMethod(binaryPayload, BenchmarkData.PRODUCT_ID, TopicConstants.PROPERTIES_UP);
+    }
+}
@@ -0,0 +1,165 @@
+package com.aibaixun.iotdm.transport.mqtt;
+
+import com.aibaixun.iotdm.benchmark.BenchmarkData;
+import com.aibaixun.iotdm.benchmark.Stubs;
+import com.aibaixun.iotdm.constants.TopicConstants;
+import com.aibaixun.iotdm.enums.DataFormat;
+import com.aibaixun.iotdm.enums.ProtocolType;
+import com.aibaixun.iotdm.msg.DeviceAuthRespMsg;
+import com.aibaixun.iotdm.msg.DeviceInfo;
+import com.aibaixun.iotdm.transport.TransportServer;
+import com.aibaixun.iotdm.transport.TransportServiceCallback;
+import com.aibaixun.iotdm.transport.limits.TransportLimitServer;
+import com.aibaixun.iotdm.transport.mqtt.limits.ChannelFlowState;
+import com.aibaixun.iotdm.transport.mqtt.limits.ConnectAdmissionController;
+import com.aibaixun.iotdm.transport.mqtt.limits.IngestBackpressureController;
+import com.aibaixun.iotdm.transport.mqtt.metrics.MqttTransportMetrics;
+import com.aibaixun.iotdm.transport.shard.ShardManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.mqtt.MqttConnectMessage;
+import io.netty.handler.codec.mqtt.MqttDecoder;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageBuilders;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttVersion;
+import io.netty.handler.timeout.IdleStateHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * mqtt PUBLISH 处理 基准测试
+ * <p>EmbeddedChannel 上依次经过 MqttDecoder 与 MqttTransportHandler，transport service 直接回调成功，
+ * 测量解码、topic 分发、负载复制、PUBACK 编码的开销</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MqttPublishBenchmark {
+
+    @Param({"0", "1"})
+    private int qos;
+
+    private EmbeddedChannel channel;
+
+    private ByteBuf publishBytes;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MqttTransportContext context = new MqttTransportContext();
+        context.setTransportService(Stubs.of(TransportServer.class, (method, args) -> {
+            switch (method.getName()) {
+                case "processDeviceAuthBySecret":
+                    callback(args[2]).onSuccess(authResp());
+                    return null;
+                case "processDeviceConnectSuccess":
+                    callback(args[1]).onSuccess(Boolean.TRUE);
+                    return null;
+                case "processPropertyUp":
+                case "processMessageUp":
+                    callback(args[2]).onSuccess(null);
+                    return null;
+                default:
+                    return null;
+            }
+        }));
+        context.setTransportRateLimitService(Stubs.of(TransportLimitServer.class, (method, args) -> "checkAddress".equals(method.getName()) ? Boolean.TRUE : null));
+        MqttTransportMetrics metrics = new MqttTransportMetrics();
+        metrics.setMeterRegistry(new SimpleMeterRegistry());
+        metrics.init();
+        context.setMetrics(metrics);
+        context.setAdmissionController(new ConnectAdmissionController());
+        context.setShardManager(new ShardManager());
+        context.setBackpressureController(new IngestBackpressureController() {
+            @Override
+            public ChannelFlowState register(String deviceId, Channel channel) {
+                return null;
+            }
+        });
+
+        channel = new EmbeddedChannel();
+        channel.attr(MqttTransportService.ADDRESS).set(new InetSocketAddress("127.0.0.1", 1883));
+        channel.pipeline().addLast(MqttTransportHandler.IDLE_STATE_HANDLER, new IdleStateHandler(0, 0, 0, TimeUnit.SECONDS));
+        channel.pipeline().addLast("decoder", new MqttDecoder());
+        channel.pipeline().addLast("encoder", MqttEncoder.INSTANCE);
+        channel.pipeline().addLast(new MqttTransportHandler(context));
+
+        MqttConnectMessage connect = MqttMessageBuilders.connect()
+                .clientId(BenchmarkData.DEVICE_ID).username("bench").password("bench".getBytes())
+                .protocolVersion(MqttVersion.MQTT_3_1_1).keepAlive(60).build();
+        channel.writeInbound(encode(connect));
+        channel.releaseOutbound();
+
+        MqttMessage publish = MqttMessageBuilders.publish()
+                .topicName(TopicConstants.PROPERTIES_UP).qos(MqttQoS.valueOf(qos)).messageId(1)
+                .payload(Unpooled.wrappedBuffer(BenchmarkData.propertyJsonBytes(false))).build();
+        publishBytes = encode(publish);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        publishBytes.release();
+        channel.finishAndReleaseAll();
+    }
+
+
+    @Benchmark
+    public boolean publish() {
+        channel.writeInbound(publishBytes.retainedDuplicate());
+        return channel.releaseOutbound();
+    }
+
+
+    private ByteBuf encode(MqttMessage message) {
+        EmbeddedChannel encoder = new EmbeddedChannel(MqttEncoder.INSTANCE);
+        encoder.writeOutbound(message);
+        ByteBuf out = Unpooled.buffer();
+        ByteBuf part;
+        while ((part = encoder.readOutbound()) != null) {
+            out.writeBytes(part);
+            part.release();
+        }
+        encoder.finishAndReleaseAll();
+        return out;
+    }
+
+    private static DeviceAuthRespMsg authResp() {
+        DeviceInfo deviceInfo = new DeviceInfo();
+        deviceInfo.setDeviceId(BenchmarkData.DEVICE_ID);
+        deviceInfo.setProductId(BenchmarkData.PRODUCT_ID);
+        deviceInfo.setProtocolType(ProtocolType.MQTT);
+        deviceInfo.setDataFormat(DataFormat.JSON);
+        DeviceAuthRespMsg respMsg = new DeviceAuthRespMsg();
+        respMsg.setDeviceInfo(deviceInfo);
+        return respMsg;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> TransportServiceCallback<T> callback(Object callback) {
+        return (TransportServiceCallback<T>) callback;
+    }
+}
@@ -1,5 +1,8 @@
 package com.aibaixun.iotdm.business;
 
+import com.aibaixun.iotdm.trace.PipelineTrace;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.io.Serializable;
 
 /**
@@ -11,6 +14,11 @@ public abstract class AbstractBusinessMsg implements Serializable {
 
     private MetaData metaData;
 
+    /**
+     * 链路追踪，经过消息队列时通过 header 传递，不参与序列化
+     */
+    private transient PipelineTrace trace;
+
 
     public AbstractBusinessMsg() {
     }
@@ -28,4 +36,14 @@ public abstract class AbstractBusinessMsg implements Serializable {
     public void setMetaData(MetaData metaData) {
         this.metaData = metaData;
     }
+
+    @JsonIgnore
+    public PipelineTrace getTrace() {
+        return trace;
+    }
+
+    @JsonIgnore
+    public void setTrace(PipelineTrace trace) {
+        this.trace = trace;
+    }
 }
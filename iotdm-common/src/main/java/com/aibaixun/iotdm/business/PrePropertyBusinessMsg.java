@@ -1,5 +1,6 @@
 package com.aibaixun.iotdm.business;
 
+import com.aibaixun.iotdm.msg.DevicePayload;
 import com.fasterxml.jackson.databind.JsonNode;
 
 /**
@@ -11,11 +12,21 @@ public class PrePropertyBusinessMsg extends AbstractBusinessMsg{
 
     private JsonNode propertyJsonNode;
 
+    /**
+     * json 格式的原始负载，不经过 JsonNode 直接流式匹配
+     */
+    private DevicePayload propertyPayload;
+
     public PrePropertyBusinessMsg(MetaData metaData, JsonNode propertyJsonNode) {
         super(metaData);
         this.propertyJsonNode = propertyJsonNode;
     }
 
+    public PrePropertyBusinessMsg(MetaData metaData, DevicePayload propertyPayload) {
+        super(metaData);
+        this.propertyPayload = propertyPayload;
+    }
+
     public JsonNode getPropertyJsonNode() {
         return propertyJsonNode;
     }
@@ -23,4 +34,12 @@ public class PrePropertyBusinessMsg extends AbstractBusinessMsg{
     public void setPropertyJsonNode(JsonNode propertyJsonNode) {
         this.propertyJsonNode = propertyJsonNode;
     }
+
+    public DevicePayload getPropertyPayload() {
+        return propertyPayload;
+    }
+
+    public void setPropertyPayload(DevicePayload propertyPayload) {
+        this.propertyPayload = propertyPayload;
+    }
 }
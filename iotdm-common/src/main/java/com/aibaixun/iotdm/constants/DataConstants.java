@@ -33,6 +33,12 @@ public class DataConstants {
     public static final String IOT_DEVICE_DEBUG_CACHE_KEY = "IOTDM:DEVICE:DEBUG";
 
 
+    /**
+     * iotdm 设备影子 hash，field 为属性id
+     */
+    public static final String IOT_DEVICE_SHADOW_KEY_PREFIX = "IOTDM:DEVICE:SHADOW:";
+
+
 
     /**
      * iotdm 产品与租户id
@@ -1,8 +1,12 @@
 package com.aibaixun.iotdm.enums;
 
 import com.aibaixun.common.util.JsonUtil;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.NumberInput;
 import com.fasterxml.jackson.databind.JsonNode;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -20,6 +24,22 @@ public enum DataType {
         public Integer parseJsonNode(JsonNode jsonNode) {
             return jsonNode.asInt();
         }
+
+        @Override
+        public Integer parseJsonToken(JsonParser parser) throws IOException {
+            switch (tokenOf(parser)) {
+                case VALUE_NUMBER_INT:
+                    return parser.getNumberType() == JsonParser.NumberType.INT ? parser.getIntValue() : parser.getNumberValue().intValue();
+                case VALUE_NUMBER_FLOAT:
+                    return (int) parser.getDoubleValue();
+                case VALUE_STRING:
+                    return NumberInput.parseAsInt(parser.getText(), 0);
+                case VALUE_TRUE:
+                    return 1;
+                default:
+                    return 0;
+            }
+        }
     },
 
     /**
@@ -30,6 +50,24 @@ public enum DataType {
         public String parseJsonNode(JsonNode jsonNode) {
             return jsonNode.asText();
         }
+
+        @Override
+        public String parseJsonToken(JsonParser parser) throws IOException {
+            switch (tokenOf(parser)) {
+                case VALUE_STRING:
+                    return parser.getText();
+                case VALUE_NUMBER_INT:
+                    return parser.getNumberValue().toString();
+                case VALUE_NUMBER_FLOAT:
+                    return String.valueOf(parser.getDoubleValue());
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                case VALUE_NULL:
+                    return parser.getText();
+                default:
+                    return "";
+            }
+        }
     },
     /**
      * double
@@ -39,6 +77,21 @@ public enum DataType {
         public Double parseJsonNode(JsonNode jsonNode) {
             return jsonNode.asDouble();
         }
+
+        @Override
+        public Double parseJsonToken(JsonParser parser) throws IOException {
+            switch (tokenOf(parser)) {
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    return parser.getDoubleValue();
+                case VALUE_STRING:
+                    return NumberInput.parseAsDouble(parser.getText(), 0.0);
+                case VALUE_TRUE:
+                    return 1.0;
+                default:
+                    return 0.0;
+            }
+        }
     },
     /**
      * list
@@ -48,6 +101,11 @@ public enum DataType {
         public List<String> parseJsonNode(JsonNode jsonNode) {
             return  JsonUtil.toList(jsonNode.textValue());
         }
+
+        @Override
+        public List<String> parseJsonToken(JsonParser parser) throws IOException {
+            return  JsonUtil.toList(textValue(parser));
+        }
     },
     /**
      * list
@@ -57,6 +115,11 @@ public enum DataType {
         public List<Integer> parseJsonNode(JsonNode jsonNode) {
             return  JsonUtil.toList(jsonNode.textValue());
         }
+
+        @Override
+        public List<Integer> parseJsonToken(JsonParser parser) throws IOException {
+            return  JsonUtil.toList(textValue(parser));
+        }
     },
     /**
      * str json
@@ -66,10 +129,34 @@ public enum DataType {
         public String parseJsonNode(JsonNode jsonNode) {
             return jsonNode.textValue();
         }
+
+        @Override
+        public String parseJsonToken(JsonParser parser) throws IOException {
+            return textValue(parser);
+        }
     };
 
 
     public abstract Object parseJsonNode(JsonNode jsonNode);
 
+    /**
+     * 由 parser 当前的值 token 解析，结果与 {@link #parseJsonNode(JsonNode)} 对同一个值的解析一致
+     * <p>对象、数组值按 JsonNode 容器的规则返回默认值，不移动 parser，由调用方 skipChildren</p>
+     * @param parser 位于值 token 的 parser
+     * @return 属性值
+     * @throws IOException 读取失败
+     */
+    public abstract Object parseJsonToken(JsonParser parser) throws IOException;
+
+
+    private static JsonToken tokenOf(JsonParser parser) {
+        JsonToken token = parser.currentToken();
+        return token == null ? JsonToken.NOT_AVAILABLE : token;
+    }
+
+    private static String textValue(JsonParser parser) throws IOException {
+        return parser.currentToken() == JsonToken.VALUE_STRING ? parser.getText() : null;
+    }
+
 
 }
\ No newline at end of file
@@ -52,4 +52,9 @@ public enum SubjectEvent {
      * 产品删除
      */
     PRODUCT_DELETE,
+
+    /**
+     * 产品模型更新 模型及其属性、命令的增删改
+     */
+    PRODUCT_MODEL_UPDATE,
 }
@@ -21,6 +21,11 @@ public class EntityChangeEvent implements Serializable {
 
     private String tenantId;
 
+    /**
+     * 实体id 批量操作时为空
+     */
+    private String entityId;
+
 
     public SubjectResource getSubjectResource() {
         return subjectResource;
@@ -56,6 +61,15 @@ public class EntityChangeEvent implements Serializable {
     }
 
 
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(String entityId) {
+        this.entityId = entityId;
+    }
+
+
     public EntityChangeEvent() {
     }
 
@@ -65,4 +79,9 @@ public class EntityChangeEvent implements Serializable {
         this.tenantId = tenantId;
         this.ts= Instant.now().toEpochMilli();
     }
+
+    public EntityChangeEvent(SubjectResource subjectResource, SubjectEvent subjectEvent, String tenantId, String entityId) {
+        this(subjectResource, subjectEvent, tenantId);
+        this.entityId = entityId;
+    }
 }
@@ -0,0 +1,118 @@
+package com.aibaixun.iotdm.msg;
+
+import com.aibaixun.basic.util.HexTool;
+import com.aibaixun.iotdm.enums.DataFormat;
+import com.aibaixun.iotdm.trace.PipelineTrace;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * 设备上报负载
+ * <p>以原始字节传递，字符串形式(json 文本 / 二进制 hex)只在日志或调试需要时才生成</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/8
+ */
+public final class DevicePayload implements Serializable {
+
+    private final DataFormat dataFormat;
+
+    private volatile byte[] bytes;
+
+    private volatile String text;
+
+    /**
+     * 链路追踪，只在进程内传递
+     */
+    private transient volatile PipelineTrace trace;
+
+
+    private DevicePayload(DataFormat dataFormat, byte[] bytes, String text) {
+        this.dataFormat = dataFormat;
+        this.bytes = bytes;
+        this.text = text;
+    }
+
+    /**
+     * 由原始字节创建，不复制数组，调用方不能再修改
+     * @param dataFormat 数据格式
+     * @param bytes 原始字节
+     * @return 负载
+     */
+    public static DevicePayload wrap(DataFormat dataFormat, byte[] bytes) {
+        return new DevicePayload(dataFormat, Objects.requireNonNull(bytes), null);
+    }
+
+    /**
+     * 由字符串创建 json 为文本，二进制为 hex
+     * @param dataFormat 数据格式
+     * @param text 字符串负载
+     * @return 负载
+     */
+    public static DevicePayload ofText(DataFormat dataFormat, String text) {
+        return new DevicePayload(dataFormat, null, text);
+    }
+
+    public DataFormat getDataFormat() {
+        return dataFormat;
+    }
+
+    public PipelineTrace getTrace() {
+        return trace;
+    }
+
+    public DevicePayload withTrace(PipelineTrace trace) {
+        this.trace = trace;
+        return this;
+    }
+
+    /**
+     * 原始字节，共享数组 只读使用
+     * @return 原始字节
+     */
+    public byte[] bytes() {
+        byte[] b = bytes;
+        if (b == null) {
+            String t = text;
+            b = t == null ? new byte[0] : DataFormat.BINARY.equals(dataFormat) ? HexTool.decodeHex(t) : t.getBytes(StandardCharsets.UTF_8);
+            bytes = b;
+        }
+        return b;
+    }
+
+    /**
+     * 只读 ByteBuffer 视图
+     * @return ByteBuffer
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        return ByteBuffer.wrap(bytes()).asReadOnlyBuffer();
+    }
+
+    public int length() {
+        return bytes().length;
+    }
+
+    /**
+     * 字符串形式，首次调用时生成
+     * @return json 文本 或 hex 字符串
+     */
+    public String asText() {
+        String t = text;
+        if (t == null) {
+            byte[] b = bytes;
+            if (b == null) {
+                return null;
+            }
+            t = DataFormat.BINARY.equals(dataFormat) ? HexTool.encodeHexStr(b) : new String(b, StandardCharsets.UTF_8);
+            text = t;
+        }
+        return t;
+    }
+
+    @Override
+    public String toString() {
+        return asText();
+    }
+}
@@ -0,0 +1,135 @@
+package com.aibaixun.iotdm.msg;
+
+import com.aibaixun.iotdm.transport.SessionId;
+
+import java.io.Serializable;
+
+/**
+ * 跨节点 下行消息
+ * <p>设备连接在其他节点时，下行事件经队列转发到连接所在节点</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/15
+ */
+public class ToDeviceRouteMsg implements Serializable {
+
+    private Type type;
+
+    private SessionId sessionId;
+
+    private String payload;
+
+    private Integer sendId;
+
+    /**
+     * 目标节点
+     */
+    private String nodeId;
+
+    /**
+     * 发送节点
+     */
+    private String sourceNodeId;
+
+    /**
+     * 目标节点未找到连接后 重新转发的次数
+     */
+    private int hops;
+
+
+    public ToDeviceRouteMsg() {
+    }
+
+    public ToDeviceRouteMsg(Type type, SessionId sessionId, String payload) {
+        this.type = type;
+        this.sessionId = sessionId;
+        this.payload = payload;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public SessionId getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(SessionId sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Integer getSendId() {
+        return sendId;
+    }
+
+    public void setSendId(Integer sendId) {
+        this.sendId = sendId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public String getSourceNodeId() {
+        return sourceNodeId;
+    }
+
+    public void setSourceNodeId(String sourceNodeId) {
+        this.sourceNodeId = sourceNodeId;
+    }
+
+    public int getHops() {
+        return hops;
+    }
+
+    public void setHops(int hops) {
+        this.hops = hops;
+    }
+
+
+    /**
+     * 下行类型
+     */
+    public enum Type {
+
+        /**
+         * 配置下发
+         */
+        CONFIG,
+
+        /**
+         * ota
+         */
+        OTA,
+
+        /**
+         * 命令下发
+         */
+        CONTROL,
+
+        /**
+         * 断开连接
+         */
+        DISCONNECT,
+
+        /**
+         * 通知发送节点 session 已不在目标节点，清除其节点缓存
+         */
+        OWNER_CHANGED
+    }
+}
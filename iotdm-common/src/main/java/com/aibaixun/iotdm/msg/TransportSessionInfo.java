@@ -24,6 +24,16 @@ public class TransportSessionInfo implements Serializable {
 
     private long  lastActivityTime;
 
+    /**
+     * 连接所在节点
+     */
+    private String nodeId;
+
+    /**
+     * 连接空闲超时(秒)，0 表示使用默认 keepalive
+     */
+    private int idleTimeout;
+
     protected TransportSessionInfo() {}
 
 
@@ -75,6 +85,22 @@ public class TransportSessionInfo implements Serializable {
         this.lastActivityTime = lastActivityTime;
     }
 
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
 
 
 
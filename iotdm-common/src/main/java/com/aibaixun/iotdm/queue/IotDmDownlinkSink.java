@@ -0,0 +1,22 @@
+package com.aibaixun.iotdm.queue;
+
+import org.springframework.cloud.stream.annotation.Input;
+import org.springframework.messaging.SubscribableChannel;
+
+/**
+ * 跨节点 下行消息 输入
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/15
+ */
+public interface IotDmDownlinkSink {
+
+    String INPUT_DOWNLINK_DATA = "input_downlink_data";
+
+
+    /**
+     * 本节点 下行消息 输入通道
+     * @return 通道
+     */
+    @Input(INPUT_DOWNLINK_DATA)
+    SubscribableChannel inputDownlinkData();
+}
@@ -0,0 +1,23 @@
+package com.aibaixun.iotdm.queue;
+
+import org.springframework.cloud.stream.annotation.Input;
+import org.springframework.messaging.SubscribableChannel;
+
+/**
+ * 实体变更 节点广播输入
+ * <p>与规则转发共用 entity_data，每个节点一个消费组，都能收到全部变更用于失效本地缓存</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public interface IotDmEntityChangeSink {
+
+    String INPUT_ENTITY_CHANGE = "input_entity_change";
+
+
+    /**
+     * 本节点 实体变更 输入通道
+     * @return 通道
+     */
+    @Input(INPUT_ENTITY_CHANGE)
+    SubscribableChannel inputEntityChange();
+}
@@ -14,6 +14,7 @@ public interface IotDmSource {
     String OUTPUT_PROPERTY_TS_DATA = "out_property_ts_data";
     String OUTPUT_MESSAGE_TS_DATA = "out_message_ts_data";
     String OUTPUT_ENTITY__DATA = "out_entity_data";
+    String OUTPUT_DOWNLINK_DATA = "out_downlink_data";
 
     /**
      * session 信息输出通道
@@ -46,4 +47,12 @@ public interface IotDmSource {
      */
     @Output(OUTPUT_ENTITY__DATA)
     MessageChannel outputEntityData();
+
+
+    /**
+     * 跨节点 下行消息通道
+     * @return 通道
+     */
+    @Output(OUTPUT_DOWNLINK_DATA)
+    MessageChannel outputDownlinkData();
 }
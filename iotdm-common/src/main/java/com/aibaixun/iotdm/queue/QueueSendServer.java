@@ -4,6 +4,7 @@ import com.aibaixun.iotdm.business.MessageBusinessMsg;
 import com.aibaixun.iotdm.business.PostPropertyBusinessMsg;
 import com.aibaixun.iotdm.event.DeviceSessionEvent;
 import com.aibaixun.iotdm.event.EntityChangeEvent;
+import com.aibaixun.iotdm.msg.ToDeviceRouteMsg;
 
 /**
  * @author wangxiao@aibaixun.com
@@ -35,4 +36,10 @@ public interface QueueSendServer {
      * @param entityChangeEvent EntityChangeEvent
      */
     void sendEntityChangeData(EntityChangeEvent entityChangeEvent);
+
+    /**
+     * 发送 下行消息 到设备连接所在节点
+     * @param routeMsg 下行消息 nodeId 为目标节点
+     */
+    void sendDownlinkData(ToDeviceRouteMsg routeMsg);
 }
@@ -6,6 +6,7 @@ import io.lettuce.core.cluster.pubsub.api.async.NodeSelectionPubSubAsyncCommands
 import io.lettuce.core.cluster.pubsub.api.async.PubSubAsyncNodeSelection;
 import io.lettuce.core.pubsub.RedisPubSubAdapter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
@@ -15,10 +16,12 @@ import static com.aibaixun.iotdm.constants.DataConstants.EXPIRED_CHANNEL;
 
 /**
  * redis 订阅
+ * <p>连接空闲检测由传输层完成，key 过期通知只作为节点宕机时的兜底，可关闭</p>
  * @author wangxiao@aibaixun.com
  * @date 2022/3/9
  */
 @Component
+@ConditionalOnExpression("'${transport.sessions.redis_expiry_listener:true}'=='true'")
 public class ClusterGrooveAdapter extends RedisPubSubAdapter {
  
 
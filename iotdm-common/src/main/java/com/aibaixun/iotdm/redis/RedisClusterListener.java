@@ -7,6 +7,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
 
 import static com.aibaixun.iotdm.constants.DataConstants.EXPIRED_CHANNEL;
@@ -18,6 +19,7 @@ import static com.aibaixun.iotdm.constants.DataConstants.IOT_SESSION_CACHE_KEY_P
  * @date 2022/3/9
  */
 @Component
+@ConditionalOnExpression("'${transport.sessions.redis_expiry_listener:true}'=='true'")
 public class RedisClusterListener extends RedisClusterPubSubAdapter {
  
     private final Logger logger = LoggerFactory.getLogger(RedisClusterListener.class);
@@ -30,7 +32,7 @@ public class RedisClusterListener extends RedisClusterPubSubAdapter {
 
         String channelKey = String.valueOf(channel);
         String redisKey = String.valueOf(message);
-        logger.info("RedisClusterListener.message >> receive redis key expire message ,node:{},channel:{},message:{}", node, channelKey, redisKey);
+        logger.debug("RedisClusterListener.message >> receive redis key expire message ,node:{},channel:{},message:{}", node, channelKey, redisKey);
         if (checkChannelAndKey(channelKey, redisKey)) {
             deviceInfoServer.onRedisExpirationMessage(redisKey);
         }
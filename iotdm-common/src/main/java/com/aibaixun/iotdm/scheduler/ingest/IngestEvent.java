@@ -0,0 +1,52 @@
+package com.aibaixun.iotdm.scheduler.ingest;
+
+import com.aibaixun.iotdm.msg.DevicePayload;
+
+/**
+ * 上行数据 ring buffer 槽位，预先分配并复用
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/11
+ */
+public class IngestEvent {
+
+    private String deviceId;
+
+    private String productId;
+
+    private DevicePayload payload;
+
+    /**
+     * true 属性上报 false 消息上报
+     */
+    private boolean property;
+
+
+    void set(String deviceId, String productId, DevicePayload payload, boolean property) {
+        this.deviceId = deviceId;
+        this.productId = productId;
+        this.payload = payload;
+        this.property = property;
+    }
+
+    void clear() {
+        this.deviceId = null;
+        this.productId = null;
+        this.payload = null;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public String getProductId() {
+        return productId;
+    }
+
+    public DevicePayload getPayload() {
+        return payload;
+    }
+
+    public boolean isProperty() {
+        return property;
+    }
+}
@@ -0,0 +1,15 @@
+package com.aibaixun.iotdm.scheduler.ingest;
+
+/**
+ * 上行数据 处理者，同一分区内单线程顺序调用
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/11
+ */
+public interface IngestHandler {
+
+    /**
+     * 处理上行数据
+     * @param event 上行数据，槽位会被复用 不能在方法返回后持有
+     */
+    void onIngest(IngestEvent event);
+}
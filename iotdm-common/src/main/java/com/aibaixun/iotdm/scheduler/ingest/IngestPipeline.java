@@ -0,0 +1,174 @@
+package com.aibaixun.iotdm.scheduler.ingest;
+
+import com.aibaixun.iotdm.msg.DevicePayload;
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import com.lmax.disruptor.EventTranslatorVararg;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上行数据 分区 ring buffer
+ * <p>按 deviceId hash 选择分区，每个分区一个消费线程，保证同一设备顺序处理；
+ * 发布方(netty io 线程)只做 tryPublish，分区满时直接拒绝 不阻塞</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/11
+ */
+@Component
+public class IngestPipeline {
+
+    private final Logger log = LoggerFactory.getLogger(IngestPipeline.class);
+
+    private static final EventTranslatorVararg<IngestEvent> TRANSLATOR =
+            (event, sequence, args) -> event.set((String) args[0], (String) args[1], (DevicePayload) args[2], (Boolean) args[3]);
+
+    @Value("${bx.ingest.partitions:0}")
+    private int partitionCount;
+
+    @Value("${bx.ingest.buffer_size:4096}")
+    private int bufferSize;
+
+    @Value("${bx.ingest.wait_strategy:blocking}")
+    private String waitStrategy;
+
+    private IngestHandler ingestHandler;
+
+    private Disruptor<IngestEvent>[] disruptors;
+
+    private RingBuffer<IngestEvent>[] ringBuffers;
+
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void init() {
+        if (partitionCount <= 0) {
+            partitionCount = Runtime.getRuntime().availableProcessors();
+        }
+        int ringSize = ceilingPowerOfTwo(bufferSize);
+        IngestWaitStrategy strategy = IngestWaitStrategy.parse(waitStrategy);
+        disruptors = new Disruptor[partitionCount];
+        ringBuffers = new RingBuffer[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            Disruptor<IngestEvent> disruptor = new Disruptor<>(IngestEvent::new, ringSize,
+                    IotDmThreadFactory.forName("ingest-" + i), ProducerType.MULTI, strategy.newWaitStrategy());
+            disruptor.handleEventsWith((event, sequence, endOfBatch) -> {
+                try {
+                    ingestHandler.onIngest(event);
+                } catch (Exception e) {
+                    log.error("IngestPipeline.onEvent >> deviceId:{},error is:{}", event.getDeviceId(), e.getMessage());
+                } finally {
+                    event.clear();
+                }
+            });
+            disruptor.setDefaultExceptionHandler(new LogExceptionHandler());
+            ringBuffers[i] = disruptor.start();
+            disruptors[i] = disruptor;
+        }
+        log.info("IngestPipeline.init >> partitions:{},buffer size:{},wait strategy:{}", partitionCount, ringSize, strategy);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (disruptors == null) {
+            return;
+        }
+        for (Disruptor<IngestEvent> disruptor : disruptors) {
+            try {
+                disruptor.shutdown(10, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                log.warn("IngestPipeline.destroy >> drain timeout,halt partition");
+                disruptor.halt();
+            }
+        }
+    }
+
+
+    /**
+     * 发布上行数据
+     * @param deviceId 设备id
+     * @param productId 产品id
+     * @param payload 负载
+     * @param property 是否属性上报
+     * @throws IngestRejectedException 分区已满
+     */
+    public void publish(String deviceId, String productId, DevicePayload payload, boolean property) {
+        int partition = partitionOf(deviceId);
+        if (!ringBuffers[partition].tryPublishEvent(TRANSLATOR, deviceId, productId, payload, property)) {
+            throw new IngestRejectedException("ingest partition " + partition + " is full");
+        }
+    }
+
+    /**
+     * 设备所在分区
+     * @param deviceId 设备id
+     * @return 分区
+     */
+    public int partitionOf(String deviceId) {
+        return (deviceId.hashCode() & Integer.MAX_VALUE) % partitionCount;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * 分区积压数量
+     * @param partition 分区
+     * @return 积压数量
+     */
+    public long depth(int partition) {
+        RingBuffer<IngestEvent> ringBuffer = ringBuffers[partition];
+        return ringBuffer.getBufferSize() - ringBuffer.remainingCapacity();
+    }
+
+    /**
+     * 分区容量
+     * @return 容量
+     */
+    public int capacity() {
+        return ringBuffers[0].getBufferSize();
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        int size = 1;
+        while (size < value) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    @Autowired
+    public void setIngestHandler(IngestHandler ingestHandler) {
+        this.ingestHandler = ingestHandler;
+    }
+
+
+    private class LogExceptionHandler implements ExceptionHandler<IngestEvent> {
+
+        @Override
+        public void handleEventException(Throwable ex, long sequence, IngestEvent event) {
+            log.error("IngestPipeline.handleEventException >> sequence:{},error is:{}", sequence, ex.getMessage());
+        }
+
+        @Override
+        public void handleOnStartException(Throwable ex) {
+            log.error("IngestPipeline.handleOnStartException >> error is:{}", ex.getMessage());
+        }
+
+        @Override
+        public void handleOnShutdownException(Throwable ex) {
+            log.error("IngestPipeline.handleOnShutdownException >> error is:{}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.aibaixun.iotdm.scheduler.ingest;
+
+/**
+ * 分区 ring buffer 已满
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/11
+ */
+public class IngestRejectedException extends RuntimeException {
+
+    public IngestRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,56 @@
+package com.aibaixun.iotdm.scheduler.ingest;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+
+/**
+ * 分区消费线程 等待策略
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/11
+ */
+public enum IngestWaitStrategy {
+
+    /**
+     * 锁等待 cpu 占用最低
+     */
+    BLOCKING,
+
+    /**
+     * 自旋后休眠 延时与 cpu 折中
+     */
+    SLEEPING,
+
+    /**
+     * 自旋后 yield 低延时
+     */
+    YIELDING,
+
+    /**
+     * 忙等 最低延时 独占 cpu
+     */
+    BUSY_SPIN;
+
+
+    public WaitStrategy newWaitStrategy() {
+        switch (this) {
+            case SLEEPING:
+                return new SleepingWaitStrategy();
+            case YIELDING:
+                return new YieldingWaitStrategy();
+            case BUSY_SPIN:
+                return new BusySpinWaitStrategy();
+            default:
+                return new BlockingWaitStrategy();
+        }
+    }
+
+    public static IngestWaitStrategy parse(String waitStrategy) {
+        if (waitStrategy == null || waitStrategy.isBlank()) {
+            return BLOCKING;
+        }
+        return IngestWaitStrategy.valueOf(waitStrategy.trim().toUpperCase());
+    }
+}
@@ -2,7 +2,9 @@ package com.aibaixun.iotdm.service;
 
 import com.aibaixun.iotdm.enums.DataFormat;
 import com.aibaixun.iotdm.event.*;
+import com.aibaixun.iotdm.msg.DevicePayload;
 import com.aibaixun.iotdm.msg.SessionEventType;
+import com.aibaixun.iotdm.scheduler.ingest.IngestPipeline;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +23,8 @@ public class DefaultIotDmEventPublisher implements IotDmEventPublisher {
 
     private ApplicationEventPublisher applicationEventPublisher;
 
+    private IngestPipeline ingestPipeline;
+
     @Override
     public void publishDeviceSessionEvent(String productId, String deviceId, SessionEventType sessionEventType) {
         applicationEventPublisher.publishEvent(new DeviceSessionEvent(deviceId,productId,sessionEventType));
@@ -29,12 +33,22 @@ public class DefaultIotDmEventPublisher implements IotDmEventPublisher {
 
     @Override
     public void publishPropertyUpEvent(String productId, String deviceId, DataFormat dataFormat, String payload) {
-        applicationEventPublisher.publishEvent(new DevicePropertyUpEvent(deviceId,productId,dataFormat,payload));
+        publishPropertyUpEvent(productId,deviceId,DevicePayload.ofText(dataFormat,payload));
     }
 
     @Override
     public void publishMessageUpEvent(String productId, String deviceId, DataFormat dataFormat,String payload) {
-        applicationEventPublisher.publishEvent(new DeviceMessageUpEvent(deviceId,productId,dataFormat,payload));
+        publishMessageUpEvent(productId,deviceId,DevicePayload.ofText(dataFormat,payload));
+    }
+
+    @Override
+    public void publishPropertyUpEvent(String productId, String deviceId, DevicePayload payload) {
+        ingestPipeline.publish(deviceId,productId,payload,true);
+    }
+
+    @Override
+    public void publishMessageUpEvent(String productId, String deviceId, DevicePayload payload) {
+        ingestPipeline.publish(deviceId,productId,payload,false);
     }
 
 
@@ -93,4 +107,9 @@ public class DefaultIotDmEventPublisher implements IotDmEventPublisher {
     public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
         this.applicationEventPublisher = applicationEventPublisher;
     }
+
+    @Autowired
+    public void setIngestPipeline(IngestPipeline ingestPipeline) {
+        this.ingestPipeline = ingestPipeline;
+    }
 }
@@ -71,5 +71,11 @@ public interface DeviceInfoServer {
      */
     void setControlMsgId(Integer sendId,Integer msgId);
 
+    /**
+     * 命令 下行失败
+     * @param sendId send id
+     */
+    void setControlSendFailed(Integer sendId);
+
 }
 
@@ -2,6 +2,7 @@ package com.aibaixun.iotdm.service;
 
 import com.aibaixun.iotdm.enums.DataFormat;
 import com.aibaixun.iotdm.event.*;
+import com.aibaixun.iotdm.msg.DevicePayload;
 import com.aibaixun.iotdm.msg.SessionEventType;
 
 /**
@@ -41,6 +42,24 @@ public interface IotDmEventPublisher {
     void publishMessageUpEvent(String productId,String deviceId, DataFormat dataFormat,String payload);
 
 
+    /**
+     * 属性发布事件 原始字节负载
+     * @param productId 产品id
+     * @param deviceId 设备id
+     * @param payload 负载
+     */
+    void publishPropertyUpEvent(String productId,String deviceId, DevicePayload payload);
+
+
+    /**
+     * 消息发布事件 原始字节负载
+     * @param productId 产品id
+     * @param deviceId 设备id
+     * @param payload 负载
+     */
+    void publishMessageUpEvent(String productId,String deviceId, DevicePayload payload);
+
+
     /**
      * 发布设备配置更改修改反馈事件
      * @param productId 产品id
@@ -3,6 +3,9 @@ package com.aibaixun.iotdm.service;
 import com.aibaixun.iotdm.msg.TransportSessionInfo;
 import com.aibaixun.iotdm.transport.SessionId;
 
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
 /**
  * 缓存服务
  * @author wangxiao@aibaixun.com
@@ -35,6 +38,15 @@ public interface SessionCacheServer {
     void activitySessionCache(SessionId sessionId,long ttl);
 
 
+    /**
+     * 批量刷新 session (pipeline 写入)
+     * @param sessionInfos session 信息
+     * @param ttl 每个 session 的 ttl
+     * @param recreate true 缓存已过期时重建，false 只更新仍存在的缓存，不重建已删除的 session
+     */
+    void activitySessionCacheBatch(Map<SessionId,TransportSessionInfo> sessionInfos, ToLongFunction<TransportSessionInfo> ttl, boolean recreate);
+
+
     /**
      * 获取缓存
      * @param sessionId session id
@@ -0,0 +1,44 @@
+package com.aibaixun.iotdm.trace;
+
+/**
+ * 上行处理 阶段
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/16
+ */
+public enum PipelineStage {
+
+    /**
+     * socket 读取 到 业务线程开始处理，包含 ingest 排队
+     */
+    QUEUE,
+
+    /**
+     * 插件解析
+     */
+    DECODE,
+
+    /**
+     * 物模型匹配
+     */
+    MODEL_MATCH,
+
+    /**
+     * 属性入库
+     */
+    DB_UPSERT,
+
+    /**
+     * 发送到消息队列
+     */
+    MQ_PUBLISH,
+
+    /**
+     * 消息队列 发送到消费
+     */
+    MQ_TRANSIT,
+
+    /**
+     * 规则转发 分发
+     */
+    FORWARD_DISPATCH
+}
@@ -0,0 +1,141 @@
+package com.aibaixun.iotdm.trace;
+
+/**
+ * 上行消息 处理链路追踪
+ * <p>以 socket 读取时刻为起点，按阶段记录耗时；进程内使用 System.nanoTime，
+ * 经过消息队列后由 header 中的墙钟时间还原起点，跨节点时受时钟偏差影响</p>
+ * <p>同一条消息在同一时刻只被一个线程处理，不做同步</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/16
+ */
+public final class PipelineTrace {
+
+    /**
+     * 起点 墙钟时间(毫秒)
+     */
+    private final long ingressTime;
+
+    /**
+     * 起点 本进程 nanoTime
+     */
+    private final long ingressNanos;
+
+    /**
+     * 上一个阶段结束时间
+     */
+    private long markNanos;
+
+    private boolean sampled;
+
+    /**
+     * 各阶段耗时，只在采样时分配
+     */
+    private long[] stageNanos;
+
+
+    private PipelineTrace(long ingressTime, long ingressNanos, long markNanos, boolean sampled) {
+        this.ingressTime = ingressTime;
+        this.ingressNanos = ingressNanos;
+        this.markNanos = markNanos;
+        setSampled(sampled);
+    }
+
+    /**
+     * 创建追踪
+     * @param ingressNanos socket 读取时的 System.nanoTime
+     * @return trace
+     */
+    public static PipelineTrace start(long ingressNanos) {
+        long now = System.nanoTime();
+        long ingressTime = System.currentTimeMillis() - (now - ingressNanos) / 1_000_000;
+        return new PipelineTrace(ingressTime, ingressNanos, ingressNanos, false);
+    }
+
+    /**
+     * 消息队列 消费端还原追踪
+     * @param ingressTime 起点 墙钟时间(毫秒)
+     * @param publishTime 发送到消息队列 墙钟时间(毫秒)
+     * @param sampledStages 采样时发送端已记录的阶段耗时 {@link #encodeStages()}，未采样为 null
+     * @return trace
+     */
+    public static PipelineTrace resume(long ingressTime, long publishTime, String sampledStages) {
+        long now = System.nanoTime();
+        long currentTime = System.currentTimeMillis();
+        long ingressNanos = now - Math.max(0, currentTime - ingressTime) * 1_000_000;
+        long publishNanos = now - Math.max(0, currentTime - publishTime) * 1_000_000;
+        PipelineTrace trace = new PipelineTrace(ingressTime, ingressNanos, publishNanos, sampledStages != null);
+        if (sampledStages != null) {
+            String[] values = sampledStages.split(",");
+            for (int i = 0; i < values.length && i < trace.stageNanos.length; i++) {
+                trace.stageNanos[i] = Long.parseLong(values[i]);
+            }
+        }
+        return trace;
+    }
+
+    /**
+     * 采样时 各阶段耗时编码，用于经过消息队列传递
+     * @return 逗号分隔的纳秒值，未采样为 null
+     */
+    public String encodeStages() {
+        if (stageNanos == null) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder(stageNanos.length * 8);
+        for (int i = 0; i < stageNanos.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(stageNanos[i]);
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * 结束一个阶段
+     * @param stage 阶段
+     * @return 阶段耗时(纳秒)
+     */
+    public long mark(PipelineStage stage) {
+        long now = System.nanoTime();
+        long elapsed = now - markNanos;
+        markNanos = now;
+        if (stageNanos != null) {
+            stageNanos[stage.ordinal()] = elapsed;
+        }
+        return elapsed;
+    }
+
+    /**
+     * 起点到当前耗时
+     * @return 纳秒
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - ingressNanos;
+    }
+
+    public long getIngressTime() {
+        return ingressTime;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    public void setSampled(boolean sampled) {
+        this.sampled = sampled;
+        if (sampled && stageNanos == null) {
+            stageNanos = new long[PipelineStage.values().length];
+        }
+    }
+
+    /**
+     * 阶段耗时 未采样或未经过该阶段为 0
+     * @param stage 阶段
+     * @return 纳秒
+     */
+    public long getStageNanos(PipelineStage stage) {
+        return stageNanos == null ? 0 : stageNanos[stage.ordinal()];
+    }
+}
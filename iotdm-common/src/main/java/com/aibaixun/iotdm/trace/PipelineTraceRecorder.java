@@ -0,0 +1,38 @@
+package com.aibaixun.iotdm.trace;
+
+/**
+ * 链路追踪 记录
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/16
+ */
+public interface PipelineTraceRecorder {
+
+    /**
+     * 消息队列 header 起点墙钟时间
+     */
+    String INGRESS_TIME_HEADER = "ingressTime";
+
+    /**
+     * 消息队列 header 发送时间
+     */
+    String PUBLISH_TIME_HEADER = "publishTime";
+
+    /**
+     * 消息队列 header 采样时发送端各阶段耗时，未采样不携带
+     */
+    String SAMPLED_STAGES_HEADER = "traceStages";
+
+
+    /**
+     * 结束一个阶段并记录耗时，trace 为空时忽略
+     * @param trace trace
+     * @param stage 阶段
+     */
+    void record(PipelineTrace trace, PipelineStage stage);
+
+    /**
+     * 链路结束 记录总耗时，采样的 trace 导出各阶段耗时
+     * @param trace trace
+     */
+    void finish(PipelineTrace trace);
+}
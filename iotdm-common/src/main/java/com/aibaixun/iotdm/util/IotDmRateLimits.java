@@ -43,4 +43,8 @@ public class IotDmRateLimits {
         return bucket.tryConsume(number);
     }
 
+    public void refund(long number) {
+        bucket.addTokens(number);
+    }
+
 }
@@ -12,17 +12,22 @@ import com.aibaixun.iotdm.queue.IotDmSink;
 import com.aibaixun.iotdm.queue.QueueReceiveServer;
 import com.aibaixun.iotdm.rule.server.ForwardService;
 import com.aibaixun.iotdm.rule.server.RuleServer;
+import com.aibaixun.iotdm.trace.PipelineStage;
+import com.aibaixun.iotdm.trace.PipelineTrace;
+import com.aibaixun.iotdm.trace.PipelineTraceRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.GenericMessage;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
@@ -40,12 +45,15 @@ public class DefaultQueueReceiveServer implements QueueReceiveServer {
 
     private ForwardService forwardService;
 
+    private PipelineTraceRecorder traceRecorder;
+
     @Override
     @StreamListener(IotDmSink.INPUT_PROPERTY_TS_DATA)
     public <T> void receivePropertyTsData(GenericMessage<T> tsData) {
         log.info("QueueReceiveService receivePropertyTsData:{}",tsData);
         try {
             PostPropertyBusinessMsg propertyTsData = JsonUtil.toObject(tsData.getPayload().toString(),PostPropertyBusinessMsg.class) ;
+            propertyTsData.setTrace(resumeTrace(tsData.getHeaders()));
             String productId = propertyTsData.getMetaData().getProductId();
             List<ForwardRuleInfo> forwardRule = getForwardRule(productId);
             List<ForwardRuleInfo> forwardRuleInfos = matchForwardRule(SubjectResource.DEVICE_PROPERTY, SubjectEvent.DEVICE_PROPERTY_REPORT, forwardRule);
@@ -106,6 +114,25 @@ public class DefaultQueueReceiveServer implements QueueReceiveServer {
     }
 
 
+    /**
+     * 由消息 header 还原链路追踪，并记录消息队列传输耗时
+     * @param headers 消息 header
+     * @return trace 发送端未携带时为 null
+     */
+    private PipelineTrace resumeTrace(MessageHeaders headers) {
+        Object ingressTime = headers.get(PipelineTraceRecorder.INGRESS_TIME_HEADER);
+        Object publishTime = headers.get(PipelineTraceRecorder.PUBLISH_TIME_HEADER);
+        if (Objects.isNull(traceRecorder) || !(ingressTime instanceof Number) || !(publishTime instanceof Number)) {
+            return null;
+        }
+        Object sampledStages = headers.get(PipelineTraceRecorder.SAMPLED_STAGES_HEADER);
+        PipelineTrace trace = PipelineTrace.resume(((Number) ingressTime).longValue(), ((Number) publishTime).longValue(),
+                Objects.nonNull(sampledStages) ? sampledStages.toString() : null);
+        traceRecorder.record(trace, PipelineStage.MQ_TRANSIT);
+        return trace;
+    }
+
+
     /**
      * 查询 转发规则
      * @param productId 产品id
@@ -143,4 +170,9 @@ public class DefaultQueueReceiveServer implements QueueReceiveServer {
     public void setForwardService(ForwardService forwardService) {
         this.forwardService = forwardService;
     }
+
+    @Autowired(required = false)
+    public void setTraceRecorder(PipelineTraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
 }
@@ -1,5 +1,6 @@
 package com.aibaixun.iotdm.rule.server;
 
+import com.aibaixun.iotdm.business.AbstractBusinessMsg;
 import com.aibaixun.iotdm.enums.ResourceType;
 import com.aibaixun.iotdm.msg.ForwardRuleInfo;
 import com.aibaixun.iotdm.msg.TargetResourceInfo;
@@ -8,6 +9,9 @@ import com.aibaixun.iotdm.rule.send.SendServer;
 import com.aibaixun.iotdm.scheduler.RuleExecutorService;
 import com.aibaixun.iotdm.support.BaseResourceConfig;
 import com.aibaixun.iotdm.support.BaseTargetConfig;
+import com.aibaixun.iotdm.trace.PipelineStage;
+import com.aibaixun.iotdm.trace.PipelineTrace;
+import com.aibaixun.iotdm.trace.PipelineTraceRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,6 +41,8 @@ public class ForwardServiceImpl implements ForwardService{
      */
     private RuleExecutorService ruleExecutorService;
 
+    private PipelineTraceRecorder traceRecorder;
+
 
     @Override
     public <T> void sendMessage(T message, List<ForwardRuleInfo> forwardRuleInfos){
@@ -46,6 +52,7 @@ public class ForwardServiceImpl implements ForwardService{
                 log.info("ForwardServiceImpl.sendMessage >> ruleLabel:{},resourceLabel:{}",targetResourceInfo.getRuleLabel(),targetResourceInfo.getResourceLabel());
                 doSendMessage(message,targetResourceInfo.getResourceType(),targetResourceInfo.getResourceConfig(), targetResourceInfo.getTargetConfig());
             }
+            recordTrace(message);
             afterSendMessage(message);
         }catch (Exception e){
             caughtSendMessage(e);
@@ -84,6 +91,20 @@ public class ForwardServiceImpl implements ForwardService{
     }
 
 
+    /**
+     * 规则转发分发完成 结束链路追踪
+     * @param message 消息
+     * @param <T> 消息类型
+     */
+    private <T> void recordTrace(T message) {
+        if (Objects.nonNull(traceRecorder) && message instanceof AbstractBusinessMsg) {
+            PipelineTrace trace = ((AbstractBusinessMsg) message).getTrace();
+            traceRecorder.record(trace, PipelineStage.FORWARD_DISPATCH);
+            traceRecorder.finish(trace);
+        }
+    }
+
+
     @Override
     public List<TargetResourceInfo> beforeSendMessage(List<ForwardRuleInfo> forwardRuleInfos) {
         log.info("ForwardServiceImpl.beforeSendMessage >>> startTime is:{}", Instant.now().toEpochMilli());
@@ -107,4 +128,9 @@ public class ForwardServiceImpl implements ForwardService{
     public void setRuleExecutorService(RuleExecutorService ruleExecutorService) {
         this.ruleExecutorService = ruleExecutorService;
     }
+
+    @Autowired(required = false)
+    public void setTraceRecorder(PipelineTraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
 }
@@ -0,0 +1,121 @@
+package com.aibaixun.iotdm.simulator;
+
+import io.netty.handler.codec.mqtt.MqttQoS;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 设备行为配置
+ * <p>所有模拟设备共享，启动时由 {@link SimulatorConfig} 解析一次</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class DeviceProfile {
+
+    private final int keepalive;
+
+    private final int connectTimeout;
+
+    private final long reconnectDelay;
+
+    private final long publishInterval;
+
+    private final MqttQoS qos;
+
+    private final long pubAckTimeout;
+
+    private final String[] topics;
+
+    /**
+     * topic 累计权重，按权重随机选择上行 topic
+     */
+    private final int[] cumulativeWeights;
+
+    private final List<String> subscribeTopics;
+
+    private final PayloadTemplate payloadTemplate;
+
+    private final SimulatorStats stats;
+
+
+    public DeviceProfile(SimulatorConfig config, SimulatorStats stats) {
+        this.keepalive = config.getKeepalive();
+        this.connectTimeout = config.getInt("connect_timeout");
+        this.reconnectDelay = config.getLong("reconnect_delay");
+        this.publishInterval = config.getPublishInterval();
+        this.qos = MqttQoS.valueOf(config.getQos());
+        this.pubAckTimeout = config.getLong("pub_ack_timeout");
+        Map<String, Integer> topicMix = config.getTopicMix();
+        if (topicMix.isEmpty()) {
+            throw new IllegalArgumentException("topic_mix is empty");
+        }
+        this.topics = new String[topicMix.size()];
+        this.cumulativeWeights = new int[topicMix.size()];
+        int i = 0;
+        int total = 0;
+        for (Map.Entry<String, Integer> entry : topicMix.entrySet()) {
+            total += Math.max(0, entry.getValue());
+            topics[i] = entry.getKey();
+            cumulativeWeights[i++] = total;
+        }
+        this.subscribeTopics = config.getSubscribeTopics();
+        this.payloadTemplate = PayloadTemplate.of(config);
+        this.stats = stats;
+    }
+
+
+    /**
+     * 按权重选择上行 topic
+     * @return topic
+     */
+    public String nextTopic() {
+        if (topics.length == 1) {
+            return topics[0];
+        }
+        int value = ThreadLocalRandom.current().nextInt(Math.max(1, cumulativeWeights[cumulativeWeights.length - 1]));
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return topics[i];
+            }
+        }
+        return topics[topics.length - 1];
+    }
+
+    public int getKeepalive() {
+        return keepalive;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public long getReconnectDelay() {
+        return reconnectDelay;
+    }
+
+    public long getPublishInterval() {
+        return publishInterval;
+    }
+
+    public MqttQoS getQos() {
+        return qos;
+    }
+
+    public long getPubAckTimeout() {
+        return pubAckTimeout;
+    }
+
+    public List<String> getSubscribeTopics() {
+        return subscribeTopics;
+    }
+
+    public PayloadTemplate getPayloadTemplate() {
+        return payloadTemplate;
+    }
+
+    public SimulatorStats getStats() {
+        return stats;
+    }
+}
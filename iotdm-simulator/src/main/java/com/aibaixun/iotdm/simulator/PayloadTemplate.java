@@ -0,0 +1,135 @@
+package com.aibaixun.iotdm.simulator;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 上行负载模板
+ * <p>模板在启动时拆分为常量片段与占位符，发布时直接写入 ByteBuf，不做正则替换</p>
+ * <ul>
+ *     <li>json: 支持 ${deviceId} ${seq} ${ts} ${rand} ${randInt}</li>
+ *     <li>binary: hex 字符串，${randInt} 替换为 2 字节随机数</li>
+ * </ul>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class PayloadTemplate {
+
+    private final boolean binary;
+
+    private final List<Object> parts;
+
+
+    private PayloadTemplate(boolean binary, List<Object> parts) {
+        this.binary = binary;
+        this.parts = parts;
+    }
+
+    public static PayloadTemplate of(SimulatorConfig config) {
+        boolean binary = config.isBinary();
+        String template = binary ? config.getString("hex_template") : config.getString("json_template");
+        return new PayloadTemplate(binary, parse(template, binary));
+    }
+
+
+    /**
+     * 生成负载
+     * @param allocator 分配器
+     * @param deviceId 设备id
+     * @param seq 序号
+     * @return 负载
+     */
+    public ByteBuf render(ByteBufAllocator allocator, String deviceId, long seq) {
+        ByteBuf buf = allocator.buffer(128);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (Object part : parts) {
+            if (part instanceof byte[]) {
+                buf.writeBytes((byte[]) part);
+                continue;
+            }
+            switch ((Placeholder) part) {
+                case DEVICE_ID:
+                    buf.writeCharSequence(deviceId, StandardCharsets.UTF_8);
+                    break;
+                case SEQ:
+                    buf.writeCharSequence(Long.toString(seq), StandardCharsets.US_ASCII);
+                    break;
+                case TS:
+                    buf.writeCharSequence(Long.toString(System.currentTimeMillis()), StandardCharsets.US_ASCII);
+                    break;
+                case RAND:
+                    buf.writeCharSequence(Double.toString(Math.round(random.nextDouble() * 10000) / 100.0), StandardCharsets.US_ASCII);
+                    break;
+                case RAND_INT:
+                    if (binary) {
+                        buf.writeShort(random.nextInt(0x10000));
+                    } else {
+                        buf.writeCharSequence(Integer.toString(random.nextInt(100)), StandardCharsets.US_ASCII);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return buf;
+    }
+
+
+    private static List<Object> parse(String template, boolean binary) {
+        List<Object> parts = new ArrayList<>();
+        int from = 0;
+        while (from < template.length()) {
+            int start = template.indexOf("${", from);
+            int end = start < 0 ? -1 : template.indexOf('}', start);
+            if (start < 0 || end < 0) {
+                parts.add(literal(template.substring(from), binary));
+                break;
+            }
+            if (start > from) {
+                parts.add(literal(template.substring(from, start), binary));
+            }
+            parts.add(Placeholder.of(template.substring(start + 2, end)));
+            from = end + 1;
+        }
+        return parts;
+    }
+
+    private static byte[] literal(String text, boolean binary) {
+        return binary ? ByteBufUtil.decodeHexDump(text.replace(" ", "")) : text.getBytes(StandardCharsets.UTF_8);
+    }
+
+
+    private enum Placeholder {
+
+        DEVICE_ID("deviceId"),
+
+        SEQ("seq"),
+
+        TS("ts"),
+
+        RAND("rand"),
+
+        RAND_INT("randInt");
+
+        private final String name;
+
+        Placeholder(String name) {
+            this.name = name;
+        }
+
+        static Placeholder of(String name) {
+            for (Placeholder placeholder : values()) {
+                if (placeholder.name.equals(name)) {
+                    return placeholder;
+                }
+            }
+            throw new IllegalArgumentException("unknown placeholder: ${" + name + "}");
+        }
+    }
+}
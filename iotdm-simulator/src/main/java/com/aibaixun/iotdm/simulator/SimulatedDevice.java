@@ -0,0 +1,308 @@
+package com.aibaixun.iotdm.simulator;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.mqtt.MqttConnAckMessage;
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.netty.handler.codec.mqtt.MqttDecoder;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageBuilders;
+import io.netty.handler.codec.mqtt.MqttMessageIdVariableHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPubAckMessage;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttVersion;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模拟设备
+ * <p>一个设备一个连接，所有状态只在所属 event loop 上读写；断开后按 reconnect_delay 重连</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class SimulatedDevice {
+
+    private static final MqttMessage PINGREQ = new MqttMessage(new MqttFixedHeader(MqttMessageType.PINGREQ, false, MqttQoS.AT_MOST_ONCE, false, 0));
+
+    private static final MqttMessage DISCONNECT = new MqttMessage(new MqttFixedHeader(MqttMessageType.DISCONNECT, false, MqttQoS.AT_MOST_ONCE, false, 0));
+
+    private final String clientId;
+
+    private final String username;
+
+    private final String password;
+
+    private final Bootstrap bootstrap;
+
+    private final DeviceProfile profile;
+
+    private final SimulatorStats stats;
+
+    private volatile Channel channel;
+
+    private volatile boolean stopped;
+
+
+    public SimulatedDevice(String clientId, String username, String password, Bootstrap bootstrap, DeviceProfile profile) {
+        this.clientId = clientId;
+        this.username = username;
+        this.password = password;
+        this.bootstrap = bootstrap;
+        this.profile = profile;
+        this.stats = profile.getStats();
+    }
+
+
+    /**
+     * 建立连接
+     */
+    public void connect() {
+        if (stopped) {
+            return;
+        }
+        stats.onConnectAttempt();
+        long startNanos = System.nanoTime();
+        Bootstrap deviceBootstrap = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                ch.pipeline().addLast("idle", new IdleStateHandler(0, profile.getKeepalive(), 0, TimeUnit.SECONDS));
+                ch.pipeline().addLast("decoder", new MqttDecoder());
+                ch.pipeline().addLast("encoder", MqttEncoder.INSTANCE);
+                ch.pipeline().addLast("handler", new DeviceHandler(startNanos));
+            }
+        });
+        deviceBootstrap.connect().addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                stats.onConnectFailed(future.cause().getClass().getSimpleName());
+                scheduleReconnect(future.channel());
+            } else {
+                channel = future.channel();
+            }
+        });
+    }
+
+    /**
+     * 停止 发送 DISCONNECT 后关闭连接，不再重连
+     */
+    public void stop() {
+        stopped = true;
+        Channel ch = channel;
+        if (Objects.nonNull(ch) && ch.isActive()) {
+            ch.writeAndFlush(DISCONNECT).addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+    private void scheduleReconnect(Channel ch) {
+        if (stopped || profile.getReconnectDelay() <= 0) {
+            return;
+        }
+        ch.eventLoop().schedule(this::connect, profile.getReconnectDelay(), TimeUnit.MILLISECONDS);
+    }
+
+
+    private class DeviceHandler extends ChannelInboundHandlerAdapter {
+
+        private final long connectStartNanos;
+
+        /**
+         * QoS 1 在途消息 packetId -> 发送时间
+         */
+        private final IntObjectMap<Long> inflight = new IntObjectHashMap<>();
+
+        private boolean connected;
+
+        private int nextPacketId;
+
+        private long seq;
+
+        private ScheduledFuture<?> connectTimeout;
+
+        private ScheduledFuture<?> publishTask;
+
+        private ScheduledFuture<?> pubAckSweepTask;
+
+        private DeviceHandler(long connectStartNanos) {
+            this.connectStartNanos = connectStartNanos;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            ctx.writeAndFlush(MqttMessageBuilders.connect()
+                    .clientId(clientId).username(username).password(password.getBytes(StandardCharsets.UTF_8))
+                    .protocolVersion(MqttVersion.MQTT_3_1_1).keepAlive(profile.getKeepalive()).cleanSession(true)
+                    .build());
+            connectTimeout = ctx.executor().schedule(() -> {
+                if (!connected) {
+                    stats.onConnectFailed("CONNACK_TIMEOUT");
+                    ctx.close();
+                }
+            }, profile.getConnectTimeout(), TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            if (!(msg instanceof MqttMessage)) {
+                return;
+            }
+            MqttMessage mqttMessage = (MqttMessage) msg;
+            if (mqttMessage.decoderResult().isFailure()) {
+                stats.onConnectFailed("DECODE_ERROR");
+                ctx.close();
+                return;
+            }
+            switch (mqttMessage.fixedHeader().messageType()) {
+                case CONNACK:
+                    processConnAck(ctx, (MqttConnAckMessage) mqttMessage);
+                    break;
+                case PUBACK:
+                    Long sentNanos = inflight.remove(((MqttPubAckMessage) mqttMessage).variableHeader().messageId());
+                    if (Objects.nonNull(sentNanos)) {
+                        stats.onPubAck(System.nanoTime() - sentNanos);
+                    }
+                    break;
+                case PUBLISH:
+                    processDownlink(ctx, (MqttPublishMessage) mqttMessage);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void processConnAck(ChannelHandlerContext ctx, MqttConnAckMessage connAckMessage) {
+            cancel(connectTimeout);
+            MqttConnectReturnCode returnCode = connAckMessage.variableHeader().connectReturnCode();
+            if (returnCode != MqttConnectReturnCode.CONNECTION_ACCEPTED) {
+                stats.onConnectFailed(returnCode.name());
+                ctx.close();
+                return;
+            }
+            connected = true;
+            stats.onConnected(System.nanoTime() - connectStartNanos);
+            if (!profile.getSubscribeTopics().isEmpty()) {
+                MqttMessageBuilders.SubscribeBuilder subscribe = MqttMessageBuilders.subscribe().messageId(nextPacketId());
+                profile.getSubscribeTopics().forEach(topic -> subscribe.addSubscription(MqttQoS.AT_LEAST_ONCE, topic));
+                ctx.writeAndFlush(subscribe.build());
+            }
+            long interval = profile.getPublishInterval();
+            if (interval > 0) {
+                long initialDelay = ThreadLocalRandom.current().nextLong(interval);
+                publishTask = ctx.executor().scheduleAtFixedRate(() -> publish(ctx), initialDelay, interval, TimeUnit.MILLISECONDS);
+            }
+            long pubAckTimeout = profile.getPubAckTimeout();
+            if (profile.getQos() == MqttQoS.AT_LEAST_ONCE && pubAckTimeout > 0) {
+                pubAckSweepTask = ctx.executor().scheduleAtFixedRate(() -> expireInflight(pubAckTimeout), pubAckTimeout, pubAckTimeout, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * 在途消息超过 PUBACK 超时仍未确认，移出在途表并计为超时
+         * @param pubAckTimeout 超时(毫秒)
+         */
+        private void expireInflight(long pubAckTimeout) {
+            long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(pubAckTimeout);
+            int expired = 0;
+            Iterator<IntObjectMap.PrimitiveEntry<Long>> iterator = inflight.entries().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().value() - deadline < 0) {
+                    iterator.remove();
+                    expired++;
+                }
+            }
+            if (expired > 0) {
+                stats.onPubAckTimeout(expired);
+            }
+        }
+
+        private void publish(ChannelHandlerContext ctx) {
+            if (!ctx.channel().isWritable()) {
+                return;
+            }
+            MqttQoS qos = profile.getQos();
+            int packetId = qos == MqttQoS.AT_MOST_ONCE ? 0 : nextPacketId();
+            ByteBuf payload = profile.getPayloadTemplate().render(ctx.alloc(), clientId, seq++);
+            int bytes = payload.readableBytes();
+            MqttPublishMessage publishMessage = MqttMessageBuilders.publish()
+                    .topicName(profile.nextTopic()).qos(qos).messageId(packetId).payload(payload).build();
+            if (packetId != 0 && inflight.put(packetId, System.nanoTime()) != null) {
+                stats.onPubAckTimeout(1);
+            }
+            ctx.writeAndFlush(publishMessage, ctx.voidPromise());
+            stats.onPublish(bytes);
+        }
+
+        private void processDownlink(ChannelHandlerContext ctx, MqttPublishMessage publishMessage) {
+            try {
+                stats.onDownlink();
+                if (publishMessage.fixedHeader().qosLevel() == MqttQoS.AT_LEAST_ONCE) {
+                    MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0);
+                    MqttMessageIdVariableHeader variableHeader = MqttMessageIdVariableHeader.from(publishMessage.variableHeader().packetId());
+                    ctx.writeAndFlush(new MqttPubAckMessage(fixedHeader, variableHeader), ctx.voidPromise());
+                }
+            } finally {
+                publishMessage.release();
+            }
+        }
+
+        private int nextPacketId() {
+            nextPacketId = nextPacketId % 0xFFFF + 1;
+            return nextPacketId;
+        }
+
+        @Override
+        public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+            if (evt instanceof IdleStateEvent && ((IdleStateEvent) evt).state() == IdleState.WRITER_IDLE) {
+                ctx.writeAndFlush(PINGREQ, ctx.voidPromise());
+                return;
+            }
+            super.userEventTriggered(ctx, evt);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            cancel(connectTimeout);
+            cancel(publishTask);
+            cancel(pubAckSweepTask);
+            if (connected) {
+                connected = false;
+                stats.onDisconnected();
+                stats.onPubAckTimeout(inflight.size());
+            }
+            inflight.clear();
+            scheduleReconnect(ctx.channel());
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            if (!connected) {
+                stats.onConnectFailed(cause.getClass().getSimpleName());
+            }
+            ctx.close();
+        }
+
+        private void cancel(ScheduledFuture<?> future) {
+            if (Objects.nonNull(future)) {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.aibaixun.iotdm.simulator;
+
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 设备集群模拟器 入口
+ * <p>java -jar iotdm-simulator.jar [-c simulator.properties] [-Dsim.devices=100000 ...]</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class SimulatorApplication {
+
+    private static final Logger log = LoggerFactory.getLogger("simulator");
+
+    /**
+     * 建连节奏 每 10 毫秒发起一批
+     */
+    private static final long CONNECT_TICK_MILLIS = 10;
+
+
+    public static void main(String[] args) throws Exception {
+        SimulatorConfig config = SimulatorConfig.load(args);
+        log.info("SimulatorApplication.main >> config:{}", config);
+
+        SimulatorStats stats = new SimulatorStats();
+        DeviceProfile profile = new DeviceProfile(config, stats);
+        int workerThreads = config.getInt("worker_threads");
+        boolean epoll = Epoll.isAvailable();
+        EventLoopGroup workerGroup = epoll
+                ? new EpollEventLoopGroup(workerThreads, IotDmThreadFactory.forName("sim-worker"))
+                : new NioEventLoopGroup(workerThreads, IotDmThreadFactory.forName("sim-worker"));
+        Bootstrap bootstrap = new Bootstrap()
+                .group(workerGroup)
+                .channel(epoll ? EpollSocketChannel.class : NioSocketChannel.class)
+                .remoteAddress(config.getHost(), config.getPort())
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getInt("connect_timeout") * 1000)
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+
+        List<SimulatedDevice> devices = createDevices(config, bootstrap, profile);
+        log.info("SimulatorApplication.main >> {} devices, target {}:{}, transport:{}", devices.size(), config.getHost(), config.getPort(), epoll ? "epoll" : "nio");
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, IotDmThreadFactory.forName("sim-scheduler"));
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicInteger connectIndex = new AtomicInteger();
+        int perTick = (int) Math.max(1, config.getConnectRate() * CONNECT_TICK_MILLIS / 1000);
+        scheduler.scheduleAtFixedRate(() -> {
+            for (int i = 0; i < perTick; i++) {
+                int index = connectIndex.getAndIncrement();
+                if (index >= devices.size()) {
+                    return;
+                }
+                devices.get(index).connect();
+            }
+        }, 0, CONNECT_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        long reportInterval = config.getLong("report_interval");
+        scheduler.scheduleAtFixedRate(stats::report, reportInterval, reportInterval, TimeUnit.SECONDS);
+        long duration = config.getLong("duration");
+        if (duration > 0) {
+            scheduler.schedule(finished::countDown, duration, TimeUnit.SECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(finished::countDown, "sim-shutdown"));
+
+        finished.await();
+        scheduler.shutdownNow();
+        devices.forEach(SimulatedDevice::stop);
+        workerGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS).syncUninterruptibly();
+        stats.summary();
+    }
+
+
+    /**
+     * 生成设备凭证 配置了 credentials_file 时按 csv 读取，否则按模板生成
+     */
+    private static List<SimulatedDevice> createDevices(SimulatorConfig config, Bootstrap bootstrap, DeviceProfile profile) throws IOException {
+        List<SimulatedDevice> devices = new ArrayList<>();
+        String credentialsFile = config.getString("credentials_file");
+        int count = config.getDevices();
+        if (!credentialsFile.isEmpty()) {
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(credentialsFile), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null && devices.size() < count) {
+                    String[] fields = line.trim().split(",");
+                    if (fields.length < 3 || line.startsWith("#")) {
+                        continue;
+                    }
+                    devices.add(new SimulatedDevice(fields[0].trim(), fields[1].trim(), fields[2].trim(), bootstrap, profile));
+                }
+            }
+            return devices;
+        }
+        int offset = config.getInt("device_offset");
+        String clientIdPattern = config.getString("client_id_pattern");
+        String usernamePattern = config.getString("username_pattern");
+        String passwordPattern = config.getString("password_pattern");
+        for (int i = offset; i < offset + count; i++) {
+            devices.add(new SimulatedDevice(String.format(clientIdPattern, i), String.format(usernamePattern, i),
+                    String.format(passwordPattern, i), bootstrap, profile));
+        }
+        return devices;
+    }
+}
@@ -0,0 +1,169 @@
+package com.aibaixun.iotdm.simulator;
+
+import com.aibaixun.iotdm.constants.TopicConstants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * 模拟器配置
+ * <p>依次加载 classpath 默认配置、-c 指定的配置文件、-Dsim.* 系统属性</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class SimulatorConfig {
+
+    private static final String SYSTEM_PROPERTY_PREFIX = "sim.";
+
+    private final Properties properties;
+
+
+    private SimulatorConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 加载配置
+     * @param args 命令行参数，支持 -c 配置文件
+     * @return 配置
+     * @throws IOException 读取失败
+     */
+    public static SimulatorConfig load(String[] args) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = SimulatorConfig.class.getResourceAsStream("/simulator.properties")) {
+            if (in != null) {
+                properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            }
+        }
+        for (int i = 0; i < args.length - 1; i++) {
+            if ("-c".equals(args[i])) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(args[i + 1]), StandardCharsets.UTF_8)) {
+                    properties.load(reader);
+                }
+            }
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(SYSTEM_PROPERTY_PREFIX)) {
+                properties.setProperty(name.substring(SYSTEM_PROPERTY_PREFIX.length()), System.getProperty(name));
+            }
+        }
+        return new SimulatorConfig(properties);
+    }
+
+
+    public String getString(String key) {
+        return properties.getProperty(key, "").trim();
+    }
+
+    public int getInt(String key) {
+        return Integer.parseInt(getString(key));
+    }
+
+    public long getLong(String key) {
+        return Long.parseLong(getString(key));
+    }
+
+    public String getHost() {
+        return getString("host");
+    }
+
+    public int getPort() {
+        return getInt("port");
+    }
+
+    public int getDevices() {
+        return getInt("devices");
+    }
+
+    public int getConnectRate() {
+        return getInt("connect_rate");
+    }
+
+    public int getKeepalive() {
+        return getInt("keepalive");
+    }
+
+    public int getQos() {
+        return getInt("qos");
+    }
+
+    public long getPublishInterval() {
+        return getLong("publish_interval");
+    }
+
+    public boolean isBinary() {
+        return "binary".equalsIgnoreCase(getString("data_format"));
+    }
+
+    /**
+     * 上行 topic 权重
+     * @return topic -> 权重，保持配置顺序
+     */
+    public Map<String, Integer> getTopicMix() {
+        Map<String, Integer> topicMix = new LinkedHashMap<>();
+        for (String item : getList("topic_mix")) {
+            int index = item.lastIndexOf(':');
+            if (index > 0) {
+                topicMix.put(resolveTopic(item.substring(0, index).trim()), Integer.parseInt(item.substring(index + 1).trim()));
+            } else {
+                topicMix.put(resolveTopic(item), 1);
+            }
+        }
+        return topicMix;
+    }
+
+    public List<String> getSubscribeTopics() {
+        List<String> topics = new ArrayList<>();
+        for (String item : getList("subscribe_topics")) {
+            topics.add(resolveTopic(item));
+        }
+        return topics;
+    }
+
+    /**
+     * topic 支持直接写 TopicConstants 常量名
+     * @param topic topic 或常量名
+     * @return topic
+     */
+    static String resolveTopic(String topic) {
+        if (topic.indexOf('/') >= 0) {
+            return topic;
+        }
+        try {
+            return (String) TopicConstants.class.getField(topic).get(null);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalArgumentException("unknown topic constant: " + topic);
+        }
+    }
+
+    public List<String> getList(String key) {
+        String value = getString(key);
+        if (value.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                result.add(item.trim());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return new TreeMap<>(properties).toString();
+    }
+}
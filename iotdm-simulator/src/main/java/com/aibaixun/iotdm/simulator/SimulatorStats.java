@@ -0,0 +1,157 @@
+package com.aibaixun.iotdm.simulator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 模拟器统计
+ * <p>按间隔输出连接数、吞吐、PUBACK 延迟百分位，结束时输出全程汇总</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/17
+ */
+public class SimulatorStats {
+
+    private final Logger log = LoggerFactory.getLogger("simulator");
+
+    private final AtomicInteger connected = new AtomicInteger();
+
+    private final LongAdder connectAttempts = new LongAdder();
+
+    private final LongAdder published = new LongAdder();
+
+    private final LongAdder publishedBytes = new LongAdder();
+
+    private final LongAdder pubAcks = new LongAdder();
+
+    private final LongAdder pubAckTimeouts = new LongAdder();
+
+    private final LongAdder downlinks = new LongAdder();
+
+    private final LongAdder disconnects = new LongAdder();
+
+    /**
+     * 连接失败原因 -> 次数，原因为 CONNACK 返回码或异常类型
+     */
+    private final Map<String, LongAdder> connectFailures = new ConcurrentHashMap<>();
+
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+
+    private final LatencyHistogram pubAckLatency = new LatencyHistogram();
+
+    private final long[] totalConnectLatency = LatencyHistogram.emptySnapshot();
+
+    private final long[] totalPubAckLatency = LatencyHistogram.emptySnapshot();
+
+    private final long startMillis = System.currentTimeMillis();
+
+    private long lastReportMillis = startMillis;
+
+    private long lastPublished;
+
+    private long lastPubAcks;
+
+    private long lastDownlinks;
+
+
+    public void onConnectAttempt() {
+        connectAttempts.increment();
+    }
+
+    public void onConnected(long latencyNanos) {
+        connected.incrementAndGet();
+        connectLatency.record(latencyNanos / 1000);
+    }
+
+    public void onConnectFailed(String reason) {
+        connectFailures.computeIfAbsent(reason, k -> new LongAdder()).increment();
+    }
+
+    public void onDisconnected() {
+        connected.decrementAndGet();
+        disconnects.increment();
+    }
+
+    public void onPublish(int bytes) {
+        published.increment();
+        publishedBytes.add(bytes);
+    }
+
+    public void onPubAck(long latencyNanos) {
+        pubAcks.increment();
+        pubAckLatency.record(latencyNanos / 1000);
+    }
+
+    public void onPubAckTimeout(int count) {
+        pubAckTimeouts.add(count);
+    }
+
+    public void onDownlink() {
+        downlinks.increment();
+    }
+
+
+    /**
+     * 输出间隔统计
+     */
+    public synchronized void report() {
+        long now = System.currentTimeMillis();
+        double seconds = Math.max(1, now - lastReportMillis) / 1000.0;
+        long publishedNow = published.sum();
+        long pubAcksNow = pubAcks.sum();
+        long downlinksNow = downlinks.sum();
+        long[] connectSnapshot = connectLatency.snapshotAndReset();
+        long[] pubAckSnapshot = pubAckLatency.snapshotAndReset();
+        LatencyHistogram.merge(totalConnectLatency, connectSnapshot);
+        LatencyHistogram.merge(totalPubAckLatency, pubAckSnapshot);
+        log.info("connected:{} attempts:{} failures:{} | publish/s:{} puback/s:{} downlink/s:{} | puback(ms) {} | connect(ms) {}",
+                connected.get(), connectAttempts.sum(), failures(),
+                rate(publishedNow - lastPublished, seconds), rate(pubAcksNow - lastPubAcks, seconds), rate(downlinksNow - lastDownlinks, seconds),
+                percentiles(pubAckSnapshot), percentiles(connectSnapshot));
+        lastReportMillis = now;
+        lastPublished = publishedNow;
+        lastPubAcks = pubAcksNow;
+        lastDownlinks = downlinksNow;
+    }
+
+    /**
+     * 输出全程汇总
+     */
+    public synchronized void summary() {
+        report();
+        double seconds = Math.max(1, System.currentTimeMillis() - startMillis) / 1000.0;
+        log.info("==== summary {}s ====", Math.round(seconds));
+        log.info("connect attempts:{} connected:{} disconnects:{} failures:{}", connectAttempts.sum(), connected.get(), disconnects.sum(), failures());
+        log.info("published:{} ({}/s, {} bytes) puback:{} ({}/s) puback timeout:{} downlink:{}",
+                published.sum(), rate(published.sum(), seconds), publishedBytes.sum(), pubAcks.sum(), rate(pubAcks.sum(), seconds),
+                pubAckTimeouts.sum(), downlinks.sum());
+        log.info("puback latency(ms) {}", percentiles(totalPubAckLatency));
+        log.info("connect latency(ms) {}", percentiles(totalConnectLatency));
+    }
+
+
+    private Map<String, Long> failures() {
+        Map<String, Long> failures = new TreeMap<>();
+        connectFailures.forEach((reason, count) -> failures.put(reason, count.sum()));
+        return failures;
+    }
+
+    private static long rate(long count, double seconds) {
+        return Math.round(count / seconds);
+    }
+
+    private static String percentiles(long[] snapshot) {
+        return String.format("n=%d p50=%.2f p90=%.2f p99=%.2f p999=%.2f max=%.2f",
+                LatencyHistogram.count(snapshot),
+                LatencyHistogram.percentile(snapshot, 50) / 1000.0,
+                LatencyHistogram.percentile(snapshot, 90) / 1000.0,
+                LatencyHistogram.percentile(snapshot, 99) / 1000.0,
+                LatencyHistogram.percentile(snapshot, 99.9) / 1000.0,
+                LatencyHistogram.percentile(snapshot, 100) / 1000.0);
+    }
+}
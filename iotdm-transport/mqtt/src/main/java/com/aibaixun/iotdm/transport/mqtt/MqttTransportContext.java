@@ -1,13 +1,23 @@
 package com.aibaixun.iotdm.transport.mqtt;
 
 import com.aibaixun.iotdm.transport.TransportContext;
+import com.aibaixun.iotdm.transport.mqtt.limits.ConnectAdmissionController;
+import com.aibaixun.iotdm.transport.mqtt.limits.IngestBackpressureController;
+import com.aibaixun.iotdm.transport.mqtt.metrics.MqttTransportMetrics;
+import com.aibaixun.iotdm.transport.shard.ShardManager;
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.net.InetSocketAddress;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 
 /**
  * mqtt 传输上下文
@@ -23,15 +33,95 @@ public class MqttTransportContext extends TransportContext {
     @Value("${transport.mqtt.netty.max_payload_size}")
     private Integer maxPayloadSize;
 
+    @Value("${transport.default-keepalive}")
+    private int defaultKeepalive;
+
+    @Value("${transport.mqtt.connect_timeout:10}")
+    private int connectTimeout;
+
+    @Value("${transport.mqtt.qos1.max_inflight:16}")
+    private int maxInflight;
+
+    @Value("${transport.mqtt.qos1.retry_interval:10000}")
+    private long retryInterval;
+
+    @Value("${transport.mqtt.qos1.max_retries:3}")
+    private int maxRetries;
+
+    /**
+     * qos1 下行重发 时间轮，所有连接共享
+     */
+    private HashedWheelTimer retransmitTimer;
+
     /**
      * ssl handler provider
      */
     private MqttSslHandlerProvider sslHandlerProvider;
 
     /**
-     * mqtt 连接数
+     * ingest 反压控制
+     */
+    private IngestBackpressureController backpressureController;
+
+    /**
+     * CONNECT 准入控制
+     */
+    private ConnectAdmissionController admissionController;
+
+    /**
+     * 设备分片
+     */
+    private ShardManager shardManager;
+
+    /**
+     * 传输指标
+     */
+    private MqttTransportMetrics metrics;
+
+
+    @PostConstruct
+    public void initRetransmitTimer() {
+        retransmitTimer = new HashedWheelTimer(IotDmThreadFactory.forName("mqtt-retransmit"), 100, TimeUnit.MILLISECONDS, 512);
+        retransmitTimer.start();
+    }
+
+    @PreDestroy
+    public void stopRetransmitTimer() {
+        if (retransmitTimer != null) {
+            retransmitTimer.stop();
+        }
+    }
+
+
+    /**
+     * 添加 qos1 重发任务
+     * @param task 重发任务
+     * @return timeout
+     */
+    public Timeout scheduleRetransmit(TimerTask task) {
+        return retransmitTimer.newTimeout(task, retryInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 连接空闲超时，按 mqtt 规范为 keepAlive 的 1.5 倍，keepAlive 为 0 时使用默认值
+     * @param keepAlive CONNECT 报文 keepAlive(秒)
+     * @return 空闲超时(秒)
      */
-    private final AtomicInteger connectionsCounter = new AtomicInteger();
+    public int getIdleTimeout(int keepAlive) {
+        return keepAlive > 0 ? keepAlive + (keepAlive + 1) / 2 : defaultKeepalive;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getMaxInflight() {
+        return maxInflight;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
 
 
     public boolean checkAddress (InetSocketAddress inetSocketAddress) {
@@ -52,19 +142,58 @@ public class MqttTransportContext extends TransportContext {
         return sslHandlerProvider;
     }
 
+    public IngestBackpressureController getBackpressureController() {
+        return backpressureController;
+    }
+
+    @Autowired
+    public void setBackpressureController(IngestBackpressureController backpressureController) {
+        this.backpressureController = backpressureController;
+    }
+
+
+    public ConnectAdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    @Autowired
+    public void setAdmissionController(ConnectAdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+
+    public ShardManager getShardManager() {
+        return shardManager;
+    }
+
+    @Autowired
+    public void setShardManager(ShardManager shardManager) {
+        this.shardManager = shardManager;
+    }
+
+
+    public MqttTransportMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Autowired
+    public void setMetrics(MqttTransportMetrics metrics) {
+        this.metrics = metrics;
+    }
+
 
     /**
      * 连接数 +1
      */
     public void channelRegistered() {
-        connectionsCounter.incrementAndGet();
+        metrics.channelRegistered();
     }
 
     /**
      * 连接数 -1
      */
     public void channelUnregistered() {
-        connectionsCounter.decrementAndGet();
+        metrics.channelUnregistered();
     }
 
 
@@ -4,15 +4,24 @@ import com.aibaixun.basic.util.HexTool;
 import com.aibaixun.iotdm.enums.DataFormat;
 import com.aibaixun.iotdm.enums.ProtocolType;
 import com.aibaixun.iotdm.msg.*;
+import com.aibaixun.iotdm.scheduler.ingest.IngestRejectedException;
+import com.aibaixun.iotdm.trace.PipelineTrace;
 import com.aibaixun.iotdm.transport.*;
+import com.aibaixun.iotdm.transport.mqtt.limits.ChannelFlowState;
 import com.aibaixun.iotdm.transport.mqtt.session.DeviceSessionCtx;
+import com.aibaixun.iotdm.transport.mqtt.session.InflightWindow;
+import com.aibaixun.iotdm.transport.mqtt.session.InflightWindow.InflightMessage;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.handler.codec.mqtt.*;
+import io.netty.handler.timeout.IdleState;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.CharsetUtil;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.Future;
@@ -26,6 +35,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static com.aibaixun.iotdm.constants.TopicConstants.*;
 import static io.netty.handler.codec.mqtt.MqttConnectReturnCode.CONNECTION_ACCEPTED;
@@ -45,6 +55,11 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
 
     private final Logger log  = LoggerFactory.getLogger("mqtt-transport");
 
+    /**
+     * 空闲检测 handler 名称，CONNECT 前为连接超时，CONNECT 后按 keepAlive 替换
+     */
+    static final String IDLE_STATE_HANDLER = "idleStateHandler";
+
     /**
      * handler id
      */
@@ -70,6 +85,26 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
      */
     volatile InetSocketAddress address;
 
+    /**
+     * 反压 流控状态
+     */
+    private volatile ChannelFlowState flowState;
+
+    /**
+     * qos1 下行 在途窗口
+     */
+    private final InflightWindow inflightWindow;
+
+    /**
+     * 当前读取消息的 socket 读取时间，只在 event loop 中访问
+     */
+    private long readNanos;
+
+    /**
+     * CONNECT 后的读空闲超时，只在 event loop 中访问
+     */
+    private long idleTimeoutNanos;
+
 
 
     MqttTransportHandler(MqttTransportContext context) {
@@ -77,6 +112,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         this.context = context;
         this.transportService = context.getTransportService();
         this.deviceSessionCtx = new DeviceSessionCtx(context);
+        this.inflightWindow = new InflightWindow(context.getMaxInflight());
     }
 
     @Override
@@ -92,8 +128,24 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         context.channelUnregistered();
     }
 
+    @Override
+    public void userEventTriggered(ChannelHandlerContext channelHandlerContext, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent && ((IdleStateEvent) evt).state() == IdleState.READER_IDLE) {
+            ChannelFlowState state = flowState;
+            if (Objects.nonNull(state) && state.isThrottled(idleTimeoutNanos)) {
+                // 流控暂停读取造成的空闲，不是设备失联
+                return;
+            }
+            log.info("MqttTransportHandler.userEventTriggered >> [{}][{}] connection idle timeout,close channel", handlerId, address);
+            channelHandlerContext.close();
+            return;
+        }
+        super.userEventTriggered(channelHandlerContext, evt);
+    }
+
     @Override
     public void channelRead(ChannelHandlerContext channelHandlerContext, Object msg) {
+        readNanos = System.nanoTime();
         log.trace("MqttTransportHandler.channelRead >> [{}] Processing msg: {}", handlerId, msg);
         if (address == null) {
             address = getAddress(channelHandlerContext);
@@ -183,6 +235,22 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
     private void processConnect(ChannelHandlerContext channelHandlerContext,MqttConnectMessage mqttConnectMessage){
         String clientId = mqttConnectMessage.payload().clientIdentifier();
         log.debug("MqttTransportHandler.processConnect >> [{}][{}] Processing connect msg for client: {}!", address, handlerId, clientId);
+        // clientId 即设备id，认证前即可判断设备分片
+        if (context.getShardManager().isRejectForeign() && !context.getShardManager().isLocal(clientId)) {
+            log.debug("MqttTransportHandler.processConnect >> [{}][{}] client: {} belongs to node: {},refused", address, handlerId, clientId, context.getShardManager().ownerOf(clientId));
+            channelHandlerContext.writeAndFlush(createMqttConnAckMsg(MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE, mqttConnectMessage))
+                    .addListener(ChannelFutureListener.CLOSE);
+            return;
+        }
+        if (!context.getAdmissionController().tryAdmit(channelHandlerContext.executor())) {
+            log.debug("MqttTransportHandler.processConnect >> [{}][{}] connect refused by admission control,client: {}", address, handlerId, clientId);
+            channelHandlerContext.writeAndFlush(createMqttConnAckMsg(MqttConnectReturnCode.CONNECTION_REFUSED_SERVER_UNAVAILABLE, mqttConnectMessage))
+                    .addListener(ChannelFutureListener.CLOSE);
+            return;
+        }
+        int idleTimeout = context.getIdleTimeout(mqttConnectMessage.variableHeader().keepAliveTimeSeconds());
+        idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeout);
+        channelHandlerContext.pipeline().replace(IDLE_STATE_HANDLER, IDLE_STATE_HANDLER, new IdleStateHandler(idleTimeout, 0, 0, TimeUnit.SECONDS));
         processAuthSecretConnect(channelHandlerContext, clientId,mqttConnectMessage);
     }
 
@@ -215,6 +283,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
     }
 
     private MqttConnAckMessage createMqttConnAckMsg(MqttConnectReturnCode returnCode, MqttConnectMessage msg) {
+        context.getMetrics().onConnAck(returnCode);
         MqttFixedHeader mqttFixedHeader =
                 new MqttFixedHeader(CONNACK, false, AT_MOST_ONCE, false, 0);
         MqttConnAckVariableHeader mqttConnAckVariableHeader =
@@ -236,12 +305,19 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         } else {
             context.onDeviceAuthSuccess(address);
             TransportSessionInfo transportSessionInfo = TransportSessionInfoHolder.create(respMsg.getDeviceInfo());
+            transportSessionInfo.setIdleTimeout((int) TimeUnit.NANOSECONDS.toSeconds(idleTimeoutNanos));
             ctx.writeAndFlush(createMqttConnAckMsg(CONNECTION_ACCEPTED, connectMessage));
             transportService.processDeviceConnectSuccess(transportSessionInfo, new TransportServiceCallback<>() {
                 @Override
                 public void onSuccess(Boolean msg) {
                     initDeviceSessionCtx(respMsg.getDeviceInfo(),transportSessionInfo.getSessionId());
                     transportService.registerSession(transportSessionInfo, MqttTransportHandler.this);
+                    ChannelFlowState state = context.getBackpressureController().register(transportSessionInfo.getDeviceId(), ctx.channel());
+                    flowState = state;
+                    // 认证回调与连接关闭不在同一线程，关闭已先完成时 doDisconnect 看不到流控状态
+                    if (!ctx.channel().isActive()) {
+                        context.getBackpressureController().unregister(state);
+                    }
                 }
 
                 @Override
@@ -305,8 +381,10 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
        if (!checkConnected()) {
            return;
        }
+       long start = System.nanoTime();
        String topicName = mqttPublishMessage.variableHeader().topicName();
        int msgId = mqttPublishMessage.variableHeader().packetId();
+       int payloadSize = mqttPublishMessage.payload().readableBytes();
        try {
            switch (topicName){
                case PROPERTIES_UP:
@@ -338,6 +416,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
            log.warn("MqttTransportHandler.processPublishMsg >> [{}] [{}] error,topic:{},msgId:{}", address, handlerId, topicName,msgId);
            channelHandlerContext.close();
        }
+       context.getMetrics().onPublish(topicName, payloadSize, System.nanoTime() - start);
     }
 
 
@@ -469,6 +548,10 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
      */
     private void  processPubAckMsg(MqttPubAckMessage mqttPubAckMessage){
         int msgId = mqttPubAckMessage.variableHeader().messageId();
+        InflightMessage message = inflightWindow.ack(msgId);
+        if (message != null) {
+            context.getMetrics().onPubAck(message.getSentNanos());
+        }
         transportService.processPubAck(deviceSessionCtx.getSessionId(), msgId);
     }
 
@@ -480,8 +563,9 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
      * @param msgId 消息id
      */
     private void  processPropertiesUp(ChannelHandlerContext channelHandlerContext,MqttPublishMessage mqttPublishMessage,int msgId) {
-        String payload = getPayload(mqttPublishMessage);
-        transportService.processPropertyUp(deviceSessionCtx.getSessionId(), deviceSessionCtx.getDataFormat(),payload,
+        DevicePayload payload = getDevicePayload(mqttPublishMessage).withTrace(PipelineTrace.start(readNanos));
+        onPublish();
+        transportService.processPropertyUp(deviceSessionCtx.getSessionId(), payload,
                 pubAckCallback(channelHandlerContext,msgId));
         transportService.reportActivity(deviceSessionCtx.getSessionId());
     }
@@ -503,8 +587,9 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
      * @param msgId 消息id
      */
     private void  processMessageUp(ChannelHandlerContext channelHandlerContext,MqttPublishMessage mqttPublishMessage,int msgId) {
-        String payload = getPayload(mqttPublishMessage);
-        transportService.processMessageUp(deviceSessionCtx.getSessionId(),deviceSessionCtx.getDataFormat(),  payload, pubAckCallback(channelHandlerContext,msgId));
+        DevicePayload payload = getDevicePayload(mqttPublishMessage);
+        onPublish();
+        transportService.processMessageUp(deviceSessionCtx.getSessionId(), payload, pubAckCallback(channelHandlerContext,msgId));
         transportService.reportActivity(deviceSessionCtx.getSessionId());
     }
 
@@ -570,6 +655,28 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
     }
 
 
+    /**
+     * 记录上报次数 供反压选择繁忙连接
+     */
+    private void onPublish() {
+        ChannelFlowState state = flowState;
+        if (Objects.nonNull(state)) {
+            state.onPublish();
+        }
+    }
+
+
+    /**
+     * 获取负载原始字节
+     * <p>只从 netty 缓冲区复制一次，字符串形式按需生成</p>
+     * @param mqttPublishMessage 发布消息
+     * @return 负载
+     */
+    private DevicePayload getDevicePayload(MqttPublishMessage mqttPublishMessage) {
+        return DevicePayload.wrap(deviceSessionCtx.getDataFormat(), ByteBufUtil.getBytes(mqttPublishMessage.payload()));
+    }
+
+
     /**
      * 监测是否连接
      * @return bool
@@ -594,6 +701,15 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
             transportService.processDeviceDisConnect(deviceSessionCtx.getSessionId(), hostName);
             transportService.processLogDevice(deviceSessionCtx.getSessionId(), hostName);
             transportService.deregisterSession(deviceSessionCtx.getSessionId());
+            if (Objects.nonNull(flowState)) {
+                context.getBackpressureController().unregister(flowState);
+            }
+            List<InflightMessage> pending = inflightWindow.clear();
+            context.getMetrics().onInflightRemoved(pending.size());
+            // 连接断开 未确认的命令下行不会再重发
+            for (InflightMessage message : pending) {
+                onControlFailed(message.getSendId());
+            }
             deviceSessionCtx.setDisconnected();
         }
     }
@@ -633,6 +749,10 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
 
             @Override
             public void onError(Throwable e) {
+                if (e instanceof IngestRejectedException) {
+                    onIngestRejected(ctx, msgId);
+                    return;
+                }
                 log.trace("MqttTransportHandler.pubAckCallback >> [{}][{}] message ack failure,msgId:{}", handlerId,address,msgId );
                 ctx.close();
             }
@@ -640,6 +760,28 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
     }
 
 
+    /**
+     * ingest 分区已满
+     * <p>qos1 不回 PUBACK 并关闭连接：mqtt 3.1.1 客户端只在重连后重发未确认的 PUBLISH，保持连接消息会丢失；
+     * qos0 丢弃消息，暂停读取直到分区消化积压</p>
+     * @param ctx ctx
+     * @param msgId 消息id，qos0 为 0
+     */
+    private void onIngestRejected(ChannelHandlerContext ctx, int msgId) {
+        if (msgId > 0) {
+            log.warn("MqttTransportHandler.onIngestRejected >> [{}][{}] ingest partition is full,close channel for qos1 resend,msgId:{}", handlerId, address, msgId);
+            context.getMetrics().onIngestRejected(true);
+            ctx.close();
+            return;
+        }
+        log.warn("MqttTransportHandler.onIngestRejected >> [{}][{}] ingest partition is full,drop qos0 message", handlerId, address);
+        context.getMetrics().onIngestRejected(false);
+        ChannelFlowState state = flowState;
+        if (Objects.nonNull(state)) {
+            context.getBackpressureController().onRejected(state);
+        }
+    }
+
     private void ack(ChannelHandlerContext channelHandlerContext, int msgId) {
         if (msgId > 0) {
             channelHandlerContext.writeAndFlush(createMqttPubAckMsg(msgId));
@@ -661,8 +803,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
             return;
         }
         try {
-            MqttPublishMessage publishMessage = getMqttPublishMessage(payload, CONFIG_REQ);
-            deviceSessionCtx.getChannel().writeAndFlush(publishMessage);
+            publishQos1(CONFIG_REQ, getDownPayload(payload), null);
         }catch (Exception e){
             log.info("MqttTransportHandler.on2DeviceConfigReq,is error:{},payload:{}",e.getMessage(),payload);
         }
@@ -675,8 +816,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
             return;
         }
         try {
-            MqttPublishMessage publishMessage = getMqttPublishMessage(payload, OTA_REQ);
-            deviceSessionCtx.getChannel().writeAndFlush(publishMessage);
+            publishQos1(OTA_REQ, getDownPayload(payload), null);
         }catch (Exception e){
             log.info("MqttTransportHandler.on2DeviceOtaReq,is error:{},payload:{}",e.getMessage(),payload);
         }
@@ -689,14 +829,18 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
             return;
         }
         log.info("MqttTransportHandler.on2DeviceControlReq,sendId:{},payload:{}",sendId,payload);
+        int i = -1;
         try {
-            MqttPublishMessage publishMessage = getMqttPublishMessage(payload, CONTROL_REQ);
-            int i = publishMessage.variableHeader().packetId();
-            deviceSessionCtx.getChannel().writeAndFlush(publishMessage);
-            transportService.processControlIsSend(sendId,i);
+            i = publishQos1(CONTROL_REQ, getDownPayload(payload), sendId);
+            if (i > 0) {
+                transportService.processControlIsSend(sendId,i);
+            }
         }catch (Exception e){
             log.info("MqttTransportHandler.on2DeviceControlReq,is error:{},sendId:{},payload:{}",e.getMessage(),sendId,payload);
         }
+        if (i <= 0) {
+            onControlFailed(sendId);
+        }
 
     }
 
@@ -707,21 +851,89 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         deviceSessionCtx.getChannel().close();
     }
 
-    private MqttPublishMessage getMqttPublishMessage(String payload, String topic) {
-        byte [] bytes;
+    private byte[] getDownPayload(String payload) {
         if (DataFormat.JSON.equals(deviceSessionCtx.getDataFormat())){
-            bytes = payload.getBytes(StandardCharsets.UTF_8);
-        }else {
-            bytes = HexTool.decodeHex(payload);
+            return payload.getBytes(StandardCharsets.UTF_8);
+        }
+        return HexTool.decodeHex(payload);
+    }
+
+
+    /**
+     * 命令下行失败 将命令标记为失败，避免一直停留在已发送状态
+     * @param sendId 命令下发 id
+     */
+    private void onControlFailed(Integer sendId) {
+        if (sendId == null) {
+            return;
         }
-        return createMqttPublishMsg(deviceSessionCtx, topic, bytes);
+        context.getMetrics().onControlFailed();
+        transportService.processControlSendFailed(sendId);
+    }
+
+    /**
+     * qos1 下发 加入在途窗口并注册重发任务
+     * @param topic 主题
+     * @param payloadByte 负载
+     * @param sendId 命令下发 id，非命令下行为 null
+     * @return packetId 窗口已满返回 -1
+     */
+    private int publishQos1(String topic, byte[] payloadByte, Integer sendId) {
+        InflightMessage message = null;
+        for (int i = 0; i < context.getMaxInflight() + 1 && message == null; i++) {
+            int msgId = deviceSessionCtx.nextMsgId();
+            if (!inflightWindow.contains(msgId)) {
+                message = new InflightMessage(msgId, topic, payloadByte, sendId);
+            }
+        }
+        if (message == null || !inflightWindow.offer(message)) {
+            log.warn("MqttTransportHandler.publishQos1 >> [{}][{}] inflight window is full,drop downlink,topic:{}", handlerId, address, topic);
+            context.getMetrics().onDownlinkDropped(true);
+            return -1;
+        }
+        context.getMetrics().onDownlink(topic, payloadByte.length);
+        deviceSessionCtx.getChannel().writeAndFlush(createMqttPublishMsg(message.getMsgId(), topic, payloadByte, false));
+        scheduleRetransmit(message);
+        return message.getMsgId();
+    }
+
+    private void scheduleRetransmit(InflightMessage message) {
+        message.setTimeout(context.scheduleRetransmit(timeout -> retransmit(message)));
+    }
+
+    /**
+     * 重发 在时间轮线程触发，写操作交给 channel 所在 event loop
+     * @param message 在途消息
+     */
+    private void retransmit(InflightMessage message) {
+        ChannelHandlerContext ctx = deviceSessionCtx.getChannel();
+        if (inflightWindow.get(message.getMsgId()) != message || !ctx.channel().isActive()) {
+            return;
+        }
+        if (message.incrementAttempts() > context.getMaxRetries()) {
+            if (inflightWindow.ack(message.getMsgId()) != null) {
+                context.getMetrics().onInflightRemoved(1);
+                context.getMetrics().onDownlinkDropped(false);
+                onControlFailed(message.getSendId());
+            }
+            log.warn("MqttTransportHandler.retransmit >> [{}][{}] downlink not acked after {} retries,msgId:{},topic:{}",
+                    handlerId, address, context.getMaxRetries(), message.getMsgId(), message.getTopic());
+            return;
+        }
+        ctx.executor().execute(() -> {
+            if (inflightWindow.get(message.getMsgId()) == message) {
+                ctx.writeAndFlush(createMqttPublishMsg(message.getMsgId(), message.getTopic(), message.getPayload(), true));
+                context.getMetrics().onRetransmit();
+                scheduleRetransmit(message);
+            }
+        });
     }
 
 
-    protected MqttPublishMessage createMqttPublishMsg( DeviceSessionCtx ctx, String topic, byte [] payloadByte) {
+    protected MqttPublishMessage createMqttPublishMsg(int msgId, String topic, byte [] payloadByte, boolean dup) {
         MqttFixedHeader mqttFixedHeader =
-                new MqttFixedHeader(MqttMessageType.PUBLISH, false, AT_LEAST_ONCE, false, 0);
-        MqttPublishVariableHeader header = new MqttPublishVariableHeader(topic, ctx.nextMsgId());
+                new MqttFixedHeader(MqttMessageType.PUBLISH, dup, AT_LEAST_ONCE, false, 0);
+        MqttPublishVariableHeader header = new MqttPublishVariableHeader(topic, msgId);
         ByteBuf payload = ALLOCATOR.buffer();
         payload.writeBytes(payloadByte);
         return new MqttPublishMessage(mqttFixedHeader, header, payload);
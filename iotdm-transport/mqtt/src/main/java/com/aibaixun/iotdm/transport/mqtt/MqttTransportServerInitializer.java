@@ -6,6 +6,9 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.mqtt.MqttDecoder;
 import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.timeout.IdleStateHandler;
+
+import java.util.concurrent.TimeUnit;
 
 /**
  * Mqtt 服务初始化类类
@@ -30,6 +33,7 @@ public class MqttTransportServerInitializer extends ChannelInitializer<SocketCha
             pipeline.addLast(context.getSslHandlerProvider().getSslHandler());
         };
         pipeline.addLast("BaseRemoteAddressFilter", new BaseRemoteAddressFilter(context));
+        pipeline.addLast(MqttTransportHandler.IDLE_STATE_HANDLER, new IdleStateHandler(context.getConnectTimeout(), 0, 0, TimeUnit.SECONDS));
         pipeline.addLast("decoder", new MqttDecoder(context.getMaxPayloadSize()));
         pipeline.addLast("encoder", MqttEncoder.INSTANCE);
         MqttTransportHandler handler = new MqttTransportHandler(context);
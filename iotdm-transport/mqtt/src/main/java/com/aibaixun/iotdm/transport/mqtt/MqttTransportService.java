@@ -5,8 +5,17 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.incubator.channel.uring.IOUring;
+import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
+import io.netty.incubator.channel.uring.IOUringServerSocketChannel;
 import io.netty.util.AttributeKey;
 import io.netty.util.ResourceLeakDetector;
 import org.slf4j.Logger;
@@ -19,6 +28,8 @@ import org.springframework.stereotype.Service;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Mqtt 服务启动类
@@ -59,14 +70,28 @@ public class MqttTransportService   {
     private Integer workerGroupThreadCount;
     @Value("${transport.mqtt.netty.so_keep_alive}")
     private boolean keepAlive;
+    @Value("${transport.mqtt.netty.io_mode:nio}")
+    private String ioModeName;
+    @Value("${transport.mqtt.netty.so_reuseport:false}")
+    private boolean reusePort;
+    @Value("${transport.mqtt.netty.acceptor_count:1}")
+    private Integer acceptorCount;
+    @Value("${transport.mqtt.netty.tcp_no_delay:true}")
+    private boolean tcpNoDelay;
+    @Value("${transport.mqtt.netty.so_backlog:1024}")
+    private Integer soBacklog;
+    @Value("${transport.mqtt.netty.write_buffer_low_water_mark:32768}")
+    private Integer writeBufferLowWaterMark;
+    @Value("${transport.mqtt.netty.write_buffer_high_water_mark:65536}")
+    private Integer writeBufferHighWaterMark;
 
 
     private MqttTransportContext context;
 
-    private Channel serverChannel;
-    private Channel sslServerChannel;
+    private final List<Channel> serverChannels = new ArrayList<>();
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
+    private NettyIoMode ioMode;
 
     @PostConstruct
     public void init() throws Exception {
@@ -74,33 +99,110 @@ public class MqttTransportService   {
         ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.valueOf(leakDetectorLevel.toUpperCase()));
 
         logger.info("MqttTransportService.init >> Starting MQTT transport...");
-        bossGroup = new NioEventLoopGroup(bossGroupThreadCount);
-        workerGroup = new NioEventLoopGroup(workerGroupThreadCount);
+        ioMode = resolveIoMode(NettyIoMode.parse(ioModeName));
+        boolean multiAcceptor = reusePort && NettyIoMode.EPOLL.equals(ioMode);
+        int acceptors = multiAcceptor ? Math.max(1, acceptorCount) : 1;
+        logger.info("MqttTransportService.init >> io mode is {},acceptor count is {}", ioMode, acceptors);
+        bossGroup = newEventLoopGroup(Math.max(bossGroupThreadCount, acceptors));
+        workerGroup = newEventLoopGroup(workerGroupThreadCount);
+        context.getMetrics().bindEventLoops(workerGroup);
+
+        ServerBootstrap b = newServerBootstrap(false, multiAcceptor);
+        for (int i = 0; i < acceptors; i++) {
+            serverChannels.add(b.bind(host, port).sync().channel());
+        }
+        if (sslEnabled) {
+            b = newServerBootstrap(true, multiAcceptor);
+            for (int i = 0; i < acceptors; i++) {
+                serverChannels.add(b.bind(sslHost, sslPort).sync().channel());
+            }
+        }
+        logger.info("MqttTransportService.init >> Mqtt transport started!");
+    }
+
+    /**
+     * 创建 server bootstrap
+     * @param sslEnabled 是否 ssl
+     * @param multiAcceptor 是否开启 SO_REUSEPORT 多个 acceptor
+     * @return ServerBootstrap
+     */
+    private ServerBootstrap newServerBootstrap(boolean sslEnabled, boolean multiAcceptor) {
         ServerBootstrap b = new ServerBootstrap();
         b.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
-                .childHandler(new MqttTransportServerInitializer(context, false))
-                .childOption(ChannelOption.SO_KEEPALIVE, keepAlive);
+                .channel(serverChannelClass())
+                .option(ChannelOption.SO_BACKLOG, soBacklog)
+                .childHandler(new MqttTransportServerInitializer(context, sslEnabled))
+                .childOption(ChannelOption.SO_KEEPALIVE, keepAlive)
+                .childOption(ChannelOption.TCP_NODELAY, tcpNoDelay)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark));
+        if (multiAcceptor) {
+            b.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        return b;
+    }
 
-        serverChannel = b.bind(host, port).sync().channel();
-        if (sslEnabled) {
-            b = new ServerBootstrap();
-            b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new MqttTransportServerInitializer(context, true))
-                    .childOption(ChannelOption.SO_KEEPALIVE, keepAlive);
-            sslServerChannel = b.bind(sslHost, sslPort).sync().channel();
+    /**
+     * 解析 io 模式，native 库不可用时回退
+     * @param ioMode 配置的 io 模式
+     * @return 实际使用的 io 模式
+     */
+    private NettyIoMode resolveIoMode(NettyIoMode ioMode) {
+        switch (ioMode) {
+            case IO_URING:
+                if (isIoUringAvailable()) {
+                    return NettyIoMode.IO_URING;
+                }
+                logger.warn("MqttTransportService.resolveIoMode >> io_uring is unavailable,fallback to epoll");
+                return resolveIoMode(NettyIoMode.EPOLL);
+            case EPOLL:
+                if (Epoll.isAvailable()) {
+                    return NettyIoMode.EPOLL;
+                }
+                logger.warn("MqttTransportService.resolveIoMode >> epoll is unavailable,fallback to nio,cause:{}", String.valueOf(Epoll.unavailabilityCause()));
+                return NettyIoMode.NIO;
+            case AUTO:
+                return Epoll.isAvailable() ? NettyIoMode.EPOLL : NettyIoMode.NIO;
+            default:
+                return NettyIoMode.NIO;
+        }
+    }
+
+    private boolean isIoUringAvailable() {
+        try {
+            return IOUring.isAvailable();
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private EventLoopGroup newEventLoopGroup(int threadCount) {
+        switch (ioMode) {
+            case IO_URING:
+                return new IOUringEventLoopGroup(threadCount);
+            case EPOLL:
+                return new EpollEventLoopGroup(threadCount);
+            default:
+                return new NioEventLoopGroup(threadCount);
+        }
+    }
+
+    private Class<? extends ServerChannel> serverChannelClass() {
+        switch (ioMode) {
+            case IO_URING:
+                return IOUringServerSocketChannel.class;
+            case EPOLL:
+                return EpollServerSocketChannel.class;
+            default:
+                return NioServerSocketChannel.class;
         }
-        logger.info("MqttTransportService.init >> Mqtt transport started!");
     }
 
     @PreDestroy
     public void shutdown() throws InterruptedException {
         logger.info("MqttTransportService.shutdown >> Stopping MQTT transport!");
         try {
-            serverChannel.close().sync();
-            if (sslEnabled) {
-                sslServerChannel.close().sync();
+            for (Channel serverChannel : serverChannels) {
+                serverChannel.close().sync();
             }
         } finally {
             workerGroup.shutdownGracefully();
@@ -0,0 +1,37 @@
+package com.aibaixun.iotdm.transport.mqtt;
+
+/**
+ * netty io 模式
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/7
+ */
+public enum NettyIoMode {
+
+    /**
+     * jdk nio
+     */
+    NIO,
+
+    /**
+     * linux epoll
+     */
+    EPOLL,
+
+    /**
+     * linux io_uring
+     */
+    IO_URING,
+
+    /**
+     * 自动选择 epoll > nio，io_uring 只在显式配置时使用
+     */
+    AUTO;
+
+
+    public static NettyIoMode parse(String ioMode) {
+        if (ioMode == null || ioMode.isBlank()) {
+            return NIO;
+        }
+        return NettyIoMode.valueOf(ioMode.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,103 @@
+package com.aibaixun.iotdm.transport.mqtt.limits;
+
+import io.netty.channel.Channel;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 连接 流控状态
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/12
+ */
+public class ChannelFlowState {
+
+    private final Channel channel;
+
+    private final int partition;
+
+    /**
+     * 当前检查周期内 上报次数
+     */
+    private final AtomicInteger windowCount = new AtomicInteger();
+
+    private final AtomicBoolean paused = new AtomicBoolean();
+
+    /**
+     * 最近一次恢复读取的时间 System.nanoTime，0 表示未暂停过
+     */
+    private volatile long resumedNanos;
+
+    /**
+     * 上一个检查周期 上报次数，只由检查线程读写
+     */
+    private int lastWindow;
+
+
+    ChannelFlowState(Channel channel, int partition) {
+        this.channel = channel;
+        this.partition = partition;
+    }
+
+    /**
+     * 记录一次上报
+     */
+    public void onPublish() {
+        windowCount.incrementAndGet();
+    }
+
+    int resetWindow() {
+        return windowCount.getAndSet(0);
+    }
+
+    boolean pause() {
+        if (channel.isActive() && paused.compareAndSet(false, true)) {
+            channel.config().setAutoRead(false);
+            return true;
+        }
+        return false;
+    }
+
+    boolean resume() {
+        if (paused.compareAndSet(true, false)) {
+            resumedNanos = System.nanoTime();
+            channel.config().setAutoRead(true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 连接关闭 清除暂停标记
+     * @return 是否处于暂停
+     */
+    boolean release() {
+        return paused.compareAndSet(true, false);
+    }
+
+    public boolean isPaused() {
+        return paused.get();
+    }
+
+    /**
+     * 读空闲是否由流控造成：暂停中，或恢复读取后还不到一个空闲周期
+     * @param idleNanos 读空闲超时
+     * @return 是否由流控造成
+     */
+    public boolean isThrottled(long idleNanos) {
+        long resumed = resumedNanos;
+        return isPaused() || (resumed != 0 && System.nanoTime() - resumed < idleNanos);
+    }
+
+    int getPartition() {
+        return partition;
+    }
+
+    int getLastWindow() {
+        return lastWindow;
+    }
+
+    void setLastWindow(int lastWindow) {
+        this.lastWindow = lastWindow;
+    }
+}
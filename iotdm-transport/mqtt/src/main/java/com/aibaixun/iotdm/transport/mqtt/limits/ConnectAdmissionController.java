@@ -0,0 +1,98 @@
+package com.aibaixun.iotdm.transport.mqtt.limits;
+
+import com.aibaixun.iotdm.transport.limits.SimpleTransportRateLimit;
+import com.aibaixun.iotdm.transport.limits.TransportRateLimit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.util.concurrent.EventExecutor;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CONNECT 准入控制
+ * <p>全局与每个 event loop 各一个令牌桶，令牌耗尽时直接拒绝 CONNECT，
+ * 避免重连风暴压垮认证所需的 sql 线程池与 redis</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/14
+ */
+@Component
+@ConditionalOnExpression("'${transport.mqtt.enabled}'=='true'")
+public class ConnectAdmissionController {
+
+    private final Logger log = LoggerFactory.getLogger("mqtt-transport");
+
+    /**
+     * 全局限制 格式同 tenant_rate_limit: 数量:秒,数量:秒
+     */
+    @Value("${transport.mqtt.connect_limit.global:}")
+    private String globalLimit;
+
+    /**
+     * 每个 event loop 限制
+     */
+    @Value("${transport.mqtt.connect_limit.per_worker:}")
+    private String perWorkerLimit;
+
+    private TransportRateLimit globalRateLimit;
+
+    private final Map<EventExecutor, TransportRateLimit> workerRateLimits = new ConcurrentHashMap<>();
+
+    private MeterRegistry meterRegistry;
+
+    private Counter globalRefused;
+
+    private Counter workerRefused;
+
+
+    @PostConstruct
+    public void init() {
+        if (StringUtils.isNotBlank(globalLimit)) {
+            globalRateLimit = new SimpleTransportRateLimit(globalLimit);
+        }
+        globalRefused = Counter.builder("iotdm.transport.connect.refused").tag("reason", "global")
+                .description("CONNECT refused by admission control").register(meterRegistry);
+        workerRefused = Counter.builder("iotdm.transport.connect.refused").tag("reason", "worker")
+                .description("CONNECT refused by admission control").register(meterRegistry);
+        log.info("ConnectAdmissionController.init >> global limit:{},per worker limit:{}", globalLimit, perWorkerLimit);
+    }
+
+
+    /**
+     * 是否接受 CONNECT
+     * <p>被全局限制拒绝时归还已取得的 worker 令牌，避免全局拒绝消耗 worker 配额</p>
+     * @param executor 连接所在 event loop
+     * @return 是否接受
+     */
+    public boolean tryAdmit(EventExecutor executor) {
+        TransportRateLimit workerRateLimit = null;
+        if (StringUtils.isNotBlank(perWorkerLimit)) {
+            workerRateLimit = workerRateLimits.computeIfAbsent(executor, e -> new SimpleTransportRateLimit(perWorkerLimit));
+            if (!workerRateLimit.tryConsume()) {
+                workerRefused.increment();
+                return false;
+            }
+        }
+        if (globalRateLimit != null && !globalRateLimit.tryConsume()) {
+            if (workerRateLimit != null) {
+                workerRateLimit.refund(1);
+            }
+            globalRefused.increment();
+            return false;
+        }
+        return true;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+}
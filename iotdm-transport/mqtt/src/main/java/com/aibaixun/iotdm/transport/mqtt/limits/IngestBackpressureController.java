@@ -0,0 +1,213 @@
+package com.aibaixun.iotdm.transport.mqtt.limits;
+
+import com.aibaixun.iotdm.scheduler.ingest.IngestPipeline;
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * ingest 分区积压 反压控制
+ * <p>分区积压超过高水位时 对该分区上报最频繁的连接关闭 autoRead，由 tcp 流控把压力推回设备；
+ * 低于低水位时恢复该分区所有暂停的连接</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/12
+ */
+@Component
+@ConditionalOnExpression("'${transport.mqtt.enabled}'=='true'")
+public class IngestBackpressureController {
+
+    private final Logger log = LoggerFactory.getLogger("mqtt-transport");
+
+    @Value("${transport.mqtt.backpressure.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transport.mqtt.backpressure.high_water_mark:0.8}")
+    private double highWaterMark;
+
+    @Value("${transport.mqtt.backpressure.low_water_mark:0.5}")
+    private double lowWaterMark;
+
+    @Value("${transport.mqtt.backpressure.check_interval:50}")
+    private long checkInterval;
+
+    private IngestPipeline ingestPipeline;
+
+    private MeterRegistry meterRegistry;
+
+    private Set<ChannelFlowState>[] partitionChannels;
+
+    /**
+     * 分区暂停状态 1 暂停 0 正常
+     */
+    private AtomicIntegerArray pausedPartitions;
+
+    private final AtomicInteger pausedChannels = new AtomicInteger();
+
+    private ScheduledExecutorService checkExecutor;
+
+
+    @PostConstruct
+    @SuppressWarnings("unchecked")
+    public void init() {
+        int partitionCount = ingestPipeline.getPartitionCount();
+        partitionChannels = new Set[partitionCount];
+        pausedPartitions = new AtomicIntegerArray(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitionChannels[i] = ConcurrentHashMap.newKeySet();
+            int partition = i;
+            Gauge.builder("iotdm.ingest.partition.depth", ingestPipeline, p -> p.depth(partition))
+                    .tag("partition", String.valueOf(partition)).description("ingest partition backlog").register(meterRegistry);
+            Gauge.builder("iotdm.transport.backpressure.partition.paused", pausedPartitions, p -> p.get(partition))
+                    .tag("partition", String.valueOf(partition)).description("1 if channels of the partition are throttled").register(meterRegistry);
+        }
+        Gauge.builder("iotdm.transport.backpressure.paused.channels", pausedChannels, AtomicInteger::get)
+                .description("channels with autoRead disabled by backpressure").register(meterRegistry);
+        if (enabled) {
+            checkExecutor = Executors.newSingleThreadScheduledExecutor(IotDmThreadFactory.forName("ingest-backpressure"));
+            checkExecutor.scheduleWithFixedDelay(this::check, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (Objects.nonNull(checkExecutor)) {
+            checkExecutor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * 注册连接
+     * @param deviceId 设备id
+     * @param channel 连接
+     * @return 流控状态
+     */
+    public ChannelFlowState register(String deviceId, Channel channel) {
+        ChannelFlowState state = new ChannelFlowState(channel, ingestPipeline.partitionOf(deviceId));
+        partitionChannels[state.getPartition()].add(state);
+        return state;
+    }
+
+    /**
+     * 注销连接
+     * @param state 流控状态
+     */
+    public void unregister(ChannelFlowState state) {
+        partitionChannels[state.getPartition()].remove(state);
+        if (state.release()) {
+            pausedChannels.decrementAndGet();
+        }
+    }
+
+    /**
+     * ingest 分区已满拒绝了该连接的上报，暂停读取，由检查线程在分区低于低水位时恢复
+     * @param state 流控状态
+     */
+    public void onRejected(ChannelFlowState state) {
+        if (!enabled) {
+            return;
+        }
+        if (state.pause()) {
+            pausedChannels.incrementAndGet();
+        }
+        pausedPartitions.set(state.getPartition(), 1);
+    }
+
+
+    void check() {
+        try {
+            long capacity = ingestPipeline.capacity();
+            long high = (long) (capacity * highWaterMark);
+            long low = (long) (capacity * lowWaterMark);
+            for (int i = 0; i < partitionChannels.length; i++) {
+                long depth = ingestPipeline.depth(i);
+                if (depth >= high) {
+                    pauseBusiest(i, depth);
+                } else if (pausedPartitions.get(i) == 1 && depth <= low) {
+                    resumeAll(i, depth);
+                } else {
+                    partitionChannels[i].forEach(ChannelFlowState::resetWindow);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("IngestBackpressureController.check >> error,msg is:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 暂停分区内上报次数不低于平均值的连接
+     */
+    private void pauseBusiest(int partition, long depth) {
+        Set<ChannelFlowState> channels = partitionChannels[partition];
+        long total = 0;
+        int active = 0;
+        for (ChannelFlowState state : channels) {
+            if (!state.isPaused()) {
+                int count = state.resetWindow();
+                total += count;
+                active += count > 0 ? 1 : 0;
+                state.setLastWindow(count);
+            }
+        }
+        if (active == 0) {
+            pausedPartitions.set(partition, 1);
+            return;
+        }
+        long average = total / active;
+        int paused = 0;
+        for (ChannelFlowState state : channels) {
+            if (!state.isPaused() && state.getLastWindow() > 0 && state.getLastWindow() >= average && state.pause()) {
+                paused++;
+            }
+        }
+        pausedChannels.addAndGet(paused);
+        if (pausedPartitions.getAndSet(partition, 1) == 0) {
+            log.warn("IngestBackpressureController.pauseBusiest >> partition:{} depth:{} over high water mark,paused channels:{}", partition, depth, paused);
+        }
+    }
+
+    private void resumeAll(int partition, long depth) {
+        int resumed = 0;
+        for (ChannelFlowState state : partitionChannels[partition]) {
+            state.resetWindow();
+            if (state.resume()) {
+                resumed++;
+            }
+        }
+        pausedChannels.addAndGet(-resumed);
+        pausedPartitions.set(partition, 0);
+        log.info("IngestBackpressureController.resumeAll >> partition:{} depth:{} below low water mark,resumed channels:{}", partition, depth, resumed);
+    }
+
+    public int getPausedChannels() {
+        return pausedChannels.get();
+    }
+
+    @Autowired
+    public void setIngestPipeline(IngestPipeline ingestPipeline) {
+        this.ingestPipeline = ingestPipeline;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+}
@@ -0,0 +1,235 @@
+package com.aibaixun.iotdm.transport.mqtt.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.aibaixun.iotdm.constants.TopicConstants.*;
+
+/**
+ * mqtt 传输 指标
+ * <p>所有指标在启动时按 topic、返回码预先注册，消息路径上只做查表与计数，不构建 tag</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/16
+ */
+@Component
+@ConditionalOnExpression("'${transport.mqtt.enabled}'=='true'")
+public class MqttTransportMetrics {
+
+    private static final String UNKNOWN_TOPIC = "unknown";
+
+    private static final String[] UP_TOPICS = {PROPERTIES_UP, MESSAGE_UP, CONFIG_RESP, OTA_RESP, CONTROL_RESP, WARN};
+
+    private static final String[] DOWN_TOPICS = {CONFIG_REQ, OTA_REQ, CONTROL_REQ};
+
+    private MeterRegistry meterRegistry;
+
+    /**
+     * mqtt 连接数
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+
+    /**
+     * qos1 下行 在途消息数
+     */
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private final Map<MqttConnectReturnCode, Counter> connectCounters = new EnumMap<>(MqttConnectReturnCode.class);
+
+    /**
+     * 初始化后只读
+     */
+    private final Map<String, TopicMeters> topicMeters = new HashMap<>();
+
+    private TopicMeters unknownTopicMeters;
+
+    /**
+     * 下行 topic 负载大小，初始化后只读
+     */
+    private final Map<String, DistributionSummary> downlinkPayloads = new HashMap<>();
+
+    private Timer pubAckLatency;
+
+    private Counter windowFullDropped;
+
+    private Counter retriesExhaustedDropped;
+
+    private Counter controlFailed;
+
+    private Counter retransmits;
+
+    private Counter qos0IngestDropped;
+
+    private Counter qos1IngestRejected;
+
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("iotdm.transport.connections", connections, AtomicInteger::get)
+                .description("open mqtt connections").register(meterRegistry);
+        Gauge.builder("iotdm.transport.downlink.inflight", inflight, AtomicInteger::get)
+                .description("qos1 downlinks waiting for PUBACK").register(meterRegistry);
+        for (MqttConnectReturnCode returnCode : MqttConnectReturnCode.values()) {
+            connectCounters.put(returnCode, Counter.builder("iotdm.transport.connect")
+                    .tag("code", returnCode.name()).description("CONNACK sent by return code").register(meterRegistry));
+        }
+        for (String topic : UP_TOPICS) {
+            topicMeters.put(topic, new TopicMeters(topic));
+        }
+        unknownTopicMeters = new TopicMeters(UNKNOWN_TOPIC);
+        for (String topic : DOWN_TOPICS) {
+            downlinkPayloads.put(topic, DistributionSummary.builder("iotdm.transport.downlink.payload")
+                    .tag("topic", topic).baseUnit("bytes").description("qos1 downlink PUBLISH payload size")
+                    .publishPercentileHistogram().register(meterRegistry));
+        }
+        pubAckLatency = Timer.builder("iotdm.transport.downlink.ack.latency")
+                .description("qos1 downlink publish to PUBACK latency").publishPercentileHistogram().register(meterRegistry);
+        windowFullDropped = Counter.builder("iotdm.transport.downlink.dropped")
+                .tag("reason", "window_full").description("qos1 downlinks dropped by full inflight window").register(meterRegistry);
+        retriesExhaustedDropped = Counter.builder("iotdm.transport.downlink.dropped")
+                .tag("reason", "retries_exhausted").description("qos1 downlinks dropped after retries exhausted").register(meterRegistry);
+        controlFailed = Counter.builder("iotdm.transport.downlink.control.failed")
+                .description("control commands reported as failed after their downlink was dropped").register(meterRegistry);
+        retransmits = Counter.builder("iotdm.transport.downlink.retransmit")
+                .description("qos1 downlinks retransmitted with DUP").register(meterRegistry);
+        qos0IngestDropped = Counter.builder("iotdm.transport.ingest.rejected").tag("qos", "0")
+                .description("qos0 uplinks dropped by a full ingest partition").register(meterRegistry);
+        qos1IngestRejected = Counter.builder("iotdm.transport.ingest.rejected").tag("qos", "1")
+                .description("qos1 uplinks rejected by a full ingest partition,connection closed without PUBACK").register(meterRegistry);
+    }
+
+
+    /**
+     * 注册 worker event loop 待执行任务数
+     * @param workerGroup worker group
+     */
+    public void bindEventLoops(EventLoopGroup workerGroup) {
+        int index = 0;
+        for (EventExecutor executor : workerGroup) {
+            if (executor instanceof SingleThreadEventExecutor) {
+                Gauge.builder("iotdm.transport.eventloop.pending", (SingleThreadEventExecutor) executor, SingleThreadEventExecutor::pendingTasks)
+                        .tag("worker", String.valueOf(index)).description("tasks pending on netty worker event loop").register(meterRegistry);
+            }
+            index++;
+        }
+    }
+
+    public void channelRegistered() {
+        connections.incrementAndGet();
+    }
+
+    public void channelUnregistered() {
+        connections.decrementAndGet();
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public void onConnAck(MqttConnectReturnCode returnCode) {
+        connectCounters.get(returnCode).increment();
+    }
+
+    /**
+     * 上行 PUBLISH
+     * @param topic 主题
+     * @param payloadSize 负载字节数
+     * @param processNanos 在 handler 中的处理耗时
+     */
+    public void onPublish(String topic, int payloadSize, long processNanos) {
+        TopicMeters meters = topicMeters.getOrDefault(topic, unknownTopicMeters);
+        meters.payloadSize.record(payloadSize);
+        meters.processTime.record(processNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 下行 PUBLISH 加入在途窗口
+     * @param topic 主题
+     * @param payloadSize 负载字节数
+     */
+    public void onDownlink(String topic, int payloadSize) {
+        inflight.incrementAndGet();
+        DistributionSummary payload = downlinkPayloads.get(topic);
+        if (payload != null) {
+            payload.record(payloadSize);
+        }
+    }
+
+    public void onInflightRemoved(int count) {
+        inflight.addAndGet(-count);
+    }
+
+    /**
+     * 收到 PUBACK
+     * @param sentNanos 首次下发时间 System.nanoTime
+     */
+    public void onPubAck(long sentNanos) {
+        inflight.decrementAndGet();
+        pubAckLatency.record(System.nanoTime() - sentNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 下行丢弃
+     * @param windowFull true 在途窗口已满，false 重试次数耗尽
+     */
+    public void onDownlinkDropped(boolean windowFull) {
+        (windowFull ? windowFullDropped : retriesExhaustedDropped).increment();
+    }
+
+    public void onControlFailed() {
+        controlFailed.increment();
+    }
+
+    public void onRetransmit() {
+        retransmits.increment();
+    }
+
+    /**
+     * ingest 分区已满拒绝上报
+     * @param qos1 true qos1 关闭连接等待重发，false qos0 直接丢弃
+     */
+    public void onIngestRejected(boolean qos1) {
+        (qos1 ? qos1IngestRejected : qos0IngestDropped).increment();
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    /**
+     * 单个 topic 的指标，DistributionSummary 与 Timer 自带计数，即为 PUBLISH 速率
+     */
+    private class TopicMeters {
+
+        private final DistributionSummary payloadSize;
+
+        private final Timer processTime;
+
+        private TopicMeters(String topic) {
+            this.payloadSize = DistributionSummary.builder("iotdm.transport.publish.payload")
+                    .tag("topic", topic).baseUnit("bytes").description("uplink PUBLISH payload size")
+                    .publishPercentileHistogram().register(meterRegistry);
+            this.processTime = Timer.builder("iotdm.transport.publish.process")
+                    .tag("topic", topic).description("uplink PUBLISH handling time on event loop")
+                    .publishPercentileHistogram().register(meterRegistry);
+        }
+    }
+}
@@ -39,9 +39,12 @@ public class DeviceSessionCtx extends DeviceAwareSessionContext {
         this.context = context;
     }
 
+    /**
+     * mqtt packetId 取值 1~65535，循环使用
+     */
     @Override
     public int nextMsgId() {
-        return msgIdSeq.incrementAndGet();
+        return msgIdSeq.updateAndGet(id -> id >= 0xffff ? 1 : id + 1);
     }
 
 
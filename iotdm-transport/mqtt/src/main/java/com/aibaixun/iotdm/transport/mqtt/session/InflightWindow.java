@@ -0,0 +1,156 @@
+package com.aibaixun.iotdm.transport.mqtt.session;
+
+import io.netty.util.Timeout;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * QoS 1 下行 在途消息窗口
+ * <p>以 packetId 为 key，窗口大小有上限，收到 PUBACK 或超过重试次数后移除</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/13
+ */
+public class InflightWindow {
+
+    private final int maxInflight;
+
+    private final IntObjectMap<InflightMessage> inflight;
+
+
+    public InflightWindow(int maxInflight) {
+        this.maxInflight = maxInflight;
+        this.inflight = new IntObjectHashMap<>(Math.max(4, maxInflight));
+    }
+
+    /**
+     * 加入窗口
+     * @param message 在途消息
+     * @return 窗口已满或 packetId 仍在途时返回 false
+     */
+    public synchronized boolean offer(InflightMessage message) {
+        if (inflight.size() >= maxInflight || inflight.containsKey(message.getMsgId())) {
+            return false;
+        }
+        inflight.put(message.getMsgId(), message);
+        return true;
+    }
+
+    public synchronized boolean contains(int msgId) {
+        return inflight.containsKey(msgId);
+    }
+
+    /**
+     * 确认消息
+     * @param msgId packetId
+     * @return 被确认的消息，不在窗口中返回 null
+     */
+    public synchronized InflightMessage ack(int msgId) {
+        InflightMessage message = inflight.remove(msgId);
+        if (message != null) {
+            message.cancelTimeout();
+        }
+        return message;
+    }
+
+    /**
+     * 获取在途消息
+     * @param msgId packetId
+     * @return 在途消息
+     */
+    public synchronized InflightMessage get(int msgId) {
+        return inflight.get(msgId);
+    }
+
+    public synchronized int size() {
+        return inflight.size();
+    }
+
+    /**
+     * 清空窗口 取消所有重发任务
+     * @return 清除的在途消息
+     */
+    public synchronized List<InflightMessage> clear() {
+        List<InflightMessage> messages = new ArrayList<>(inflight.values());
+        for (InflightMessage message : messages) {
+            message.cancelTimeout();
+        }
+        inflight.clear();
+        return messages;
+    }
+
+
+    /**
+     * 在途消息
+     */
+    public static class InflightMessage {
+
+        private final int msgId;
+
+        private final String topic;
+
+        private final byte[] payload;
+
+        /**
+         * 命令下发 id，非命令下行为 null
+         */
+        private final Integer sendId;
+
+        private int attempts;
+
+        /**
+         * 首次下发时间 System.nanoTime，用于统计 PUBACK 延迟
+         */
+        private final long sentNanos = System.nanoTime();
+
+        private volatile Timeout timeout;
+
+        public InflightMessage(int msgId, String topic, byte[] payload) {
+            this(msgId, topic, payload, null);
+        }
+
+        public InflightMessage(int msgId, String topic, byte[] payload, Integer sendId) {
+            this.msgId = msgId;
+            this.topic = topic;
+            this.payload = payload;
+            this.sendId = sendId;
+        }
+
+        public int getMsgId() {
+            return msgId;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public Integer getSendId() {
+            return sendId;
+        }
+
+        public long getSentNanos() {
+            return sentNanos;
+        }
+
+        public int incrementAttempts() {
+            return ++attempts;
+        }
+
+        public void setTimeout(Timeout timeout) {
+            this.timeout = timeout;
+        }
+
+        void cancelTimeout() {
+            Timeout t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
+        }
+    }
+}
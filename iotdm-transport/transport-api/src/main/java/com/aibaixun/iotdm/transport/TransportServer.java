@@ -4,6 +4,7 @@ import com.aibaixun.iotdm.enums.DataFormat;
 import com.aibaixun.iotdm.enums.ProtocolType;
 import com.aibaixun.iotdm.msg.DeviceAuthRespMsg;
 import com.aibaixun.iotdm.msg.DeviceAuthSecretReqMsg;
+import com.aibaixun.iotdm.msg.DevicePayload;
 import com.aibaixun.iotdm.msg.TransportSessionInfo;
 
 /**
@@ -75,7 +76,18 @@ public interface TransportServer {
      * @param dataFormat 数据格式
      * @param callback 回调函数
      */
-    void  processPropertyUp(SessionId sessionId,  DataFormat dataFormat,String payload,TransportServiceCallback<Void> callback);
+    default void  processPropertyUp(SessionId sessionId,  DataFormat dataFormat,String payload,TransportServiceCallback<Void> callback) {
+        processPropertyUp(sessionId, DevicePayload.ofText(dataFormat, payload), callback);
+    }
+
+
+    /**
+     * 设备上报属性信息 原始字节负载
+     * @param sessionId session 信息
+     * @param payload 负载内容
+     * @param callback 回调函数
+     */
+    void  processPropertyUp(SessionId sessionId, DevicePayload payload, TransportServiceCallback<Void> callback);
 
 
     /**
@@ -85,7 +97,18 @@ public interface TransportServer {
      * @param payload 负载内容
      * @param callback 回调函数
      */
-    void  processMessageUp(SessionId sessionId, DataFormat dataFormat,String payload,TransportServiceCallback<Void> callback);
+    default void  processMessageUp(SessionId sessionId, DataFormat dataFormat,String payload,TransportServiceCallback<Void> callback) {
+        processMessageUp(sessionId, DevicePayload.ofText(dataFormat, payload), callback);
+    }
+
+
+    /**
+     * 设备上报消息信息 原始字节负载
+     * @param sessionId session 信息
+     * @param payload 负载内容
+     * @param callback 回调函数
+     */
+    void  processMessageUp(SessionId sessionId, DevicePayload payload, TransportServiceCallback<Void> callback);
 
 
     /**
@@ -145,4 +168,10 @@ public interface TransportServer {
      */
     void processControlIsSend(Integer sendId,int msgId);
 
+    /**
+     * 命令控制 下行失败（在途窗口已满或重试耗尽）
+     * @param sendId 发送id
+     */
+    void processControlSendFailed(Integer sendId);
+
 }
@@ -34,5 +34,10 @@ public class SimpleTransportRateLimit implements TransportRateLimit{
         return rateLimits.tryConsume(number);
     }
 
+    @Override
+    public void refund(long number) {
+        rateLimits.refund(number);
+    }
+
 
 }
@@ -25,4 +25,10 @@ public interface TransportRateLimit {
      * @return boolean
      */
     boolean tryConsume(long number);
+
+    /**
+     * 归还已消费的令牌，不超过桶容量
+     * @param number 归还 number
+     */
+    void refund(long number);
 }
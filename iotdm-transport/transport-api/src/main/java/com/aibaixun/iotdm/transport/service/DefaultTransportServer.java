@@ -4,11 +4,11 @@ import com.aibaixun.iotdm.enums.DataFormat;
 import com.aibaixun.iotdm.enums.ProtocolType;
 import com.aibaixun.iotdm.msg.DeviceAuthRespMsg;
 import com.aibaixun.iotdm.msg.DeviceAuthSecretReqMsg;
+import com.aibaixun.iotdm.msg.DevicePayload;
 import com.aibaixun.iotdm.msg.SessionEventType;
 import com.aibaixun.iotdm.msg.TransportSessionInfo;
 import com.aibaixun.iotdm.service.DeviceInfoServer;
 import com.aibaixun.iotdm.service.IotDmEventPublisher;
-import com.aibaixun.iotdm.service.SessionCacheServer;
 import com.aibaixun.iotdm.transport.*;
 import com.aibaixun.iotdm.transport.limits.TransportLimitServer;
 import com.aibaixun.iotdm.util.AsyncCallbackTemplate;
@@ -19,7 +19,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.util.Objects;
 
@@ -34,7 +33,7 @@ public class DefaultTransportServer implements TransportServer {
     private DeviceInfoServer deviceInfoService;
 
 
-    private SessionCacheServer sessionCacheService;
+    private TransportSessionRegistry sessionRegistry;
 
 
     private IotDmEventPublisher iotDmEventPublisher;
@@ -48,11 +47,6 @@ public class DefaultTransportServer implements TransportServer {
     private ListenerContainer listenerContainer;
 
 
-    @Value("${transport.default-keepalive}")
-    private long defaultKeepalive;
-
-
-
     @Override
     public void processDeviceAuthBySecret(ProtocolType protocolType, DeviceAuthSecretReqMsg deviceAuthSecretReqMsg, TransportServiceCallback<DeviceAuthRespMsg> callback) {
         ListenableFuture<DeviceAuthRespMsg> listenableFuture = Futures.transform(deviceInfoService.mqttDeviceAuthBySecret(deviceAuthSecretReqMsg), deviceInfo -> {
@@ -81,7 +75,7 @@ public class DefaultTransportServer implements TransportServer {
 
     @Override
     public void processDeviceDisConnect(SessionId sessionId, String hostName) {
-        TransportSessionInfo sessionFromCache = sessionCacheService.getSessionFromCache(sessionId);
+        TransportSessionInfo sessionFromCache = sessionRegistry.get(sessionId);
         var  lastConnect = Objects.nonNull(sessionFromCache)?sessionFromCache.getLastConnectTime():null;
         var  lastActivity = Objects.nonNull(sessionFromCache)?sessionFromCache.getLastActivityTime():null;
         Futures.transform(deviceInfoService.setDeviceStatus2OffOnLine(sessionId.getDeviceId(),lastConnect,lastActivity,hostName),
@@ -98,38 +92,37 @@ public class DefaultTransportServer implements TransportServer {
     @Override
     public void registerSession(TransportSessionInfo transportSessionInfo, TransportSessionListener listener) {
         SessionId sessionId = transportSessionInfo.getSessionId();
-        sessionCacheService.removeSessionCache(sessionId);
-        sessionCacheService.addSessionCache(sessionId,transportSessionInfo,defaultKeepalive);
+        sessionRegistry.register(transportSessionInfo);
         listenerContainer.addSessionMetaData(sessionId,new TransportSessionMetaData(transportSessionInfo.getDeviceId(),listener));
     }
 
 
     @Override
     public void deregisterSession(SessionId sessionId) {
-        sessionCacheService.removeSessionCache(sessionId);
+        sessionRegistry.remove(sessionId);
         listenerContainer.remove(sessionId);
     }
 
 
     @Override
     public void reportActivity(SessionId sessionId) {
-        sessionCacheService.activitySessionCache(sessionId,defaultKeepalive);
+        sessionRegistry.activity(sessionId);
     }
 
 
     @Override
-    public void processPropertyUp(SessionId sessionId,  DataFormat dataFormat, String payload, TransportServiceCallback<Void> callback) {
+    public void processPropertyUp(SessionId sessionId, DevicePayload payload, TransportServiceCallback<Void> callback) {
         if (checkSessionAndLimit(sessionId)){
-            ListenableFuture<Void> listenableFuture = Futures.submit(() -> iotDmEventPublisher.publishPropertyUpEvent(sessionId.getProductId(), sessionId.getDeviceId(), dataFormat, payload), MoreExecutors.directExecutor());
+            ListenableFuture<Void> listenableFuture = Futures.submit(() -> iotDmEventPublisher.publishPropertyUpEvent(sessionId.getProductId(), sessionId.getDeviceId(), payload), MoreExecutors.directExecutor());
             AsyncCallbackTemplate.withCallback(listenableFuture,callback::onSuccess,callback::onError,MoreExecutors.directExecutor());
         }
     }
 
 
     @Override
-    public void processMessageUp(SessionId sessionId, DataFormat dataFormat, String payload, TransportServiceCallback<Void> callback) {
+    public void processMessageUp(SessionId sessionId, DevicePayload payload, TransportServiceCallback<Void> callback) {
         if (checkSessionAndLimit(sessionId)){
-            ListenableFuture<Void> listenableFuture = Futures.submit(() -> iotDmEventPublisher.publishMessageUpEvent(sessionId.getProductId(), sessionId.getDeviceId(), dataFormat,payload), MoreExecutors.directExecutor());
+            ListenableFuture<Void> listenableFuture = Futures.submit(() -> iotDmEventPublisher.publishMessageUpEvent(sessionId.getProductId(), sessionId.getDeviceId(), payload), MoreExecutors.directExecutor());
             AsyncCallbackTemplate.withCallback(listenableFuture,callback::onSuccess,callback::onError,MoreExecutors.directExecutor());
         }
     }
@@ -138,7 +131,7 @@ public class DefaultTransportServer implements TransportServer {
     @Override
     public void processWarnUp(SessionId sessionId,  TransportServiceCallback<Void> callback) {
         if (checkSessionAndLimit(sessionId)){
-            sessionCacheService.removeSessionCache(sessionId);
+            sessionRegistry.remove(sessionId);
             ListenableFuture<Void> listenableFuture = Futures.transform(deviceInfoService.setDeviceStatus2Warn(sessionId.getDeviceId()), status -> null, MoreExecutors.directExecutor());
             AsyncCallbackTemplate.withCallback(listenableFuture,callback::onSuccess,callback::onError,MoreExecutors.directExecutor());
         }
@@ -191,6 +184,11 @@ public class DefaultTransportServer implements TransportServer {
          Futures.submit(() -> deviceInfoService.setControlMsgId(sendId,msgId), MoreExecutors.directExecutor());
     }
 
+    @Override
+    public void processControlSendFailed(Integer sendId) {
+        Futures.submit(() -> deviceInfoService.setControlSendFailed(sendId), MoreExecutors.directExecutor());
+    }
+
     /**
      * 校验session 与 限制
      * @param sessionId 会话信息
@@ -201,7 +199,7 @@ public class DefaultTransportServer implements TransportServer {
         if (log.isTraceEnabled()) {
             log.trace("DefaultTransportService.checkSessionAndLimit >>  Processing msg: {},{}", sessionId.getProductId(),sessionId.getDeviceId());
         }
-        TransportSessionInfo sessionFromCache = sessionCacheService.getSessionFromCache(sessionId);
+        TransportSessionInfo sessionFromCache = sessionRegistry.get(sessionId);
         if (Objects.isNull(sessionFromCache)){
             return false;
         }
@@ -215,8 +213,8 @@ public class DefaultTransportServer implements TransportServer {
     }
 
     @Autowired
-    public void setSessionCacheService(SessionCacheServer sessionCacheService) {
-        this.sessionCacheService = sessionCacheService;
+    public void setSessionRegistry(TransportSessionRegistry sessionRegistry) {
+        this.sessionRegistry = sessionRegistry;
     }
 
 
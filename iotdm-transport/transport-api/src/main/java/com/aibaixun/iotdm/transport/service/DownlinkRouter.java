@@ -0,0 +1,152 @@
+package com.aibaixun.iotdm.transport.service;
+
+import com.aibaixun.iotdm.msg.ToDeviceRouteMsg;
+import com.aibaixun.iotdm.queue.QueueSendServer;
+import com.aibaixun.iotdm.transport.SessionId;
+import com.aibaixun.iotdm.transport.TransportSessionListener;
+import com.aibaixun.iotdm.transport.shard.ShardManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * 下行消息 路由
+ * <p>设备连接在本节点时直接下发，否则按 session 所在节点经队列转发；
+ * 分片拒绝非本节点连接时，hash 环即为 session 所在节点，不再查询 redis。
+ * 发送方缓存的节点已过期时，接收方重新查询 session 所在节点并再转发一次，同时通知发送方清除节点缓存</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/15
+ */
+@Component
+public class DownlinkRouter {
+
+    private final Logger log = LoggerFactory.getLogger(DownlinkRouter.class);
+
+    /**
+     * 接收方未找到连接时 最多重新转发次数
+     */
+    private static final int MAX_HOPS = 1;
+
+    private ListenerContainer listenerContainer;
+
+    private SessionOwnerRegistry ownerRegistry;
+
+    private QueueSendServer queueSendServer;
+
+    private ShardManager shardManager;
+
+
+    /**
+     * 路由下行消息
+     * @param routeMsg 下行消息
+     */
+    public void route(ToDeviceRouteMsg routeMsg) {
+        SessionId sessionId = routeMsg.getSessionId();
+        if (Objects.isNull(sessionId) || deliverLocal(routeMsg)) {
+            return;
+        }
+        String owner = shardManager.isRejectForeign() ? shardManager.ownerOf(sessionId.getDeviceId()) : ownerRegistry.ownerOf(sessionId);
+        if (Objects.isNull(owner) || Objects.equals(owner, ownerRegistry.getNodeId())) {
+            log.debug("DownlinkRouter.route >> device is not online,sessionId:{},type:{}", sessionId, routeMsg.getType());
+            return;
+        }
+        forward(routeMsg, owner);
+    }
+
+    /**
+     * 其他节点转发过来的下行消息
+     * @param routeMsg 下行消息
+     */
+    public void onRemote(ToDeviceRouteMsg routeMsg) {
+        SessionId sessionId = routeMsg.getSessionId();
+        if (Objects.isNull(sessionId)) {
+            return;
+        }
+        if (routeMsg.getType() == ToDeviceRouteMsg.Type.OWNER_CHANGED) {
+            ownerRegistry.invalidate(sessionId);
+            return;
+        }
+        if (deliverLocal(routeMsg)) {
+            return;
+        }
+        notifyOwnerChanged(routeMsg);
+        // 发送方缓存的节点已过期(设备重连到了其他节点)，按 redis 中的最新节点再转发
+        String owner = shardManager.isRejectForeign() ? null : ownerRegistry.refreshOwner(sessionId);
+        if (Objects.isNull(owner) || Objects.equals(owner, ownerRegistry.getNodeId()) || routeMsg.getHops() >= MAX_HOPS) {
+            log.info("DownlinkRouter.onRemote >> session is not on this node,sessionId:{},type:{},owner:{}", sessionId, routeMsg.getType(), owner);
+            return;
+        }
+        routeMsg.setHops(routeMsg.getHops() + 1);
+        forward(routeMsg, owner);
+    }
+
+    /**
+     * 通知发送方 session 不在本节点
+     */
+    private void notifyOwnerChanged(ToDeviceRouteMsg routeMsg) {
+        String source = routeMsg.getSourceNodeId();
+        if (Objects.isNull(source) || Objects.equals(source, ownerRegistry.getNodeId()) || shardManager.isRejectForeign()) {
+            return;
+        }
+        forward(new ToDeviceRouteMsg(ToDeviceRouteMsg.Type.OWNER_CHANGED, routeMsg.getSessionId(), null), source);
+    }
+
+    private void forward(ToDeviceRouteMsg routeMsg, String owner) {
+        routeMsg.setNodeId(owner);
+        routeMsg.setSourceNodeId(ownerRegistry.getNodeId());
+        try {
+            queueSendServer.sendDownlinkData(routeMsg);
+        } catch (Exception e) {
+            log.warn("DownlinkRouter.forward >> forward downlink to node:{} error,sessionId:{},msg is:{}", owner, routeMsg.getSessionId(), e.getMessage());
+        }
+    }
+
+    private boolean deliverLocal(ToDeviceRouteMsg routeMsg) {
+        TransportSessionMetaData sessionMeta = listenerContainer.getSessionMeta(routeMsg.getSessionId());
+        if (Objects.isNull(sessionMeta)) {
+            return false;
+        }
+        TransportSessionListener listener = sessionMeta.getListener();
+        switch (routeMsg.getType()) {
+            case CONFIG:
+                listener.on2DeviceConfigReq(routeMsg.getPayload());
+                break;
+            case OTA:
+                listener.on2DeviceOtaReq(routeMsg.getPayload());
+                break;
+            case CONTROL:
+                listener.on2DeviceControlReq(routeMsg.getSendId(), routeMsg.getPayload());
+                break;
+            case DISCONNECT:
+                listener.onCloseConnect();
+                break;
+            default:
+                break;
+        }
+        return true;
+    }
+
+
+    @Autowired
+    public void setListenerContainer(ListenerContainer listenerContainer) {
+        this.listenerContainer = listenerContainer;
+    }
+
+    @Autowired
+    public void setOwnerRegistry(SessionOwnerRegistry ownerRegistry) {
+        this.ownerRegistry = ownerRegistry;
+    }
+
+    @Autowired
+    public void setQueueSendServer(QueueSendServer queueSendServer) {
+        this.queueSendServer = queueSendServer;
+    }
+
+    @Autowired
+    public void setShardManager(ShardManager shardManager) {
+        this.shardManager = shardManager;
+    }
+}
@@ -3,6 +3,7 @@ package com.aibaixun.iotdm.transport.service;
 import com.aibaixun.iotdm.transport.SessionId;
 import org.springframework.stereotype.Component;
 
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
@@ -31,4 +32,12 @@ public class ListenerContainer {
     public TransportSessionMetaData getSessionMeta(SessionId sessionId){
         return sessionListeners.get(sessionId);
     }
+
+    /**
+     * 本节点所有 session
+     * @return session id 视图
+     */
+    public Set<SessionId> sessionIds(){
+        return sessionListeners.keySet();
+    }
 }
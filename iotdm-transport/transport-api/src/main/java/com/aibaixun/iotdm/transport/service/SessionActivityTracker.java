@@ -0,0 +1,195 @@
+package com.aibaixun.iotdm.transport.service;
+
+import com.aibaixun.iotdm.msg.TransportSessionInfo;
+import com.aibaixun.iotdm.service.SessionCacheServer;
+import com.aibaixun.iotdm.transport.SessionId;
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * session 活跃时间 延迟合并写入
+ * 活跃时间只在内存中更新，按固定间隔把有变化的 session 批量写入 redis 并刷新 ttl，
+ * redis 写入量只与设备数相关，与消息速率无关。ttl 按 session 自身的空闲超时加刷新间隔计算，连接存活期间 key 不会过期。
+ * 仍在本地注册表中的 session 刷新时重建已过期的 key，已移除的 session 只更新仍存在的 key；
+ * session 副本的写入与删除也在刷新线程上按提交顺序执行，已删除的 session 不会被之前取出的刷新重新写回
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/6
+ */
+@Component
+public class SessionActivityTracker {
+
+    private final Logger log = LoggerFactory.getLogger(SessionActivityTracker.class);
+
+    /**
+     * 待刷新的 session，同一个 session 多次活跃只保留一条
+     */
+    private final ConcurrentMap<SessionId, TransportSessionInfo> dirtySessions = new ConcurrentHashMap<>();
+
+    private SessionCacheServer sessionCacheService;
+
+    /**
+     * 查询本地注册表中的 session，由 {@link TransportSessionRegistry} 设置
+     */
+    private Function<SessionId, TransportSessionInfo> localSessions = sessionId -> null;
+
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 刷新与 session 副本同步共用的单线程
+     */
+    private ScheduledExecutorService flushExecutor;
+
+    private Timer flushTimer;
+
+    /**
+     * 上一次刷新完成时间
+     */
+    private volatile long lastFlushTime = Instant.now().toEpochMilli();
+
+    @Value("${transport.default-keepalive}")
+    private long defaultKeepalive;
+
+    @Value("${transport.sessions.activity_flush_interval:1000}")
+    private long flushInterval;
+
+    @Value("${transport.sessions.activity_flush_batch_size:500}")
+    private int flushBatchSize;
+
+
+    @PostConstruct
+    public void init() {
+        flushTimer = Timer.builder("iotdm.transport.activity.flush").description("session activity flush duration").register(meterRegistry);
+        Gauge.builder("iotdm.transport.activity.flush.lag", this, SessionActivityTracker::getFlushLag)
+                .description("milliseconds since last completed session activity flush").baseUnit("milliseconds").register(meterRegistry);
+        Gauge.builder("iotdm.transport.activity.pending", dirtySessions, Map::size)
+                .description("sessions waiting for activity flush").register(meterRegistry);
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(IotDmThreadFactory.forName("session-activity"));
+        flushExecutor.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (Objects.nonNull(flushExecutor)) {
+            flushExecutor.shutdown();
+        }
+        flush();
+    }
+
+
+    /**
+     * 标记 session 活跃
+     * @param sessionInfo session 信息
+     */
+    public void markActive(TransportSessionInfo sessionInfo) {
+        dirtySessions.put(sessionInfo.getSessionId(), sessionInfo);
+    }
+
+    /**
+     * session 缓存 ttl，空闲超时加刷新间隔，保证连接存活期间两次刷新之间 key 不会过期
+     * @param sessionInfo session 信息
+     * @return ttl(秒)
+     */
+    public long ttlOf(TransportSessionInfo sessionInfo) {
+        long idleTimeout = sessionInfo.getIdleTimeout() > 0 ? sessionInfo.getIdleTimeout() : defaultKeepalive;
+        return idleTimeout + TimeUnit.MILLISECONDS.toSeconds(flushInterval) + 1;
+    }
+
+    /**
+     * 取消待刷新的 session
+     * @param sessionId session id
+     */
+    public void forget(SessionId sessionId) {
+        dirtySessions.remove(sessionId);
+    }
+
+    /**
+     * 在刷新线程上执行 session 副本同步，与刷新串行
+     * @param task 同步任务
+     * @throws java.util.concurrent.RejectedExecutionException 已关闭
+     */
+    public void execute(Runnable task) {
+        flushExecutor.execute(task);
+    }
+
+    /**
+     * 批量刷新到 redis
+     */
+    void flush() {
+        if (dirtySessions.isEmpty()) {
+            lastFlushTime = Instant.now().toEpochMilli();
+            return;
+        }
+        flushTimer.record(() -> {
+            Iterator<Map.Entry<SessionId, TransportSessionInfo>> iterator = dirtySessions.entrySet().iterator();
+            Map<SessionId, TransportSessionInfo> batch = new HashMap<>(Math.min(flushBatchSize, dirtySessions.size()) * 2);
+            while (iterator.hasNext()) {
+                Map.Entry<SessionId, TransportSessionInfo> entry = iterator.next();
+                batch.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+                if (batch.size() >= flushBatchSize) {
+                    doFlush(batch);
+                    batch = new HashMap<>(flushBatchSize * 2);
+                }
+            }
+            doFlush(batch);
+        });
+        lastFlushTime = Instant.now().toEpochMilli();
+    }
+
+    private void doFlush(Map<SessionId, TransportSessionInfo> batch) {
+        Map<SessionId, TransportSessionInfo> removed = new HashMap<>();
+        Iterator<Map.Entry<SessionId, TransportSessionInfo>> iterator = batch.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<SessionId, TransportSessionInfo> entry = iterator.next();
+            if (localSessions.apply(entry.getKey()) != entry.getValue()) {
+                removed.put(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+        try {
+            sessionCacheService.activitySessionCacheBatch(batch, this::ttlOf, true);
+            sessionCacheService.activitySessionCacheBatch(removed, this::ttlOf, false);
+        } catch (Exception e) {
+            log.warn("SessionActivityTracker.doFlush >> flush session activity error,size:{},msg is:{}", batch.size() + removed.size(), e.getMessage());
+        }
+    }
+
+    private double getFlushLag() {
+        return Instant.now().toEpochMilli() - lastFlushTime;
+    }
+
+    void setLocalSessions(Function<SessionId, TransportSessionInfo> localSessions) {
+        this.localSessions = localSessions;
+    }
+
+    @Autowired
+    public void setSessionCacheService(SessionCacheServer sessionCacheService) {
+        this.sessionCacheService = sessionCacheService;
+    }
+
+    @Autowired
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+}
@@ -0,0 +1,114 @@
+package com.aibaixun.iotdm.transport.service;
+
+import com.aibaixun.iotdm.msg.TransportSessionInfo;
+import com.aibaixun.iotdm.service.SessionCacheServer;
+import com.aibaixun.iotdm.transport.SessionId;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * session 所在节点 查询
+ * <p>节点信息随 session 副本写入 redis，查询到的节点在本地缓存，本节点连接/断开时直接更新；
+ * 未找到节点的结果不缓存，设备刚连上时下行不会被丢弃</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/15
+ */
+@Component
+public class SessionOwnerRegistry {
+
+    private final Logger log = LoggerFactory.getLogger(SessionOwnerRegistry.class);
+
+    @Value("${transport.node_id}")
+    private String nodeId;
+
+    @Value("${transport.sessions.owner_cache_size:100000}")
+    private long ownerCacheSize;
+
+    @Value("${transport.sessions.owner_cache_expire:30}")
+    private long ownerCacheExpire;
+
+    private Cache<SessionId, String> owners;
+
+    private SessionCacheServer sessionCacheService;
+
+
+    @PostConstruct
+    public void init() {
+        owners = CacheBuilder.newBuilder()
+                .maximumSize(ownerCacheSize)
+                .expireAfterWrite(ownerCacheExpire, TimeUnit.SECONDS)
+                .build();
+        log.info("SessionOwnerRegistry.init >> transport node id:{}", nodeId);
+    }
+
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * session 连接所在节点
+     * @param sessionId session id
+     * @return 节点id，设备不在线返回 null
+     */
+    public String ownerOf(SessionId sessionId) {
+        String owner = owners.getIfPresent(sessionId);
+        return Objects.isNull(owner) ? refreshOwner(sessionId) : owner;
+    }
+
+    /**
+     * 跳过本地缓存 重新查询 session 连接所在节点
+     * @param sessionId session id
+     * @return 节点id，设备不在线返回 null
+     */
+    public String refreshOwner(SessionId sessionId) {
+        String owner = loadOwner(sessionId);
+        if (Objects.isNull(owner)) {
+            owners.invalidate(sessionId);
+        } else {
+            owners.put(sessionId, owner);
+        }
+        return owner;
+    }
+
+    private String loadOwner(SessionId sessionId) {
+        try {
+            TransportSessionInfo sessionInfo = sessionCacheService.getSessionFromCache(sessionId);
+            return Objects.nonNull(sessionInfo) && StringUtils.isNotBlank(sessionInfo.getNodeId()) ? sessionInfo.getNodeId() : null;
+        } catch (Exception e) {
+            log.warn("SessionOwnerRegistry.loadOwner >> load session owner error,sessionId:{},msg is:{}", sessionId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 本节点建立连接
+     * @param sessionId session id
+     */
+    public void onLocalConnect(SessionId sessionId) {
+        owners.put(sessionId, nodeId);
+    }
+
+    /**
+     * 本节点连接断开，或转发后目标节点未找到连接
+     * @param sessionId session id
+     */
+    public void invalidate(SessionId sessionId) {
+        owners.invalidate(sessionId);
+    }
+
+    @Autowired
+    public void setSessionCacheService(SessionCacheServer sessionCacheService) {
+        this.sessionCacheService = sessionCacheService;
+    }
+}
@@ -0,0 +1,133 @@
+package com.aibaixun.iotdm.transport.service;
+
+import com.aibaixun.iotdm.msg.TransportSessionInfo;
+import com.aibaixun.iotdm.msg.TransportSessionInfoHolder;
+import com.aibaixun.iotdm.service.SessionCacheServer;
+import com.aibaixun.iotdm.transport.SessionId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 本地 session 注册表
+ * 本节点连接的 session 以本地为准，redis 只作为异步副本供跨节点查询
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/6
+ */
+@Component
+public class TransportSessionRegistry {
+
+    private final Logger log = LoggerFactory.getLogger(TransportSessionRegistry.class);
+
+    /**
+     * 存储 session 信息
+     */
+    private final ConcurrentMap<SessionId, TransportSessionInfo> sessions = new ConcurrentHashMap<>();
+
+    private SessionCacheServer sessionCacheService;
+
+    private SessionActivityTracker activityTracker;
+
+    private SessionOwnerRegistry ownerRegistry;
+
+
+    /**
+     * 注册 session
+     * @param sessionInfo session 信息
+     */
+    public void register(TransportSessionInfo sessionInfo) {
+        SessionId sessionId = sessionInfo.getSessionId();
+        sessionInfo.setNodeId(ownerRegistry.getNodeId());
+        sessions.put(sessionId, sessionInfo);
+        ownerRegistry.onLocalConnect(sessionId);
+        replicate(() -> {
+            sessionCacheService.removeSessionCache(sessionId);
+            sessionCacheService.addSessionCache(sessionId, sessionInfo, activityTracker.ttlOf(sessionInfo));
+        });
+    }
+
+    /**
+     * 移除 session
+     * @param sessionId session id
+     * @return 被移除的 session 信息
+     */
+    public TransportSessionInfo remove(SessionId sessionId) {
+        TransportSessionInfo sessionInfo = sessions.remove(sessionId);
+        activityTracker.forget(sessionId);
+        ownerRegistry.invalidate(sessionId);
+        replicate(() -> {
+            // 设备可能已经重连到其他节点，只删除本节点写入的副本
+            TransportSessionInfo cached = sessionCacheService.getSessionFromCache(sessionId);
+            if (Objects.isNull(cached) || Objects.isNull(cached.getNodeId()) || Objects.equals(ownerRegistry.getNodeId(), cached.getNodeId())) {
+                sessionCacheService.removeSessionCache(sessionId);
+            }
+        });
+        return sessionInfo;
+    }
+
+    /**
+     * 获取本地 session
+     * @param sessionId session id
+     * @return session 信息
+     */
+    public TransportSessionInfo get(SessionId sessionId) {
+        return sessions.get(sessionId);
+    }
+
+    /**
+     * 活跃 session，只更新内存，由 {@link SessionActivityTracker} 合并写入 redis
+     * @param sessionId session id
+     */
+    public void activity(SessionId sessionId) {
+        TransportSessionInfo sessionInfo = sessions.get(sessionId);
+        if (Objects.isNull(sessionInfo)) {
+            return;
+        }
+        TransportSessionInfoHolder.activity(sessionInfo);
+        activityTracker.markActive(sessionInfo);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * 异步同步到 redis 副本，在活跃时间刷新线程上执行，保证删除在之前取出的刷新之后；失败只记录日志
+     * @param task 同步任务
+     */
+    private void replicate(Runnable task) {
+        try {
+            activityTracker.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    log.warn("TransportSessionRegistry.replicate >> replicate session to cache error,msg is:{}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("TransportSessionRegistry.replicate >> replica executor is shutdown");
+        }
+    }
+
+    @Autowired
+    public void setSessionCacheService(SessionCacheServer sessionCacheService) {
+        this.sessionCacheService = sessionCacheService;
+    }
+
+    @Autowired
+    public void setActivityTracker(SessionActivityTracker activityTracker) {
+        this.activityTracker = activityTracker;
+        activityTracker.setLocalSessions(sessions::get);
+    }
+
+    @Autowired
+    public void setOwnerRegistry(SessionOwnerRegistry ownerRegistry) {
+        this.ownerRegistry = ownerRegistry;
+    }
+}
@@ -0,0 +1,58 @@
+package com.aibaixun.iotdm.transport.shard;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 一致性 hash 环
+ * <p>每个节点放置若干虚拟节点，节点增减时只有相邻区间的设备需要迁移；实例不可变，成员变化时整体替换</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/16
+ */
+public final class ConsistentHashRing {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+
+    private final SortedSet<String> nodes;
+
+
+    public ConsistentHashRing(Set<String> nodes, int virtualNodes) {
+        this.nodes = Collections.unmodifiableSortedSet(new TreeSet<>(nodes));
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * 设备所属节点
+     * @param deviceId 设备id
+     * @return 节点id，环为空返回 null
+     */
+    public String nodeOf(String deviceId) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(deviceId));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public SortedSet<String> getNodes() {
+        return nodes;
+    }
+
+    private static long hash(String key) {
+        return HASH.hashString(key, StandardCharsets.UTF_8).asLong();
+    }
+}
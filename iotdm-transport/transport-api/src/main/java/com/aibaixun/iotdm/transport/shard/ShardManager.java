@@ -0,0 +1,177 @@
+package com.aibaixun.iotdm.transport.shard;
+
+import com.aibaixun.iotdm.transport.SessionId;
+import com.aibaixun.iotdm.transport.service.ListenerContainer;
+import com.aibaixun.iotdm.transport.service.SessionOwnerRegistry;
+import com.aibaixun.iotdm.transport.service.TransportSessionMetaData;
+import com.aibaixun.iotdm.util.IotDmThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备分片 管理
+ * <p>按成员视图构建一致性 hash 环，每个节点负责一段 deviceId 区间；
+ * 拒绝非本节点连接时，成员变化后不属于本节点的连接按批逐步断开，设备重连后落到新的负责节点。
+ * 不拒绝时断开后设备仍可能连回本节点，不做迁移</p>
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/16
+ */
+@Component
+public class ShardManager {
+
+    private final Logger log = LoggerFactory.getLogger(ShardManager.class);
+
+    @Value("${transport.shard.enabled:false}")
+    private boolean enabled;
+
+    @Value("${transport.shard.reject_foreign:false}")
+    private boolean rejectForeign;
+
+    @Value("${transport.shard.virtual_nodes:160}")
+    private int virtualNodes;
+
+    @Value("${transport.shard.refresh_interval:5000}")
+    private long refreshInterval;
+
+    @Value("${transport.shard.handoff_batch_size:200}")
+    private int handoffBatchSize;
+
+    private volatile ConsistentHashRing ring;
+
+    /**
+     * 待迁移的本地 session
+     */
+    private final ConcurrentLinkedQueue<SessionId> handoffQueue = new ConcurrentLinkedQueue<>();
+
+    private TransportMembership membership;
+
+    private SessionOwnerRegistry ownerRegistry;
+
+    private ListenerContainer listenerContainer;
+
+    private ScheduledExecutorService shardExecutor;
+
+
+    @PostConstruct
+    public void init() {
+        ring = new ConsistentHashRing(Collections.singleton(ownerRegistry.getNodeId()), virtualNodes);
+        if (!enabled) {
+            return;
+        }
+        shardExecutor = Executors.newSingleThreadScheduledExecutor(IotDmThreadFactory.forName("transport-shard"));
+        shardExecutor.scheduleWithFixedDelay(this::refresh, 0, refreshInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (Objects.nonNull(shardExecutor)) {
+            shardExecutor.shutdownNow();
+        }
+    }
+
+
+    /**
+     * 设备所属节点
+     * @param deviceId 设备id
+     * @return 节点id
+     */
+    public String ownerOf(String deviceId) {
+        return ring.nodeOf(deviceId);
+    }
+
+    /**
+     * 设备是否由本节点负责，未开启分片时总是 true
+     * @param deviceId 设备id
+     * @return 是否本节点
+     */
+    public boolean isLocal(String deviceId) {
+        return !enabled || Objects.equals(ownerRegistry.getNodeId(), ring.nodeOf(deviceId));
+    }
+
+    /**
+     * 是否拒绝不属于本节点的连接，开启后 hash 环即为 session 所在节点
+     * @return 是否拒绝
+     */
+    public boolean isRejectForeign() {
+        return enabled && rejectForeign;
+    }
+
+
+    void refresh() {
+        try {
+            Set<String> nodes = Objects.nonNull(membership) ? new HashSet<>(membership.liveNodes()) : new HashSet<>();
+            nodes.add(ownerRegistry.getNodeId());
+            if (!nodes.equals(ring.getNodes())) {
+                ConsistentHashRing newRing = new ConsistentHashRing(nodes, virtualNodes);
+                log.info("ShardManager.refresh >> transport nodes changed,from:{} to:{}", ring.getNodes(), newRing.getNodes());
+                ring = newRing;
+                if (isRejectForeign()) {
+                    scheduleHandoff();
+                }
+            }
+            if (isRejectForeign()) {
+                handoff();
+            }
+        } catch (Exception e) {
+            log.warn("ShardManager.refresh >> refresh shard ring error,msg is:{}", e.getMessage());
+        }
+    }
+
+    private void scheduleHandoff() {
+        handoffQueue.clear();
+        for (SessionId sessionId : listenerContainer.sessionIds()) {
+            if (!isLocal(sessionId.getDeviceId())) {
+                handoffQueue.offer(sessionId);
+            }
+        }
+        log.info("ShardManager.scheduleHandoff >> sessions to hand off:{}", handoffQueue.size());
+    }
+
+    /**
+     * 每次最多断开 handoffBatchSize 个连接，避免成员变化时集中重连
+     */
+    private void handoff() {
+        int count = 0;
+        SessionId sessionId;
+        while (count < handoffBatchSize && (sessionId = handoffQueue.poll()) != null) {
+            if (isLocal(sessionId.getDeviceId())) {
+                continue;
+            }
+            TransportSessionMetaData sessionMeta = listenerContainer.getSessionMeta(sessionId);
+            if (Objects.nonNull(sessionMeta)) {
+                sessionMeta.getListener().onCloseConnect();
+                count++;
+            }
+        }
+    }
+
+
+    @Autowired(required = false)
+    public void setMembership(TransportMembership membership) {
+        this.membership = membership;
+    }
+
+    @Autowired
+    public void setOwnerRegistry(SessionOwnerRegistry ownerRegistry) {
+        this.ownerRegistry = ownerRegistry;
+    }
+
+    @Autowired
+    public void setListenerContainer(ListenerContainer listenerContainer) {
+        this.listenerContainer = listenerContainer;
+    }
+}
@@ -0,0 +1,17 @@
+package com.aibaixun.iotdm.transport.shard;
+
+import java.util.Set;
+
+/**
+ * 传输节点 成员视图
+ * @author wangxiao@aibaixun.com
+ * @date 2022/4/16
+ */
+public interface TransportMembership {
+
+    /**
+     * 当前存活的传输节点
+     * @return 节点id
+     */
+    Set<String> liveNodes();
+}